@@ -0,0 +1,44 @@
+package com.zeeker.service;
+
+import com.zeeker.support.EmbeddedDatabase;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 基准测试用的数据: 在内存 H2 中生成列类型混合的宽表.
+ */
+final class BenchmarkData {
+    static final String WIDE_TABLE = "wide_result";
+
+    private static final String[][] COLUMN_TYPES = {
+            {"VARCHAR(32)", "CONCAT('value_', \"X\")"},
+            {"INT", "MOD(\"X\", 1000)"},
+            {"DECIMAL(12,2)", "\"X\" * 1.25"},
+            {"TIMESTAMP", "DATEADD('SECOND', \"X\", TIMESTAMP '2024-01-01 00:00:00')"},
+            {"BIGINT", "\"X\" * 31"}};
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * 生成 id 加 columns 个业务列, 共 rows 行的表.
+     */
+    static void createWideTable(String database, int rows, int columns) throws SQLException {
+        StringBuilder ddl = new StringBuilder("CREATE TABLE ").append(WIDE_TABLE).append(" (id BIGINT PRIMARY KEY");
+        StringBuilder insert = new StringBuilder("INSERT INTO ").append(WIDE_TABLE).append(" SELECT \"X\"");
+        for (int c = 0; c < columns; c++) {
+            String[] type = COLUMN_TYPES[c % COLUMN_TYPES.length];
+            ddl.append(", col_").append(c).append(' ').append(type[0]);
+            insert.append(", ").append(type[1]);
+        }
+        ddl.append(")");
+        insert.append(" FROM SYSTEM_RANGE(1, ").append(rows).append(")");
+
+        try (Connection conn = EmbeddedDatabase.connect(database); Statement stmt = conn.createStatement()) {
+            stmt.execute(ddl.toString());
+            stmt.execute(insert.toString());
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.zeeker.service;
+
+import com.zeeker.config.RagConfig;
+import com.zeeker.support.EmbeddedDatabase;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 完整问答流程, 模型替换为立即返回的桩, 只衡量本地开销 (检索, 提示词, 查询, 格式化).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EndToEndBenchmark {
+    private static final String SQL = "```sql\nSELECT name, status, amount FROM customer ORDER BY amount DESC LIMIT 20\n```";
+    private static final String ANSWER = "The top customers by amount are listed above.";
+
+    @Param({"false", "true"})
+    boolean sqlCache;
+
+    private DatabaseService databaseService;
+    private RagService ragService;
+
+    @Setup
+    public void setUp() throws SQLException {
+        String database = "bench_e2e_" + sqlCache;
+        EmbeddedDatabase.createSyntheticSchema(database, 64, 1000);
+        databaseService = new DatabaseService(EmbeddedDatabase.config(database));
+
+        // 生成SQL的提示词以表结构开头, 其余请求返回回答
+        ChatLanguageModel model = messages -> {
+            String prompt = ((UserMessage) messages.get(0)).singleText();
+            return Response.from(AiMessage.from(prompt.startsWith("Based on the following database schema") ? SQL : ANSWER));
+        };
+        RagConfig ragConfig = new RagConfig();
+        if (!sqlCache) {
+            ragConfig.setSqlCacheMaxEntries(0);
+        }
+        ragService = new RagService(databaseService, new OpenAiService(model), ragConfig);
+    }
+
+    @TearDown
+    public void tearDown() {
+        databaseService.close();
+    }
+
+    @Benchmark
+    public String processNaturalLanguageQuery() {
+        return ragService.processNaturalLanguageQuery("Which customers have the highest amount?");
+    }
+}
@@ -0,0 +1,90 @@
+package com.zeeker.service;
+
+import com.zeeker.config.DatabaseConfig;
+import com.zeeker.export.ExportFormat;
+import com.zeeker.export.ExportedResult;
+import com.zeeker.query.QueryLimits;
+import com.zeeker.query.ResultTable;
+import com.zeeker.support.EmbeddedDatabase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 把千万行结果流式导出到文件, 对比一次性物化成 ResultTable. 行由 SYSTEM_RANGE 现场生成, 不占用表存储.
+ * 用 {@code -prof gc} 运行可以看到每次导出的分配量; 物化用例需要足够大的 -Xmx.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ExportBenchmark {
+    private static final String SQL = "SELECT \"X\" AS id, CONCAT('customer-', MOD(\"X\", 100000)) AS name, "
+            + "CAST(MOD(\"X\", 10000) * 1.25 AS DECIMAL(12,2)) AS amount, "
+            + "DATEADD('DAY', MOD(\"X\", 3650), CAST('2015-01-01' AS DATE)) AS created FROM SYSTEM_RANGE(1, %d)";
+
+    @Param({"10000000"})
+    int rows;
+
+    @Param({"csv", "columnar"})
+    String format;
+
+    @Param({"false", "true"})
+    boolean gzip;
+
+    private DatabaseService databaseService;
+    private String sql;
+    private Path directory;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("bench_export");
+        DatabaseConfig config = EmbeddedDatabase.config("bench_export");
+        config.setExportPath(directory.toString());
+        databaseService = new DatabaseService(config);
+        sql = String.format(SQL, rows);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        databaseService.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public ExportedResult exportQuery() {
+        ExportFormat exportFormat = ExportFormat.of(format);
+        Path file = directory.resolve("result" + exportFormat.extension(gzip));
+        return databaseService.exportQuery(sql, new QueryLimits(0, 0, 0), file, exportFormat, gzip, 20);
+    }
+
+    /**
+     * 对照: 不导出时整个结果都要留在堆里.
+     */
+    @Benchmark
+    public ResultTable materialize() {
+        return databaseService.executeQuery(sql, new QueryLimits(0, 0, 0));
+    }
+}
@@ -0,0 +1,59 @@
+package com.zeeker.service;
+
+import com.zeeker.query.QueryLimits;
+import com.zeeker.query.ResultTable;
+import com.zeeker.support.EmbeddedDatabase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 通过连接池对内存 H2 执行查询并把结果映射成 ResultTable.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryExecutionBenchmark {
+    private static final int COLUMNS = 10;
+
+    @Param({"100", "10000"})
+    int rows;
+
+    private DatabaseService databaseService;
+    private QueryLimits limits;
+    private String sql;
+
+    @Setup
+    public void setUp() throws SQLException {
+        String database = "bench_query_" + rows;
+        BenchmarkData.createWideTable(database, rows, COLUMNS);
+        databaseService = new DatabaseService(EmbeddedDatabase.config(database));
+        limits = new QueryLimits(0, 0, 0);
+        sql = "SELECT * FROM " + BenchmarkData.WIDE_TABLE;
+    }
+
+    @TearDown
+    public void tearDown() {
+        databaseService.close();
+    }
+
+    @Benchmark
+    public ResultTable executeQuery() {
+        return databaseService.executeQuery(sql, limits);
+    }
+}
@@ -0,0 +1,90 @@
+package com.zeeker.service;
+
+import com.zeeker.config.RagConfig;
+import com.zeeker.prompt.PromptBuilder;
+import com.zeeker.query.QueryLimits;
+import com.zeeker.query.ResultTable;
+import com.zeeker.support.EmbeddedDatabase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 把查询结果渲染成回答提示词: 不限 token 时直接拼接, 有预算时需要用分词器计数, 超出预算时逐行计数裁剪,
+ * 或者改为按列汇总加样本行.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultFormatBenchmark {
+    private static final String QUESTION = "Summarize the wide table";
+
+    @Param({"10", "100", "1000"})
+    int rows;
+
+    @Param({"4", "16"})
+    int columns;
+
+    private ResultTable results;
+    private PromptBuilder unbounded;
+    private PromptBuilder budgeted;
+    private PromptBuilder trimming;
+    private PromptBuilder summarizing;
+
+    @Setup
+    public void setUp() throws SQLException {
+        String database = "bench_format_" + rows + "_" + columns;
+        BenchmarkData.createWideTable(database, rows, columns);
+        DatabaseService databaseService = new DatabaseService(EmbeddedDatabase.config(database));
+        try {
+            results = databaseService.executeQuery("SELECT * FROM " + BenchmarkData.WIDE_TABLE, new QueryLimits(0, 0, 0));
+        } finally {
+            databaseService.close();
+        }
+        unbounded = promptBuilder(0, 0);
+        budgeted = promptBuilder(Integer.MAX_VALUE - 1, 0);
+        trimming = promptBuilder(500, 0);
+        summarizing = promptBuilder(500, 1);
+    }
+
+    private static PromptBuilder promptBuilder(int tokenBudget, int summaryMinRows) {
+        RagConfig config = new RagConfig();
+        config.setPromptTokenBudget(tokenBudget);
+        config.setResultSummaryMinRows(summaryMinRows);
+        return new PromptBuilder(config, PromptBuilder.tokenizerFor("gpt-4o-mini"));
+    }
+
+    @Benchmark
+    public String formatResults() {
+        return unbounded.answerPrompt(QUESTION, results);
+    }
+
+    @Benchmark
+    public String formatResultsWithinBudget() {
+        return budgeted.answerPrompt(QUESTION, results);
+    }
+
+    @Benchmark
+    public String trimResultsToBudget() {
+        return trimming.answerPrompt(QUESTION, results);
+    }
+
+    @Benchmark
+    public String summarizeResults() {
+        return summarizing.answerPrompt(QUESTION, results);
+    }
+}
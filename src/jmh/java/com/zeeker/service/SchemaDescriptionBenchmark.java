@@ -0,0 +1,77 @@
+package com.zeeker.service;
+
+import com.zeeker.config.RagConfig;
+import com.zeeker.prompt.PromptBuilder;
+import com.zeeker.schema.SchemaIndex;
+import com.zeeker.schema.SchemaSnapshot;
+import com.zeeker.schema.TableInfo;
+import com.zeeker.support.EmbeddedDatabase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 不同规模表结构下的结构描述: 缓存的全量描述, 重新拼接全量描述, 按问题检索相关表, 以及按 token 预算构建的SQL提示词
+ * (与线上相同的路径).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SchemaDescriptionBenchmark {
+    @Param({"16", "128", "512"})
+    int tables;
+
+    private DatabaseService databaseService;
+    private SchemaIndex schemaIndex;
+    private PromptBuilder promptBuilder;
+
+    @Setup
+    public void setUp() throws SQLException {
+        String database = "bench_schema_" + tables;
+        EmbeddedDatabase.createSyntheticSchema(database, tables, 0);
+        databaseService = new DatabaseService(EmbeddedDatabase.config(database));
+        schemaIndex = new SchemaIndex(databaseService.getSchema(), new RagConfig());
+        promptBuilder = new PromptBuilder(new RagConfig(), PromptBuilder.tokenizerFor("gpt-4o-mini"));
+    }
+
+    @TearDown
+    public void tearDown() {
+        databaseService.close();
+    }
+
+    @Benchmark
+    public String getDatabaseSchemaDescription() {
+        return databaseService.getDatabaseSchemaDescription();
+    }
+
+    @Benchmark
+    public String describeAllTables() {
+        return SchemaSnapshot.describe(databaseService.getSchema().getTables());
+    }
+
+    @Benchmark
+    public List<TableInfo> selectRelevantTables() {
+        return schemaIndex.selectRelevant("How many orders did each customer place last month?");
+    }
+
+    @Benchmark
+    public String buildSqlPrompt() {
+        return promptBuilder.sqlPrompt(schemaIndex, "How many orders did each customer place last month?");
+    }
+}
@@ -0,0 +1,39 @@
+package com.zeeker.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 清理模型返回的 SQL (去掉代码块标记, 压缩空白, 补分号).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SqlCleanupBenchmark {
+    private final String fenced = "```sql\nSELECT c.name, COUNT(o.id) AS order_count\n"
+            + "FROM customer c\n    JOIN orders o ON o.customer_id = c.id\n"
+            + "WHERE c.status = 'active'\nGROUP BY c.name\nORDER BY order_count DESC\nLIMIT 10\n```";
+    private final String plain = "SELECT COUNT(*) FROM customer";
+
+    @Benchmark
+    public String cleanFencedSql() {
+        return RagService.cleanSqlQuery(fenced);
+    }
+
+    @Benchmark
+    public String cleanPlainSql() {
+        return RagService.cleanSqlQuery(plain);
+    }
+}
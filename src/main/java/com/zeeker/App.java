@@ -1,7 +1,14 @@
 package com.zeeker;
 
+import com.zeeker.batch.BatchProcessor;
+import com.zeeker.batch.BatchSummary;
+import com.zeeker.config.BatchConfig;
 import com.zeeker.config.DatabaseConfig;
 import com.zeeker.config.OpenAiConfig;
+import com.zeeker.config.RagConfig;
+import com.zeeker.config.ServerConfig;
+import com.zeeker.metrics.MetricsJmx;
+import com.zeeker.server.QueryServer;
 import com.zeeker.service.DatabaseService;
 import com.zeeker.service.OpenAiService;
 import com.zeeker.service.RagService;
@@ -10,49 +17,51 @@ import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.function.Consumer;
 
+/**
+ * 启动方式: 无参数时进入交互式命令行, 以 "export " 开头的问题把完整结果导出到文件; 参数为 server 时启动 HTTP 问答服务;
+ * batch &lt;问题文件|-&gt; &lt;结果文件&gt; 时批量处理 JSONL 问题, - 表示从标准输入读取.
+ */
 public class App {
     private static final Logger logger = LoggerFactory.getLogger(App.class);
+    private static final String EXPORT_PREFIX = "export ";
 
     public static void main(String[] args) {
         try {
             // 加载配置
             OpenAiConfig openAiConfig = OpenAiConfig.load();
             DatabaseConfig dbConfig = DatabaseConfig.load();
-            
+            RagConfig ragConfig = RagConfig.load();
+
             logger.info("Loaded OpenAI configuration");
             logger.info("Loaded database configuration - URL: {}", dbConfig.getUrl());
 
             // 初始化服务
             DatabaseService databaseService = new DatabaseService(dbConfig);
             OpenAiService openAiService = new OpenAiService(openAiConfig);
-            RagService ragService = new RagService(databaseService, openAiService);
-
-            // 启动交互式命令行
-            logger.info("Starting interactive session. Type 'exit' to quit.");
-            BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
+            RagService ragService = new RagService(databaseService, openAiService, ragConfig);
+            MetricsJmx.register(ragService);
 
-            while (true) {
-                System.out.print("\nEnter your question (or 'exit' to quit): ");
-                String question = reader.readLine();
-
-                if (question == null || "exit".equalsIgnoreCase(question.trim())) {
-                    logger.info("Exiting application...");
-                    break;
-                }
+            if (args.length > 0 && "server".equalsIgnoreCase(args[0])) {
+                // 服务模式由关闭钩子结束, 不能在钩子运行期间调用 System.exit
+                runServer(ServerConfig.load(), dbConfig, databaseService, ragService);
+                return;
+            }
 
-                if (question.trim().isEmpty()) {
-                    System.out.println("Please enter a valid question.");
-                    continue;
+            if (args.length > 0 && "batch".equalsIgnoreCase(args[0])) {
+                if (args.length < 3) {
+                    throw new IllegalArgumentException("Usage: batch <questions.jsonl|-> <answers.jsonl>");
                 }
-
-                String answer = ragService.processNaturalLanguageQuery(question);
-                System.out.println("\nAnswer: " + answer);
+                runBatch(BatchConfig.load(), args[1], Paths.get(args[2]), databaseService, ragService);
+                System.exit(0);
             }
 
-            // 关闭资源
-            databaseService.close();
-            logger.info("Application terminated successfully");
+            runInteractive(databaseService, ragService);
             System.exit(0);
 
         } catch (Exception e) {
@@ -60,4 +69,71 @@ public class App {
             System.exit(1);
         }
     }
+
+    private static void runServer(ServerConfig serverConfig, DatabaseConfig dbConfig,
+                                  DatabaseService databaseService, RagService ragService) throws Exception {
+        QueryServer server = new QueryServer(serverConfig, dbConfig.getMaxActive(), ragService, databaseService);
+        server.start();
+
+        // SIGTERM / Ctrl+C 时优雅关闭
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop, "query-server-shutdown"));
+        server.awaitTermination();
+        logger.info("SQL cache stats: {}", ragService.getSqlCache().getStats());
+    }
+
+    private static void runBatch(BatchConfig batchConfig, String input, Path output,
+                                 DatabaseService databaseService, RagService ragService) throws Exception {
+        try (BufferedReader reader = "-".equals(input)
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Paths.get(input), StandardCharsets.UTF_8)) {
+            BatchSummary summary = new BatchProcessor(ragService, batchConfig).run(reader, output);
+            logger.info("Batch wrote {} answers to {} ({} failed, {} skipped, {} SQL calls saved by checkpoint, {} questions/s)",
+                    summary.getAnswered(), output, summary.getFailed(), summary.getSkipped(), summary.getResumedSql(),
+                    String.format("%.1f", summary.getQuestionsPerSecond()));
+        } finally {
+            logger.info("SQL cache stats: {}", ragService.getSqlCache().getStats());
+            ragService.close();
+            databaseService.close();
+        }
+    }
+
+    private static void runInteractive(DatabaseService databaseService, RagService ragService) throws Exception {
+        // 启动交互式命令行
+        logger.info("Starting interactive session. Type 'exit' to quit.");
+        BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
+
+        while (true) {
+            System.out.print("\nEnter your question (or 'exit' to quit): ");
+            String question = reader.readLine();
+
+            if (question == null || "exit".equalsIgnoreCase(question.trim())) {
+                logger.info("Exiting application...");
+                break;
+            }
+
+            if (question.trim().isEmpty()) {
+                System.out.println("Please enter a valid question.");
+                continue;
+            }
+
+            // 回答边生成边输出
+            System.out.print("\nAnswer: ");
+            Consumer<String> onToken = token -> {
+                System.out.print(token);
+                System.out.flush();
+            };
+            if (question.regionMatches(true, 0, EXPORT_PREFIX, 0, EXPORT_PREFIX.length())) {
+                ragService.exportNaturalLanguageQuery(question.substring(EXPORT_PREFIX.length()).trim(), onToken);
+            } else {
+                ragService.streamNaturalLanguageQuery(question, onToken);
+            }
+            System.out.println();
+        }
+
+        // 关闭资源
+        logger.info("SQL cache stats: {}", ragService.getSqlCache().getStats());
+        ragService.close();
+        databaseService.close();
+        logger.info("Application terminated successfully");
+    }
 }
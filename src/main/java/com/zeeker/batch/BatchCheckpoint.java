@@ -0,0 +1,142 @@
+package com.zeeker.batch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 批量任务的断点. 输出文件中每一条完整且不带 error 的结果行即表示该问题已完成; 旁边的 .checkpoint 日志
+ * 记录已生成的SQL, 重跑时这些问题不再调用模型生成SQL. 两个文件都只追加,
+ * 进程中途退出留下的半行在打开时截掉.
+ */
+public class BatchCheckpoint implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(BatchCheckpoint.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Set<String> completed;
+    private final Map<String, String> generatedSql;
+    private final BufferedWriter journal;
+
+    private BatchCheckpoint(Set<String> completed, Map<String, String> generatedSql, BufferedWriter journal) {
+        this.completed = completed;
+        this.generatedSql = generatedSql;
+        this.journal = journal;
+    }
+
+    public static Path journalPath(Path output) {
+        return Paths.get(output + ".checkpoint");
+    }
+
+    public static BatchCheckpoint open(Path output) throws IOException {
+        Path journalPath = journalPath(output);
+        Set<String> completed = new HashSet<>();
+        for (JsonNode line : readLines(output)) {
+            // 失败的问题重跑时再试一次; 结果文件只追加, 之后成功的行自然把它标记为完成
+            if (!line.hasNonNull("error")) {
+                completed.add(line.path("id").asText());
+            }
+        }
+        Map<String, String> generatedSql = new ConcurrentHashMap<>();
+        for (JsonNode line : readLines(journalPath)) {
+            generatedSql.put(line.path("id").asText(), line.path("sql").asText());
+        }
+        if (!completed.isEmpty() || !generatedSql.isEmpty()) {
+            logger.info("Resuming batch: {} questions already answered, {} generated SQL statements checkpointed",
+                    completed.size(), generatedSql.size());
+        }
+        BufferedWriter journal = Files.newBufferedWriter(journalPath, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        return new BatchCheckpoint(completed, generatedSql, journal);
+    }
+
+    public boolean isCompleted(String id) {
+        return completed.contains(id);
+    }
+
+    /**
+     * 返回之前为该问题生成的SQL, 没有时返回 null.
+     */
+    public String getSql(String id) {
+        return generatedSql.get(id);
+    }
+
+    public synchronized void recordSql(String id, String sql) throws IOException {
+        journal.write(MAPPER.createObjectNode().put("id", id).put("sql", sql).toString());
+        journal.newLine();
+        journal.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        journal.close();
+    }
+
+    /**
+     * 读取全部完整的 JSON 行, 并截掉末尾未写完的半行.
+     */
+    private static List<JsonNode> readLines(Path path) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return List.of();
+        }
+        truncatePartialLine(path);
+        List<JsonNode> lines = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    lines.add(MAPPER.readTree(line));
+                }
+            }
+        }
+        return lines;
+    }
+
+    private static void truncatePartialLine(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            ByteBuffer buffer = ByteBuffer.allocate(8192);
+            long end = size;
+            while (end > 0) {
+                long from = Math.max(0, end - buffer.capacity());
+                buffer.clear().limit((int) (end - from));
+                while (buffer.hasRemaining() && channel.read(buffer, from + buffer.position()) > 0) {
+                    // 读满本段
+                }
+                for (int i = buffer.position() - 1; i >= 0; i--) {
+                    if (buffer.get(i) == '\n') {
+                        long keep = from + i + 1;
+                        if (keep < size) {
+                            logger.warn("Dropping {} bytes of an incomplete line at the end of {}", size - keep, path);
+                            channel.truncate(keep);
+                        }
+                        return;
+                    }
+                }
+                end = from;
+            }
+            if (size > 0) {
+                logger.warn("Dropping incomplete line in {}", path);
+                channel.truncate(0);
+            }
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package com.zeeker.batch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.zeeker.concurrent.VirtualThreads;
+import com.zeeker.config.BatchConfig;
+import com.zeeker.query.ResultTable;
+import com.zeeker.service.ExecutedSql;
+import com.zeeker.service.GeneratedSql;
+import com.zeeker.service.RagService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 批量问答: 从 JSONL 读取问题, 按 SQL 生成 -> 数据库查询 -> 回答生成三个阶段流水线处理,
+ * 结果以 JSONL 按完成顺序写出. 每个阶段有独立的并发数, 阶段之间是有界队列,
+ * 下游处理不过来时上游阻塞, 内存中同时存在的问题数有上限.
+ *
+ * <pre>
+ * 输入: {"id": "q1", "question": "..."}          (id 缺省时使用行号)
+ * 输出: {"id": "q1", "question": "...", "sql": "...", "answer": "...", "rows": 3, ...}
+ * </pre>
+ */
+public class BatchProcessor {
+    private static final Logger logger = LoggerFactory.getLogger(BatchProcessor.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final BatchItem END = new BatchItem(null, null);
+
+    private final RagService ragService;
+    private final BatchConfig config;
+
+    public BatchProcessor(RagService ragService, BatchConfig config) {
+        this.ragService = ragService;
+        this.config = config;
+    }
+
+    /**
+     * 处理 input 中的全部问题并追加写入 output. output 中已有的结果视为已完成, 不会重复处理.
+     */
+    public BatchSummary run(BufferedReader input, Path output) throws IOException {
+        long start = System.nanoTime();
+        AtomicLong read = new AtomicLong();
+        AtomicLong skipped = new AtomicLong();
+        AtomicLong resumedSql = new AtomicLong();
+        long answered = 0;
+        long failed = 0;
+
+        BlockingQueue<BatchItem> questions = new ArrayBlockingQueue<>(config.getQueueCapacity());
+        BlockingQueue<BatchItem> statements = new ArrayBlockingQueue<>(config.getQueueCapacity());
+        BlockingQueue<BatchItem> results = new ArrayBlockingQueue<>(config.getQueueCapacity());
+        BlockingQueue<BatchItem> answers = new ArrayBlockingQueue<>(config.getQueueCapacity());
+        List<ExecutorService> executors = new ArrayList<>();
+
+        try (BatchCheckpoint checkpoint = BatchCheckpoint.open(output);
+             BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8,
+                     StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+
+            executors.add(startStage("batch-reader", 1, null, questions, item -> {
+                try {
+                    readQuestions(input, checkpoint, questions, read, skipped, resumedSql);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+            executors.add(startStage("batch-sql", config.getSqlConcurrency(), questions, statements, item -> {
+                if (item.sql != null) {
+                    return;
+                }
+                long stageStart = System.nanoTime();
+                item.sql = ragService.generateSql(item.question);
+                item.sqlMillis = millisSince(stageStart);
+                try {
+                    checkpoint.recordSql(item.id, item.sql.getSql());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+            executors.add(startStage("batch-query", config.getQueryConcurrency(), statements, results, item -> {
+                long stageStart = System.nanoTime();
+                ExecutedSql executed = ragService.executeSql(item.sql);
+                // 执行出错后修复过的, 输出实际执行的SQL
+                item.sql = executed.getGenerated();
+                item.results = executed.getResults();
+                item.queryMillis = millisSince(stageStart);
+            }));
+            executors.add(startStage("batch-answer", config.getAnswerConcurrency(), results, answers, item -> {
+                long stageStart = System.nanoTime();
+                item.answer = ragService.synthesizeAnswer(item.question, item.results);
+                item.answerMillis = millisSince(stageStart);
+            }));
+
+            // 写出在当前线程进行; 每行写完即刷新, 已写出的行就是断点
+            BatchItem item;
+            while ((item = answers.take()) != END) {
+                writer.write(toJson(item));
+                writer.newLine();
+                writer.flush();
+                if (item.error == null) {
+                    answered++;
+                } else {
+                    failed++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while running batch", e);
+        } finally {
+            executors.forEach(ExecutorService::shutdownNow);
+        }
+
+        BatchSummary summary = new BatchSummary(read.get(), skipped.get(), resumedSql.get(), answered, failed, millisSince(start));
+        logger.info("Batch finished: {}", summary);
+        return summary;
+    }
+
+    private void readQuestions(BufferedReader input, BatchCheckpoint checkpoint, BlockingQueue<BatchItem> questions,
+                               AtomicLong read, AtomicLong skipped, AtomicLong resumedSql) throws IOException {
+        String line;
+        long lineNumber = 0;
+        while ((line = input.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            read.incrementAndGet();
+
+            BatchItem item;
+            try {
+                JsonNode json = MAPPER.readTree(line);
+                String id = json.hasNonNull("id") ? json.get("id").asText() : String.valueOf(lineNumber);
+                item = new BatchItem(id, json.path("question").asText(null));
+                if (item.question == null || item.question.isBlank()) {
+                    item.error = "Field 'question' is required";
+                }
+            } catch (IOException e) {
+                item = new BatchItem(String.valueOf(lineNumber), null);
+                item.error = "Line is not valid JSON";
+            }
+
+            if (checkpoint.isCompleted(item.id)) {
+                skipped.incrementAndGet();
+                continue;
+            }
+            String sql = checkpoint.getSql(item.id);
+            if (sql != null && item.error == null) {
+                // 断点中已有SQL, 直接从查询阶段开始
+                item.sql = new GeneratedSql(item.question, sql, null, false);
+                resumedSql.incrementAndGet();
+            }
+            put(questions, item);
+        }
+    }
+
+    /**
+     * 启动一个阶段: workers 个线程从 in 取出问题处理后放入 out. 处理失败的问题带着错误信息直接传给下游;
+     * 最后一个退出的线程向 out 放入结束标记. in 为 null 的阶段只运行一次 work.
+     */
+    private static ExecutorService startStage(String name, int workers, BlockingQueue<BatchItem> in,
+                                              BlockingQueue<BatchItem> out, StageWork work) {
+        int count = in == null ? 1 : Math.max(1, workers);
+        ExecutorService executor = Executors.newFixedThreadPool(count, VirtualThreads.daemonThreads(name));
+        AtomicInteger running = new AtomicInteger(count);
+        for (int i = 0; i < count; i++) {
+            executor.execute(() -> {
+                try {
+                    if (in == null) {
+                        work.process(null);
+                        return;
+                    }
+                    BatchItem item;
+                    while ((item = in.take()) != END) {
+                        if (item.error == null) {
+                            try {
+                                work.process(item);
+                            } catch (RuntimeException e) {
+                                logger.warn("Batch question {} failed in {}: {}", item.id, name, e.getMessage());
+                                item.error = e.getMessage() == null ? e.toString() : e.getMessage();
+                            }
+                        }
+                        out.put(item);
+                    }
+                    // 让同一阶段的其他线程也看到结束标记
+                    in.put(END);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException e) {
+                    logger.error("Batch stage {} stopped", name, e);
+                } finally {
+                    if (running.decrementAndGet() == 0) {
+                        put(out, END);
+                    }
+                }
+            });
+        }
+        return executor;
+    }
+
+    private static void put(BlockingQueue<BatchItem> queue, BatchItem item) {
+        try {
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing batch question", e);
+        }
+    }
+
+    private static String toJson(BatchItem item) {
+        ObjectNode json = MAPPER.createObjectNode();
+        json.put("id", item.id);
+        json.put("question", item.question);
+        json.put("sql", item.sql == null ? null : item.sql.getSql());
+        json.put("answer", item.answer);
+        if (item.results != null) {
+            json.put("rows", item.results.getRowCount());
+            json.put("truncated", item.results.isTruncated());
+        }
+        if (item.error != null) {
+            json.put("error", item.error);
+        }
+        json.put("sqlMillis", item.sqlMillis);
+        json.put("queryMillis", item.queryMillis);
+        json.put("answerMillis", item.answerMillis);
+        return json.toString();
+    }
+
+    private static long millisSince(long start) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    @FunctionalInterface
+    private interface StageWork {
+        void process(BatchItem item);
+    }
+
+    /**
+     * 流水线中的一个问题; 各字段由对应阶段写入, 经阻塞队列交接保证可见性.
+     */
+    private static final class BatchItem {
+        private final String id;
+        private final String question;
+        private GeneratedSql sql;
+        private ResultTable results;
+        private String answer;
+        private String error;
+        private long sqlMillis;
+        private long queryMillis;
+        private long answerMillis;
+
+        BatchItem(String id, String question) {
+            this.id = id;
+            this.question = question;
+        }
+    }
+}
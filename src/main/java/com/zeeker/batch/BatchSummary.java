@@ -0,0 +1,21 @@
+package com.zeeker.batch;
+
+import lombok.Value;
+
+/**
+ * 一次批量运行的统计. skipped 为断点中已完成而跳过的问题, resumedSql 为复用断点SQL而省下的模型调用.
+ */
+@Value
+public class BatchSummary {
+    long read;
+    long skipped;
+    long resumedSql;
+    long answered;
+    long failed;
+    long elapsedMillis;
+
+    public double getQuestionsPerSecond() {
+        long processed = answered + failed;
+        return elapsedMillis == 0 ? 0 : processed * 1000.0 / elapsedMillis;
+    }
+}
@@ -0,0 +1,341 @@
+package com.zeeker.cache;
+
+import com.alibaba.druid.DbType;
+import com.alibaba.druid.sql.SQLUtils;
+import com.alibaba.druid.sql.ast.SQLStatement;
+import com.alibaba.druid.sql.ast.statement.SQLSelectStatement;
+import com.alibaba.druid.sql.parser.ParserException;
+import com.alibaba.druid.sql.visitor.SchemaStatVisitor;
+import com.alibaba.druid.stat.TableStat;
+import com.zeeker.config.DatabaseConfig;
+import com.zeeker.query.QueryLimits;
+import com.zeeker.query.ResultTable;
+import lombok.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * 查询结果缓存, 位于 executeQuery 之前. 键为解析后重新输出的规范化 SQL 加查询上限, 值为 ResultTable 的紧凑二进制形式.
+ * 总大小受 maxBytes 限制, 按 LRU 淘汰. 条目的 TTL 取所读各表 TTL 的最小值, 表的 TTL <= 0 表示读取它的查询不缓存.
+ * 按 SQL 解析出的表建立反向索引, 表结构或数据变化时只失效读取这些表的条目. 无法解析的 SQL 不缓存.
+ * 同一个键的并发未命中合并为一次查询, 其余调用等待并共享结果.
+ */
+public class ResultCache {
+    private static final Logger logger = LoggerFactory.getLogger(ResultCache.class);
+    private static final SQLUtils.FormatOption CANONICAL = new SQLUtils.FormatOption(true, false);
+    // 键, 表索引和 LinkedHashMap 节点的大致开销
+    private static final int ENTRY_OVERHEAD = 160;
+
+    private final long maxBytes;
+    private final long defaultTtlNanos;
+    private final Map<String, Long> tableTtlNanos;
+    private final DbType dbType;
+    private final LongSupplier clock;
+
+    // access-order 的 LinkedHashMap, 迭代顺序即最近最少使用顺序; entries, tables 和 usedBytes 都在 this 锁内访问
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Set<String>> keysByTable = new HashMap<>();
+    private long usedBytes;
+    // 每次失效加一; 加载期间发生过失效的结果不写入缓存
+    private long invalidationEpoch;
+    private final ConcurrentHashMap<String, CompletableFuture<ResultTable>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong uncacheable = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public ResultCache(DatabaseConfig config, DbType dbType) {
+        this(config.getResultCacheMaxBytes(),
+                TimeUnit.SECONDS.toNanos(config.getResultCacheTtlSeconds()),
+                tableTtlNanos(config.getResultCacheTableTtlSeconds()),
+                dbType,
+                System::nanoTime);
+    }
+
+    ResultCache(long maxBytes, long defaultTtlNanos, Map<String, Long> tableTtlNanos, DbType dbType, LongSupplier clock) {
+        this.maxBytes = maxBytes;
+        this.defaultTtlNanos = defaultTtlNanos;
+        this.tableTtlNanos = tableTtlNanos;
+        this.dbType = dbType;
+        this.clock = clock;
+    }
+
+    public boolean isEnabled() {
+        return maxBytes > 0 && defaultTtlNanos > 0;
+    }
+
+    /**
+     * 返回缓存的结果, 未命中时调用 loader 执行查询. 同一个键同时只有一个 loader 在执行.
+     */
+    public ResultTable get(String sql, QueryLimits limits, Supplier<ResultTable> loader) {
+        if (!isEnabled()) {
+            return loader.get();
+        }
+        Query query = parse(sql);
+        if (query == null || query.ttlNanos <= 0) {
+            uncacheable.incrementAndGet();
+            return loader.get();
+        }
+        String key = query.canonicalSql + '|' + limits.getMaxRows() + '|' + limits.getMaxBytes();
+
+        ResultTable cached = lookup(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        CompletableFuture<ResultTable> load = new CompletableFuture<>();
+        CompletableFuture<ResultTable> running = inFlight.putIfAbsent(key, load);
+        if (running != null) {
+            coalesced.incrementAndGet();
+            return await(running);
+        }
+
+        try {
+            long epoch;
+            synchronized (this) {
+                epoch = invalidationEpoch;
+            }
+            misses.incrementAndGet();
+            ResultTable result = loader.get();
+            store(key, query, result, epoch);
+            load.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, load);
+        }
+    }
+
+    /**
+     * 失效读取了这些表的条目, 表名不区分大小写.
+     */
+    public synchronized void invalidateTables(Collection<String> tables) {
+        invalidationEpoch++;
+        int removed = 0;
+        for (String table : tables) {
+            Set<String> keys = keysByTable.remove(normalizeTable(table));
+            if (keys == null) {
+                continue;
+            }
+            for (String key : keys) {
+                Entry entry = entries.get(key);
+                if (entry != null) {
+                    remove(key, entry);
+                    removed++;
+                }
+            }
+        }
+        if (removed > 0) {
+            invalidations.addAndGet(removed);
+            logger.info("Invalidated {} cached results reading {}", removed, tables);
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        invalidationEpoch++;
+        invalidations.addAndGet(entries.size());
+        entries.clear();
+        keysByTable.clear();
+        usedBytes = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(hits.get(), misses.get(), coalesced.get(), uncacheable.get(), evictions.get(),
+                expirations.get(), invalidations.get(), entries.size(), usedBytes);
+    }
+
+    /**
+     * 解析 SQL, 返回规范化文本, 读取的表和条目 TTL; 不是单条 SELECT 或无法解析时返回 null.
+     */
+    Query parse(String sql) {
+        List<SQLStatement> statements;
+        try {
+            statements = SQLUtils.parseStatements(sql, dbType);
+        } catch (ParserException e) {
+            logger.debug("Not caching unparseable query: {}", sql, e);
+            return null;
+        }
+        if (statements.size() != 1 || !(statements.get(0) instanceof SQLSelectStatement)) {
+            return null;
+        }
+
+        SQLStatement statement = statements.get(0);
+        SchemaStatVisitor visitor = SQLUtils.createSchemaStatVisitor(dbType);
+        statement.accept(visitor);
+        Set<String> tables = new HashSet<>();
+        long ttl = defaultTtlNanos;
+        for (TableStat.Name name : visitor.getTables().keySet()) {
+            String table = normalizeTable(name.getName());
+            tables.add(table);
+            ttl = Math.min(ttl, tableTtlNanos.getOrDefault(table, defaultTtlNanos));
+        }
+        // 重新输出统一了关键字大小写, 空白和换行; 原文的结尾分号会被保留, 去掉以便与不带分号的写法共用条目
+        String canonical = SQLUtils.toSQLString(statement, dbType, CANONICAL);
+        if (canonical.endsWith(";")) {
+            canonical = canonical.substring(0, canonical.length() - 1);
+        }
+        return new Query(canonical, tables, ttl);
+    }
+
+    private synchronized ResultTable lookup(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (clock.getAsLong() > entry.expiresAt) {
+            remove(key, entry);
+            expirations.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return ResultTable.fromBytes(entry.bytes);
+    }
+
+    private void store(String key, Query query, ResultTable result, long epoch) {
+        byte[] bytes = result.toBytes();
+        long size = bytes.length + ENTRY_OVERHEAD + 2L * key.length();
+        // 单个结果不允许挤掉大部分缓存
+        if (size > maxBytes / 4) {
+            uncacheable.incrementAndGet();
+            return;
+        }
+
+        synchronized (this) {
+            if (epoch != invalidationEpoch) {
+                // 查询期间表发生过变化, 结果可能已经过时
+                return;
+            }
+            Entry previous = entries.get(key);
+            if (previous != null) {
+                remove(key, previous);
+            }
+            entries.put(key, new Entry(bytes, query.tables, clock.getAsLong() + query.ttlNanos, size));
+            for (String table : query.tables) {
+                keysByTable.computeIfAbsent(table, t -> new HashSet<>()).add(key);
+            }
+            usedBytes += size;
+
+            Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+            while (usedBytes > maxBytes && iterator.hasNext()) {
+                Map.Entry<String, Entry> eldest = iterator.next();
+                iterator.remove();
+                unindex(eldest.getKey(), eldest.getValue());
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private void remove(String key, Entry entry) {
+        entries.remove(key);
+        unindex(key, entry);
+    }
+
+    private void unindex(String key, Entry entry) {
+        usedBytes -= entry.size;
+        for (String table : entry.tables) {
+            Set<String> keys = keysByTable.get(table);
+            if (keys != null && keys.remove(key) && keys.isEmpty()) {
+                keysByTable.remove(table);
+            }
+        }
+    }
+
+    private static ResultTable await(CompletableFuture<ResultTable> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException("Failed to execute query", e.getCause());
+        }
+    }
+
+    static String normalizeTable(String name) {
+        String table = name.trim();
+        int dot = table.lastIndexOf('.');
+        if (dot >= 0) {
+            table = table.substring(dot + 1);
+        }
+        return table.replace("`", "").replace("\"", "").toLowerCase(Locale.ROOT);
+    }
+
+    private static Map<String, Long> tableTtlNanos(Map<String, Integer> tableTtlSeconds) {
+        Map<String, Long> ttl = new HashMap<>();
+        tableTtlSeconds.forEach((table, seconds) -> ttl.put(normalizeTable(table), TimeUnit.SECONDS.toNanos(seconds)));
+        return ttl;
+    }
+
+    @Value
+    public static class Stats {
+        long hits;
+        long misses;
+        // 等待同一键上正在执行的查询而没有再次查询的次数
+        long coalesced;
+        // 无法解析, 过大或读取了不缓存的表
+        long uncacheable;
+        long evictions;
+        long expirations;
+        long invalidations;
+        int entries;
+        long bytes;
+
+        public double hitRate() {
+            long lookups = hits + coalesced + misses;
+            return lookups == 0 ? 0 : (double) (hits + coalesced) / lookups;
+        }
+    }
+
+    static final class Query {
+        final String canonicalSql;
+        final Set<String> tables;
+        final long ttlNanos;
+
+        Query(String canonicalSql, Set<String> tables, long ttlNanos) {
+            this.canonicalSql = canonicalSql;
+            this.tables = tables;
+            this.ttlNanos = ttlNanos;
+        }
+    }
+
+    private static final class Entry {
+        private final byte[] bytes;
+        private final Set<String> tables;
+        private final long expiresAt;
+        private final long size;
+
+        Entry(byte[] bytes, Set<String> tables, long expiresAt, long size) {
+            this.bytes = bytes;
+            this.tables = tables;
+            this.expiresAt = expiresAt;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package com.zeeker.cache;
+
+import com.zeeker.config.RagConfig;
+import com.zeeker.schema.HashingEmbeddingModel;
+import lombok.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 问题到 SQL 的缓存, 位于生成 SQL 的 LLM 调用之前.
+ * 键为表结构指纹加规范化后的问题; 出现新指纹时旧指纹下的条目全部失效,
+ * 表结构刷新前开始的请求带着旧指纹写回或查找时被忽略, 不会清掉新表结构下的缓存.
+ * 容量有上限, 按 LRU 或 LFU 淘汰, 条目超过 TTL 后过期.
+ * 可选的相似度查找要求问题中的数字和引号字面量完全一致, 避免 "2023 年" 命中 "2024 年" 的 SQL.
+ */
+public class SqlCache {
+    private static final Logger logger = LoggerFactory.getLogger(SqlCache.class);
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern TRAILING_PUNCTUATION = Pattern.compile("[\\s?!.;,。？！；，]+$");
+    private static final int MAX_RETIRED_FINGERPRINTS = 16;
+    private static final Pattern LITERAL = Pattern.compile("\\d+(?:\\.\\d+)?|'[^']*'|\"[^\"]*\"|“[^”]*”");
+
+    public enum EvictionPolicy {
+        LRU, LFU
+    }
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final EvictionPolicy policy;
+    private final double similarityThreshold;
+    private final LongSupplier clock;
+    private final HashingEmbeddingModel embeddingModel = new HashingEmbeddingModel();
+
+    // access-order 的 LinkedHashMap, 迭代顺序即最近最少使用顺序; 所有访问都在 this 锁内
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private String currentFingerprint;
+    // 已被替换的指纹, 用于识别刷新前开始的请求; 表结构很少变化, 只保留最近几个
+    private final Set<String> retiredFingerprints = Collections.newSetFromMap(new LinkedHashMap<String, Boolean>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_RETIRED_FINGERPRINTS;
+        }
+    });
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong similarHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public SqlCache(RagConfig config) {
+        this(config.getSqlCacheMaxEntries(),
+                TimeUnit.SECONDS.toNanos(config.getSqlCacheTtlSeconds()),
+                parsePolicy(config.getSqlCacheEviction()),
+                config.getSqlCacheSimilarityThreshold(),
+                System::nanoTime);
+    }
+
+    SqlCache(int maxEntries, long ttlNanos, EvictionPolicy policy, double similarityThreshold, LongSupplier clock) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlNanos;
+        this.policy = policy;
+        this.similarityThreshold = similarityThreshold;
+        this.clock = clock;
+    }
+
+    public boolean isEnabled() {
+        return maxEntries > 0;
+    }
+
+    /**
+     * 查找缓存的 SQL, 先精确匹配, 再按相似度阈值匹配; 未命中返回 null.
+     */
+    public synchronized String get(String question, String schemaFingerprint) {
+        if (!isEnabled()) {
+            return null;
+        }
+        onSchema(schemaFingerprint);
+        long now = clock.getAsLong();
+        String normalized = normalize(question);
+        String key = key(schemaFingerprint, normalized);
+
+        Entry exact = entries.get(key);
+        if (exact != null) {
+            if (isExpired(exact, now)) {
+                entries.remove(key);
+                expirations.incrementAndGet();
+            } else {
+                exact.frequency++;
+                hits.incrementAndGet();
+                return exact.sql;
+            }
+        }
+
+        if (similarityThreshold > 0 && !entries.isEmpty()) {
+            Entry similar = findSimilar(schemaFingerprint, normalized, now);
+            if (similar != null) {
+                // 通过 get 刷新访问顺序
+                entries.get(similar.key);
+                similar.frequency++;
+                similarHits.incrementAndGet();
+                return similar.sql;
+            }
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public synchronized void put(String question, String schemaFingerprint, String sql) {
+        if (!isEnabled()) {
+            return;
+        }
+        onSchema(schemaFingerprint);
+        if (!schemaFingerprint.equals(currentFingerprint)) {
+            // 表结构刷新前生成的 SQL, 不再缓存
+            logger.debug("Ignoring SQL generated for stale schema fingerprint {}", schemaFingerprint);
+            return;
+        }
+        String normalized = normalize(question);
+        String key = key(schemaFingerprint, normalized);
+        // 先淘汰再插入: LFU 下新条目频次为 0, 插入后再淘汰会把它自己淘汰掉
+        if (!entries.containsKey(key)) {
+            while (entries.size() >= maxEntries) {
+                evict();
+            }
+        }
+        float[] vector = similarityThreshold > 0 ? embeddingModel.embed(normalized).content().vector() : null;
+        entries.put(key, new Entry(key, schemaFingerprint, sql, vector, literals(normalized), clock.getAsLong()));
+    }
+
+    public synchronized void invalidateAll() {
+        invalidations.addAndGet(entries.size());
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public Stats getStats() {
+        return new Stats(hits.get(), similarHits.get(), misses.get(), evictions.get(), expirations.get(), invalidations.get());
+    }
+
+    static String normalize(String question) {
+        String normalized = WHITESPACE.matcher(question.trim().toLowerCase(Locale.ROOT)).replaceAll(" ");
+        return TRAILING_PUNCTUATION.matcher(normalized).replaceAll("");
+    }
+
+    /**
+     * 遇到新指纹时切换并清空旧条目; 已被替换的旧指纹不会把缓存切回去.
+     */
+    private void onSchema(String schemaFingerprint) {
+        if (schemaFingerprint.equals(currentFingerprint) || retiredFingerprints.contains(schemaFingerprint)) {
+            return;
+        }
+        if (currentFingerprint != null) {
+            if (!entries.isEmpty()) {
+                logger.info("Schema fingerprint changed ({} -> {}), invalidating {} cached queries",
+                        currentFingerprint, schemaFingerprint, entries.size());
+                invalidations.addAndGet(entries.size());
+                entries.clear();
+            }
+            retiredFingerprints.add(currentFingerprint);
+        }
+        currentFingerprint = schemaFingerprint;
+    }
+
+    private static String key(String schemaFingerprint, String normalized) {
+        // 规范化后的问题不含换行, 可作为分隔符
+        return schemaFingerprint + '\n' + normalized;
+    }
+
+    private Entry findSimilar(String schemaFingerprint, String normalized, long now) {
+        float[] vector = embeddingModel.embed(normalized).content().vector();
+        List<String> literals = literals(normalized);
+        Entry best = null;
+        double bestSimilarity = similarityThreshold;
+
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (isExpired(entry, now)) {
+                iterator.remove();
+                expirations.incrementAndGet();
+                continue;
+            }
+            if (entry.vector == null || !entry.fingerprint.equals(schemaFingerprint) || !entry.literals.equals(literals)) {
+                continue;
+            }
+            double similarity = dot(vector, entry.vector);
+            if (similarity >= bestSimilarity) {
+                best = entry;
+                bestSimilarity = similarity;
+            }
+        }
+        return best;
+    }
+
+    private void evict() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        if (policy == EvictionPolicy.LRU) {
+            iterator.next();
+            iterator.remove();
+        } else {
+            // LFU: 线性扫描频次最低的条目, 频次相同时淘汰最久未访问的; 相对一次 LLM 调用代价可忽略
+            String victim = null;
+            long lowest = Long.MAX_VALUE;
+            for (Entry entry : entries.values()) {
+                if (entry.frequency < lowest) {
+                    lowest = entry.frequency;
+                    victim = entry.key;
+                }
+            }
+            entries.remove(victim);
+        }
+        evictions.incrementAndGet();
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return ttlNanos > 0 && now - entry.createdAt > ttlNanos;
+    }
+
+    private static List<String> literals(String normalized) {
+        List<String> literals = new ArrayList<>();
+        Matcher matcher = LITERAL.matcher(normalized);
+        while (matcher.find()) {
+            literals.add(matcher.group());
+        }
+        return literals;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double dot = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+        }
+        return dot;
+    }
+
+    private static EvictionPolicy parsePolicy(String value) {
+        try {
+            return EvictionPolicy.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Unknown SQL cache eviction policy '{}', using LRU", value);
+            return EvictionPolicy.LRU;
+        }
+    }
+
+    @Value
+    public static class Stats {
+        long hits;
+        long similarHits;
+        long misses;
+        long evictions;
+        long expirations;
+        long invalidations;
+
+        public double hitRate() {
+            long lookups = hits + similarHits + misses;
+            return lookups == 0 ? 0 : (double) (hits + similarHits) / lookups;
+        }
+    }
+
+    private static final class Entry {
+        private final String key;
+        private final String fingerprint;
+        private final String sql;
+        private final float[] vector;
+        private final List<String> literals;
+        private final long createdAt;
+        private long frequency;
+
+        Entry(String key, String fingerprint, String sql, float[] vector, List<String> literals, long createdAt) {
+            this.key = key;
+            this.fingerprint = fingerprint;
+            this.sql = sql;
+            this.vector = vector;
+            this.literals = literals;
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.zeeker.concurrent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 每个任务一个线程的执行器: 运行在 JDK 21+ 上时使用虚拟线程, 否则退化为命名的守护线程缓存池.
+ * 项目以 Java 17 编译, 因此通过反射获取虚拟线程执行器.
+ */
+public final class VirtualThreads {
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreads.class);
+    private static final Method VIRTUAL_EXECUTOR = findVirtualExecutor();
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isAvailable() {
+        return VIRTUAL_EXECUTOR != null;
+    }
+
+    public static ExecutorService newPerTaskExecutor(String namePrefix) {
+        if (VIRTUAL_EXECUTOR != null) {
+            try {
+                return (ExecutorService) VIRTUAL_EXECUTOR.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                logger.warn("Failed to create virtual thread executor, using platform threads", e);
+            }
+        }
+        return Executors.newCachedThreadPool(daemonThreads(namePrefix));
+    }
+
+    public static ThreadFactory daemonThreads(String namePrefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static Method findVirtualExecutor() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
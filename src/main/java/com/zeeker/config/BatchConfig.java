@@ -0,0 +1,47 @@
+package com.zeeker.config;
+
+import lombok.Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static com.zeeker.config.ConfigSupport.*;
+
+/**
+ * 批量问答模式的配置, 对应 application.yml 中的 batch 段; 该段缺省时全部使用默认值.
+ */
+@Data
+public class BatchConfig {
+    private static final Logger logger = LoggerFactory.getLogger(BatchConfig.class);
+
+    // Workers per pipeline stage
+    private int sqlConcurrency = 4;
+    private int queryConcurrency = 4;
+    private int answerConcurrency = 4;
+    // Items buffered between two stages; a full queue blocks the stage in front of it
+    private int queueCapacity = 32;
+
+    public static BatchConfig load() {
+        BatchConfig batchConfig = new BatchConfig();
+        try {
+            Map<String, Object> batch = getSection(loadRoot(), "batch");
+            if (batch == null) {
+                logger.info("Batch configuration section not found, using defaults");
+                return batchConfig;
+            }
+
+            batchConfig.setSqlConcurrency(getOptionalInt(batch, "sqlConcurrency", batchConfig.getSqlConcurrency()));
+            batchConfig.setQueryConcurrency(getOptionalInt(batch, "queryConcurrency", batchConfig.getQueryConcurrency()));
+            batchConfig.setAnswerConcurrency(getOptionalInt(batch, "answerConcurrency", batchConfig.getAnswerConcurrency()));
+            batchConfig.setQueueCapacity(getOptionalInt(batch, "queueCapacity", batchConfig.getQueueCapacity()));
+
+            logger.info("Batch configuration loaded successfully");
+            return batchConfig;
+        } catch (IOException e) {
+            logger.error("Error loading batch configuration", e);
+            throw new RuntimeException("Failed to load batch configuration", e);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.zeeker.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * application.yml 的读取与取值工具, 供各配置类共用.
+ */
+final class ConfigSupport {
+    private static final Logger logger = LoggerFactory.getLogger(ConfigSupport.class);
+
+    private ConfigSupport() {
+    }
+
+    static Map<String, Object> loadRoot() throws IOException {
+        try (InputStream input = ConfigSupport.class.getClassLoader().getResourceAsStream("application.yml")) {
+            if (input == null) {
+                throw new IOException("Unable to find application.yml");
+            }
+            Map<String, Object> config = new Yaml().load(input);
+            return config == null ? Collections.emptyMap() : config;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> getSection(Map<String, Object> config, String key) {
+        Object section = config.get(key);
+        return section instanceof Map ? (Map<String, Object>) section : null;
+    }
+
+    static String getRequiredString(Map<String, Object> config, String key) throws IOException {
+        String value = (String) config.get(key);
+        if (value == null || value.trim().isEmpty()) {
+            throw new IOException("Required configuration '" + key + "' is missing or empty");
+        }
+        return value;
+    }
+
+    static String getOptionalString(Map<String, Object> config, String key, String defaultValue) {
+        return Optional.ofNullable(config.get(key))
+                .map(Object::toString)
+                .orElse(defaultValue);
+    }
+
+    static int getOptionalInt(Map<String, Object> config, String key, int defaultValue) {
+        return Optional.ofNullable(config.get(key))
+                .map(value -> {
+                    if (value instanceof Number) {
+                        return ((Number) value).intValue();
+                    }
+                    try {
+                        return Integer.parseInt(value.toString());
+                    } catch (NumberFormatException e) {
+                        logger.warn("Invalid number format for key '{}': {}, using default value: {}", key, value, defaultValue);
+                        return defaultValue;
+                    }
+                })
+                .orElse(defaultValue);
+    }
+
+    static long getOptionalLong(Map<String, Object> config, String key, long defaultValue) {
+        return Optional.ofNullable(config.get(key))
+                .map(value -> {
+                    if (value instanceof Number) {
+                        return ((Number) value).longValue();
+                    }
+                    try {
+                        return Long.parseLong(value.toString());
+                    } catch (NumberFormatException e) {
+                        logger.warn("Invalid number format for key '{}': {}, using default value: {}", key, value, defaultValue);
+                        return defaultValue;
+                    }
+                })
+                .orElse(defaultValue);
+    }
+
+    static double getOptionalDouble(Map<String, Object> config, String key, double defaultValue) {
+        return Optional.ofNullable(config.get(key))
+                .map(value -> {
+                    if (value instanceof Number) {
+                        return ((Number) value).doubleValue();
+                    }
+                    try {
+                        return Double.parseDouble(value.toString());
+                    } catch (NumberFormatException e) {
+                        logger.warn("Invalid number format for key '{}': {}, using default value: {}", key, value, defaultValue);
+                        return defaultValue;
+                    }
+                })
+                .orElse(defaultValue);
+    }
+
+    static boolean getOptionalBoolean(Map<String, Object> config, String key, boolean defaultValue) {
+        return Optional.ofNullable(config.get(key))
+                .map(value -> {
+                    if (value instanceof Boolean) {
+                        return (Boolean) value;
+                    }
+                    return Boolean.parseBoolean(value.toString());
+                })
+                .orElse(defaultValue);
+    }
+}
@@ -3,12 +3,14 @@ package com.zeeker.config;
 import lombok.Data;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.yaml.snakeyaml.Yaml;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+
+import static com.zeeker.config.ConfigSupport.*;
 
 @Data
 public class DatabaseConfig {
@@ -18,6 +20,8 @@ public class DatabaseConfig {
     private String username;
     private String password;
     private String driverClassName;
+    // Name used in logs and per-datasource metrics
+    private String name = "primary";
     
     // Druid specific configurations with default values
     private int initialSize = 5;
@@ -35,15 +39,61 @@ public class DatabaseConfig {
     private String filters = "stat,wall";
     private String connectionProperties = "druid.stat.mergeSql=true;druid.stat.slowSqlMillis=5000";
 
-    public static DatabaseConfig load() {
-        try (InputStream input = DatabaseConfig.class.getClassLoader().getResourceAsStream("application.yml")) {
-            if (input == null) {
-                throw new IOException("Unable to find application.yml");
-            }
+    // Query execution limits; values <= 0 disable the corresponding limit
+    private int queryFetchSize = 500;
+    private int queryMaxRows = 10000;
+    private long queryMaxBytes = 8 * 1024 * 1024;
+    private int queryTimeoutSeconds = 30;
+
+    // Guard for generated SQL: LIMIT cap (results beyond it are cut and marked truncated) and EXPLAIN
+    // row estimate ceiling (<= 0 disables each), timeout for generated statements and their EXPLAIN
+    private boolean sqlGuardEnabled = true;
+    private int sqlGuardMaxLimit = 1000;
+    private long sqlGuardMaxEstimatedRows = 1_000_000;
+    private int sqlGuardTimeoutSeconds = 10;
+
+    // Result export: directory for exported result files (empty disables export mode), csv | columnar, none | gzip.
+    // Exported queries stream every row to the file in chunks of exportChunkRows through an exportBufferBytes write
+    // buffer; they are capped by exportMaxRows (<= 0 exports every row) and exportTimeoutSeconds instead of
+    // queryMaxRows, queryMaxBytes and sqlGuardMaxLimit, and skip the EXPLAIN row estimate
+    private String exportPath;
+    private String exportFormat = "csv";
+    private String exportCompression = "none";
+    private int exportMaxRows = 0;
+    private int exportTimeoutSeconds = 300;
+    private int exportChunkRows = 8192;
+    private int exportBufferBytes = 1024 * 1024;
 
-            Yaml yaml = new Yaml();
-            Map<String, Object> config = yaml.load(input);
-            Map<String, Object> dbConfig = (Map<String, Object>) config.get("database");
+    // Schema loading: snapshot file for fast restarts (empty disables it) and connections used in parallel
+    private String schemaSnapshotPath;
+    private int schemaLoadParallelism = 4;
+    // Interval between schema change checks; <= 0 disables hot refresh
+    private int schemaRefreshIntervalSeconds = 60;
+
+    // Query result cache: memory budget (<= 0 disables it), default TTL and per-table TTL overrides
+    // (a TTL <= 0 keeps queries reading that table out of the cache), interval between table change checks
+    private long resultCacheMaxBytes = 64 * 1024 * 1024;
+    private int resultCacheTtlSeconds = 60;
+    private Map<String, Integer> resultCacheTableTtlSeconds = new HashMap<>();
+    private int resultCacheCheckIntervalSeconds = 5;
+
+    // Read replicas (or identical copies) for generated read-only queries. Each entry takes name, url and
+    // optionally username, password, driverClassName and pool settings; anything missing is inherited from the primary.
+    // Schema loading, the SQL guard and change checks always use the primary.
+    private List<DatabaseConfig> replicas = new ArrayList<>();
+    // primary | round-robin | least-outstanding | lag-aware; readFromPrimary also routes reads to the primary
+    private String readRouting = "least-outstanding";
+    private boolean readFromPrimary = false;
+    // Replica health and lag checks: the lag query returns seconds behind the primary (Seconds_Behind_Source/Master
+    // column or the first column; defaults to SHOW REPLICA STATUS on MySQL/MariaDB), lag-aware skips replicas
+    // further behind than replicaMaxLagSeconds. Interval <= 0 disables the checks
+    private String replicaLagQuery;
+    private int replicaMaxLagSeconds = 30;
+    private int replicaCheckIntervalSeconds = 5;
+
+    public static DatabaseConfig load() {
+        try {
+            Map<String, Object> dbConfig = getSection(loadRoot(), "database");
 
             if (dbConfig == null) {
                 throw new IOException("Database configuration section not found in application.yml");
@@ -56,22 +106,53 @@ public class DatabaseConfig {
             databaseConfig.setUsername(getRequiredString(dbConfig, "username"));
             databaseConfig.setPassword(getRequiredString(dbConfig, "password"));
             databaseConfig.setDriverClassName(getRequiredString(dbConfig, "driverClassName"));
+            databaseConfig.setName(getOptionalString(dbConfig, "name", databaseConfig.getName()));
             
             // Optional Druid configurations with defaults
-            databaseConfig.setInitialSize(getOptionalInt(dbConfig, "initialSize", databaseConfig.getInitialSize()));
-            databaseConfig.setMinIdle(getOptionalInt(dbConfig, "minIdle", databaseConfig.getMinIdle()));
-            databaseConfig.setMaxActive(getOptionalInt(dbConfig, "maxActive", databaseConfig.getMaxActive()));
-            databaseConfig.setMaxWait(getOptionalInt(dbConfig, "maxWait", databaseConfig.getMaxWait()));
-            databaseConfig.setTimeBetweenEvictionRunsMillis(getOptionalInt(dbConfig, "timeBetweenEvictionRunsMillis", databaseConfig.getTimeBetweenEvictionRunsMillis()));
-            databaseConfig.setMinEvictableIdleTimeMillis(getOptionalInt(dbConfig, "minEvictableIdleTimeMillis", databaseConfig.getMinEvictableIdleTimeMillis()));
-            databaseConfig.setValidationQuery(getOptionalString(dbConfig, "validationQuery", databaseConfig.getValidationQuery()));
-            databaseConfig.setTestWhileIdle(getOptionalBoolean(dbConfig, "testWhileIdle", databaseConfig.isTestWhileIdle()));
-            databaseConfig.setTestOnBorrow(getOptionalBoolean(dbConfig, "testOnBorrow", databaseConfig.isTestOnBorrow()));
-            databaseConfig.setTestOnReturn(getOptionalBoolean(dbConfig, "testOnReturn", databaseConfig.isTestOnReturn()));
-            databaseConfig.setPoolPreparedStatements(getOptionalBoolean(dbConfig, "poolPreparedStatements", databaseConfig.isPoolPreparedStatements()));
-            databaseConfig.setMaxPoolPreparedStatementPerConnectionSize(getOptionalInt(dbConfig, "maxPoolPreparedStatementPerConnectionSize", databaseConfig.getMaxPoolPreparedStatementPerConnectionSize()));
-            databaseConfig.setFilters(getOptionalString(dbConfig, "filters", databaseConfig.getFilters()));
-            databaseConfig.setConnectionProperties(getOptionalString(dbConfig, "connectionProperties", databaseConfig.getConnectionProperties()));
+            applyPoolSettings(dbConfig, databaseConfig);
+            databaseConfig.setQueryFetchSize(getOptionalInt(dbConfig, "queryFetchSize", databaseConfig.getQueryFetchSize()));
+            databaseConfig.setQueryMaxRows(getOptionalInt(dbConfig, "queryMaxRows", databaseConfig.getQueryMaxRows()));
+            databaseConfig.setQueryMaxBytes(getOptionalLong(dbConfig, "queryMaxBytes", databaseConfig.getQueryMaxBytes()));
+            databaseConfig.setQueryTimeoutSeconds(getOptionalInt(dbConfig, "queryTimeoutSeconds", databaseConfig.getQueryTimeoutSeconds()));
+            databaseConfig.setSqlGuardEnabled(getOptionalBoolean(dbConfig, "sqlGuardEnabled", databaseConfig.isSqlGuardEnabled()));
+            databaseConfig.setSqlGuardMaxLimit(getOptionalInt(dbConfig, "sqlGuardMaxLimit", databaseConfig.getSqlGuardMaxLimit()));
+            databaseConfig.setSqlGuardMaxEstimatedRows(getOptionalLong(dbConfig, "sqlGuardMaxEstimatedRows", databaseConfig.getSqlGuardMaxEstimatedRows()));
+            databaseConfig.setSqlGuardTimeoutSeconds(getOptionalInt(dbConfig, "sqlGuardTimeoutSeconds", databaseConfig.getSqlGuardTimeoutSeconds()));
+            databaseConfig.setExportPath(getOptionalString(dbConfig, "exportPath", databaseConfig.getExportPath()));
+            databaseConfig.setExportFormat(getOptionalString(dbConfig, "exportFormat", databaseConfig.getExportFormat()));
+            databaseConfig.setExportCompression(getOptionalString(dbConfig, "exportCompression", databaseConfig.getExportCompression()));
+            databaseConfig.setExportMaxRows(getOptionalInt(dbConfig, "exportMaxRows", databaseConfig.getExportMaxRows()));
+            databaseConfig.setExportTimeoutSeconds(getOptionalInt(dbConfig, "exportTimeoutSeconds", databaseConfig.getExportTimeoutSeconds()));
+            databaseConfig.setExportChunkRows(getOptionalInt(dbConfig, "exportChunkRows", databaseConfig.getExportChunkRows()));
+            databaseConfig.setExportBufferBytes(getOptionalInt(dbConfig, "exportBufferBytes", databaseConfig.getExportBufferBytes()));
+            databaseConfig.setSchemaSnapshotPath(getOptionalString(dbConfig, "schemaSnapshotPath", databaseConfig.getSchemaSnapshotPath()));
+            databaseConfig.setSchemaLoadParallelism(getOptionalInt(dbConfig, "schemaLoadParallelism", databaseConfig.getSchemaLoadParallelism()));
+            databaseConfig.setSchemaRefreshIntervalSeconds(getOptionalInt(dbConfig, "schemaRefreshIntervalSeconds", databaseConfig.getSchemaRefreshIntervalSeconds()));
+            databaseConfig.setResultCacheMaxBytes(getOptionalLong(dbConfig, "resultCacheMaxBytes", databaseConfig.getResultCacheMaxBytes()));
+            databaseConfig.setResultCacheTtlSeconds(getOptionalInt(dbConfig, "resultCacheTtlSeconds", databaseConfig.getResultCacheTtlSeconds()));
+            Map<String, Object> tableTtl = getSection(dbConfig, "resultCacheTableTtlSeconds");
+            if (tableTtl != null) {
+                for (String table : tableTtl.keySet()) {
+                    databaseConfig.getResultCacheTableTtlSeconds().put(table, getOptionalInt(tableTtl, table, databaseConfig.getResultCacheTtlSeconds()));
+                }
+            }
+            databaseConfig.setResultCacheCheckIntervalSeconds(getOptionalInt(dbConfig, "resultCacheCheckIntervalSeconds", databaseConfig.getResultCacheCheckIntervalSeconds()));
+            databaseConfig.setReadRouting(getOptionalString(dbConfig, "readRouting", databaseConfig.getReadRouting()));
+            databaseConfig.setReadFromPrimary(getOptionalBoolean(dbConfig, "readFromPrimary", databaseConfig.isReadFromPrimary()));
+            databaseConfig.setReplicaLagQuery(getOptionalString(dbConfig, "replicaLagQuery", databaseConfig.getReplicaLagQuery()));
+            databaseConfig.setReplicaMaxLagSeconds(getOptionalInt(dbConfig, "replicaMaxLagSeconds", databaseConfig.getReplicaMaxLagSeconds()));
+            databaseConfig.setReplicaCheckIntervalSeconds(getOptionalInt(dbConfig, "replicaCheckIntervalSeconds", databaseConfig.getReplicaCheckIntervalSeconds()));
+            Object replicas = dbConfig.get("replicas");
+            if (replicas instanceof List) {
+                int index = 0;
+                for (Object replica : (List<?>) replicas) {
+                    index++;
+                    if (!(replica instanceof Map)) {
+                        throw new IOException("Each entry of 'replicas' must be a mapping");
+                    }
+                    databaseConfig.getReplicas().add(loadReplica(dbConfig, castSection(replica), databaseConfig, index));
+                }
+            }
 
             logger.info("Database configuration loaded successfully");
             return databaseConfig;
@@ -81,44 +162,41 @@ public class DatabaseConfig {
         }
     }
 
-    private static String getRequiredString(Map<String, Object> config, String key) throws IOException {
-        String value = (String) config.get(key);
-        if (value == null || value.trim().isEmpty()) {
-            throw new IOException("Required configuration '" + key + "' is missing or empty");
-        }
-        return value;
+    /**
+     * 副本先继承主库的连接与连接池设置, 再应用自己的设置.
+     */
+    private static DatabaseConfig loadReplica(Map<String, Object> primarySection, Map<String, Object> section,
+                                              DatabaseConfig primary, int index) throws IOException {
+        DatabaseConfig replica = new DatabaseConfig();
+        replica.setName(getOptionalString(section, "name", "replica-" + index));
+        replica.setUrl(getRequiredString(section, "url"));
+        replica.setUsername(getOptionalString(section, "username", primary.getUsername()));
+        replica.setPassword(getOptionalString(section, "password", primary.getPassword()));
+        replica.setDriverClassName(getOptionalString(section, "driverClassName", primary.getDriverClassName()));
+        applyPoolSettings(primarySection, replica);
+        applyPoolSettings(section, replica);
+        return replica;
     }
 
-    private static String getOptionalString(Map<String, Object> config, String key, String defaultValue) {
-        return Optional.ofNullable(config.get(key))
-                .map(Object::toString)
-                .orElse(defaultValue);
+    private static void applyPoolSettings(Map<String, Object> section, DatabaseConfig config) {
+        config.setInitialSize(getOptionalInt(section, "initialSize", config.getInitialSize()));
+        config.setMinIdle(getOptionalInt(section, "minIdle", config.getMinIdle()));
+        config.setMaxActive(getOptionalInt(section, "maxActive", config.getMaxActive()));
+        config.setMaxWait(getOptionalInt(section, "maxWait", config.getMaxWait()));
+        config.setTimeBetweenEvictionRunsMillis(getOptionalInt(section, "timeBetweenEvictionRunsMillis", config.getTimeBetweenEvictionRunsMillis()));
+        config.setMinEvictableIdleTimeMillis(getOptionalInt(section, "minEvictableIdleTimeMillis", config.getMinEvictableIdleTimeMillis()));
+        config.setValidationQuery(getOptionalString(section, "validationQuery", config.getValidationQuery()));
+        config.setTestWhileIdle(getOptionalBoolean(section, "testWhileIdle", config.isTestWhileIdle()));
+        config.setTestOnBorrow(getOptionalBoolean(section, "testOnBorrow", config.isTestOnBorrow()));
+        config.setTestOnReturn(getOptionalBoolean(section, "testOnReturn", config.isTestOnReturn()));
+        config.setPoolPreparedStatements(getOptionalBoolean(section, "poolPreparedStatements", config.isPoolPreparedStatements()));
+        config.setMaxPoolPreparedStatementPerConnectionSize(getOptionalInt(section, "maxPoolPreparedStatementPerConnectionSize", config.getMaxPoolPreparedStatementPerConnectionSize()));
+        config.setFilters(getOptionalString(section, "filters", config.getFilters()));
+        config.setConnectionProperties(getOptionalString(section, "connectionProperties", config.getConnectionProperties()));
     }
 
-    private static int getOptionalInt(Map<String, Object> config, String key, int defaultValue) {
-        return Optional.ofNullable(config.get(key))
-                .map(value -> {
-                    if (value instanceof Number) {
-                        return ((Number) value).intValue();
-                    }
-                    try {
-                        return Integer.parseInt(value.toString());
-                    } catch (NumberFormatException e) {
-                        logger.warn("Invalid number format for key '{}': {}, using default value: {}", key, value, defaultValue);
-                        return defaultValue;
-                    }
-                })
-                .orElse(defaultValue);
-    }
-
-    private static boolean getOptionalBoolean(Map<String, Object> config, String key, boolean defaultValue) {
-        return Optional.ofNullable(config.get(key))
-                .map(value -> {
-                    if (value instanceof Boolean) {
-                        return (Boolean) value;
-                    }
-                    return Boolean.parseBoolean(value.toString());
-                })
-                .orElse(defaultValue);
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> castSection(Object section) {
+        return (Map<String, Object>) section;
     }
 }
@@ -3,49 +3,65 @@ package com.zeeker.config;
 import lombok.Data;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.yaml.snakeyaml.Yaml;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.Map;
 
+import static com.zeeker.config.ConfigSupport.*;
+
 @Data
 public class OpenAiConfig {
     private static final Logger logger = LoggerFactory.getLogger(OpenAiConfig.class);
-    
-    private final String orgId;
-    private final String projId;
-    private final String apiKey;
-    private final String model;
-    private final double temperature;
-    private final int maxTokens;
 
-    private OpenAiConfig(String orgId, String projId, String apiKey, String model, double temperature, int maxTokens) {
-        this.orgId = orgId;
-        this.projId = projId;
-        this.apiKey = apiKey;
-        this.model = model;
-        this.temperature = temperature;
-        this.maxTokens = maxTokens;
-    }
+    private String orgId;
+    private String projId;
+    private String apiKey;
+    private String model;
+    private double temperature;
+    private int maxTokens;
+
+    // Optional settings with default values
+    private String baseUrl;
+    private int timeoutSeconds = 60;
+    // Maximum number of in-flight model calls; <= 0 means unlimited
+    private int maxConcurrentRequests = 0;
+    // Hedged requests: a duplicate call is sent once a call has been outstanding for the given percentile of
+    // recent call latencies (never earlier than hedgeMinDelayMillis); <= 0 disables hedging
+    private double hedgePercentile = 0;
+    private long hedgeMinDelayMillis = 100;
+
+    // Resilience: AIMD concurrency limit between min and maxConcurrentRequests (backoffRatio applied on 429s and
+    // timeouts), token bucket that reserves prompt + max completion tokens per call and refunds the unused part once
+    // the actual usage is known (<= 0 disables it), retries of overload and server errors with full-jitter
+    // exponential backoff capped by a global retry budget, and a circuit breaker over the last
+    // circuitBreakerWindow calls (<= 0 disables it)
+    private boolean adaptiveConcurrency = true;
+    private int minConcurrentRequests = 1;
+    private double concurrencyBackoffRatio = 0.5;
+    private long tokensPerMinute = 0;
+    private int maxRetries = 2;
+    private long retryBaseDelayMillis = 200;
+    private long retryMaxDelayMillis = 5000;
+    private double retryBudgetRatio = 0.1;
+    private int retryBudgetMinRetries = 10;
+    private int circuitBreakerWindow = 20;
+    private double circuitBreakerFailureRatio = 0.5;
+    private int circuitBreakerOpenSeconds = 30;
 
     public static OpenAiConfig load() {
-        try (InputStream input = OpenAiConfig.class.getClassLoader().getResourceAsStream("application.yml")) {
-            if (input == null) {
-                throw new IOException("Unable to find application.yml");
+        try {
+            Map<String, Object> openai = getSection(loadRoot(), "openai");
+            if (openai == null) {
+                throw new IOException("OpenAI configuration section not found in application.yml");
             }
-            
-            Yaml yaml = new Yaml();
-            Map<String, Object> config = yaml.load(input);
-            Map<String, Object> openai = (Map<String, Object>) config.get("openai");
-            
+
             String orgId = (String) openai.get("orgId");
             String projId = (String) openai.get("projId");
             String apiKey = (String) openai.get("apiKey");
             String model = (String) openai.get("model");
             double temperature = ((Number) openai.get("temperature")).doubleValue();
             int maxTokens = ((Number) openai.get("maxTokens")).intValue();
-            
+
             if (apiKey == null || apiKey.isEmpty() || "your-api-key-here".equals(apiKey)) {
                 throw new IOException("API key not configured in application.yml");
             }
@@ -57,9 +73,34 @@ public class OpenAiConfig {
                 projId = null;
             }
 
-            OpenAiConfig openAiConfig = new OpenAiConfig(orgId, projId, apiKey, model, temperature, maxTokens);
+            OpenAiConfig openAiConfig = new OpenAiConfig();
+            openAiConfig.setOrgId(orgId);
+            openAiConfig.setProjId(projId);
+            openAiConfig.setApiKey(apiKey);
+            openAiConfig.setModel(model);
+            openAiConfig.setTemperature(temperature);
+            openAiConfig.setMaxTokens(maxTokens);
+
+            openAiConfig.setBaseUrl(getOptionalString(openai, "baseUrl", openAiConfig.getBaseUrl()));
+            openAiConfig.setTimeoutSeconds(getOptionalInt(openai, "timeoutSeconds", openAiConfig.getTimeoutSeconds()));
+            openAiConfig.setMaxConcurrentRequests(getOptionalInt(openai, "maxConcurrentRequests", openAiConfig.getMaxConcurrentRequests()));
+            openAiConfig.setHedgePercentile(getOptionalDouble(openai, "hedgePercentile", openAiConfig.getHedgePercentile()));
+            openAiConfig.setHedgeMinDelayMillis(getOptionalLong(openai, "hedgeMinDelayMillis", openAiConfig.getHedgeMinDelayMillis()));
+            openAiConfig.setAdaptiveConcurrency(getOptionalBoolean(openai, "adaptiveConcurrency", openAiConfig.isAdaptiveConcurrency()));
+            openAiConfig.setMinConcurrentRequests(getOptionalInt(openai, "minConcurrentRequests", openAiConfig.getMinConcurrentRequests()));
+            openAiConfig.setConcurrencyBackoffRatio(getOptionalDouble(openai, "concurrencyBackoffRatio", openAiConfig.getConcurrencyBackoffRatio()));
+            openAiConfig.setTokensPerMinute(getOptionalLong(openai, "tokensPerMinute", openAiConfig.getTokensPerMinute()));
+            openAiConfig.setMaxRetries(getOptionalInt(openai, "maxRetries", openAiConfig.getMaxRetries()));
+            openAiConfig.setRetryBaseDelayMillis(getOptionalLong(openai, "retryBaseDelayMillis", openAiConfig.getRetryBaseDelayMillis()));
+            openAiConfig.setRetryMaxDelayMillis(getOptionalLong(openai, "retryMaxDelayMillis", openAiConfig.getRetryMaxDelayMillis()));
+            openAiConfig.setRetryBudgetRatio(getOptionalDouble(openai, "retryBudgetRatio", openAiConfig.getRetryBudgetRatio()));
+            openAiConfig.setRetryBudgetMinRetries(getOptionalInt(openai, "retryBudgetMinRetries", openAiConfig.getRetryBudgetMinRetries()));
+            openAiConfig.setCircuitBreakerWindow(getOptionalInt(openai, "circuitBreakerWindow", openAiConfig.getCircuitBreakerWindow()));
+            openAiConfig.setCircuitBreakerFailureRatio(getOptionalDouble(openai, "circuitBreakerFailureRatio", openAiConfig.getCircuitBreakerFailureRatio()));
+            openAiConfig.setCircuitBreakerOpenSeconds(getOptionalInt(openai, "circuitBreakerOpenSeconds", openAiConfig.getCircuitBreakerOpenSeconds()));
+
             logger.info("OpenAI configuration loaded with model: {}", model);
-            
+
             return openAiConfig;
         } catch (IOException e) {
             throw new RuntimeException("Error loading configuration: " + e.getMessage(), e);
@@ -0,0 +1,104 @@
+package com.zeeker.config;
+
+import lombok.Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static com.zeeker.config.ConfigSupport.*;
+
+/**
+ * RAG 流程相关的可选配置, 对应 application.yml 中的 rag 段; 该段缺省时全部使用默认值.
+ */
+@Data
+public class RagConfig {
+    private static final Logger logger = LoggerFactory.getLogger(RagConfig.class);
+
+    // Schema retrieval: topK <= 0 disables retrieval, every table becomes a candidate (matching tables first).
+    // Either way the schema is trimmed to schemaTokenBudget (<= 0 for no schema-specific limit)
+    private int schemaTopK = 8;
+    private int schemaTokenBudget = 3000;
+    private boolean schemaForeignKeyExpansion = true;
+    private String schemaEmbedding = "none";
+    private double schemaEmbeddingWeight = 0.3;
+
+    // Generated SQL cache: maxEntries <= 0 disables it, similarityThreshold <= 0 keeps exact matching only
+    private int sqlCacheMaxEntries = 1000;
+    private long sqlCacheTtlSeconds = 3600;
+    private String sqlCacheEviction = "lru";
+    private double sqlCacheSimilarityThreshold = 0;
+
+    // Times a query rejected by the SQL guard, or failing on execution, is sent back to the model with the reason
+    // or database error; 0 fails immediately
+    private int sqlRepairAttempts = 2;
+    // SQL candidates generated in parallel; the first that passes the SQL guard is used and the rest cancelled.
+    // Values > 1 are only useful with a non-zero temperature
+    private int sqlCandidates = 1;
+
+    // Render empty, scalar, single-row and small tabular results directly instead of asking the model
+    private boolean directAnswerEnabled = true;
+    private int directAnswerMaxRows = 10;
+    private int directAnswerMaxColumns = 4;
+
+    // Hard limit on prompt tokens, counted with the model's tokenizer (<= 0 disables it). Over budget, schema tables
+    // are reduced to key columns and then dropped (least relevant first), and result rows are dropped from the end.
+    // promptStablePrefix sends the whole schema whenever it fits schemaTokenBudget, so every SQL prompt starts
+    // with the same bytes and can hit the provider's prompt cache
+    private int promptTokenBudget = 8000;
+    private boolean promptStablePrefix = true;
+
+    // Results with at least resultSummaryMinRows rows, or whose rows do not fit promptTokenBudget, are sent to the answer
+    // model as per-column statistics (count, nulls, min/max, mean, approximate distinct count, resultSummaryTopK most
+    // frequent values) plus resultSampleRows sample rows, instead of every row; <= 0 always sends the rows
+    private int resultSummaryMinRows = 100;
+    private int resultSummaryTopK = 5;
+    private int resultSampleRows = 20;
+
+    // Directory of the few-shot example store (question/SQL pairs that executed successfully); empty disables it.
+    // Up to examplesTopK examples at least examplesMinSimilarity similar to the question are added to the SQL prompt
+    private String examplesPath;
+    private int examplesTopK = 3;
+    private double examplesMinSimilarity = 0.3;
+
+    public static RagConfig load() {
+        RagConfig ragConfig = new RagConfig();
+        try {
+            Map<String, Object> rag = getSection(loadRoot(), "rag");
+            if (rag == null) {
+                logger.info("RAG configuration section not found, using defaults");
+                return ragConfig;
+            }
+
+            ragConfig.setSchemaTopK(getOptionalInt(rag, "schemaTopK", ragConfig.getSchemaTopK()));
+            ragConfig.setSchemaTokenBudget(getOptionalInt(rag, "schemaTokenBudget", ragConfig.getSchemaTokenBudget()));
+            ragConfig.setSchemaForeignKeyExpansion(getOptionalBoolean(rag, "schemaForeignKeyExpansion", ragConfig.isSchemaForeignKeyExpansion()));
+            ragConfig.setSchemaEmbedding(getOptionalString(rag, "schemaEmbedding", ragConfig.getSchemaEmbedding()));
+            ragConfig.setSchemaEmbeddingWeight(getOptionalDouble(rag, "schemaEmbeddingWeight", ragConfig.getSchemaEmbeddingWeight()));
+            ragConfig.setSqlCacheMaxEntries(getOptionalInt(rag, "sqlCacheMaxEntries", ragConfig.getSqlCacheMaxEntries()));
+            ragConfig.setSqlCacheTtlSeconds(getOptionalLong(rag, "sqlCacheTtlSeconds", ragConfig.getSqlCacheTtlSeconds()));
+            ragConfig.setSqlCacheEviction(getOptionalString(rag, "sqlCacheEviction", ragConfig.getSqlCacheEviction()));
+            ragConfig.setSqlCacheSimilarityThreshold(getOptionalDouble(rag, "sqlCacheSimilarityThreshold", ragConfig.getSqlCacheSimilarityThreshold()));
+            ragConfig.setSqlRepairAttempts(getOptionalInt(rag, "sqlRepairAttempts", ragConfig.getSqlRepairAttempts()));
+            ragConfig.setSqlCandidates(getOptionalInt(rag, "sqlCandidates", ragConfig.getSqlCandidates()));
+            ragConfig.setDirectAnswerEnabled(getOptionalBoolean(rag, "directAnswerEnabled", ragConfig.isDirectAnswerEnabled()));
+            ragConfig.setDirectAnswerMaxRows(getOptionalInt(rag, "directAnswerMaxRows", ragConfig.getDirectAnswerMaxRows()));
+            ragConfig.setDirectAnswerMaxColumns(getOptionalInt(rag, "directAnswerMaxColumns", ragConfig.getDirectAnswerMaxColumns()));
+            ragConfig.setPromptTokenBudget(getOptionalInt(rag, "promptTokenBudget", ragConfig.getPromptTokenBudget()));
+            ragConfig.setPromptStablePrefix(getOptionalBoolean(rag, "promptStablePrefix", ragConfig.isPromptStablePrefix()));
+            ragConfig.setResultSummaryMinRows(getOptionalInt(rag, "resultSummaryMinRows", ragConfig.getResultSummaryMinRows()));
+            ragConfig.setResultSummaryTopK(getOptionalInt(rag, "resultSummaryTopK", ragConfig.getResultSummaryTopK()));
+            ragConfig.setResultSampleRows(getOptionalInt(rag, "resultSampleRows", ragConfig.getResultSampleRows()));
+            ragConfig.setExamplesPath(getOptionalString(rag, "examplesPath", ragConfig.getExamplesPath()));
+            ragConfig.setExamplesTopK(getOptionalInt(rag, "examplesTopK", ragConfig.getExamplesTopK()));
+            ragConfig.setExamplesMinSimilarity(getOptionalDouble(rag, "examplesMinSimilarity", ragConfig.getExamplesMinSimilarity()));
+
+            logger.info("RAG configuration loaded successfully");
+            return ragConfig;
+        } catch (IOException e) {
+            logger.error("Error loading RAG configuration", e);
+            throw new RuntimeException("Failed to load RAG configuration", e);
+        }
+    }
+}
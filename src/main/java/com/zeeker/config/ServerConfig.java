@@ -0,0 +1,49 @@
+package com.zeeker.config;
+
+import lombok.Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static com.zeeker.config.ConfigSupport.*;
+
+/**
+ * HTTP 服务模式的配置, 对应 application.yml 中的 server 段; 该段缺省时全部使用默认值.
+ */
+@Data
+public class ServerConfig {
+    private static final Logger logger = LoggerFactory.getLogger(ServerConfig.class);
+
+    private String host = "0.0.0.0";
+    private int port = 8080;
+    // Concurrently admitted questions; <= 0 sizes it to database.maxActive
+    private int maxConcurrentQueries = 0;
+    // How long a request may wait for admission before it is rejected with 503
+    private int admissionTimeoutMillis = 2000;
+    private int shutdownTimeoutSeconds = 30;
+
+    public static ServerConfig load() {
+        ServerConfig serverConfig = new ServerConfig();
+        try {
+            Map<String, Object> server = getSection(loadRoot(), "server");
+            if (server == null) {
+                logger.info("Server configuration section not found, using defaults");
+                return serverConfig;
+            }
+
+            serverConfig.setHost(getOptionalString(server, "host", serverConfig.getHost()));
+            serverConfig.setPort(getOptionalInt(server, "port", serverConfig.getPort()));
+            serverConfig.setMaxConcurrentQueries(getOptionalInt(server, "maxConcurrentQueries", serverConfig.getMaxConcurrentQueries()));
+            serverConfig.setAdmissionTimeoutMillis(getOptionalInt(server, "admissionTimeoutMillis", serverConfig.getAdmissionTimeoutMillis()));
+            serverConfig.setShutdownTimeoutSeconds(getOptionalInt(server, "shutdownTimeoutSeconds", serverConfig.getShutdownTimeoutSeconds()));
+
+            logger.info("Server configuration loaded successfully");
+            return serverConfig;
+        } catch (IOException e) {
+            logger.error("Error loading server configuration", e);
+            throw new RuntimeException("Failed to load server configuration", e);
+        }
+    }
+}
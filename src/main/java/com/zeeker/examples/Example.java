@@ -0,0 +1,13 @@
+package com.zeeker.examples;
+
+import lombok.Value;
+
+/**
+ * 执行成功过的问题与SQL, similarity 为与当前问题的相似度 (0 到 1).
+ */
+@Value
+public class Example {
+    String question;
+    String sql;
+    double similarity;
+}
@@ -0,0 +1,469 @@
+package com.zeeker.examples;
+
+import com.zeeker.schema.SchemaTerms;
+import lombok.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * 执行成功过的问题→SQL 示例的本地存储, 为生成SQL的提示词提供相似问题的示例.
+ * <p>
+ * 目录下两个文件, 都只追加:
+ * examples.dat 逐条保存负载长度, CRC32, 问题和SQL;
+ * examples.idx 逐条保存数据偏移, 记录长度, 问题哈希和问题的词项哈希.
+ * 打开时以内存映射方式读入索引, 在内存中建立词项到示例的倒排表; 查找只累加命中词项的倒排表,
+ * 最后按偏移读取入选的几条记录, 不扫描全部示例.
+ * <p>
+ * 进程中途退出可能留下半条记录: 打开时截掉数据文件中校验失败的尾部和索引中对不上的条目,
+ * 数据文件中还没有索引的记录重新建立索引. 索引可以随时删除重建.
+ */
+public class ExampleStore implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(ExampleStore.class);
+    private static final int DATA_MAGIC = 0x57544544; // "WTED"
+    private static final int INDEX_MAGIC = 0x57544549; // "WTEI"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    // 数据记录头: 负载长度, CRC32
+    private static final int RECORD_HEADER_BYTES = 8;
+    // 索引条目头: 数据偏移, 记录长度, 问题哈希, 词项数
+    private static final int ENTRY_HEADER_BYTES = 8 + 4 + 8 + 2;
+    private static final int MAX_TERMS = 64;
+    private static final int MAX_RECORD_BYTES = 1 << 20;
+
+    private final Path directory;
+    private final FileChannel data;
+    private final FileChannel index;
+
+    // 以下字段都在 this 锁内访问
+    private long dataEnd;
+    private long indexEnd;
+    private int size;
+    private long[] offsets = new long[1024];
+    private int[] lengths = new int[1024];
+    private int[] termCounts = new int[1024];
+    private final Map<Integer, Postings> postings = new HashMap<>();
+    private final Set<Long> questions = new HashSet<>();
+    // 查找时按示例下标累加的分数与命中词项数, touched 记录本次碰到的下标, 结束时只清理这些位置
+    private double[] scores = new double[1024];
+    private int[] matches = new int[1024];
+    private int[] touched = new int[1024];
+    private long lookups;
+    private long hits;
+    private long added;
+    private long duplicates;
+
+    private ExampleStore(Path directory, FileChannel data, FileChannel index) {
+        this.directory = directory;
+        this.data = data;
+        this.index = index;
+    }
+
+    public static ExampleStore open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        FileChannel data = FileChannel.open(directory.resolve("examples.dat"),
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        FileChannel index = null;
+        try {
+            index = FileChannel.open(directory.resolve("examples.idx"),
+                    StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+            ExampleStore store = new ExampleStore(directory, data, index);
+            store.load();
+            return store;
+        } catch (IOException | RuntimeException e) {
+            data.close();
+            if (index != null) {
+                index.close();
+            }
+            throw e;
+        }
+    }
+
+    private synchronized void load() throws IOException {
+        long start = System.nanoTime();
+        initHeader(data, DATA_MAGIC, "examples.dat", false);
+        initHeader(index, INDEX_MAGIC, "examples.idx", true);
+        long dataSize = data.size();
+        long indexSize = index.size();
+
+        // 索引条目必须首尾相接地覆盖数据文件的开头部分, 第一条对不上的条目及其后的内容丢弃
+        long expected = HEADER_BYTES;
+        indexEnd = HEADER_BYTES;
+        if (indexSize > HEADER_BYTES) {
+            MappedByteBuffer buffer = index.map(FileChannel.MapMode.READ_ONLY, 0, indexSize);
+            buffer.position(HEADER_BYTES);
+            int[] terms = new int[MAX_TERMS];
+            while (buffer.remaining() >= ENTRY_HEADER_BYTES) {
+                int entryStart = buffer.position();
+                long offset = buffer.getLong();
+                int length = buffer.getInt();
+                long questionHash = buffer.getLong();
+                int termCount = buffer.getShort();
+                if (offset != expected || length < RECORD_HEADER_BYTES || offset + length > dataSize
+                        || termCount < 0 || termCount > MAX_TERMS || buffer.remaining() < termCount * 4) {
+                    buffer.position(entryStart);
+                    break;
+                }
+                for (int i = 0; i < termCount; i++) {
+                    terms[i] = buffer.getInt();
+                }
+                addToMemory(offset, length, questionHash, terms, termCount);
+                expected = offset + length;
+            }
+            indexEnd = buffer.position();
+            if (indexEnd < indexSize) {
+                logger.warn("Discarding {} bytes of stale example index entries in {}", indexSize - indexEnd, directory);
+                index.truncate(indexEnd);
+            }
+        }
+
+        // 还没有索引的数据记录: 校验后补建索引, 遇到不完整的记录截断
+        int reindexed = 0;
+        long position = expected;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        while (position + RECORD_HEADER_BYTES <= dataSize) {
+            header.clear();
+            readFully(data, header, position);
+            int payloadLength = header.getInt(0);
+            if (payloadLength < 8 || payloadLength > MAX_RECORD_BYTES || position + RECORD_HEADER_BYTES + payloadLength > dataSize) {
+                break;
+            }
+            ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + payloadLength);
+            readFully(data, record, position);
+            if (crc(record) != header.getInt(4)) {
+                break;
+            }
+            List<String> terms = SchemaTerms.tokenize(readRecord(record)[0]);
+            int[] hashes = termHashes(terms);
+            appendEntry(position, record.capacity(), questionHash(terms), hashes, hashes.length);
+            position += record.capacity();
+            reindexed++;
+        }
+        if (position < dataSize) {
+            logger.warn("Truncating {} bytes of incomplete example records in {}", dataSize - position, directory);
+            data.truncate(position);
+        }
+        dataEnd = position;
+        logger.info("Loaded {} examples from {} in {} ms ({} re-indexed)",
+                size, directory, (System.nanoTime() - start) / 1_000_000, reindexed);
+    }
+
+    private static void initHeader(FileChannel channel, int magic, String name, boolean resetOnMismatch) throws IOException {
+        long size = channel.size();
+        if (size >= HEADER_BYTES) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            readFully(channel, header, 0);
+            if (header.getInt(0) == magic && header.getInt(4) == FORMAT_VERSION) {
+                return;
+            }
+            if (!resetOnMismatch) {
+                throw new IOException(name + " is not an example store of format version " + FORMAT_VERSION);
+            }
+            logger.info("Rebuilding example index {}: unknown format", name);
+        }
+        channel.truncate(0);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(magic).putInt(FORMAT_VERSION);
+        header.flip();
+        writeFully(channel, header, 0);
+    }
+
+    /**
+     * 追加一个示例; 问题没有可检索的词项或与已有示例的问题相同时忽略, 返回 false.
+     */
+    public synchronized boolean add(String question, String sql) {
+        List<String> terms = SchemaTerms.tokenize(question);
+        int[] hashes = termHashes(terms);
+        if (hashes.length == 0) {
+            return false;
+        }
+        long questionHash = questionHash(terms);
+        if (questions.contains(questionHash)) {
+            duplicates++;
+            return false;
+        }
+
+        byte[] questionBytes = question.getBytes(StandardCharsets.UTF_8);
+        byte[] sqlBytes = sql.getBytes(StandardCharsets.UTF_8);
+        int payloadLength = 8 + questionBytes.length + sqlBytes.length;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + payloadLength);
+        record.putInt(payloadLength).putInt(0)
+                .putInt(questionBytes.length).put(questionBytes)
+                .putInt(sqlBytes.length).put(sqlBytes);
+        record.putInt(4, crc(record));
+        record.flip();
+        try {
+            // 先写数据再写索引; 中途失败时两个文件的末尾都不前移, 下次追加覆盖写了一半的内容
+            writeFully(data, record, dataEnd);
+            appendEntry(dataEnd, record.capacity(), questionHash, hashes, hashes.length);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to append example to " + directory, e);
+        }
+        dataEnd += record.capacity();
+        added++;
+        return true;
+    }
+
+    /**
+     * 按相似度从高到低返回最多 limit 个示例, 低于 minSimilarity 的不返回.
+     * 相似度为示例覆盖的问题词项的 idf 权重占比, 再乘以示例自身词项被命中比例的平方根, 避免长问题靠个别词入选.
+     */
+    public synchronized List<Example> findSimilar(String question, int limit, double minSimilarity) {
+        lookups++;
+        if (size == 0 || limit <= 0) {
+            return List.of();
+        }
+        int[] queryTerms = termHashes(SchemaTerms.tokenize(question));
+        if (queryTerms.length == 0) {
+            return List.of();
+        }
+
+        // 按 df 从小到大处理词项. 剩余词项的 idf 之和不足 minSimilarity 时, 只出现在这些词项中的示例不可能入选,
+        // 之后只给已有候选加分; 几乎每个示例都有的词项因此不会把所有示例都变成候选
+        Postings[] lists = new Postings[queryTerms.length];
+        double[] idfs = new double[queryTerms.length];
+        Integer[] order = new Integer[queryTerms.length];
+        double queryWeight = 0;
+        for (int t = 0; t < queryTerms.length; t++) {
+            lists[t] = postings.get(queryTerms[t]);
+            int df = lists[t] == null ? 0 : lists[t].size;
+            idfs[t] = Math.log(1 + (size - df + 0.5) / (df + 0.5));
+            queryWeight += idfs[t];
+            order[t] = t;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(idfs[b], idfs[a]));
+
+        double remaining = queryWeight;
+        int touchedCount = 0;
+        for (int t : order) {
+            Postings list = lists[t];
+            double idf = idfs[t];
+            boolean admit = remaining >= minSimilarity * queryWeight;
+            remaining -= idf;
+            if (list == null) {
+                continue;
+            }
+            if (admit) {
+                for (int i = 0; i < list.size; i++) {
+                    int id = list.ids[i];
+                    if (matches[id] == 0) {
+                        touched[touchedCount++] = id;
+                    }
+                    matches[id]++;
+                    scores[id] += idf;
+                }
+            } else if ((long) touchedCount * 16 < list.size) {
+                // 候选远少于倒排表长度时逐个二分查找
+                for (int i = 0; i < touchedCount; i++) {
+                    int id = touched[i];
+                    if (Arrays.binarySearch(list.ids, 0, list.size, id) >= 0) {
+                        matches[id]++;
+                        scores[id] += idf;
+                    }
+                }
+            } else {
+                for (int i = 0; i < list.size; i++) {
+                    int id = list.ids[i];
+                    if (matches[id] > 0) {
+                        matches[id]++;
+                        scores[id] += idf;
+                    }
+                }
+            }
+        }
+
+        int[] best = new int[limit];
+        double[] bestScores = new double[limit];
+        int found = 0;
+        for (int i = 0; i < touchedCount; i++) {
+            int id = touched[i];
+            double similarity = scores[id] / queryWeight * Math.sqrt((double) matches[id] / termCounts[id]);
+            scores[id] = 0;
+            matches[id] = 0;
+            if (similarity < minSimilarity || found == limit && similarity <= bestScores[limit - 1]) {
+                continue;
+            }
+            int slot = found < limit ? found++ : limit - 1;
+            while (slot > 0 && bestScores[slot - 1] < similarity) {
+                best[slot] = best[slot - 1];
+                bestScores[slot] = bestScores[slot - 1];
+                slot--;
+            }
+            best[slot] = id;
+            bestScores[slot] = similarity;
+        }
+
+        List<Example> examples = new ArrayList<>(found);
+        try {
+            for (int i = 0; i < found; i++) {
+                ByteBuffer record = ByteBuffer.allocate(lengths[best[i]]);
+                readFully(data, record, offsets[best[i]]);
+                String[] fields = readRecord(record);
+                examples.add(new Example(fields[0], fields[1], bestScores[i]));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read examples from " + directory, e);
+        }
+        if (found > 0) {
+            hits++;
+        }
+        return examples;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(size, lookups, hits, added, duplicates);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            data.force(false);
+            index.force(false);
+        } finally {
+            data.close();
+            index.close();
+        }
+    }
+
+    private void appendEntry(long offset, int length, long questionHash, int[] hashes, int count) throws IOException {
+        ByteBuffer entry = ByteBuffer.allocate(ENTRY_HEADER_BYTES + count * 4);
+        entry.putLong(offset).putInt(length).putLong(questionHash).putShort((short) count);
+        for (int i = 0; i < count; i++) {
+            entry.putInt(hashes[i]);
+        }
+        entry.flip();
+        writeFully(index, entry, indexEnd);
+        indexEnd += entry.capacity();
+        addToMemory(offset, length, questionHash, hashes, count);
+    }
+
+    private void addToMemory(long offset, int length, long questionHash, int[] hashes, int count) {
+        if (size == offsets.length) {
+            int capacity = size * 2;
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            termCounts = Arrays.copyOf(termCounts, capacity);
+            scores = Arrays.copyOf(scores, capacity);
+            matches = Arrays.copyOf(matches, capacity);
+            touched = Arrays.copyOf(touched, capacity);
+        }
+        int id = size++;
+        offsets[id] = offset;
+        lengths[id] = length;
+        termCounts[id] = count;
+        questions.add(questionHash);
+        for (int i = 0; i < count; i++) {
+            postings.computeIfAbsent(hashes[i], h -> new Postings()).add(id);
+        }
+    }
+
+    /**
+     * 去重后的词项哈希, 最多 MAX_TERMS 个.
+     */
+    private static int[] termHashes(List<String> terms) {
+        Set<Integer> hashes = new LinkedHashSet<>();
+        for (String term : terms) {
+            if (hashes.size() == MAX_TERMS) {
+                break;
+            }
+            hashes.add(term.hashCode());
+        }
+        return hashes.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * 分词结果的 64 位 FNV-1a 哈希, 只差大小写, 标点或停用词的问题视为同一个问题.
+     */
+    private static long questionHash(List<String> terms) {
+        long hash = 0xcbf29ce484222325L;
+        for (String term : terms) {
+            for (int i = 0; i < term.length(); i++) {
+                hash = (hash ^ term.charAt(i)) * 0x100000001b3L;
+            }
+            hash = (hash ^ ' ') * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static int crc(ByteBuffer record) {
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), RECORD_HEADER_BYTES, record.capacity() - RECORD_HEADER_BYTES);
+        return (int) crc.getValue();
+    }
+
+    private static String[] readRecord(ByteBuffer record) {
+        record.position(RECORD_HEADER_BYTES);
+        String question = readString(record);
+        String sql = readString(record);
+        return new String[]{question, sql};
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of file at " + (position + buffer.position()));
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    /**
+     * 一个词项的示例下标列表, 按追加顺序递增.
+     */
+    private static final class Postings {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+
+    @Value
+    public static class Stats {
+        int examples;
+        long lookups;
+        // 至少返回一个示例的查找次数
+        long hits;
+        long added;
+        // 与已有示例问题相同而未追加的次数
+        long duplicates;
+    }
+}
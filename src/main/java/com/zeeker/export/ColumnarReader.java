@@ -0,0 +1,91 @@
+package com.zeeker.export;
+
+import com.zeeker.query.ResultTable;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 逐个行组读取 {@link ResultExporter} 写出的列式文件, 按文件头自动识别 gzip 压缩.
+ * 每次只在内存中保留一个行组. 文件没有写完 (缺少结尾标记) 或行数对不上时抛出异常.
+ */
+public class ColumnarReader implements Closeable {
+    private static final int STREAM_BUFFER_BYTES = 64 << 10;
+
+    private final DataInputStream in;
+    private long rows;
+    private boolean finished;
+
+    private ColumnarReader(DataInputStream in) {
+        this.in = in;
+    }
+
+    public static ColumnarReader open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            BufferedInputStream raw = new BufferedInputStream(Channels.newInputStream(channel), STREAM_BUFFER_BYTES);
+            raw.mark(2);
+            boolean gzip = raw.read() == 0x1f && raw.read() == 0x8b;
+            raw.reset();
+            InputStream stream = gzip
+                    ? new BufferedInputStream(new GZIPInputStream(raw, STREAM_BUFFER_BYTES), STREAM_BUFFER_BYTES)
+                    : raw;
+            DataInputStream in = new DataInputStream(stream);
+            if (in.readInt() != ResultExporter.COLUMNAR_MAGIC || in.readByte() != ResultExporter.COLUMNAR_VERSION) {
+                throw new IOException("Not a columnar export file: " + file);
+            }
+            return new ColumnarReader(in);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 下一个行组, 读完时返回 null.
+     */
+    public ResultTable next() throws IOException {
+        if (finished) {
+            return null;
+        }
+        try {
+            int length = in.readInt();
+            if (length == 0) {
+                long expected = in.readLong();
+                if (expected != rows) {
+                    throw new IOException("Columnar export declares " + expected + " rows but contains " + rows);
+                }
+                finished = true;
+                return null;
+            }
+            byte[] group = new byte[length];
+            in.readFully(group);
+            ResultTable table = ResultTable.fromBytes(group);
+            rows += table.getRowCount();
+            return table;
+        } catch (EOFException e) {
+            throw new IOException("Columnar export is incomplete after " + rows + " rows", e);
+        }
+    }
+
+    /**
+     * 已读取的行数.
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
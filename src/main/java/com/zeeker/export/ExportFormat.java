@@ -0,0 +1,32 @@
+package com.zeeker.export;
+
+import java.util.Locale;
+
+/**
+ * 导出文件的格式. CSV 按 RFC 4180 转义, 空值为空字段; COLUMNAR 是按行组分段的列式二进制, 见 {@link ColumnarReader}.
+ */
+public enum ExportFormat {
+    CSV(".csv"),
+    COLUMNAR(".wtc");
+
+    private final String extension;
+
+    ExportFormat(String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * 文件扩展名, 压缩时再加上 .gz.
+     */
+    public String extension(boolean gzip) {
+        return gzip ? extension + ".gz" : extension;
+    }
+
+    public static ExportFormat of(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new IllegalArgumentException("Unknown export format: " + name + " (expected csv or columnar)");
+        }
+    }
+}
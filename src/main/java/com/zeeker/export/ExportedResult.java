@@ -0,0 +1,28 @@
+package com.zeeker.export;
+
+import com.zeeker.query.QueryStats;
+import com.zeeker.query.ResultTable;
+import lombok.Value;
+
+import java.nio.file.Path;
+
+/**
+ * 导出到文件的查询结果. sample 是开头的若干行, 用于回答提示词; stats 是整个查询的统计.
+ */
+@Value
+public class ExportedResult {
+    Path file;
+    ExportFormat format;
+    boolean compressed;
+    long rows;
+    long fileBytes;
+    ResultTable sample;
+    QueryStats stats;
+
+    /**
+     * 结果是否全部包含在 sample 中.
+     */
+    public boolean isComplete() {
+        return rows <= sample.getRowCount() && !stats.isTruncated();
+    }
+}
@@ -0,0 +1,87 @@
+package com.zeeker.export;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * 以 gzip 格式压缩后写入下层通道. 直接用 Deflater 的 ByteBuffer 接口在堆外缓冲区之间压缩,
+ * 不经过 OutputStream 的逐段复制. 关闭时写出 gzip 尾部并关闭下层通道.
+ */
+class GzipChannel implements WritableByteChannel {
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    private static final byte[] EMPTY = new byte[0];
+
+    private final WritableByteChannel out;
+    private final Deflater deflater;
+    private final CRC32 crc = new CRC32();
+    private final ByteBuffer compressed;
+    private long inputBytes;
+    private boolean closed;
+
+    /**
+     * @param level 压缩级别; 导出追求吞吐, 默认用 {@link Deflater#BEST_SPEED}
+     */
+    GzipChannel(WritableByteChannel out, int level, int bufferBytes) throws IOException {
+        this.out = out;
+        this.deflater = new Deflater(level, true);
+        this.compressed = ByteBuffer.allocateDirect(bufferBytes);
+        writeFully(ByteBuffer.wrap(HEADER));
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        int length = src.remaining();
+        crc.update(src.duplicate());
+        deflater.setInput(src);
+        while (!deflater.needsInput()) {
+            deflater.deflate(compressed, Deflater.NO_FLUSH);
+            drain();
+        }
+        // 调用方会复用 src, 不能让 Deflater 继续持有它
+        deflater.setInput(EMPTY);
+        inputBytes += length;
+        return length;
+    }
+
+    private void drain() throws IOException {
+        compressed.flip();
+        writeFully(compressed);
+        compressed.clear();
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            deflater.finish();
+            while (!deflater.finished()) {
+                deflater.deflate(compressed);
+                drain();
+            }
+            ByteBuffer trailer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            trailer.putInt((int) crc.getValue()).putInt((int) inputBytes).flip();
+            writeFully(trailer);
+        } finally {
+            deflater.end();
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package com.zeeker.export;
+
+import com.zeeker.query.QueryStats;
+import com.zeeker.query.ResultTable;
+import com.zeeker.query.RowHandler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.zip.Deflater;
+
+/**
+ * 作为 {@link RowHandler} 把流式查询结果直接写入文件, 不在内存中保留完整结果.
+ * <p>
+ * 行按 chunkRows 行 (或约 {@value #MAX_CHUNK_BYTES} 字节) 一段读入 {@link ResultTable}, 每段写出后丢弃,
+ * 内存占用只取决于段大小. CSV 把每段编码为 UTF-8 放进一块堆外缓冲区, 满了写入文件通道;
+ * 列式格式每段写一个行组, 即该段 {@link ResultTable#toBytes()} 的结果, 整列的空值位图, 变长编码的数值和字典编码的字符串.
+ * 开启压缩时经 {@link GzipChannel} 写出. 前 sampleRows 行另外保留一份, 供回答提示词使用.
+ * <p>
+ * 列式文件: 魔数 "WTCR", 版本, 然后每个行组为长度 + 数据, 最后是长度 0 和总行数. 没有结果行时也写出一个空行组以保留列名.
+ */
+public class ResultExporter implements RowHandler, Closeable {
+    static final int COLUMNAR_MAGIC = 0x57544352; // "WTCR"
+    static final byte COLUMNAR_VERSION = 1;
+    private static final int MAX_CHUNK_BYTES = 16 << 20;
+    // CSV 文本攒到这么多字符再编码, 减少编码调用
+    private static final int TEXT_FLUSH_CHARS = 64 << 10;
+
+    private final Path file;
+    private final ExportFormat format;
+    private final boolean gzip;
+    private final int chunkRows;
+    private final int sampleRows;
+    private final FileChannel channel;
+    private final WritableByteChannel out;
+    private final ByteBuffer buffer;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private final StringBuilder text = new StringBuilder();
+
+    private ResultSetMetaData metaData;
+    private ResultTable.Builder chunk;
+    private int chunkRowCount;
+    private long chunkBytes;
+    // 已写出的段数
+    private int groups;
+    private final ResultTable.Builder sampleBuilder = new ResultTable.Builder();
+    private int sampled;
+    private ResultTable sample;
+    private long rows;
+    private long fileBytes = -1;
+    private boolean closed;
+
+    /**
+     * @param chunkRows   每段的行数
+     * @param bufferBytes 写缓冲区大小
+     * @param sampleRows  保留给回答提示词的开头行数
+     */
+    public ResultExporter(Path file, ExportFormat format, boolean gzip, int chunkRows, int bufferBytes, int sampleRows)
+            throws IOException {
+        this.file = file;
+        this.format = format;
+        this.gzip = gzip;
+        this.chunkRows = Math.max(1, chunkRows);
+        this.sampleRows = Math.max(0, sampleRows);
+        this.buffer = ByteBuffer.allocateDirect(Math.max(4096, bufferBytes));
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            this.out = gzip ? new GzipChannel(channel, Deflater.BEST_SPEED, buffer.capacity()) : channel;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void start(ResultSetMetaData metaData) throws SQLException {
+        this.metaData = metaData;
+        sampleBuilder.start(metaData);
+        // 第一段在这里建好, 没有结果行时也有一个带列名的空段
+        chunk = new ResultTable.Builder();
+        chunk.start(metaData);
+        try {
+            if (format == ExportFormat.CSV) {
+                for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                    if (i > 1) {
+                        text.append(',');
+                    }
+                    appendCsvText(text, metaData.getColumnLabel(i));
+                }
+                text.append("\r\n");
+            } else {
+                ensureRemaining(5);
+                buffer.putInt(COLUMNAR_MAGIC).put(COLUMNAR_VERSION);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write export header to " + file, e);
+        }
+    }
+
+    @Override
+    public long row(ResultSet resultSet) throws SQLException {
+        if (chunk == null) {
+            chunk = new ResultTable.Builder();
+            chunk.start(metaData);
+        }
+        long bytes = chunk.row(resultSet);
+        chunkRowCount++;
+        chunkBytes += bytes;
+        if (sampled < sampleRows) {
+            sampleBuilder.row(resultSet);
+            sampled++;
+        }
+        rows++;
+        if (chunkRowCount >= chunkRows || chunkBytes >= MAX_CHUNK_BYTES) {
+            try {
+                flushChunk();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write export file " + file, e);
+            }
+        }
+        return bytes;
+    }
+
+    private void flushChunk() throws IOException {
+        ResultTable table = chunk.build(new QueryStats(chunkRowCount, chunkBytes, QueryStats.Truncation.NONE, 0));
+        chunk = null;
+        chunkRowCount = 0;
+        groups++;
+        chunkBytes = 0;
+        if (format == ExportFormat.CSV) {
+            writeCsv(table);
+        } else {
+            writeGroup(table.toBytes());
+        }
+    }
+
+    private void writeCsv(ResultTable table) throws IOException {
+        int columns = table.getColumnCount();
+        for (int row = 0; row < table.getRowCount(); row++) {
+            for (int column = 0; column < columns; column++) {
+                if (column > 0) {
+                    text.append(',');
+                }
+                if (table.isNull(row, column)) {
+                    continue;
+                }
+                if (table.getKind(column) == ResultTable.Kind.STRING) {
+                    appendCsvText(text, table.getString(row, column));
+                } else {
+                    table.appendValue(text, row, column);
+                }
+            }
+            text.append("\r\n");
+            if (text.length() >= TEXT_FLUSH_CHARS) {
+                encodeText();
+            }
+        }
+    }
+
+    /**
+     * 含逗号, 引号或换行的值以及空字符串 (区别于空值) 加引号, 内部引号写两次.
+     */
+    static void appendCsvText(StringBuilder sb, String value) {
+        boolean quote = value.isEmpty();
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            sb.append(value);
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                sb.append('"');
+            }
+            sb.append(c);
+        }
+        sb.append('"');
+    }
+
+    private void encodeText() throws IOException {
+        CharBuffer chars = CharBuffer.wrap(text);
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, true);
+            if (result.isOverflow()) {
+                flushBuffer();
+            } else if (result.isUnderflow()) {
+                break;
+            } else {
+                result.throwException();
+            }
+        }
+        while (encoder.flush(buffer).isOverflow()) {
+            flushBuffer();
+        }
+        text.setLength(0);
+    }
+
+    private void writeGroup(byte[] group) throws IOException {
+        ensureRemaining(4);
+        buffer.putInt(group.length);
+        if (group.length <= buffer.remaining()) {
+            buffer.put(group);
+            return;
+        }
+        // 大行组不再复制进缓冲区, 直接写出
+        flushBuffer();
+        writeFully(ByteBuffer.wrap(group));
+    }
+
+    private void ensureRemaining(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer src) throws IOException {
+        while (src.hasRemaining()) {
+            out.write(src);
+        }
+    }
+
+    /**
+     * 写出最后一段和文件尾并关闭文件, 返回文件字节数.
+     */
+    public long finish() throws IOException {
+        if (chunk != null && (chunkRowCount > 0 || groups == 0)) {
+            flushChunk();
+        }
+        if (format == ExportFormat.CSV) {
+            encodeText();
+        } else {
+            ensureRemaining(12);
+            buffer.putInt(0).putLong(rows);
+        }
+        flushBuffer();
+        close();
+        sample = sampleBuilder.build(new QueryStats(sampled, 0, QueryStats.Truncation.NONE, 0));
+        fileBytes = Files.size(file);
+        return fileBytes;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public ExportFormat getFormat() {
+        return format;
+    }
+
+    public boolean isCompressed() {
+        return gzip;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * 文件字节数, {@link #finish()} 之前为 -1.
+     */
+    public long getFileBytes() {
+        return fileBytes;
+    }
+
+    /**
+     * 开头的 sampleRows 行, {@link #finish()} 之前为 null.
+     */
+    public ResultTable getSample() {
+        return sample;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            out.close();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.zeeker.metrics;
+
+import com.zeeker.service.RagService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * 把统计注册为 JMX MXBean: com.zeeker.wintouch:type=Rag 以及每个阶段一个
+ * com.zeeker.wintouch:type=StageLatency,stage=... . 连接池自身的 MBean 由 Druid 注册.
+ */
+public final class MetricsJmx {
+    private static final Logger logger = LoggerFactory.getLogger(MetricsJmx.class);
+    static final String DOMAIN = "com.zeeker.wintouch";
+
+    private MetricsJmx() {
+    }
+
+    public static void register(RagService ragService) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            register(server, new ObjectName(DOMAIN + ":type=Rag"), new RagMetricsBean(ragService));
+            for (RagMetrics.Stage stage : RagMetrics.Stage.values()) {
+                register(server, new ObjectName(DOMAIN + ":type=StageLatency,stage=" + stage.metricName()),
+                        new StageLatencyBean(ragService.getMetrics().getStage(stage)));
+            }
+            logger.info("Registered metrics MBeans under {}", DOMAIN);
+        } catch (JMException e) {
+            logger.warn("Failed to register metrics MBeans", e);
+        }
+    }
+
+    private static void register(MBeanServer server, ObjectName name, Object bean) throws JMException {
+        // 同一进程内重复创建服务时以最新的为准
+        if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+        server.registerMBean(bean, name);
+    }
+
+    private static final class StageLatencyBean implements StageLatencyMXBean {
+        private final LatencyHistogram histogram;
+
+        StageLatencyBean(LatencyHistogram histogram) {
+            this.histogram = histogram;
+        }
+
+        @Override
+        public long getCount() {
+            return histogram.getCount();
+        }
+
+        @Override
+        public double getMeanMillis() {
+            return histogram.getMeanMillis();
+        }
+
+        @Override
+        public double getP50Millis() {
+            return histogram.getPercentileMillis(50);
+        }
+
+        @Override
+        public double getP90Millis() {
+            return histogram.getPercentileMillis(90);
+        }
+
+        @Override
+        public double getP99Millis() {
+            return histogram.getPercentileMillis(99);
+        }
+
+        @Override
+        public double getP999Millis() {
+            return histogram.getPercentileMillis(99.9);
+        }
+
+        @Override
+        public double getMaxMillis() {
+            return histogram.getMaxMillis();
+        }
+    }
+
+    private static final class RagMetricsBean implements RagMetricsMXBean {
+        private final RagService ragService;
+
+        RagMetricsBean(RagService ragService) {
+            this.ragService = ragService;
+        }
+
+        @Override
+        public long getQuestions() {
+            return ragService.getMetrics().getQuestions();
+        }
+
+        @Override
+        public long getFailedQuestions() {
+            return ragService.getMetrics().getFailures();
+        }
+
+        @Override
+        public long getResultRows() {
+            return ragService.getMetrics().getResultRows();
+        }
+
+        @Override
+        public long getResultBytes() {
+            return ragService.getMetrics().getResultBytes();
+        }
+
+        @Override
+        public long getTruncatedResults() {
+            return ragService.getMetrics().getTruncatedResults();
+        }
+
+        @Override
+        public long getSqlRejections() {
+            return ragService.getMetrics().getSqlRejections();
+        }
+
+        @Override
+        public long getLlmCalls() {
+            return ragService.getOpenAiService().getStats().getCalls();
+        }
+
+        @Override
+        public long getLlmFailures() {
+            return ragService.getOpenAiService().getStats().getFailures();
+        }
+
+        @Override
+        public long getAvoidedLlmCalls() {
+            return ragService.getMetrics().getDirectAnswers();
+        }
+
+        @Override
+        public long getPromptTokens() {
+            return ragService.getOpenAiService().getStats().getPromptTokens();
+        }
+
+        @Override
+        public long getCompletionTokens() {
+            return ragService.getOpenAiService().getStats().getCompletionTokens();
+        }
+
+        @Override
+        public double getSqlCacheHitRate() {
+            return ragService.getSqlCache().getStats().hitRate();
+        }
+
+        @Override
+        public int getPoolActiveCount() {
+            return ragService.getDatabaseService().getPoolStats(0).getActiveCount();
+        }
+
+        @Override
+        public int getPoolWaitingThreads() {
+            return ragService.getDatabaseService().getPoolStats(0).getWaitingThreads();
+        }
+
+        @Override
+        public long getPoolWaitMillis() {
+            return ragService.getDatabaseService().getPoolStats(0).getWaitMillis();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.zeeker.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.zeeker.cache.ResultCache;
+import com.zeeker.cache.SqlCache;
+import com.zeeker.examples.ExampleStore;
+import com.zeeker.service.DatabaseService;
+import com.zeeker.service.OpenAiService;
+import com.zeeker.service.RagService;
+
+/**
+ * 把各服务的统计汇总成一个 JSON 文档, 供 /metrics 端点输出.
+ */
+public final class MetricsReport {
+    static final int SLOW_SQL_LIMIT = 10;
+
+    private MetricsReport() {
+    }
+
+    public static ObjectNode toJson(RagService ragService, ObjectMapper mapper) {
+        ObjectNode report = mapper.createObjectNode();
+        RagMetrics metrics = ragService.getMetrics();
+
+        ObjectNode stages = report.putObject("stages");
+        for (RagMetrics.Stage stage : RagMetrics.Stage.values()) {
+            LatencyHistogram histogram = metrics.getStage(stage);
+            stages.putObject(stage.metricName())
+                    .put("count", histogram.getCount())
+                    .put("meanMillis", histogram.getMeanMillis())
+                    .put("p50Millis", histogram.getPercentileMillis(50))
+                    .put("p90Millis", histogram.getPercentileMillis(90))
+                    .put("p99Millis", histogram.getPercentileMillis(99))
+                    .put("p999Millis", histogram.getPercentileMillis(99.9))
+                    .put("maxMillis", histogram.getMaxMillis());
+        }
+
+        report.putObject("questions")
+                .put("total", metrics.getQuestions())
+                .put("failed", metrics.getFailures());
+        report.putObject("results")
+                .put("rows", metrics.getResultRows())
+                .put("bytes", metrics.getResultBytes())
+                .put("truncated", metrics.getTruncatedResults());
+        report.putObject("exports")
+                .put("total", metrics.getExports())
+                .put("rows", metrics.getExportedRows())
+                .put("bytes", metrics.getExportedBytes());
+        report.putObject("sqlGuard")
+                .put("rejected", metrics.getSqlRejections())
+                .put("rewritten", metrics.getSqlRewrites())
+                .put("executionRepairs", metrics.getExecutionRepairs());
+
+        OpenAiService.Stats llm = ragService.getOpenAiService().getStats();
+        report.putObject("llm")
+                .put("calls", llm.getCalls())
+                .put("failures", llm.getFailures())
+                .put("hedges", llm.getHedges())
+                .put("hedgeWins", llm.getHedgeWins())
+                .put("cancelled", llm.getCancelled())
+                .put("retries", llm.getRetries())
+                .put("retriesDenied", llm.getRetriesDenied())
+                .put("circuitRejections", llm.getCircuitRejections())
+                .put("circuitState", llm.getCircuitState())
+                .put("concurrencyLimit", llm.getConcurrencyLimit())
+                .put("rateLimitWaitMillis", llm.getRateLimitWaitMillis())
+                .put("avoidedCalls", metrics.getDirectAnswers())
+                .put("promptTokens", llm.getPromptTokens())
+                .put("completionTokens", llm.getCompletionTokens());
+
+        SqlCache.Stats cache = ragService.getSqlCache().getStats();
+        report.putObject("sqlCache")
+                .put("hits", cache.getHits())
+                .put("similarHits", cache.getSimilarHits())
+                .put("misses", cache.getMisses())
+                .put("hitRate", cache.hitRate())
+                .put("evictions", cache.getEvictions())
+                .put("expirations", cache.getExpirations())
+                .put("invalidations", cache.getInvalidations());
+
+        ExampleStore exampleStore = ragService.getExampleStore();
+        if (exampleStore != null) {
+            ExampleStore.Stats examples = exampleStore.getStats();
+            report.putObject("examples")
+                    .put("stored", examples.getExamples())
+                    .put("lookups", examples.getLookups())
+                    .put("hits", examples.getHits())
+                    .put("added", examples.getAdded())
+                    .put("duplicates", examples.getDuplicates());
+        }
+
+        ResultCache.Stats results = ragService.getDatabaseService().getResultCacheStats();
+        report.putObject("resultCache")
+                .put("hits", results.getHits())
+                .put("coalesced", results.getCoalesced())
+                .put("misses", results.getMisses())
+                .put("uncacheable", results.getUncacheable())
+                .put("hitRate", results.hitRate())
+                .put("entries", results.getEntries())
+                .put("bytes", results.getBytes())
+                .put("evictions", results.getEvictions())
+                .put("expirations", results.getExpirations())
+                .put("invalidations", results.getInvalidations());
+
+        DatabaseService.PoolStats pool = ragService.getDatabaseService().getPoolStats(SLOW_SQL_LIMIT);
+        ObjectNode database = report.putObject("database");
+        database.put("activeCount", pool.getActiveCount())
+                .put("idleCount", pool.getIdleCount())
+                .put("maxActive", pool.getMaxActive())
+                .put("activePeak", pool.getActivePeak())
+                .put("waitingThreads", pool.getWaitingThreads())
+                .put("waitCount", pool.getWaitCount())
+                .put("waitMillis", pool.getWaitMillis())
+                .put("connectCount", pool.getConnectCount())
+                .put("errorCount", pool.getErrorCount())
+                .put("slowSqlMillis", pool.getSlowSqlMillis());
+        for (DatabaseService.SlowSql slow : pool.getSlowSql()) {
+            database.withArray("slowSql").addObject()
+                    .put("sql", slow.getSql())
+                    .put("executeCount", slow.getExecuteCount())
+                    .put("errorCount", slow.getErrorCount())
+                    .put("maxMillis", slow.getMaxMillis())
+                    .put("totalMillis", slow.getTotalMillis());
+        }
+        for (DatabaseService.DataSourceStats node : ragService.getDatabaseService().getDataSourceStats(0)) {
+            DatabaseService.PoolStats nodePool = node.getPool();
+            database.withArray("dataSources").addObject()
+                    .put("name", node.getName())
+                    .put("primary", node.isPrimary())
+                    .put("available", node.isAvailable())
+                    .put("routedQueries", node.getRoutedQueries())
+                    .put("outstandingQueries", node.getOutstandingQueries())
+                    .put("lagSeconds", node.getLagSeconds())
+                    .put("activeCount", nodePool.getActiveCount())
+                    .put("idleCount", nodePool.getIdleCount())
+                    .put("maxActive", nodePool.getMaxActive())
+                    .put("waitingThreads", nodePool.getWaitingThreads())
+                    .put("waitMillis", nodePool.getWaitMillis())
+                    .put("errorCount", nodePool.getErrorCount());
+        }
+        return report;
+    }
+}
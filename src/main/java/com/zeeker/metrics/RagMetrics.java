@@ -0,0 +1,153 @@
+package com.zeeker.metrics;
+
+import com.zeeker.query.QueryStats;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 问答流程的分阶段耗时与结果规模统计.
+ */
+public class RagMetrics {
+
+    public enum Stage {
+        // 检索表结构并构建 SQL 提示词
+        PROMPT_BUILD,
+        SQL_GENERATION,
+        // 执行前的SQL检查 (解析, LIMIT 改写, EXPLAIN)
+        SQL_GUARD,
+        QUERY_EXECUTION,
+        // 把结果渲染成回答提示词
+        RESULT_FORMAT,
+        ANSWER_GENERATION,
+        TOTAL;
+
+        public String metricName() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final Map<Stage, LatencyHistogram> stages = new EnumMap<>(Stage.class);
+    private final LongAdder questions = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder resultRows = new LongAdder();
+    private final LongAdder resultBytes = new LongAdder();
+    private final LongAdder truncatedResults = new LongAdder();
+    private final LongAdder sqlRejections = new LongAdder();
+    private final LongAdder sqlRewrites = new LongAdder();
+    private final LongAdder executionRepairs = new LongAdder();
+    private final LongAdder directAnswers = new LongAdder();
+    private final LongAdder exports = new LongAdder();
+    private final LongAdder exportedRows = new LongAdder();
+    private final LongAdder exportedBytes = new LongAdder();
+
+    public RagMetrics() {
+        for (Stage stage : Stage.values()) {
+            stages.put(stage, new LatencyHistogram());
+        }
+    }
+
+    public void recordStage(Stage stage, long startNanos) {
+        stages.get(stage).recordSince(startNanos);
+    }
+
+    public void recordQuestion(boolean failed) {
+        questions.increment();
+        if (failed) {
+            failures.increment();
+        }
+    }
+
+    public void recordResult(QueryStats stats) {
+        resultRows.add(stats.getRows());
+        resultBytes.add(stats.getBytes());
+        if (stats.isTruncated()) {
+            truncatedResults.increment();
+        }
+    }
+
+    public void recordSqlRejection() {
+        sqlRejections.increment();
+    }
+
+    public void recordSqlRewrite() {
+        sqlRewrites.increment();
+    }
+
+    /**
+     * 执行出错的SQL连同数据库错误交回模型修复.
+     */
+    public void recordExecutionRepair() {
+        executionRepairs.increment();
+    }
+
+    /**
+     * 结果直接渲染成回答, 省去了一次模型调用.
+     */
+    public void recordDirectAnswer() {
+        directAnswers.increment();
+    }
+
+    /**
+     * 结果导出到文件, bytes 为文件大小.
+     */
+    public void recordExport(long rows, long bytes) {
+        exports.increment();
+        exportedRows.add(rows);
+        exportedBytes.add(bytes);
+    }
+
+    public LatencyHistogram getStage(Stage stage) {
+        return stages.get(stage);
+    }
+
+    public long getQuestions() {
+        return questions.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public long getResultRows() {
+        return resultRows.sum();
+    }
+
+    public long getResultBytes() {
+        return resultBytes.sum();
+    }
+
+    public long getTruncatedResults() {
+        return truncatedResults.sum();
+    }
+
+    public long getSqlRejections() {
+        return sqlRejections.sum();
+    }
+
+    public long getSqlRewrites() {
+        return sqlRewrites.sum();
+    }
+
+    public long getExecutionRepairs() {
+        return executionRepairs.sum();
+    }
+
+    public long getDirectAnswers() {
+        return directAnswers.sum();
+    }
+
+    public long getExports() {
+        return exports.sum();
+    }
+
+    public long getExportedRows() {
+        return exportedRows.sum();
+    }
+
+    public long getExportedBytes() {
+        return exportedBytes.sum();
+    }
+}
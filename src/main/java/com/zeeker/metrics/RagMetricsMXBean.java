@@ -0,0 +1,36 @@
+package com.zeeker.metrics;
+
+/**
+ * 问答流程, 模型调用, SQL 缓存和连接池的累计计数.
+ */
+public interface RagMetricsMXBean {
+    long getQuestions();
+
+    long getFailedQuestions();
+
+    long getResultRows();
+
+    long getResultBytes();
+
+    long getTruncatedResults();
+
+    long getSqlRejections();
+
+    long getLlmCalls();
+
+    long getLlmFailures();
+
+    long getAvoidedLlmCalls();
+
+    long getPromptTokens();
+
+    long getCompletionTokens();
+
+    double getSqlCacheHitRate();
+
+    int getPoolActiveCount();
+
+    int getPoolWaitingThreads();
+
+    long getPoolWaitMillis();
+}
@@ -0,0 +1,20 @@
+package com.zeeker.metrics;
+
+/**
+ * 单个阶段的延迟分位数, 单位毫秒.
+ */
+public interface StageLatencyMXBean {
+    long getCount();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP90Millis();
+
+    double getP99Millis();
+
+    double getP999Millis();
+
+    double getMaxMillis();
+}
@@ -0,0 +1,350 @@
+package com.zeeker.prompt;
+
+import com.zeeker.config.RagConfig;
+import com.zeeker.examples.Example;
+import com.zeeker.export.ExportedResult;
+import com.zeeker.query.ResultTable;
+import com.zeeker.schema.ColumnInfo;
+import com.zeeker.schema.SchemaIndex;
+import com.zeeker.schema.SchemaSnapshot;
+import com.zeeker.schema.TableInfo;
+import com.zeeker.summary.ResultSummary;
+import dev.langchain4j.model.Tokenizer;
+import dev.langchain4j.model.openai.OpenAiChatModelName;
+import dev.langchain4j.model.openai.OpenAiTokenizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.Predicate;
+
+/**
+ * 构建发给模型的提示词. 固定说明和紧凑格式的表结构在前, 问题在后: 表结构相同时前缀逐字节相同,
+ * 可以命中服务端的提示词前缀缓存. promptStablePrefix 开启时只要完整结构放得下就总是发送完整结构,
+ * 让所有问题共享同一个前缀.
+ * <p>
+ * token 数用与模型匹配的分词器在本地计算. 提示词不超过 promptTokenBudget, 超出时按固定顺序裁剪:
+ * SQL 提示词按相关度依次放入完整的表, 放不下的表缩减为关键列, 仍放不下的表被丢弃, 相似问题的示例在表结构之后
+ * 用剩余的预算放入; 回答提示词在行数较多或放不下时改为各列的统计汇总加少量样本行, 未启用汇总时从末尾开始丢弃结果行.
+ * 说明文字和问题本身不裁剪, 只靠它们就超出预算时抛出异常.
+ */
+public class PromptBuilder {
+    private static final Logger logger = LoggerFactory.getLogger(PromptBuilder.class);
+
+    static final String SQL_INSTRUCTIONS =
+            "Generate a SQL query that answers the question at the end, using only the tables below.\n"
+                    + "Return ONLY the SQL query, without any markdown formatting, explanations or additional text.\n"
+                    + "Tables are listed as table(column type \"comment\", fk_column type>referenced_table.column) -- comment\n\n";
+    static final String EXAMPLES_HEADER = "\nVerified SQL for similar questions:\n";
+    static final String ANSWER_INSTRUCTIONS =
+            "Answer the question using the query results below. Please provide a natural language answer to the question.\n\n";
+    // 省略说明行预留的 token
+    private static final int NOTE_RESERVE = 32;
+
+    private final Tokenizer tokenizer;
+    private final int tokenBudget;
+    private final int schemaTokenBudget;
+    private final boolean stablePrefix;
+    private final int summaryMinRows;
+    private final int summaryTopK;
+    private final int sampleRows;
+    private final int sqlInstructionTokens;
+    // 每张表完整紧凑描述的 token 数; 结构刷新后未变化的表沿用同一个 TableInfo
+    private final Map<TableInfo, Integer> tableTokens = Collections.synchronizedMap(new WeakHashMap<>());
+    private volatile FullSchema fullSchema;
+
+    public PromptBuilder(RagConfig config, Tokenizer tokenizer) {
+        this.tokenizer = tokenizer;
+        this.tokenBudget = config.getPromptTokenBudget() <= 0 ? Integer.MAX_VALUE : config.getPromptTokenBudget();
+        this.schemaTokenBudget = config.getSchemaTokenBudget() <= 0 ? Integer.MAX_VALUE : config.getSchemaTokenBudget();
+        this.stablePrefix = config.isPromptStablePrefix();
+        this.summaryMinRows = config.getResultSummaryMinRows();
+        this.summaryTopK = config.getResultSummaryTopK();
+        this.sampleRows = config.getResultSampleRows();
+        this.sqlInstructionTokens = countTokens(SQL_INSTRUCTIONS);
+    }
+
+    /**
+     * 与模型匹配的分词器; 分词器不认识的模型按 gpt-4o-mini 的编码计数.
+     */
+    public static Tokenizer tokenizerFor(String model) {
+        if (model != null && !model.trim().isEmpty()) {
+            try {
+                return new OpenAiTokenizer(model);
+            } catch (RuntimeException e) {
+                logger.warn("No tokenizer for model {}, counting tokens with the default encoding", model);
+            }
+        }
+        return new OpenAiTokenizer(OpenAiChatModelName.GPT_4_O_MINI);
+    }
+
+    public int countTokens(String text) {
+        return tokenizer.estimateTokenCountInText(text);
+    }
+
+    public String sqlPrompt(SchemaIndex index, String question) {
+        return sqlPrompt(index, question, List.of());
+    }
+
+    /**
+     * 生成SQL的提示词: 说明, 表结构, 相似问题的示例, 最后是问题. 示例随问题变化, 放在表结构之后不影响前缀;
+     * 示例的优先级低于表结构, 按相似度从高到低放入剩余预算.
+     */
+    public String sqlPrompt(SchemaIndex index, String question, List<Example> examples) {
+        String tail = "\nQuestion: " + question + "\n";
+        long fixed = (long) sqlInstructionTokens + countTokens(tail);
+        int budget = (int) Math.min(schemaTokenBudget, tokenBudget - fixed);
+        if (budget <= 0) {
+            throw new RuntimeException("Question does not fit the prompt token budget of " + tokenBudget + " tokens");
+        }
+
+        String schema = null;
+        if (stablePrefix) {
+            FullSchema full = fullSchema(index.getSchema());
+            if (full.tokens <= budget) {
+                schema = full.text;
+            }
+        }
+        if (schema == null) {
+            schema = fitSchema(index.selectRelevant(question), question, budget);
+        }
+        String shots = fitExamples(examples, tokenBudget - fixed - countTokens(schema));
+        String prompt = SQL_INSTRUCTIONS + schema + shots + tail;
+        if (tokenBudget != Integer.MAX_VALUE) {
+            // 分段计数之和与整体计数可能差几个 token, 超出时先去掉示例, 仍超出则按差额收紧结构预算重新选择
+            int overflow = countTokens(prompt) - tokenBudget;
+            if (overflow > 0 && !shots.isEmpty()) {
+                prompt = SQL_INSTRUCTIONS + schema + tail;
+                overflow = countTokens(prompt) - tokenBudget;
+            }
+            if (overflow > 0) {
+                prompt = SQL_INSTRUCTIONS + fitSchema(index.selectRelevant(question), question, budget - overflow) + tail;
+            }
+        }
+        return prompt;
+    }
+
+    private String fitExamples(List<Example> examples, long budget) {
+        if (examples.isEmpty()) {
+            return "";
+        }
+        StringBuilder text = new StringBuilder(EXAMPLES_HEADER);
+        long used = countTokens(EXAMPLES_HEADER);
+        int included = 0;
+        for (Example example : examples) {
+            String block = "Q: " + example.getQuestion() + "\nSQL: " + example.getSql() + "\n";
+            int cost = countTokens(block);
+            if (used + cost > budget) {
+                break;
+            }
+            text.append(block);
+            used += cost;
+            included++;
+        }
+        return included == 0 ? "" : text.toString();
+    }
+
+    /**
+     * 按相关度放入表: 完整描述放得下就用完整描述, 否则缩减为关键列, 仍放不下则丢弃.
+     * 选中的表按名称排序输出, 同一组表总是得到相同的文本.
+     */
+    private String fitSchema(List<TableInfo> ranked, String question, int budget) {
+        Predicate<ColumnInfo> matching = SchemaIndex.matchingColumns(question);
+        List<String> blocks = new ArrayList<>();
+        StringBuilder block = new StringBuilder();
+        int used = 0;
+        int reduced = 0;
+        for (TableInfo table : ranked) {
+            int cost = tableTokens.computeIfAbsent(table, t -> {
+                StringBuilder sb = new StringBuilder();
+                t.describeCompact(sb);
+                return countTokens(sb.toString());
+            });
+            block.setLength(0);
+            if (used + cost <= budget) {
+                table.describeCompact(block);
+            } else {
+                table.describeCompact(block, SchemaIndex.essentialColumns(table, matching));
+                cost = countTokens(block.toString());
+                if (used + cost > budget) {
+                    continue;
+                }
+                reduced++;
+            }
+            blocks.add(block.toString());
+            used += cost;
+        }
+        if (blocks.isEmpty()) {
+            throw new RuntimeException("No table fits the schema token budget of " + budget + " tokens");
+        }
+
+        blocks.sort(Comparator.naturalOrder());
+        StringBuilder schema = new StringBuilder();
+        for (String text : blocks) {
+            schema.append(text);
+        }
+        logger.info("Selected {} of {} candidate tables for prompt ({} reduced to key columns, {} tokens)",
+                blocks.size(), ranked.size(), reduced, used);
+        return schema.toString();
+    }
+
+    private FullSchema fullSchema(SchemaSnapshot snapshot) {
+        FullSchema cached = fullSchema;
+        if (cached != null && cached.snapshot == snapshot) {
+            return cached;
+        }
+        StringBuilder text = new StringBuilder();
+        for (TableInfo table : snapshot.getTables()) {
+            table.describeCompact(text);
+        }
+        FullSchema full = new FullSchema(snapshot, text.toString(), countTokens(text.toString()));
+        fullSchema = full;
+        return full;
+    }
+
+    /**
+     * 解释查询结果的提示词: 说明, 问题, 最后是结果. 结果不少于 resultSummaryMinRows 行, 或者逐行输出超出预算时,
+     * 改为汇总加样本行; 未启用汇总时超出预算只保留前面的行并注明省略的行数.
+     */
+    public String answerPrompt(String question, ResultTable results) {
+        return answerPrompt(question, results, null);
+    }
+
+    /**
+     * 导出模式的回答提示词: 结果全部在样本中时与 {@link #answerPrompt(String, ResultTable)} 相同,
+     * 否则先说明完整结果的行数已导出到文件, 只给出开头的样本行.
+     */
+    public String exportAnswerPrompt(String question, ExportedResult export) {
+        ResultTable sample = export.getSample();
+        if (export.isComplete()) {
+            return answerPrompt(question, sample);
+        }
+        String note = export.getRows() + " rows" + (export.getStats().isTruncated() ? " (stopped at the export row limit)" : "")
+                + " were exported to a file for the user; only the first " + sample.getRowCount()
+                + " are shown, so do not compute totals or other statistics from them.\n";
+        return answerPrompt(question, sample, note);
+    }
+
+    private String answerPrompt(String question, ResultTable results, String note) {
+        StringBuilder prompt = new StringBuilder(ANSWER_INSTRUCTIONS)
+                .append("Question: ").append(question).append("\n\nQuery results:\n");
+        if (note != null) {
+            prompt.append(note);
+        }
+        if (results.isEmpty()) {
+            return note != null ? prompt.toString() : prompt.append("No results found.\n").toString();
+        }
+
+        int head = prompt.length();
+        if (summaryMinRows <= 0 || results.getRowCount() < summaryMinRows) {
+            results.appendText(prompt);
+            if (tokenBudget == Integer.MAX_VALUE || countTokens(prompt.toString()) + NOTE_RESERVE <= tokenBudget) {
+                return appendTruncationNote(prompt, results).toString();
+            }
+            prompt.setLength(head);
+        }
+        if (summaryMinRows > 0) {
+            return summaryPrompt(prompt, results);
+        }
+
+        // 逐行计数, 放满预算为止
+        long used = countTokens(prompt.toString()) + NOTE_RESERVE;
+        StringBuilder line = new StringBuilder();
+        results.appendHeader(line);
+        used += countTokens(line.toString());
+        if (used > tokenBudget) {
+            throw new RuntimeException("Question does not fit the prompt token budget of " + tokenBudget + " tokens");
+        }
+        prompt.append(line);
+        int rows = 0;
+        for (; rows < results.getRowCount(); rows++) {
+            line.setLength(0);
+            results.appendRow(line, rows);
+            used += countTokens(line.toString());
+            if (used > tokenBudget) {
+                break;
+            }
+            prompt.append(line);
+        }
+        prompt.append("(Showing the first ").append(rows).append(" of ").append(results.getRowCount())
+                .append(" rows; the rest were omitted to fit the prompt.)\n");
+        logger.info("Answer prompt keeps {} of {} result rows within {} tokens", rows, results.getRowCount(), tokenBudget);
+        return appendTruncationNote(prompt, results).toString();
+    }
+
+    /**
+     * 各列的统计汇总, 然后是预算内尽量多的样本行.
+     */
+    private String summaryPrompt(StringBuilder prompt, ResultTable results) {
+        ResultSummary summary = ResultSummary.of(results, summaryTopK, sampleRows);
+        prompt.append(results.getRowCount()).append(" rows, summarized per column (~ marks estimates):\n");
+        summary.appendColumns(prompt);
+
+        int[] sample = summary.getSampleRows();
+        StringBuilder rows = new StringBuilder();
+        int included = 0;
+        if (sample.length > 0) {
+            long used = tokenBudget == Integer.MAX_VALUE ? 0 : countTokens(prompt.toString()) + NOTE_RESERVE * 2;
+            if (used > tokenBudget) {
+                throw new RuntimeException("Result summary does not fit the prompt token budget of " + tokenBudget + " tokens");
+            }
+            StringBuilder line = new StringBuilder();
+            results.appendHeader(line);
+            if (tokenBudget != Integer.MAX_VALUE) {
+                used += countTokens(line.toString());
+            }
+            rows.append(line);
+            for (int row : sample) {
+                line.setLength(0);
+                results.appendRow(line, row);
+                if (tokenBudget != Integer.MAX_VALUE) {
+                    used += countTokens(line.toString());
+                    if (used > tokenBudget) {
+                        break;
+                    }
+                }
+                rows.append(line);
+                included++;
+            }
+        }
+        if (included > 0) {
+            int head = Math.min(included, summary.getHeadRows());
+            prompt.append("\nSample rows (");
+            if (included == results.getRowCount()) {
+                prompt.append("all ").append(included);
+            } else if (head == included) {
+                prompt.append("the first ").append(head);
+            } else {
+                prompt.append("the first ").append(head).append(" and ").append(included - head)
+                        .append(" picked at random from the rest, in result order");
+            }
+            prompt.append("):\n").append(rows);
+        }
+        logger.info("Answer prompt summarizes {} result rows with {} sample rows", results.getRowCount(), included);
+        return appendTruncationNote(prompt, results).toString();
+    }
+
+    private static StringBuilder appendTruncationNote(StringBuilder prompt, ResultTable results) {
+        if (results.isTruncated()) {
+            prompt.append("(Results truncated after ").append(results.getRowCount()).append(" rows.)\n");
+        }
+        return prompt;
+    }
+
+    private static final class FullSchema {
+        final SchemaSnapshot snapshot;
+        final String text;
+        final int tokens;
+
+        FullSchema(SchemaSnapshot snapshot, String text, int tokens) {
+            this.snapshot = snapshot;
+            this.text = text;
+            this.tokens = tokens;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.zeeker.query;
+
+import com.zeeker.config.RagConfig;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 不经过模型, 直接把简单结果 (空结果, 单值, 单行, 小表) 渲染成回答.
+ * 只有在结果完整, 规模不超过配置上限, 列名可读, 且问题不是解释或分析类时才使用, 否则返回 null 交给模型.
+ */
+public class AnswerRenderer {
+    // 需要推理或解释的问题, 只列出数字不算回答
+    private static final Pattern ANALYTICAL_QUESTION = Pattern.compile(
+            "\\b(why|how come|explain|compar|trend|analy[sz]|recommend|should|insight|reason|predict|forecast|"
+                    + "summari[sz])|为什么|解释|分析|比较|趋势|建议|预测",
+            Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    // 数据库为未命名表达式生成的列名, 如 EXPR$0, C1, ?column?
+    private static final Pattern ANONYMOUS_LABEL = Pattern.compile("^(expr|col|column|c)\\W*\\d*\\W*$");
+    private static final Pattern AGGREGATE_LABEL = Pattern.compile("^(\\w+)\\s*\\((.*)\\)$");
+    // 未起别名的其他表达式, 如 price * quantity, 从列名看不出含义
+    private static final Pattern EXPRESSION_LABEL = Pattern.compile("[()*/+]|\\s-\\s");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Map<String, String> AGGREGATE_NAMES = Map.of(
+            "count", "count", "sum", "total", "avg", "average", "min", "minimum", "max", "maximum");
+    // 更长的文本通常需要模型概括
+    private static final int MAX_VALUE_LENGTH = 120;
+
+    private final boolean enabled;
+    private final int maxRows;
+    private final int maxColumns;
+
+    public AnswerRenderer(RagConfig config) {
+        this.enabled = config.isDirectAnswerEnabled();
+        this.maxRows = config.getDirectAnswerMaxRows();
+        this.maxColumns = config.getDirectAnswerMaxColumns();
+    }
+
+    /**
+     * 返回渲染好的回答; 不满足使用条件时返回 null.
+     */
+    public String render(String question, ResultTable results) {
+        if (!enabled || results.isTruncated() || ANALYTICAL_QUESTION.matcher(question).find()) {
+            return null;
+        }
+        if (results.isEmpty()) {
+            return "No matching records were found.";
+        }
+        if (results.getRowCount() > maxRows || results.getColumnCount() > maxColumns) {
+            return null;
+        }
+
+        String[] labels = new String[results.getColumnCount()];
+        for (int column = 0; column < labels.length; column++) {
+            labels[column] = humanize(results.getColumnName(column));
+            if (labels[column] == null) {
+                return null;
+            }
+        }
+        for (int row = 0; row < results.getRowCount(); row++) {
+            for (int column = 0; column < labels.length; column++) {
+                String value = results.getString(row, column);
+                if (value != null && value.length() > MAX_VALUE_LENGTH) {
+                    return null;
+                }
+            }
+        }
+
+        StringBuilder sb = new StringBuilder();
+        if (results.getRowCount() == 1) {
+            renderRow(sb, results, labels);
+        } else {
+            renderList(sb, results, labels);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * "The count is 100." / "The name is Alice, the status is active and the amount is 12.50."
+     */
+    private static void renderRow(StringBuilder sb, ResultTable results, String[] labels) {
+        for (int column = 0; column < labels.length; column++) {
+            if (column > 0) {
+                sb.append(column == labels.length - 1 ? " and " : ", ");
+            }
+            sb.append(column == 0 ? "The " : "the ").append(labels[column]).append(" is ");
+            results.appendValue(sb, 0, column);
+        }
+        sb.append('.');
+    }
+
+    /**
+     * 每行一项, 第一列作为标题, 其余列放在括号中.
+     */
+    private static void renderList(StringBuilder sb, ResultTable results, String[] labels) {
+        sb.append("Found ").append(results.getRowCount()).append(" results:");
+        for (int row = 0; row < results.getRowCount(); row++) {
+            sb.append("\n- ");
+            results.appendValue(sb, row, 0);
+            for (int column = 1; column < labels.length; column++) {
+                sb.append(column == 1 ? " (" : ", ").append(labels[column]).append(": ");
+                results.appendValue(sb, row, column);
+            }
+            if (labels.length > 1) {
+                sb.append(')');
+            }
+        }
+    }
+
+    /**
+     * 把列名转成可读的短语, 如 total_amount -> total amount, COUNT(*) -> count, SUM(o.amount) -> total amount;
+     * 无意义的列名返回 null.
+     */
+    static String humanize(String label) {
+        String lower = label.trim().toLowerCase(Locale.ROOT);
+        Matcher aggregate = AGGREGATE_LABEL.matcher(lower);
+        if (aggregate.matches() && AGGREGATE_NAMES.containsKey(aggregate.group(1))) {
+            String name = AGGREGATE_NAMES.get(aggregate.group(1));
+            String argument = words(stripQualifier(aggregate.group(2).replace("distinct", "")));
+            if (argument.isEmpty()) {
+                return name;
+            }
+            return "count".equals(name) ? "count of " + argument : name + " " + argument;
+        }
+        if (ANONYMOUS_LABEL.matcher(lower).matches() || EXPRESSION_LABEL.matcher(lower).find()) {
+            return null;
+        }
+        String words = words(stripQualifier(lower));
+        return words.isEmpty() ? null : words;
+    }
+
+    private static String stripQualifier(String expression) {
+        String trimmed = expression.trim();
+        int dot = trimmed.lastIndexOf('.');
+        return dot >= 0 && trimmed.indexOf('(') < 0 ? trimmed.substring(dot + 1) : trimmed;
+    }
+
+    private static String words(String text) {
+        return NON_WORD.matcher(text).replaceAll(" ").trim();
+    }
+}
@@ -0,0 +1,21 @@
+package com.zeeker.query;
+
+import lombok.Value;
+
+/**
+ * 单次查询的资源上限; 小于等于 0 表示不限制.
+ */
+@Value
+public class QueryLimits {
+    int maxRows;
+    long maxBytes;
+    int timeoutSeconds;
+
+    public QueryLimits withMaxRows(int maxRows) {
+        return new QueryLimits(maxRows, maxBytes, timeoutSeconds);
+    }
+
+    public QueryLimits withTimeoutSeconds(int timeoutSeconds) {
+        return new QueryLimits(maxRows, maxBytes, timeoutSeconds);
+    }
+}
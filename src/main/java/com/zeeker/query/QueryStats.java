@@ -0,0 +1,20 @@
+package com.zeeker.query;
+
+import lombok.Value;
+
+@Value
+public class QueryStats {
+
+    public enum Truncation {
+        NONE, ROW_LIMIT, BYTE_LIMIT
+    }
+
+    long rows;
+    long bytes;
+    Truncation truncation;
+    long elapsedMillis;
+
+    public boolean isTruncated() {
+        return truncation != Truncation.NONE;
+    }
+}
@@ -0,0 +1,697 @@
+package com.zeeker.query;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按列存储的查询结果. 元数据只读取一次, 数值与时间类型存放在基本类型数组中,
+ * 字符串做字典编码; 列顺序与 SELECT 顺序一致. 序列化为提示词文本时不产生装箱或逐行临时对象.
+ */
+public class ResultTable {
+
+    public enum Kind {
+        LONG, DOUBLE, DECIMAL, BOOLEAN, DATE, TIME, TIMESTAMP, STRING
+    }
+
+    private static final long MICROS_PER_DAY = 86_400_000_000L;
+    private static final byte FORMAT_VERSION = 1;
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final Column[] columns;
+    private final int rowCount;
+    private final QueryStats stats;
+
+    private ResultTable(Column[] columns, int rowCount, QueryStats stats) {
+        this.columns = columns;
+        this.rowCount = rowCount;
+        this.stats = stats;
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public boolean isEmpty() {
+        return rowCount == 0;
+    }
+
+    public QueryStats getStats() {
+        return stats;
+    }
+
+    public boolean isTruncated() {
+        return stats != null && stats.isTruncated();
+    }
+
+    public String getColumnName(int column) {
+        return columns[column].name;
+    }
+
+    public Kind getKind(int column) {
+        return columns[column].kind;
+    }
+
+    public boolean isNull(int row, int column) {
+        return columns[column].isNull(row);
+    }
+
+    /**
+     * LONG, BOOLEAN (0/1), DATE (epoch day), TIME (一天内的微秒) 和 TIMESTAMP (本地时间的 epoch 微秒) 列的原始值.
+     */
+    public long getLong(int row, int column) {
+        return columns[column].longs[row];
+    }
+
+    public double getDouble(int row, int column) {
+        Column c = columns[column];
+        switch (c.kind) {
+            case DOUBLE:
+                return c.doubles[row];
+            case DECIMAL:
+                return c.longs[row] / Math.pow(10, c.scales[row]);
+            case LONG:
+                return c.longs[row];
+            default:
+                throw new IllegalStateException("Column " + c.name + " is not numeric");
+        }
+    }
+
+    public String getString(int row, int column) {
+        Column c = columns[column];
+        if (c.isNull(row)) {
+            return null;
+        }
+        if (c.kind != Kind.STRING) {
+            StringBuilder sb = new StringBuilder();
+            appendValue(sb, row, column);
+            return sb.toString();
+        }
+        return c.dictionary[c.codes[row]];
+    }
+
+    /**
+     * 装箱后的值, 仅用于调试与兼容; 热路径应使用类型化的访问方法.
+     */
+    public Object getValue(int row, int column) {
+        Column c = columns[column];
+        if (c.isNull(row)) {
+            return null;
+        }
+        switch (c.kind) {
+            case LONG:
+                return c.longs[row];
+            case DOUBLE:
+                return c.doubles[row];
+            case DECIMAL:
+                return BigDecimal.valueOf(c.longs[row], c.scales[row]);
+            case BOOLEAN:
+                return c.longs[row] != 0;
+            default:
+                return getString(row, column);
+        }
+    }
+
+    /**
+     * 以 "a, b, c" 的形式输出表头和所有行, 每行以换行结束.
+     */
+    public void appendText(StringBuilder sb) {
+        appendText(sb, 0, rowCount);
+    }
+
+    public void appendText(StringBuilder sb, int fromRow, int toRow) {
+        appendHeader(sb);
+        for (int row = fromRow; row < toRow; row++) {
+            appendRow(sb, row);
+        }
+    }
+
+    public void appendHeader(StringBuilder sb) {
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(columns[i].name);
+        }
+        sb.append('\n');
+    }
+
+    public void appendRow(StringBuilder sb, int row) {
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            appendValue(sb, row, i);
+        }
+        sb.append('\n');
+    }
+
+    public void appendValue(StringBuilder sb, int row, int column) {
+        Column c = columns[column];
+        if (c.isNull(row)) {
+            sb.append("null");
+            return;
+        }
+        switch (c.kind) {
+            case LONG:
+                sb.append(c.longs[row]);
+                break;
+            case DOUBLE:
+                sb.append(c.doubles[row]);
+                break;
+            case DECIMAL:
+                appendDecimal(sb, c.longs[row], c.scales[row]);
+                break;
+            case BOOLEAN:
+                sb.append(c.longs[row] != 0);
+                break;
+            case DATE:
+                appendDate(sb, c.longs[row]);
+                break;
+            case TIME:
+                appendTime(sb, c.longs[row]);
+                break;
+            case TIMESTAMP:
+                long micros = c.longs[row];
+                appendDate(sb, Math.floorDiv(micros, MICROS_PER_DAY));
+                sb.append(' ');
+                appendTime(sb, Math.floorMod(micros, MICROS_PER_DAY));
+                break;
+            default:
+                sb.append(c.dictionary[c.codes[row]]);
+        }
+    }
+
+    /**
+     * 紧凑的二进制形式, 供结果缓存保存: 整数类列用 zigzag 变长编码, 字符串列保存字典和变长编码的下标.
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + rowCount * columns.length * 2);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+            writeVarLong(out, rowCount);
+            writeVarLong(out, stats.getRows());
+            writeVarLong(out, stats.getBytes());
+            out.writeByte(stats.getTruncation().ordinal());
+            writeVarLong(out, stats.getElapsedMillis());
+            writeVarLong(out, columns.length);
+            for (Column column : columns) {
+                column.write(out, rowCount);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to serialize result table", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static ResultTable fromBytes(byte[] bytes) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (in.readByte() != FORMAT_VERSION) {
+                throw new IOException("Unsupported result table format");
+            }
+            int rowCount = (int) readVarLong(in);
+            QueryStats stats = new QueryStats(readVarLong(in), readVarLong(in),
+                    QueryStats.Truncation.values()[in.readByte()], readVarLong(in));
+            Column[] columns = new Column[(int) readVarLong(in)];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = Column.read(in, rowCount);
+            }
+            return new ResultTable(columns, rowCount, stats);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to deserialize result table", e);
+        }
+    }
+
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, utf8.length);
+        out.write(utf8);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        byte[] utf8 = new byte[(int) readVarLong(in)];
+        in.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    public String toText() {
+        StringBuilder sb = new StringBuilder();
+        appendText(sb);
+        return sb.toString();
+    }
+
+    static void appendDecimal(StringBuilder sb, long unscaled, int scale) {
+        if (scale == 0) {
+            sb.append(unscaled);
+            return;
+        }
+        if (unscaled == Long.MIN_VALUE || scale >= POWERS_OF_TEN.length) {
+            sb.append(BigDecimal.valueOf(unscaled, scale).toPlainString());
+            return;
+        }
+        if (unscaled < 0) {
+            sb.append('-');
+            unscaled = -unscaled;
+        }
+        long divisor = POWERS_OF_TEN[scale];
+        sb.append(unscaled / divisor).append('.');
+        long fraction = unscaled % divisor;
+        for (int digits = scale - 1; digits > 0 && fraction < POWERS_OF_TEN[digits]; digits--) {
+            sb.append('0');
+        }
+        sb.append(fraction);
+    }
+
+    /**
+     * epoch day 转 yyyy-MM-dd (Howard Hinnant 的 civil_from_days 算法).
+     */
+    static void appendDate(StringBuilder sb, long epochDay) {
+        long z = epochDay + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        long day = doy - (153 * mp + 2) / 5 + 1;
+        long month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+
+        sb.append(year).append('-');
+        appendTwoDigits(sb, month);
+        sb.append('-');
+        appendTwoDigits(sb, day);
+    }
+
+    static void appendTime(StringBuilder sb, long microsOfDay) {
+        long seconds = microsOfDay / 1_000_000;
+        appendTwoDigits(sb, seconds / 3600);
+        sb.append(':');
+        appendTwoDigits(sb, seconds / 60 % 60);
+        sb.append(':');
+        appendTwoDigits(sb, seconds % 60);
+
+        long fraction = microsOfDay % 1_000_000;
+        if (fraction != 0) {
+            int digits = 6;
+            while (fraction % 10 == 0) {
+                fraction /= 10;
+                digits--;
+            }
+            sb.append('.');
+            for (int d = digits - 1; d > 0 && fraction < POWERS_OF_TEN[d]; d--) {
+                sb.append('0');
+            }
+            sb.append(fraction);
+        }
+    }
+
+    private static void appendTwoDigits(StringBuilder sb, long value) {
+        if (value < 10) {
+            sb.append('0');
+        }
+        sb.append(value);
+    }
+
+    static Kind kindOf(ResultSetMetaData metaData, int column) throws SQLException {
+        switch (metaData.getColumnType(column)) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+                return Kind.LONG;
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return Kind.DOUBLE;
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+                return Kind.DECIMAL;
+            case Types.BOOLEAN:
+                return Kind.BOOLEAN;
+            case Types.BIT:
+                return metaData.getPrecision(column) <= 1 ? Kind.BOOLEAN : Kind.STRING;
+            case Types.DATE:
+                return Kind.DATE;
+            case Types.TIME:
+                return Kind.TIME;
+            case Types.TIMESTAMP:
+                return Kind.TIMESTAMP;
+            default:
+                return Kind.STRING;
+        }
+    }
+
+    /**
+     * 作为 {@link RowHandler} 接收流式结果, 直接从游标读取类型化的值.
+     */
+    public static class Builder implements RowHandler {
+        private Column[] columns = new Column[0];
+        private int rowCount;
+
+        @Override
+        public void start(ResultSetMetaData metaData) throws SQLException {
+            columns = new Column[metaData.getColumnCount()];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = new Column(metaData.getColumnLabel(i + 1), kindOf(metaData, i + 1));
+            }
+        }
+
+        @Override
+        public long row(ResultSet rs) throws SQLException {
+            long bytes = 0;
+            for (int i = 0; i < columns.length; i++) {
+                bytes += columns[i].read(rs, i + 1, rowCount);
+            }
+            rowCount++;
+            return bytes;
+        }
+
+        public ResultTable build(QueryStats stats) {
+            for (Column column : columns) {
+                column.seal();
+            }
+            return new ResultTable(columns, rowCount, stats);
+        }
+    }
+
+    private static final class Column {
+        private final String name;
+        private Kind kind;
+        private long[] nulls = new long[1];
+        private long[] longs;
+        private double[] doubles;
+        private byte[] scales;
+        private int[] codes;
+        private String[] dictionary;
+        private Map<String, Integer> dictionaryIndex;
+        private List<String> dictionaryValues;
+
+        Column(String name, Kind kind) {
+            this.name = name;
+            this.kind = kind;
+            allocate(16);
+        }
+
+        private void allocate(int capacity) {
+            switch (kind) {
+                case DOUBLE:
+                    doubles = new double[capacity];
+                    break;
+                case STRING:
+                    codes = new int[capacity];
+                    dictionaryIndex = new HashMap<>();
+                    dictionaryValues = new ArrayList<>();
+                    break;
+                case DECIMAL:
+                    scales = new byte[capacity];
+                    longs = new long[capacity];
+                    break;
+                default:
+                    longs = new long[capacity];
+            }
+        }
+
+        boolean isNull(int row) {
+            return (nulls[row >>> 6] & (1L << row)) != 0;
+        }
+
+        /**
+         * 读取当前行的值并返回新增的字节数. 值放不进当前类型时 (如超出 long 的无符号整数) 整列降级为字符串.
+         */
+        long read(ResultSet rs, int index, int row) throws SQLException {
+            ensureCapacity(row + 1);
+            try {
+                return readTyped(rs, index, row);
+            } catch (SQLDataException | ArithmeticException e) {
+                convertToString(row);
+                return readTyped(rs, index, row);
+            }
+        }
+
+        private long readTyped(ResultSet rs, int index, int row) throws SQLException {
+            switch (kind) {
+                case LONG: {
+                    longs[row] = rs.getLong(index);
+                    return markNull(rs.wasNull(), row) + 8;
+                }
+                case DOUBLE: {
+                    doubles[row] = rs.getDouble(index);
+                    return markNull(rs.wasNull(), row) + 8;
+                }
+                case BOOLEAN: {
+                    longs[row] = rs.getBoolean(index) ? 1 : 0;
+                    return markNull(rs.wasNull(), row) + 8;
+                }
+                case DECIMAL: {
+                    BigDecimal value = rs.getBigDecimal(index);
+                    if (value != null) {
+                        if (value.scale() < 0) {
+                            value = value.setScale(0);
+                        }
+                        BigInteger unscaled = value.unscaledValue();
+                        if (unscaled.bitLength() > 63 || value.scale() > Byte.MAX_VALUE) {
+                            throw new ArithmeticException("Decimal does not fit in a long");
+                        }
+                        longs[row] = unscaled.longValue();
+                        scales[row] = (byte) value.scale();
+                    }
+                    return markNull(value == null, row) + 9;
+                }
+                case DATE: {
+                    Date value = rs.getDate(index);
+                    if (value != null) {
+                        longs[row] = value.toLocalDate().toEpochDay();
+                    }
+                    return markNull(value == null, row) + 8;
+                }
+                case TIME: {
+                    Time value = rs.getTime(index);
+                    if (value != null) {
+                        longs[row] = value.toLocalTime().toNanoOfDay() / 1000;
+                    }
+                    return markNull(value == null, row) + 8;
+                }
+                case TIMESTAMP: {
+                    Timestamp value = rs.getTimestamp(index);
+                    if (value != null) {
+                        LocalDateTime time = value.toLocalDateTime();
+                        longs[row] = time.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + time.getNano() / 1000;
+                    }
+                    return markNull(value == null, row) + 8;
+                }
+                default: {
+                    String value = rs.getString(index);
+                    if (value == null) {
+                        return markNull(true, row) + 4;
+                    }
+                    markNull(false, row);
+                    return 4 + encode(value, row);
+                }
+            }
+        }
+
+        private long encode(String value, int row) {
+            Integer code = dictionaryIndex.get(value);
+            if (code != null) {
+                codes[row] = code;
+                return 0;
+            }
+            codes[row] = dictionaryValues.size();
+            dictionaryIndex.put(value, dictionaryValues.size());
+            dictionaryValues.add(value);
+            return 40 + 2L * value.length();
+        }
+
+        private long markNull(boolean isNull, int row) {
+            if (isNull) {
+                nulls[row >>> 6] |= 1L << row;
+            } else {
+                nulls[row >>> 6] &= ~(1L << row);
+            }
+            return 0;
+        }
+
+        private void ensureCapacity(int size) {
+            int words = (size + 63) >>> 6;
+            if (words > nulls.length) {
+                nulls = Arrays.copyOf(nulls, Math.max(words, nulls.length * 2));
+            }
+            int capacity = kind == Kind.DOUBLE ? doubles.length : kind == Kind.STRING ? codes.length : longs.length;
+            if (size <= capacity) {
+                return;
+            }
+            int newCapacity = Math.max(size, capacity + (capacity >> 1));
+            switch (kind) {
+                case DOUBLE:
+                    doubles = Arrays.copyOf(doubles, newCapacity);
+                    break;
+                case STRING:
+                    codes = Arrays.copyOf(codes, newCapacity);
+                    break;
+                case DECIMAL:
+                    scales = Arrays.copyOf(scales, newCapacity);
+                    longs = Arrays.copyOf(longs, newCapacity);
+                    break;
+                default:
+                    longs = Arrays.copyOf(longs, newCapacity);
+            }
+        }
+
+        /**
+         * 把已读取的 row 行之前的数据按文本重新编码为字符串列.
+         */
+        private void convertToString(int rows) {
+            Column text = new Column(name, Kind.STRING);
+            text.ensureCapacity(Math.max(rows + 1, 16));
+            Column[] single = {this};
+            ResultTable view = new ResultTable(single, rows, null);
+            StringBuilder sb = new StringBuilder();
+            for (int row = 0; row < rows; row++) {
+                if (isNull(row)) {
+                    text.markNull(true, row);
+                } else {
+                    sb.setLength(0);
+                    view.appendValue(sb, row, 0);
+                    text.markNull(false, row);
+                    text.encode(sb.toString(), row);
+                }
+            }
+            kind = Kind.STRING;
+            nulls = text.nulls;
+            codes = text.codes;
+            dictionaryIndex = text.dictionaryIndex;
+            dictionaryValues = text.dictionaryValues;
+            longs = null;
+            doubles = null;
+            scales = null;
+        }
+
+        void write(DataOutput out, int rowCount) throws IOException {
+            writeString(out, name);
+            out.writeByte(kind.ordinal());
+            int words = (rowCount + 63) >>> 6;
+            for (int i = 0; i < words; i++) {
+                out.writeLong(nulls[i]);
+            }
+            switch (kind) {
+                case DOUBLE:
+                    for (int row = 0; row < rowCount; row++) {
+                        out.writeDouble(doubles[row]);
+                    }
+                    break;
+                case STRING:
+                    writeVarLong(out, dictionary.length);
+                    for (String value : dictionary) {
+                        writeString(out, value);
+                    }
+                    for (int row = 0; row < rowCount; row++) {
+                        writeVarLong(out, codes[row]);
+                    }
+                    break;
+                default:
+                    for (int row = 0; row < rowCount; row++) {
+                        long value = longs[row];
+                        writeVarLong(out, (value << 1) ^ (value >> 63));
+                        if (kind == Kind.DECIMAL) {
+                            out.writeByte(scales[row]);
+                        }
+                    }
+            }
+        }
+
+        static Column read(DataInput in, int rowCount) throws IOException {
+            Column column = new Column(readString(in), Kind.values()[in.readByte()]);
+            column.ensureCapacity(rowCount);
+            for (int i = 0; i < (rowCount + 63) >>> 6; i++) {
+                column.nulls[i] = in.readLong();
+            }
+            switch (column.kind) {
+                case DOUBLE:
+                    for (int row = 0; row < rowCount; row++) {
+                        column.doubles[row] = in.readDouble();
+                    }
+                    break;
+                case STRING:
+                    column.dictionary = new String[(int) readVarLong(in)];
+                    for (int i = 0; i < column.dictionary.length; i++) {
+                        column.dictionary[i] = readString(in);
+                    }
+                    for (int row = 0; row < rowCount; row++) {
+                        column.codes[row] = (int) readVarLong(in);
+                    }
+                    column.dictionaryIndex = null;
+                    column.dictionaryValues = null;
+                    break;
+                default:
+                    for (int row = 0; row < rowCount; row++) {
+                        long zigzag = readVarLong(in);
+                        column.longs[row] = (zigzag >>> 1) ^ -(zigzag & 1);
+                        if (column.kind == Kind.DECIMAL) {
+                            column.scales[row] = in.readByte();
+                        }
+                    }
+            }
+            return column;
+        }
+
+        void seal() {
+            if (kind == Kind.STRING) {
+                dictionary = dictionaryValues.toArray(new String[0]);
+                dictionaryIndex = null;
+                dictionaryValues = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.zeeker.query;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * 流式查询的行回调. 实现直接从游标读取当前行, 不应保存 ResultSet 的引用.
+ */
+public interface RowHandler {
+
+    /**
+     * 第一行之前调用一次.
+     */
+    default void start(ResultSetMetaData metaData) throws SQLException {
+    }
+
+    /**
+     * 处理游标所在的当前行, 返回该行被保留下来的大致字节数, 用于结果大小限制.
+     */
+    long row(ResultSet resultSet) throws SQLException;
+}
@@ -0,0 +1,93 @@
+package com.zeeker.resilience;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * AIMD 并发上限: 每次成功把上限加 1/limit (约每轮满并发加一), 收到过载信号 (429, 超时) 时乘以 backoffRatio,
+ * 上限保持在 [min, max] 之间. 同一轮并发中的多个过载信号只降一次: 在上一次降低之前开始的调用不再触发降低.
+ * min == max 时就是固定大小的信号量.
+ */
+public class AdaptiveConcurrencyLimit {
+    private final int min;
+    private final int max;
+    private final double backoffRatio;
+
+    // 以下字段都在 this 锁内访问
+    private double limit;
+    private int inFlight;
+    private long lastDecrease = Long.MIN_VALUE;
+
+    public AdaptiveConcurrencyLimit(int min, int max, double backoffRatio) {
+        this.min = Math.max(1, Math.min(min, max));
+        this.max = Math.max(1, max);
+        this.backoffRatio = backoffRatio;
+        this.limit = this.max;
+    }
+
+    public static AdaptiveConcurrencyLimit fixed(int limit) {
+        return new AdaptiveConcurrencyLimit(limit, limit, 1);
+    }
+
+    /**
+     * 等待空闲槽位, 返回开始时间; 调用结束后必须调用 onSuccess, onOverload (传入开始时间) 或 onIgnore 之一.
+     */
+    public synchronized long acquire() throws InterruptedException {
+        while (inFlight >= (int) limit) {
+            wait();
+        }
+        inFlight++;
+        return System.nanoTime();
+    }
+
+    /**
+     * 最多等待 timeoutNanos, 超时抛出 TimeoutException, 不占用槽位.
+     */
+    public synchronized long acquire(long timeoutNanos) throws InterruptedException, TimeoutException {
+        long start = System.nanoTime();
+        while (inFlight >= (int) limit) {
+            long remaining = timeoutNanos - (System.nanoTime() - start);
+            if (remaining <= 0) {
+                throw new TimeoutException("No concurrency slot became free within " + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + " ms");
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        inFlight++;
+        return System.nanoTime();
+    }
+
+    public synchronized void onSuccess() {
+        if (limit < max) {
+            limit = Math.min(max, limit + 1 / limit);
+        }
+        release();
+    }
+
+    public synchronized void onOverload(long startNanos) {
+        if (startNanos > lastDecrease) {
+            limit = Math.max(min, limit * backoffRatio);
+            lastDecrease = System.nanoTime();
+        }
+        release();
+    }
+
+    /**
+     * 与负载无关的结束 (如请求错误或被取消), 不调整上限.
+     */
+    public synchronized void onIgnore() {
+        release();
+    }
+
+    private void release() {
+        inFlight--;
+        notifyAll();
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+}
@@ -0,0 +1,132 @@
+package com.zeeker.resilience;
+
+import java.util.function.LongSupplier;
+
+/**
+ * 熔断器: 最近 window 次调用中失败比例达到 failureRatio 时打开, openNanos 内直接拒绝调用;
+ * 之后进入半开状态只放行一个探测调用, 成功则关闭并清空统计, 失败则重新打开.
+ * 只有服务端的问题 (过载, 超时, 5xx, 连接失败) 计为失败, 请求本身的错误不影响熔断.
+ */
+public class CircuitBreaker {
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * 熔断器打开时快速失败的异常.
+     */
+    public static class OpenException extends RuntimeException {
+        public OpenException(String message) {
+            super(message);
+        }
+    }
+
+    private final int window;
+    private final double failureRatio;
+    private final long openNanos;
+    private final LongSupplier clock;
+
+    // 以下字段都在 this 锁内访问
+    private final boolean[] outcomes;
+    private int recorded;
+    private int next;
+    private int failures;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean probing;
+
+    public CircuitBreaker(int window, double failureRatio, long openNanos) {
+        this(window, failureRatio, openNanos, System::nanoTime);
+    }
+
+    CircuitBreaker(int window, double failureRatio, long openNanos, LongSupplier clock) {
+        this.window = Math.max(1, window);
+        this.failureRatio = failureRatio;
+        this.openNanos = openNanos;
+        this.clock = clock;
+        this.outcomes = new boolean[this.window];
+    }
+
+    /**
+     * 返回是否允许这次调用; 允许时调用结束后必须调用 onSuccess, onFailure 或 onIgnore 之一.
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (clock.getAsLong() - openedAt < openNanos) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probing) {
+                return false;
+            }
+            probing = true;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            close();
+            return;
+        }
+        record(false);
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        record(true);
+        if (state == State.CLOSED && recorded >= window && failures >= failureRatio * window) {
+            open();
+        }
+    }
+
+    /**
+     * 结果与服务端健康无关 (如被取消); 半开状态下释放探测名额.
+     */
+    public synchronized void onIgnore() {
+        if (state == State.HALF_OPEN) {
+            probing = false;
+        }
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && clock.getAsLong() - openedAt >= openNanos) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    private void record(boolean failure) {
+        if (recorded == window) {
+            if (outcomes[next]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        outcomes[next] = failure;
+        if (failure) {
+            failures++;
+        }
+        next = (next + 1) % window;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = clock.getAsLong();
+        probing = false;
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        probing = false;
+        recorded = 0;
+        next = 0;
+        failures = 0;
+    }
+}
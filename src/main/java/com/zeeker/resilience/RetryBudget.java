@@ -0,0 +1,38 @@
+package com.zeeker.resilience;
+
+/**
+ * 全局重试预算: 每次调用存入 ratio 个重试额度, 每次重试取出一个, 余额不超过 minRetries.
+ * 长期看重试最多为调用量的 ratio 倍, 另允许 minRetries 次突发; 故障期间额度很快用完, 重试不会放大负载.
+ */
+public class RetryBudget {
+    private final double ratio;
+    private final double maxBalance;
+
+    // 在 this 锁内访问
+    private double balance;
+
+    public RetryBudget(double ratio, int minRetries) {
+        this.ratio = ratio;
+        this.maxBalance = minRetries;
+        this.balance = minRetries;
+    }
+
+    public synchronized void recordCall() {
+        balance = Math.min(maxBalance, balance + ratio);
+    }
+
+    /**
+     * 取出一次重试额度; 预算不足时返回 false.
+     */
+    public synchronized boolean tryRetry() {
+        if (balance < 1) {
+            return false;
+        }
+        balance--;
+        return true;
+    }
+
+    public synchronized double getBalance() {
+        return balance;
+    }
+}
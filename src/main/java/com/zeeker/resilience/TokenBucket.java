@@ -0,0 +1,78 @@
+package com.zeeker.resilience;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 令牌桶限速: 容量 capacity, 每秒补充 refillPerSecond 个令牌. acquire 按请求需要的令牌数阻塞等待,
+ * 大于容量的请求按容量计, 否则永远等不到.
+ */
+public class TokenBucket {
+    private final long capacity;
+    private final double refillPerNano;
+
+    // 以下字段都在 this 锁内访问
+    private double available;
+    private long lastRefill;
+
+    public TokenBucket(long capacity, double refillPerSecond) {
+        this.capacity = capacity;
+        this.refillPerNano = refillPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.available = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * 取出 tokens 个令牌, 不够时等待补充. 返回等待的毫秒数.
+     */
+    public long acquire(long tokens) throws InterruptedException {
+        try {
+            return acquire(tokens, Long.MAX_VALUE);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 最多等待 timeoutNanos; 补充速度决定了等不到时立即抛出 TimeoutException, 不取出令牌.
+     */
+    public synchronized long acquire(long tokens, long timeoutNanos) throws InterruptedException, TimeoutException {
+        long start = System.nanoTime();
+        double needed = Math.min(tokens, capacity);
+        while (true) {
+            refill();
+            if (available >= needed) {
+                available -= needed;
+                return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            }
+            long waitNanos = (long) Math.ceil((needed - available) / refillPerNano);
+            if (waitNanos > timeoutNanos - (System.nanoTime() - start)) {
+                throw new TimeoutException("Rate limit would delay the call by " + TimeUnit.NANOSECONDS.toMillis(waitNanos) + " ms");
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, Math.max(waitNanos, TimeUnit.MILLISECONDS.toNanos(1)));
+        }
+    }
+
+    /**
+     * 退还预扣多出的令牌, 总量不超过容量.
+     */
+    public synchronized void refund(long tokens) {
+        if (tokens <= 0) {
+            return;
+        }
+        refill();
+        available = Math.min(capacity, available + tokens);
+        notifyAll();
+    }
+
+    public synchronized long getAvailable() {
+        refill();
+        return (long) available;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        available = Math.min(capacity, available + (now - lastRefill) * refillPerNano);
+        lastRefill = now;
+    }
+}
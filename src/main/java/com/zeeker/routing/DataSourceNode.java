@@ -0,0 +1,83 @@
+package com.zeeker.routing;
+
+import com.alibaba.druid.pool.DruidDataSource;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一个可路由的数据源 (主库或只读副本) 及其路由状态: 进行中的查询数, 已路由的查询数, 复制延迟和可用性.
+ */
+public class DataSourceNode {
+    // 复制延迟未测量 (未配置延迟查询或非副本)
+    public static final long LAG_UNKNOWN = -1;
+    // 复制已停止, 延迟视为无穷大
+    public static final long LAG_STOPPED = Long.MAX_VALUE;
+
+    private final String name;
+    private final boolean primary;
+    private final DruidDataSource dataSource;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final LongAdder routed = new LongAdder();
+    private volatile long lagSeconds = LAG_UNKNOWN;
+    private volatile boolean available = true;
+
+    public DataSourceNode(String name, boolean primary, DruidDataSource dataSource) {
+        this.name = name;
+        this.primary = primary;
+        this.dataSource = dataSource;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isPrimary() {
+        return primary;
+    }
+
+    public DruidDataSource getDataSource() {
+        return dataSource;
+    }
+
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    public long getRouted() {
+        return routed.sum();
+    }
+
+    public long getLagSeconds() {
+        return lagSeconds;
+    }
+
+    void setLagSeconds(long lagSeconds) {
+        this.lagSeconds = lagSeconds;
+    }
+
+    /**
+     * 连接失败的副本暂停路由, 直到下一次健康检查成功.
+     */
+    public boolean isAvailable() {
+        return available;
+    }
+
+    void setAvailable(boolean available) {
+        this.available = available;
+    }
+
+    void begin() {
+        outstanding.incrementAndGet();
+        routed.increment();
+    }
+
+    void end() {
+        outstanding.decrementAndGet();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
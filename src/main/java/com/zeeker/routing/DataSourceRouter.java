@@ -0,0 +1,204 @@
+package com.zeeker.routing;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 把只读查询分发到主库和只读副本. 候选为可用的副本 (readFromPrimary 时加上主库), 由 {@link RoutingPolicy} 选择;
+ * 没有副本, 全部不可用或策略没有选中时使用主库. 副本取连接失败时暂停路由并在主库上重试,
+ * 直到 {@link #checkReplicas()} 再次连通.
+ */
+public class DataSourceRouter {
+    private static final Logger logger = LoggerFactory.getLogger(DataSourceRouter.class);
+    // MySQL 8.0.22+ 与 MariaDB 10.5+ 的列名, 以及旧版本的列名
+    private static final String[] LAG_COLUMNS = {"Seconds_Behind_Source", "Seconds_Behind_Master"};
+
+    private final DataSourceNode primary;
+    private final List<DataSourceNode> replicas;
+    private final List<DataSourceNode> nodes;
+    private final RoutingPolicy policy;
+    private final boolean readFromPrimary;
+    private final String lagQuery;
+    // 延迟查询失败的副本, 只在第一次失败时记录警告
+    private final Set<DataSourceNode> lagQueryFailures = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param policy   为 null 时只读查询也全部使用主库
+     * @param lagQuery 在副本上查询复制延迟秒数的语句, 取 Seconds_Behind_Source/Master 列或第一列; 为 null 时不测量
+     */
+    public DataSourceRouter(DataSourceNode primary, List<DataSourceNode> replicas, RoutingPolicy policy,
+                            boolean readFromPrimary, String lagQuery) {
+        this.primary = primary;
+        this.replicas = Collections.unmodifiableList(new ArrayList<>(replicas));
+        List<DataSourceNode> all = new ArrayList<>();
+        all.add(primary);
+        all.addAll(replicas);
+        this.nodes = Collections.unmodifiableList(all);
+        this.policy = policy;
+        this.readFromPrimary = readFromPrimary;
+        this.lagQuery = lagQuery;
+    }
+
+    public DataSourceNode getPrimary() {
+        return primary;
+    }
+
+    public List<DataSourceNode> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * 主库在前, 副本按配置顺序.
+     */
+    public List<DataSourceNode> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * 为一次只读查询选择数据源并取得连接. 关闭返回的 Lease 时归还连接.
+     */
+    public Lease openRead() throws SQLException {
+        DataSourceNode node = route();
+        node.begin();
+        try {
+            return new Lease(node, node.getDataSource().getConnection());
+        } catch (SQLException e) {
+            node.end();
+            if (node == primary) {
+                throw e;
+            }
+            node.setAvailable(false);
+            logger.warn("Replica {} is unavailable, pausing it until the next health check and retrying on primary", node, e);
+        }
+        primary.begin();
+        try {
+            return new Lease(primary, primary.getDataSource().getConnection());
+        } catch (SQLException e) {
+            primary.end();
+            throw e;
+        }
+    }
+
+    private DataSourceNode route() {
+        if (policy == null || replicas.isEmpty()) {
+            return primary;
+        }
+        List<DataSourceNode> candidates = new ArrayList<>(replicas.size() + 1);
+        if (readFromPrimary) {
+            candidates.add(primary);
+        }
+        for (DataSourceNode replica : replicas) {
+            if (replica.isAvailable()) {
+                candidates.add(replica);
+            }
+        }
+        DataSourceNode chosen = policy.choose(candidates);
+        return chosen == null ? primary : chosen;
+    }
+
+    /**
+     * 逐个连接副本: 能连通的恢复路由, 并在配置了延迟查询时更新复制延迟; 连不上的暂停路由.
+     * 延迟查询本身失败 (版本不支持该语句, 缺少 REPLICATION CLIENT 权限等) 时延迟记为未知, 副本保持可用.
+     */
+    public void checkReplicas() {
+        for (DataSourceNode replica : replicas) {
+            try (Connection conn = replica.getDataSource().getConnection()) {
+                if (lagQuery != null) {
+                    updateLag(replica, conn);
+                }
+                if (!replica.isAvailable()) {
+                    logger.info("Replica {} is reachable again", replica);
+                }
+                replica.setAvailable(true);
+            } catch (SQLException e) {
+                if (replica.isAvailable()) {
+                    logger.warn("Replica {} failed its health check, pausing it", replica, e);
+                }
+                replica.setAvailable(false);
+            }
+        }
+    }
+
+    private void updateLag(DataSourceNode replica, Connection conn) {
+        try {
+            replica.setLagSeconds(queryLag(conn));
+            lagQueryFailures.remove(replica);
+        } catch (SQLException e) {
+            if (lagQueryFailures.add(replica)) {
+                logger.warn("Could not read the replication lag of {} with '{}', treating it as unknown", replica, lagQuery, e);
+            }
+            replica.setLagSeconds(DataSourceNode.LAG_UNKNOWN);
+        }
+    }
+
+    /**
+     * 没有结果行或值为 NULL 表示复制没有运行.
+     */
+    private long queryLag(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(lagQuery)) {
+            if (!rs.next()) {
+                return DataSourceNode.LAG_STOPPED;
+            }
+            long lag = rs.getLong(lagColumn(rs.getMetaData()));
+            return rs.wasNull() ? DataSourceNode.LAG_STOPPED : Math.max(lag, 0);
+        }
+    }
+
+    private static int lagColumn(ResultSetMetaData metaData) throws SQLException {
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            for (String name : LAG_COLUMNS) {
+                if (name.equalsIgnoreCase(metaData.getColumnLabel(i))) {
+                    return i;
+                }
+            }
+        }
+        return 1;
+    }
+
+    public void close() {
+        for (DataSourceNode node : nodes) {
+            node.getDataSource().close();
+        }
+    }
+
+    /**
+     * 一次路由得到的连接; 关闭时归还连接并结束计数.
+     */
+    public static final class Lease implements AutoCloseable {
+        private final DataSourceNode node;
+        private final Connection connection;
+
+        private Lease(DataSourceNode node, Connection connection) {
+            this.node = node;
+            this.connection = connection;
+        }
+
+        public DataSourceNode getNode() {
+            return node;
+        }
+
+        public Connection getConnection() {
+            return connection;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try {
+                connection.close();
+            } finally {
+                node.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.zeeker.routing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 跳过复制延迟超过 maxLagSeconds 或复制已停止的副本, 在其余候选中交给 delegate 选择.
+ * 未测量延迟的数据源 (包括主库) 视为没有延迟.
+ */
+public class LagAwarePolicy implements RoutingPolicy {
+    private final long maxLagSeconds;
+    private final RoutingPolicy delegate;
+
+    public LagAwarePolicy(long maxLagSeconds, RoutingPolicy delegate) {
+        this.maxLagSeconds = maxLagSeconds;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public DataSourceNode choose(List<DataSourceNode> candidates) {
+        List<DataSourceNode> fresh = new ArrayList<>(candidates.size());
+        for (DataSourceNode node : candidates) {
+            if (node.getLagSeconds() <= maxLagSeconds) {
+                fresh.add(node);
+            }
+        }
+        return delegate.choose(fresh);
+    }
+}
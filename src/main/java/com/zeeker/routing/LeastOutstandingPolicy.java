@@ -0,0 +1,28 @@
+package com.zeeker.routing;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 选择进行中查询最少的数据源, 并列时随机选择, 避免所有请求同时涌向同一个空闲副本.
+ * 慢的副本积压的查询多, 自然分到更少的新查询.
+ */
+public class LeastOutstandingPolicy implements RoutingPolicy {
+
+    @Override
+    public DataSourceNode choose(List<DataSourceNode> candidates) {
+        DataSourceNode best = null;
+        int ties = 0;
+        for (DataSourceNode node : candidates) {
+            int outstanding = node.getOutstanding();
+            if (best == null || outstanding < best.getOutstanding()) {
+                best = node;
+                ties = 1;
+            } else if (outstanding == best.getOutstanding() && ThreadLocalRandom.current().nextInt(++ties) == 0) {
+                // 蓄水池抽样, 并列的候选等概率
+                best = node;
+            }
+        }
+        return best;
+    }
+}
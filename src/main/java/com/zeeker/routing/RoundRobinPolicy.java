@@ -0,0 +1,19 @@
+package com.zeeker.routing;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 依次轮流选择候选数据源.
+ */
+public class RoundRobinPolicy implements RoutingPolicy {
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Override
+    public DataSourceNode choose(List<DataSourceNode> candidates) {
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        return candidates.get(Math.floorMod(next.getAndIncrement(), candidates.size()));
+    }
+}
@@ -0,0 +1,29 @@
+package com.zeeker.routing;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 只读查询的路由策略: 从可用的候选数据源中选一个, 没有合适的候选时返回 null, 由调用方退回主库.
+ * 实现需要线程安全.
+ */
+public interface RoutingPolicy {
+
+    DataSourceNode choose(List<DataSourceNode> candidates);
+
+    /**
+     * 按配置名创建策略: round-robin, least-outstanding 或 lag-aware.
+     */
+    static RoutingPolicy of(String name, long maxLagSeconds) {
+        switch (name == null ? "" : name.trim().toLowerCase(Locale.ROOT)) {
+            case "round-robin":
+                return new RoundRobinPolicy();
+            case "least-outstanding":
+                return new LeastOutstandingPolicy();
+            case "lag-aware":
+                return new LagAwarePolicy(maxLagSeconds, new LeastOutstandingPolicy());
+            default:
+                throw new IllegalArgumentException("Unknown read routing policy: " + name);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.zeeker.schema;
+
+import lombok.Value;
+
+@Value
+public class ColumnInfo {
+    String name;
+    String type;
+    String remarks;
+}
@@ -0,0 +1,10 @@
+package com.zeeker.schema;
+
+import lombok.Value;
+
+@Value
+public class ForeignKeyInfo {
+    String column;
+    String referencedTable;
+    String referencedColumn;
+}
@@ -0,0 +1,70 @@
+package com.zeeker.schema;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 本地计算的特征哈希向量: 词项与其字符三元组映射到固定维度后做 L2 归一化.
+ * 不需要模型文件或网络调用, 能容忍拼写和词形上的差异.
+ */
+public class HashingEmbeddingModel implements EmbeddingModel {
+    private static final int DEFAULT_DIMENSION = 512;
+
+    private final int dimension;
+
+    public HashingEmbeddingModel() {
+        this(DEFAULT_DIMENSION);
+    }
+
+    public HashingEmbeddingModel(int dimension) {
+        this.dimension = dimension;
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+        List<Embedding> embeddings = new ArrayList<>(textSegments.size());
+        for (TextSegment segment : textSegments) {
+            embeddings.add(Embedding.from(vectorize(segment.text())));
+        }
+        return Response.from(embeddings);
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    float[] vectorize(String text) {
+        float[] vector = new float[dimension];
+        for (String term : SchemaTerms.tokenize(text)) {
+            add(vector, term, 1.0f);
+            String padded = "#" + term + "#";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                add(vector, padded.substring(i, i + 3), 0.5f);
+            }
+        }
+
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        if (norm > 0) {
+            float scale = (float) (1.0 / Math.sqrt(norm));
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] *= scale;
+            }
+        }
+        return vector;
+    }
+
+    private void add(float[] vector, String feature, float weight) {
+        int hash = feature.hashCode() * 0x9E3779B9;
+        int index = (hash >>> 1) % dimension;
+        vector[index] += (hash & 1) == 0 ? weight : -weight;
+    }
+}
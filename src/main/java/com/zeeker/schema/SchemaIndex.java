@@ -0,0 +1,272 @@
+package com.zeeker.schema;
+
+import com.zeeker.config.RagConfig;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import lombok.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * 表结构检索索引: 用 BM25 (可选叠加本地向量相似度) 对表和列打分, 只把与问题相关的 topK 张表
+ * 以及与它们有外键关系的表放进提示词. token 预算由 {@link com.zeeker.prompt.PromptBuilder} 按这里的排序裁剪.
+ */
+public class SchemaIndex {
+    private static final Logger logger = LoggerFactory.getLogger(SchemaIndex.class);
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int TABLE_NAME_BOOST = 3;
+
+    private final SchemaSnapshot schema;
+    private final List<TableDocument> documents;
+    private final Map<String, Integer> documentFrequencies = new HashMap<>();
+    private final Map<String, Set<String>> neighbours = new HashMap<>();
+    private final double averageDocumentLength;
+
+    private final EmbeddingModel embeddingModel;
+    private final int topK;
+    private final boolean expandForeignKeys;
+    private final double embeddingWeight;
+
+    public SchemaIndex(SchemaSnapshot schema, RagConfig config) {
+        this(schema, config, embeddingModelFor(config));
+    }
+
+    public SchemaIndex(SchemaSnapshot schema, RagConfig config, EmbeddingModel embeddingModel) {
+        this(schema, embeddingModel, config.getSchemaTopK(), config.isSchemaForeignKeyExpansion(),
+                embeddingModel == null ? 0 : config.getSchemaEmbeddingWeight(), Map.of());
+    }
+
+    private SchemaIndex(SchemaSnapshot schema, EmbeddingModel embeddingModel, int topK, boolean expandForeignKeys,
+                        double embeddingWeight, Map<String, TableDocument> reusable) {
+        this.schema = schema;
+        this.embeddingModel = embeddingModel;
+        this.topK = topK;
+        this.expandForeignKeys = expandForeignKeys;
+        this.embeddingWeight = embeddingWeight;
+
+        this.documents = new ArrayList<>(schema.size());
+        long totalLength = 0;
+        int built = 0;
+        for (TableInfo table : schema.getTables()) {
+            TableDocument document = reusable.get(table.getName());
+            if (document == null || !document.table.equals(table)) {
+                document = new TableDocument(table, embeddingModel);
+                built++;
+            }
+            documents.add(document);
+            totalLength += document.length;
+            for (String term : document.termFrequencies.keySet()) {
+                documentFrequencies.merge(term, 1, Integer::sum);
+            }
+            for (ForeignKeyInfo fk : table.getForeignKeys()) {
+                neighbours.computeIfAbsent(table.getName(), k -> new HashSet<>()).add(fk.getReferencedTable());
+                neighbours.computeIfAbsent(fk.getReferencedTable(), k -> new HashSet<>()).add(table.getName());
+            }
+        }
+        this.averageDocumentLength = documents.isEmpty() ? 0 : (double) totalLength / documents.size();
+        logger.info("Schema index built for {} tables ({} re-tokenized, {} terms, embeddings: {})",
+                documents.size(), built, documentFrequencies.size(), embeddingModel != null);
+    }
+
+    /**
+     * 为新的结构快照建立索引, 结构未变化的表沿用已有的分词结果和向量, 只处理变化的表.
+     * 当前索引不受影响, 正在使用它的请求可以继续.
+     */
+    public SchemaIndex rebuild(SchemaSnapshot newSchema) {
+        Map<String, TableDocument> reusable = new HashMap<>(documents.size() * 2);
+        for (TableDocument document : documents) {
+            reusable.put(document.table.getName(), document);
+        }
+        return new SchemaIndex(newSchema, embeddingModel, topK, expandForeignKeys, embeddingWeight, reusable);
+    }
+
+    public static EmbeddingModel embeddingModelFor(RagConfig config) {
+        String embedding = config.getSchemaEmbedding();
+        if ("hashing".equalsIgnoreCase(embedding)) {
+            return new HashingEmbeddingModel();
+        }
+        if (embedding != null && !"none".equalsIgnoreCase(embedding)) {
+            logger.warn("Unknown schema embedding '{}', falling back to lexical scoring only", embedding);
+        }
+        return null;
+    }
+
+    public SchemaSnapshot getSchema() {
+        return schema;
+    }
+
+    /**
+     * 按相关度降序返回得分大于 0 的表.
+     */
+    public List<ScoredTable> rank(String question) {
+        Set<String> queryTerms = new LinkedHashSet<>(SchemaTerms.tokenize(question));
+        double[] lexical = new double[documents.size()];
+        double maxLexical = 0;
+
+        for (int i = 0; i < documents.size(); i++) {
+            TableDocument document = documents.get(i);
+            double score = 0;
+            for (String term : queryTerms) {
+                Integer tf = document.termFrequencies.get(term);
+                if (tf == null) {
+                    continue;
+                }
+                int df = documentFrequencies.get(term);
+                double idf = Math.log(1 + (documents.size() - df + 0.5) / (df + 0.5));
+                double norm = K1 * (1 - B + B * document.length / averageDocumentLength);
+                score += idf * tf * (K1 + 1) / (tf + norm);
+            }
+            lexical[i] = score;
+            maxLexical = Math.max(maxLexical, score);
+        }
+
+        float[] questionVector = embeddingModel == null ? null : embeddingModel.embed(question).content().vector();
+        List<ScoredTable> ranked = new ArrayList<>();
+        for (int i = 0; i < documents.size(); i++) {
+            double score = maxLexical > 0 ? lexical[i] / maxLexical : 0;
+            if (questionVector != null) {
+                double similarity = Math.max(0, cosine(questionVector, documents.get(i).vector));
+                score = (1 - embeddingWeight) * score + embeddingWeight * similarity;
+            }
+            if (score > 0) {
+                ranked.add(new ScoredTable(documents.get(i).table, score));
+            }
+        }
+        ranked.sort(Comparator.comparingDouble(ScoredTable::getScore).reversed());
+        return ranked;
+    }
+
+    /**
+     * 按相关度排列的候选表: 得分最高的 topK 张表, 其后是与它们有外键关系的表 (启用时);
+     * 没有任何匹配时为全部表. 不考虑 token 预算, 检索关闭时返回全部表.
+     */
+    public List<TableInfo> selectRelevant(String question) {
+        List<ScoredTable> ranked = rank(question);
+        if (topK <= 0) {
+            // 不检索时返回全部表, 匹配的表排在前面, 超出 token 预算时先裁剪后面的表
+            LinkedHashSet<TableInfo> all = new LinkedHashSet<>();
+            ranked.forEach(scored -> all.add(scored.getTable()));
+            all.addAll(schema.getTables());
+            return new ArrayList<>(all);
+        }
+
+        Map<String, Double> scores = new HashMap<>();
+        for (ScoredTable scored : ranked) {
+            scores.put(scored.getTable().getName(), scored.getScore());
+        }
+
+        LinkedHashSet<TableInfo> candidates = new LinkedHashSet<>();
+        for (int i = 0; i < ranked.size() && i < topK; i++) {
+            candidates.add(ranked.get(i).getTable());
+        }
+        if (candidates.isEmpty()) {
+            // 没有任何匹配时按名称顺序填满预算
+            candidates.addAll(schema.getTables());
+        } else if (expandForeignKeys) {
+            for (TableInfo table : new ArrayList<>(candidates)) {
+                neighbours.getOrDefault(table.getName(), Set.of()).stream()
+                        .sorted(Comparator.comparingDouble((String name) -> scores.getOrDefault(name, 0.0)).reversed()
+                                .thenComparing(Comparator.naturalOrder()))
+                        .map(schema::getTable)
+                        .filter(neighbour -> neighbour != null)
+                        .forEach(candidates::add);
+            }
+        }
+
+        return new ArrayList<>(candidates);
+    }
+
+    /**
+     * 名称或备注与问题中的词匹配的列.
+     */
+    public static Predicate<ColumnInfo> matchingColumns(String question) {
+        Set<String> queryTerms = new HashSet<>(SchemaTerms.tokenize(question));
+        return column -> matches(column, queryTerms);
+    }
+
+    /**
+     * 放不下完整的表时保留的列: 匹配列, 外键列和首列.
+     */
+    public static Predicate<ColumnInfo> essentialColumns(TableInfo table, Predicate<ColumnInfo> matching) {
+        return column -> column == table.getColumns().get(0)
+                || table.isForeignKeyColumn(column.getName())
+                || matching.test(column);
+    }
+
+    private static boolean matches(ColumnInfo column, Set<String> queryTerms) {
+        for (String term : SchemaTerms.tokenize(column.getName() + " " + nullToEmpty(column.getRemarks()))) {
+            if (queryTerms.contains(term)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0;
+        double normA = 0;
+        double normB = 0;
+        for (int i = 0; i < a.length && i < b.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return normA == 0 || normB == 0 ? 0 : dot / Math.sqrt(normA * normB);
+    }
+
+    @Value
+    public static class ScoredTable {
+        TableInfo table;
+        double score;
+    }
+
+    private static class TableDocument {
+        private final TableInfo table;
+        private final Map<String, Integer> termFrequencies = new HashMap<>();
+        private final int length;
+        private final float[] vector;
+
+        TableDocument(TableInfo table, EmbeddingModel embeddingModel) {
+            this.table = table;
+            StringBuilder text = new StringBuilder();
+            int termCount = 0;
+
+            List<String> nameTerms = SchemaTerms.tokenize(table.getName() + " " + nullToEmpty(table.getRemarks()));
+            for (int i = 0; i < TABLE_NAME_BOOST; i++) {
+                for (String term : nameTerms) {
+                    termFrequencies.merge(term, 1, Integer::sum);
+                    termCount++;
+                }
+            }
+            text.append(table.getName()).append(' ').append(nullToEmpty(table.getRemarks()));
+
+            for (ColumnInfo column : table.getColumns()) {
+                for (String term : SchemaTerms.tokenize(column.getName() + " " + nullToEmpty(column.getRemarks()))) {
+                    termFrequencies.merge(term, 1, Integer::sum);
+                    termCount++;
+                }
+                text.append(' ').append(column.getName()).append(' ').append(nullToEmpty(column.getRemarks()));
+            }
+
+            this.length = termCount;
+            this.vector = embeddingModel == null ? null
+                    : embeddingModel.embed(TextSegment.from(text.toString())).content().vector();
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package com.zeeker.schema;
+
+import com.zeeker.concurrent.VirtualThreads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 批量读取数据库结构. MySQL/MariaDB 用三条 information_schema 查询一次取回全部表, 列和外键;
+ * 其他数据库用一次 getColumns 取回所有列, 外键按批次分发到多个连接池连接上并行读取.
+ * 也可以只读取指定的表, 配合 {@link #tableSignatures()} 做增量刷新.
+ */
+public class SchemaLoader {
+    private static final Logger logger = LoggerFactory.getLogger(SchemaLoader.class);
+    private static final int BATCH_SIZE = 50;
+    // IN 列表的参数个数上限
+    private static final int FILTER_BATCH_SIZE = 500;
+
+    private static final String MYSQL_TABLES =
+            "SELECT TABLE_NAME, TABLE_COMMENT FROM information_schema.TABLES "
+                    + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_TYPE = 'BASE TABLE'";
+    private static final String MYSQL_COLUMNS =
+            "SELECT TABLE_NAME, COLUMN_NAME, DATA_TYPE, COLUMN_COMMENT FROM information_schema.COLUMNS "
+                    + "WHERE TABLE_SCHEMA = DATABASE()";
+    private static final String MYSQL_COLUMNS_ORDER = " ORDER BY TABLE_NAME, ORDINAL_POSITION";
+    private static final String MYSQL_FOREIGN_KEYS =
+            "SELECT TABLE_NAME, COLUMN_NAME, REFERENCED_TABLE_NAME, REFERENCED_COLUMN_NAME "
+                    + "FROM information_schema.KEY_COLUMN_USAGE "
+                    + "WHERE TABLE_SCHEMA = DATABASE() AND REFERENCED_TABLE_NAME IS NOT NULL";
+    private static final String MYSQL_FOREIGN_KEYS_ORDER = " ORDER BY TABLE_NAME, CONSTRAINT_NAME, ORDINAL_POSITION";
+
+    // 变更信号: 建表时间 + 列定义的数量与 CRC32 之和, 外键同理. 只做聚合, 不传输列明细
+    private static final String MYSQL_TABLE_SIGNATURES =
+            "SELECT t.TABLE_NAME, t.CREATE_TIME, t.TABLE_COMMENT, COUNT(c.COLUMN_NAME), "
+                    + "COALESCE(SUM(CRC32(CONCAT_WS('|', c.ORDINAL_POSITION, c.COLUMN_NAME, c.DATA_TYPE, c.COLUMN_COMMENT))), 0) "
+                    + "FROM information_schema.TABLES t LEFT JOIN information_schema.COLUMNS c "
+                    + "ON c.TABLE_SCHEMA = t.TABLE_SCHEMA AND c.TABLE_NAME = t.TABLE_NAME "
+                    + "WHERE t.TABLE_SCHEMA = DATABASE() AND t.TABLE_TYPE = 'BASE TABLE' "
+                    + "GROUP BY t.TABLE_NAME, t.CREATE_TIME, t.TABLE_COMMENT";
+    private static final String MYSQL_FOREIGN_KEY_SIGNATURES =
+            "SELECT TABLE_NAME, COUNT(*), "
+                    + "SUM(CRC32(CONCAT_WS('|', COLUMN_NAME, REFERENCED_TABLE_NAME, REFERENCED_COLUMN_NAME))) "
+                    + "FROM information_schema.KEY_COLUMN_USAGE "
+                    + "WHERE TABLE_SCHEMA = DATABASE() AND REFERENCED_TABLE_NAME IS NOT NULL GROUP BY TABLE_NAME";
+    // 数据变化信号, 只有 MySQL/MariaDB 提供
+    private static final String MYSQL_UPDATE_TIMES =
+            "SELECT TABLE_NAME, UPDATE_TIME FROM information_schema.TABLES "
+                    + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_TYPE = 'BASE TABLE'";
+
+    private final DataSource dataSource;
+    private final int parallelism;
+
+    public SchemaLoader(DataSource dataSource, int parallelism) {
+        this.dataSource = dataSource;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public SchemaSnapshot loadAll() {
+        long start = System.nanoTime();
+        try {
+            SchemaSnapshot snapshot = new SchemaSnapshot(build(isMySql() ? loadFromInformationSchema(null) : loadFromMetaData(null)));
+            logger.info("Loaded schema for {} tables in {} ms", snapshot.size(), (System.nanoTime() - start) / 1_000_000);
+            return snapshot;
+        } catch (SQLException e) {
+            logger.error("Error loading database schema", e);
+            throw new RuntimeException("Failed to load database schema", e);
+        }
+    }
+
+    /**
+     * 只重新读取指定的表; 已不存在的表不会出现在结果中.
+     */
+    public List<TableInfo> loadTables(Collection<String> names) {
+        if (names.isEmpty()) {
+            return List.of();
+        }
+        long start = System.nanoTime();
+        try {
+            List<TableInfo> tables = new ArrayList<>(names.size());
+            List<String> remaining = new ArrayList<>(names);
+            boolean mySql = isMySql();
+            for (int i = 0; i < remaining.size(); i += FILTER_BATCH_SIZE) {
+                List<String> batch = remaining.subList(i, Math.min(i + FILTER_BATCH_SIZE, remaining.size()));
+                tables.addAll(build(mySql ? loadFromInformationSchema(batch) : loadFromMetaData(batch)));
+            }
+            logger.info("Reloaded schema for {} tables in {} ms", tables.size(), (System.nanoTime() - start) / 1_000_000);
+            return tables;
+        } catch (SQLException e) {
+            logger.error("Error loading schema for tables {}", names, e);
+            throw new RuntimeException("Failed to load database schema", e);
+        }
+    }
+
+    /**
+     * 每张表的结构签名, 签名不同即表示表结构发生了变化. 签名只用于与上一次的结果比较.
+     * MySQL 上是两条聚合查询; 其他数据库用一次 getColumns 在本地计算, 不覆盖外键变化.
+     */
+    public Map<String, String> tableSignatures() {
+        try {
+            return isMySql() ? signaturesFromInformationSchema() : signaturesFromMetaData();
+        } catch (SQLException e) {
+            logger.error("Error reading schema change signals", e);
+            throw new RuntimeException("Failed to read schema change signals", e);
+        }
+    }
+
+    /**
+     * 每张表最后一次写入的时间 (information_schema.TABLES.UPDATE_TIME), 只用于与上一次的结果比较;
+     * 不是 MySQL/MariaDB 时返回 null. MySQL 8 缓存该列, 需要 information_schema_stats_expiry = 0 才能及时反映写入.
+     */
+    public Map<String, String> tableUpdateTimes() {
+        try {
+            if (!isMySql()) {
+                return null;
+            }
+            Map<String, String> updateTimes = new HashMap<>();
+            try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(MYSQL_UPDATE_TIMES)) {
+                while (rs.next()) {
+                    updateTimes.put(rs.getString(1), rs.getString(2));
+                }
+            }
+            return updateTimes;
+        } catch (SQLException e) {
+            logger.error("Error reading table update times", e);
+            throw new RuntimeException("Failed to read table update times", e);
+        }
+    }
+
+    boolean isMySql() throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            String product = conn.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT);
+            return product.contains("mysql") || product.contains("mariadb");
+        }
+    }
+
+    private Map<String, String> signaturesFromInformationSchema() throws SQLException {
+        Map<String, String> signatures = new HashMap<>();
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery(MYSQL_TABLE_SIGNATURES)) {
+                while (rs.next()) {
+                    signatures.put(rs.getString(1),
+                            rs.getString(2) + '|' + rs.getString(3) + '|' + rs.getLong(4) + '|' + rs.getLong(5));
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery(MYSQL_FOREIGN_KEY_SIGNATURES)) {
+                while (rs.next()) {
+                    String foreignKeys = "|fk|" + rs.getLong(2) + '|' + rs.getLong(3);
+                    signatures.computeIfPresent(rs.getString(1), (name, signature) -> signature + foreignKeys);
+                }
+            }
+        }
+        return signatures;
+    }
+
+    private Map<String, String> signaturesFromMetaData() throws SQLException {
+        Map<String, StringBuilder> definitions = new HashMap<>();
+        try (Connection conn = dataSource.getConnection()) {
+            DatabaseMetaData metaData = conn.getMetaData();
+            String catalog = conn.getCatalog();
+            try (ResultSet rs = metaData.getTables(catalog, null, "%", new String[]{"TABLE"})) {
+                while (rs.next()) {
+                    if (!isSystemSchema(rs.getString("TABLE_SCHEM"))) {
+                        definitions.put(rs.getString("TABLE_NAME"), new StringBuilder().append(rs.getString("REMARKS")));
+                    }
+                }
+            }
+            try (ResultSet rs = metaData.getColumns(catalog, null, "%", "%")) {
+                while (rs.next()) {
+                    StringBuilder definition = definitions.get(rs.getString("TABLE_NAME"));
+                    if (definition != null && !isSystemSchema(rs.getString("TABLE_SCHEM"))) {
+                        definition.append('|').append(rs.getString("COLUMN_NAME"))
+                                .append(':').append(rs.getString("TYPE_NAME"))
+                                .append(':').append(rs.getString("REMARKS"));
+                    }
+                }
+            }
+        }
+        Map<String, String> signatures = new HashMap<>(definitions.size() * 2);
+        definitions.forEach((name, definition) -> signatures.put(name, SchemaSnapshot.fingerprint(definition.toString())));
+        return signatures;
+    }
+
+    /**
+     * @param names 为 null 时读取整个库, 否则只读取这些表
+     */
+    private Collection<TableBuilder> loadFromInformationSchema(List<String> names) throws SQLException {
+        Map<String, TableBuilder> tables = new LinkedHashMap<>();
+        String filter = names == null ? "" : " AND TABLE_NAME IN (" + String.join(",", Collections.nCopies(names.size(), "?")) + ")";
+        try (Connection conn = dataSource.getConnection()) {
+            try (ResultSet rs = query(conn, MYSQL_TABLES + filter, names)) {
+                while (rs.next()) {
+                    String name = rs.getString(1);
+                    tables.put(name, new TableBuilder(name, rs.getString(2)));
+                }
+            }
+            try (ResultSet rs = query(conn, MYSQL_COLUMNS + filter + MYSQL_COLUMNS_ORDER, names)) {
+                while (rs.next()) {
+                    TableBuilder table = tables.get(rs.getString(1));
+                    if (table != null) {
+                        table.columns.add(new ColumnInfo(rs.getString(2),
+                                rs.getString(3).toUpperCase(Locale.ROOT), emptyToNull(rs.getString(4))));
+                    }
+                }
+            }
+            try (ResultSet rs = query(conn, MYSQL_FOREIGN_KEYS + filter + MYSQL_FOREIGN_KEYS_ORDER, names)) {
+                while (rs.next()) {
+                    TableBuilder table = tables.get(rs.getString(1));
+                    if (table != null) {
+                        table.foreignKeys.add(new ForeignKeyInfo(rs.getString(2), rs.getString(3), rs.getString(4)));
+                    }
+                }
+            }
+        }
+        return tables.values();
+    }
+
+    /**
+     * 结果集关闭时一并关闭语句.
+     */
+    private static ResultSet query(Connection conn, String sql, List<String> parameters) throws SQLException {
+        PreparedStatement stmt = conn.prepareStatement(sql);
+        try {
+            if (parameters != null) {
+                for (int i = 0; i < parameters.size(); i++) {
+                    stmt.setString(i + 1, parameters.get(i));
+                }
+            }
+            stmt.closeOnCompletion();
+            return stmt.executeQuery();
+        } catch (SQLException e) {
+            stmt.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param names 为 null 时读取整个库, 否则只读取这些表
+     */
+    private Collection<TableBuilder> loadFromMetaData(List<String> names) throws SQLException {
+        Map<String, TableBuilder> tables = new LinkedHashMap<>();
+        try (Connection conn = dataSource.getConnection()) {
+            DatabaseMetaData metaData = conn.getMetaData();
+            String catalog = conn.getCatalog();
+
+            if (names == null) {
+                readTables(metaData.getTables(catalog, null, "%", new String[]{"TABLE"}), tables);
+                // 一次调用取回所有表的列
+                readColumns(metaData.getColumns(catalog, null, "%", "%"), tables);
+            } else {
+                for (String name : names) {
+                    readTables(metaData.getTables(catalog, null, name, new String[]{"TABLE"}), tables);
+                    readColumns(metaData.getColumns(catalog, null, name, "%"), tables);
+                }
+            }
+        }
+
+        loadForeignKeysInParallel(new ArrayList<>(tables.values()));
+        return tables.values();
+    }
+
+    private static void readTables(ResultSet tableRows, Map<String, TableBuilder> tables) throws SQLException {
+        try (ResultSet rs = tableRows) {
+            while (rs.next()) {
+                if (isSystemSchema(rs.getString("TABLE_SCHEM"))) {
+                    continue;
+                }
+                String name = rs.getString("TABLE_NAME");
+                tables.put(name, new TableBuilder(name, emptyToNull(rs.getString("REMARKS"))));
+            }
+        }
+    }
+
+    private static void readColumns(ResultSet columnRows, Map<String, TableBuilder> tables) throws SQLException {
+        try (ResultSet rs = columnRows) {
+            while (rs.next()) {
+                if (isSystemSchema(rs.getString("TABLE_SCHEM"))) {
+                    continue;
+                }
+                TableBuilder table = tables.get(rs.getString("TABLE_NAME"));
+                if (table != null) {
+                    table.columns.add(new ColumnInfo(rs.getString("COLUMN_NAME"),
+                            rs.getString("TYPE_NAME"), emptyToNull(rs.getString("REMARKS"))));
+                }
+            }
+        }
+    }
+
+    /**
+     * 外键没有通配接口, 按批次分发到多个连接上并行读取.
+     */
+    private void loadForeignKeysInParallel(List<TableBuilder> tables) throws SQLException {
+        List<List<TableBuilder>> batches = new ArrayList<>();
+        for (int i = 0; i < tables.size(); i += BATCH_SIZE) {
+            batches.add(tables.subList(i, Math.min(i + BATCH_SIZE, tables.size())));
+        }
+        if (batches.isEmpty()) {
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, batches.size()),
+                VirtualThreads.daemonThreads("schema-loader"));
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (List<TableBuilder> batch : batches) {
+                futures.add(executor.submit(() -> {
+                    loadForeignKeys(batch);
+                    return null;
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while loading foreign keys", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException("Failed to load foreign keys", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void loadForeignKeys(Collection<TableBuilder> batch) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            DatabaseMetaData metaData = conn.getMetaData();
+            String catalog = conn.getCatalog();
+            for (TableBuilder table : batch) {
+                try (ResultSet rs = metaData.getImportedKeys(catalog, null, table.name)) {
+                    while (rs.next()) {
+                        table.foreignKeys.add(new ForeignKeyInfo(rs.getString("FKCOLUMN_NAME"),
+                                rs.getString("PKTABLE_NAME"), rs.getString("PKCOLUMN_NAME")));
+                    }
+                }
+            }
+        }
+    }
+
+    private static List<TableInfo> build(Collection<TableBuilder> builders) {
+        List<TableInfo> tables = new ArrayList<>(builders.size());
+        for (TableBuilder builder : builders) {
+            tables.add(new TableInfo(builder.name, builder.remarks, builder.columns, builder.foreignKeys));
+            logger.debug("Loaded schema for table: {} with {} columns", builder.name, builder.columns.size());
+        }
+        return tables;
+    }
+
+    private static boolean isSystemSchema(String schema) {
+        return "INFORMATION_SCHEMA".equalsIgnoreCase(schema);
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    private static final class TableBuilder {
+        private final String name;
+        private final String remarks;
+        private final List<ColumnInfo> columns = new ArrayList<>();
+        private final List<ForeignKeyInfo> foreignKeys = new ArrayList<>();
+
+        TableBuilder(String name, String remarks) {
+            this.name = name;
+            this.remarks = emptyToNull(remarks);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.zeeker.schema;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 增量结构刷新: 比较两次 {@link SchemaLoader#tableSignatures()} 的结果, 只重新读取签名变化或新增的表,
+ * 在旧快照的基础上生成新快照. 未变化的表对象 (以及它们缓存的描述文本) 原样复用.
+ * 非线程安全, 由调用方串行调用.
+ */
+public class SchemaRefresher {
+    private static final Logger logger = LoggerFactory.getLogger(SchemaRefresher.class);
+
+    private final SchemaLoader loader;
+    private Map<String, String> signatures;
+
+    public SchemaRefresher(SchemaLoader loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * 记录当前签名作为比较基准. 应在完整读取结构之前调用, 这样读取期间发生的变化会在下一次检查时被发现.
+     */
+    public void captureBaseline() {
+        signatures = loader.tableSignatures();
+    }
+
+    /**
+     * 检查结构变化; 没有变化时返回 null, 否则返回应用变化后的新快照.
+     */
+    public SchemaSnapshot refresh(SchemaSnapshot current) {
+        Map<String, String> live = loader.tableSignatures();
+        Map<String, String> previous = signatures;
+        signatures = live;
+        if (previous == null) {
+            // 还没有基准 (首次完整读取尚未完成), 本次只建立基准
+            return null;
+        }
+
+        Set<String> changed = new TreeSet<>();
+        for (Map.Entry<String, String> entry : live.entrySet()) {
+            String name = entry.getKey();
+            if (!Objects.equals(entry.getValue(), previous.get(name)) || current.getTable(name) == null) {
+                changed.add(name);
+            }
+        }
+        Set<String> removed = new TreeSet<>();
+        for (TableInfo table : current.getTables()) {
+            if (!live.containsKey(table.getName())) {
+                removed.add(table.getName());
+            }
+        }
+        if (changed.isEmpty() && removed.isEmpty()) {
+            return null;
+        }
+
+        List<TableInfo> reloaded = loader.loadTables(changed);
+        // 两次查询之间被删除的表
+        Set<String> missing = new HashSet<>(changed);
+        for (TableInfo table : reloaded) {
+            missing.remove(table.getName());
+        }
+        removed.addAll(missing);
+
+        logger.info("Schema change detected: {} tables changed or added {}, {} removed {}",
+                reloaded.size(), changed, removed.size(), removed);
+        return current.withChanges(reloaded, removed);
+    }
+}
@@ -0,0 +1,88 @@
+package com.zeeker.schema;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 数据库结构的不可变快照, 表按名称排序以保证描述文本稳定.
+ */
+public class SchemaSnapshot {
+    private final Map<String, TableInfo> tables;
+    private final String description;
+    private final String fingerprint;
+
+    public SchemaSnapshot(Collection<TableInfo> tables) {
+        Map<String, TableInfo> sorted = new TreeMap<>();
+        for (TableInfo table : tables) {
+            sorted.put(table.getName(), table);
+        }
+        this.tables = Collections.unmodifiableMap(new LinkedHashMap<>(sorted));
+        this.description = describe(this.tables.values());
+        this.fingerprint = fingerprint(description);
+    }
+
+    /**
+     * 返回替换 updated 中的表并删除 removed 中的表后的新快照, 其余表对象原样复用.
+     */
+    public SchemaSnapshot withChanges(Collection<TableInfo> updated, Collection<String> removed) {
+        Map<String, TableInfo> merged = new TreeMap<>(tables);
+        for (String name : removed) {
+            merged.remove(name);
+        }
+        for (TableInfo table : updated) {
+            merged.put(table.getName(), table);
+        }
+        return new SchemaSnapshot(merged.values());
+    }
+
+    public Collection<TableInfo> getTables() {
+        return tables.values();
+    }
+
+    public TableInfo getTable(String name) {
+        return tables.get(name);
+    }
+
+    /**
+     * 结构内容的摘要, 任何表, 列, 类型或外键变化都会改变它.
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public int size() {
+        return tables.size();
+    }
+
+    public String describe() {
+        return description;
+    }
+
+    public static String describe(Collection<TableInfo> tables) {
+        StringBuilder schema = new StringBuilder();
+        schema.append("Database Schema:\n");
+        for (TableInfo table : tables) {
+            table.describe(schema);
+        }
+        return schema.toString();
+    }
+
+    static String fingerprint(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.zeeker.schema;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 表结构快照的磁盘存储, 使重启时无需重新读取元数据.
+ * 文件格式: 魔数, 格式版本, 数据源标识, 指纹, 然后是逐表的名称, 注释, 列和外键.
+ * 版本或数据源不匹配, 以及内容与指纹不一致的文件一律视为无效.
+ */
+public class SchemaSnapshotStore {
+    private static final Logger logger = LoggerFactory.getLogger(SchemaSnapshotStore.class);
+    private static final int MAGIC = 0x57545353; // "WTSS"
+    private static final int FORMAT_VERSION = 1;
+
+    private final Path path;
+    private final String source;
+
+    /**
+     * @param source 数据源标识 (如 JDBC URL + 用户名), 防止加载其他库的快照
+     */
+    public SchemaSnapshotStore(Path path, String source) {
+        this.path = path;
+        this.source = source;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * 读取快照; 文件不存在或无效时返回 null.
+     */
+    public SchemaSnapshot load() {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try (InputStream file = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file))) {
+            if (in.readInt() != MAGIC) {
+                logger.warn("Ignoring schema snapshot {}: not a snapshot file", path);
+                return null;
+            }
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                logger.info("Ignoring schema snapshot {}: format version {} (expected {})", path, version, FORMAT_VERSION);
+                return null;
+            }
+            if (!source.equals(readString(in))) {
+                logger.info("Ignoring schema snapshot {}: written for a different data source", path);
+                return null;
+            }
+            String fingerprint = readString(in);
+
+            int tableCount = in.readInt();
+            List<TableInfo> tables = new ArrayList<>(tableCount);
+            for (int t = 0; t < tableCount; t++) {
+                String name = readString(in);
+                String remarks = readString(in);
+                int columnCount = in.readInt();
+                List<ColumnInfo> columns = new ArrayList<>(columnCount);
+                for (int c = 0; c < columnCount; c++) {
+                    columns.add(new ColumnInfo(readString(in), readString(in), readString(in)));
+                }
+                int keyCount = in.readInt();
+                List<ForeignKeyInfo> foreignKeys = new ArrayList<>(keyCount);
+                for (int k = 0; k < keyCount; k++) {
+                    foreignKeys.add(new ForeignKeyInfo(readString(in), readString(in), readString(in)));
+                }
+                tables.add(new TableInfo(name, remarks, columns, foreignKeys));
+            }
+
+            SchemaSnapshot snapshot = new SchemaSnapshot(tables);
+            if (!snapshot.getFingerprint().equals(fingerprint)) {
+                logger.warn("Ignoring schema snapshot {}: content does not match its fingerprint", path);
+                return null;
+            }
+            return snapshot;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Ignoring unreadable schema snapshot {}", path, e);
+            return null;
+        }
+    }
+
+    /**
+     * 先写临时文件再原子替换, 进程中途退出不会留下半个快照.
+     */
+    public void save(SchemaSnapshot snapshot) {
+        try {
+            Path directory = path.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+            try {
+                write(temp, snapshot);
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            logger.info("Saved schema snapshot {} ({} tables, fingerprint {})", path, snapshot.size(), snapshot.getFingerprint());
+        } catch (IOException e) {
+            logger.warn("Failed to save schema snapshot {}", path, e);
+        }
+    }
+
+    private void write(Path target, SchemaSnapshot snapshot) throws IOException {
+        try (OutputStream file = Files.newOutputStream(target);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            writeString(out, source);
+            writeString(out, snapshot.getFingerprint());
+            out.writeInt(snapshot.size());
+            for (TableInfo table : snapshot.getTables()) {
+                writeString(out, table.getName());
+                writeString(out, table.getRemarks());
+                out.writeInt(table.getColumns().size());
+                for (ColumnInfo column : table.getColumns()) {
+                    writeString(out, column.getName());
+                    writeString(out, column.getType());
+                    writeString(out, column.getRemarks());
+                }
+                out.writeInt(table.getForeignKeys().size());
+                for (ForeignKeyInfo fk : table.getForeignKeys()) {
+                    writeString(out, fk.getColumn());
+                    writeString(out, fk.getReferencedTable());
+                    writeString(out, fk.getReferencedColumn());
+                }
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,82 @@
+package com.zeeker.schema;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 问题与表结构共用的分词: 拆分下划线与驼峰命名, 英文做简单的复数还原, 中文按二元组切分.
+ */
+public final class SchemaTerms {
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "the", "of", "in", "on", "for", "to", "by", "with", "and", "or", "is", "are", "was", "were",
+            "what", "which", "who", "how", "many", "much", "show", "list", "me", "all", "each", "per", "from",
+            "give", "get", "find", "do", "does", "did", "that", "this", "there", "their", "have", "has");
+
+    private SchemaTerms() {
+    }
+
+    public static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return terms;
+        }
+
+        StringBuilder word = new StringBuilder();
+        StringBuilder han = new StringBuilder();
+        char previous = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN) {
+                flushWord(word, terms);
+                han.append(c);
+            } else if (Character.isLetterOrDigit(c)) {
+                flushHan(han, terms);
+                // 驼峰边界: orderItem -> order item
+                if (word.length() > 0 && Character.isUpperCase(c) && Character.isLowerCase(previous)) {
+                    flushWord(word, terms);
+                }
+                word.append(c);
+            } else {
+                flushWord(word, terms);
+                flushHan(han, terms);
+            }
+            previous = c;
+        }
+        flushWord(word, terms);
+        flushHan(han, terms);
+        return terms;
+    }
+
+    private static void flushWord(StringBuilder word, List<String> terms) {
+        if (word.length() == 0) {
+            return;
+        }
+        String term = stem(word.toString().toLowerCase(Locale.ROOT));
+        word.setLength(0);
+        if (!STOP_WORDS.contains(term)) {
+            terms.add(term);
+        }
+    }
+
+    private static void flushHan(StringBuilder han, List<String> terms) {
+        if (han.length() == 1) {
+            terms.add(han.toString());
+        }
+        for (int i = 0; i + 1 < han.length(); i++) {
+            terms.add(han.substring(i, i + 2));
+        }
+        han.setLength(0);
+    }
+
+    private static String stem(String term) {
+        if (term.length() > 4 && term.endsWith("ies")) {
+            return term.substring(0, term.length() - 3) + "y";
+        }
+        if (term.length() > 3 && term.endsWith("s") && !term.endsWith("ss")) {
+            return term.substring(0, term.length() - 1);
+        }
+        return term;
+    }
+}
@@ -0,0 +1,149 @@
+package com.zeeker.schema;
+
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import lombok.Value;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Predicate;
+
+@Value
+public class TableInfo {
+    // 紧凑描述中的类型缩写
+    private static final Map<String, String> TYPE_ABBREVIATIONS = Map.ofEntries(
+            Map.entry("character varying", "varchar"),
+            Map.entry("character", "char"),
+            Map.entry("integer", "int"),
+            Map.entry("smallint", "int"),
+            Map.entry("tinyint", "int"),
+            Map.entry("decimal", "dec"),
+            Map.entry("numeric", "dec"),
+            Map.entry("double precision", "double"),
+            Map.entry("boolean", "bool"),
+            Map.entry("timestamp", "ts"),
+            Map.entry("datetime", "ts"),
+            Map.entry("timestamp with time zone", "tstz"),
+            Map.entry("character large object", "text"),
+            Map.entry("binary large object", "blob"));
+
+    String name;
+    String remarks;
+    List<ColumnInfo> columns;
+    List<ForeignKeyInfo> foreignKeys;
+    // 完整描述文本在构造时生成一次, 结构刷新时未变化的表直接复用
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    String description;
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    String compactDescription;
+
+    public TableInfo(String name, String remarks, List<ColumnInfo> columns, List<ForeignKeyInfo> foreignKeys) {
+        this.name = name;
+        this.remarks = remarks;
+        this.columns = List.copyOf(columns);
+        this.foreignKeys = List.copyOf(foreignKeys);
+        StringBuilder sb = new StringBuilder();
+        describe(sb, column -> true);
+        this.description = sb.toString();
+        sb.setLength(0);
+        describeCompact(sb, column -> true);
+        this.compactDescription = sb.toString();
+    }
+
+    public boolean isForeignKeyColumn(String column) {
+        for (ForeignKeyInfo fk : foreignKeys) {
+            if (fk.getColumn().equalsIgnoreCase(column)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 追加该表的描述文本, 只输出满足 columnFilter 的列; 外键始终输出.
+     */
+    public void describe(StringBuilder sb, Predicate<ColumnInfo> columnFilter) {
+        sb.append("Table: ").append(name);
+        if (remarks != null && !remarks.isEmpty()) {
+            sb.append(" -- ").append(remarks);
+        }
+        sb.append("\n");
+        sb.append("Columns:\n");
+
+        for (ColumnInfo column : columns) {
+            if (!columnFilter.test(column)) {
+                continue;
+            }
+            sb.append("  - ").append(column.getName()).append(" (").append(column.getType()).append(")");
+            if (column.getRemarks() != null && !column.getRemarks().isEmpty()) {
+                sb.append(" -- ").append(column.getRemarks());
+            }
+            sb.append("\n");
+        }
+
+        if (!foreignKeys.isEmpty()) {
+            sb.append("Foreign keys:\n");
+            for (ForeignKeyInfo fk : foreignKeys) {
+                sb.append("  - ").append(fk.getColumn()).append(" -> ")
+                        .append(fk.getReferencedTable()).append(".").append(fk.getReferencedColumn()).append("\n");
+            }
+        }
+        sb.append("\n");
+    }
+
+    public void describe(StringBuilder sb) {
+        sb.append(description);
+    }
+
+    /**
+     * 追加一行紧凑描述, 形如 orders(id bigint, amount dec "含税", customer_id bigint>customer.id) -- 备注.
+     * 只输出满足 columnFilter 的列, 外键列始终输出.
+     */
+    public void describeCompact(StringBuilder sb, Predicate<ColumnInfo> columnFilter) {
+        sb.append(name).append('(');
+        boolean first = true;
+        for (ColumnInfo column : columns) {
+            ForeignKeyInfo fk = foreignKey(column.getName());
+            if (fk == null && !columnFilter.test(column)) {
+                continue;
+            }
+            if (!first) {
+                sb.append(", ");
+            }
+            first = false;
+            sb.append(column.getName()).append(' ').append(abbreviateType(column.getType()));
+            if (column.getRemarks() != null && !column.getRemarks().isEmpty()) {
+                sb.append(" \"").append(column.getRemarks()).append('"');
+            }
+            if (fk != null) {
+                sb.append('>').append(fk.getReferencedTable()).append('.').append(fk.getReferencedColumn());
+            }
+        }
+        sb.append(')');
+        if (remarks != null && !remarks.isEmpty()) {
+            sb.append(" -- ").append(remarks);
+        }
+        sb.append('\n');
+    }
+
+    public void describeCompact(StringBuilder sb) {
+        sb.append(compactDescription);
+    }
+
+    private ForeignKeyInfo foreignKey(String column) {
+        for (ForeignKeyInfo fk : foreignKeys) {
+            if (fk.getColumn().equalsIgnoreCase(column)) {
+                return fk;
+            }
+        }
+        return null;
+    }
+
+    static String abbreviateType(String type) {
+        String lower = type == null ? "" : type.toLowerCase(Locale.ROOT);
+        return TYPE_ABBREVIATIONS.getOrDefault(lower, lower);
+    }
+}
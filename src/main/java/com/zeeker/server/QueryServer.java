@@ -0,0 +1,279 @@
+package com.zeeker.server;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.zeeker.concurrent.VirtualThreads;
+import com.zeeker.config.ServerConfig;
+import com.zeeker.export.ExportedResult;
+import com.zeeker.metrics.MetricsReport;
+import com.zeeker.service.DatabaseService;
+import com.zeeker.service.RagService;
+import com.zeeker.service.StreamedAnswer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * JSON 问答 HTTP 服务. 每个请求在独立的 (虚拟) 线程上处理;
+ * 同时处理的问题数受准入信号量限制, 默认与数据库连接池上限一致, 超时未获准入的请求返回 503.
+ * 请求体带 "stream": true 或 Accept: text/event-stream 时以 SSE 逐个 token 返回回答;
+ * 带 "export": true 时完整结果导出到服务端文件 (需配置 database.exportPath), 响应中的 export 给出文件位置和行数.
+ *
+ * <pre>
+ * POST /query  {"question": "..."}                  ->  {"question": "...", "answer": "...", "elapsedMillis": 123}
+ * POST /query  {"question": "...", "stream": true}  ->  event: token {"text": "..."} ... event: done {..., "timeToFirstTokenMillis": 45}
+ * POST /query  {"question": "...", "export": true}  ->  {..., "export": {"file": "...", "format": "csv", "rows": 123, "bytes": 4567}}
+ * GET  /health                                      ->  {"status": "UP", "inFlight": 0}
+ * GET  /metrics                                     ->  分阶段延迟分位数, token 数, 结果规模, 缓存命中率, 连接池与慢 SQL
+ * </pre>
+ */
+public class QueryServer {
+    private static final Logger logger = LoggerFactory.getLogger(QueryServer.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final byte[] EVENT_END = "\n\n".getBytes(StandardCharsets.UTF_8);
+
+    static {
+        // JDK HttpServer 默认不开启 TCP_NODELAY, 响应头和正文分开写出时会碰上 Nagle 与延迟 ACK, 每个响应多等约 40ms.
+        // 该属性在第一次创建 HttpServer 时读取
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final ServerConfig config;
+    private final RagService ragService;
+    private final DatabaseService databaseService;
+    private final Semaphore admission;
+    private final int admissionLimit;
+    private final AtomicBoolean stopping = new AtomicBoolean();
+    private final CountDownLatch terminated = new CountDownLatch(1);
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public QueryServer(ServerConfig config, int databaseMaxActive, RagService ragService, DatabaseService databaseService) {
+        this.config = config;
+        this.ragService = ragService;
+        this.databaseService = databaseService;
+        this.admissionLimit = config.getMaxConcurrentQueries() > 0 ? config.getMaxConcurrentQueries() : databaseMaxActive;
+        this.admission = new Semaphore(admissionLimit, true);
+    }
+
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(config.getHost(), config.getPort()), 0);
+        executor = VirtualThreads.newPerTaskExecutor("query-server");
+        server.setExecutor(executor);
+        server.createContext("/query", this::handleQuery);
+        server.createContext("/health", this::handleHealth);
+        server.createContext("/metrics", this::handleMetrics);
+        server.start();
+        logger.info("Query server listening on {}:{} (admission limit {}, virtual threads: {})",
+                config.getHost(), getPort(), admissionLimit, VirtualThreads.isAvailable());
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public int getInFlight() {
+        return admissionLimit - admission.availablePermits();
+    }
+
+    /**
+     * 停止接收新请求, 等待处理中的请求完成后关闭数据库连接池. 可重复调用.
+     */
+    public void stop() {
+        if (!stopping.compareAndSet(false, true)) {
+            return;
+        }
+        logger.info("Shutting down query server, {} requests in flight", getInFlight());
+        try {
+            server.stop(config.getShutdownTimeoutSeconds());
+            executor.shutdown();
+            if (!executor.awaitTermination(config.getShutdownTimeoutSeconds(), TimeUnit.SECONDS)) {
+                logger.warn("Requests still running after {} seconds, forcing shutdown", config.getShutdownTimeoutSeconds());
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        } finally {
+            ragService.close();
+            databaseService.close();
+            terminated.countDown();
+            logger.info("Query server stopped");
+        }
+    }
+
+    public void awaitTermination() throws InterruptedException {
+        terminated.await();
+    }
+
+    private void handleQuery(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                sendError(exchange, 405, "Use POST with a JSON body");
+                return;
+            }
+            if (stopping.get()) {
+                sendError(exchange, 503, "Server is shutting down");
+                return;
+            }
+
+            String question;
+            boolean stream;
+            boolean export;
+            try (InputStream body = exchange.getRequestBody()) {
+                JsonNode request = MAPPER.readTree(body.readNBytes(MAX_BODY_BYTES));
+                question = request == null ? null : request.path("question").asText(null);
+                String accept = exchange.getRequestHeaders().getFirst("Accept");
+                stream = request != null && request.path("stream").asBoolean(false)
+                        || accept != null && accept.contains("text/event-stream");
+                export = request != null && request.path("export").asBoolean(false);
+            } catch (IOException e) {
+                sendError(exchange, 400, "Request body must be JSON");
+                return;
+            }
+            if (question == null || question.trim().isEmpty()) {
+                sendError(exchange, 400, "Field 'question' is required");
+                return;
+            }
+
+            if (!admission.tryAcquire(config.getAdmissionTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                exchange.getResponseHeaders().add("Retry-After", "1");
+                sendError(exchange, 503, "Too many concurrent questions");
+                return;
+            }
+            try {
+                if (stream) {
+                    streamAnswer(exchange, question, export);
+                    return;
+                }
+                long start = System.nanoTime();
+                ObjectNode response = MAPPER.createObjectNode();
+                response.put("question", question);
+                if (export) {
+                    StreamedAnswer answer = ragService.exportNaturalLanguageQuery(question, null);
+                    response.put("answer", answer.getAnswer());
+                    putExport(response, answer.getExport());
+                } else {
+                    response.put("answer", ragService.processNaturalLanguageQuery(question));
+                }
+                response.put("elapsedMillis", (System.nanoTime() - start) / 1_000_000);
+                send(exchange, 200, response);
+            } finally {
+                admission.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            sendError(exchange, 503, "Server is shutting down");
+        } catch (RuntimeException e) {
+            logger.error("Error handling query request", e);
+            sendError(exchange, 500, "Internal server error");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * 以 SSE 输出回答: 每个 token 一个 token 事件, 最后一个 done 事件带完整回答和耗时.
+     */
+    private void streamAnswer(HttpExchange exchange, String question, boolean export) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            Consumer<String> onToken = token -> {
+                try {
+                    sendEvent(out, "token", MAPPER.createObjectNode().put("text", token));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            };
+            StreamedAnswer answer = export ? ragService.exportNaturalLanguageQuery(question, onToken)
+                    : ragService.streamNaturalLanguageQuery(question, onToken);
+
+            ObjectNode done = MAPPER.createObjectNode();
+            done.put("question", question);
+            done.put("answer", answer.getAnswer());
+            done.put("timeToFirstTokenMillis", answer.getTimeToFirstTokenMillis());
+            done.put("elapsedMillis", answer.getTotalMillis());
+            putExport(done, answer.getExport());
+            sendEvent(out, "done", done);
+        } catch (IOException | UncheckedIOException e) {
+            logger.debug("Client disconnected while streaming an answer", e);
+        }
+    }
+
+    private static void putExport(ObjectNode response, ExportedResult export) {
+        if (export == null) {
+            return;
+        }
+        response.putObject("export")
+                .put("file", export.getFile().toString())
+                .put("format", export.getFormat().name().toLowerCase(Locale.ROOT))
+                .put("compressed", export.isCompressed())
+                .put("rows", export.getRows())
+                .put("bytes", export.getFileBytes())
+                .put("truncated", export.getStats().isTruncated());
+    }
+
+    private static void sendEvent(OutputStream out, String event, JsonNode data) throws IOException {
+        out.write(("event: " + event + "\ndata: ").getBytes(StandardCharsets.UTF_8));
+        out.write(MAPPER.writeValueAsBytes(data));
+        out.write(EVENT_END);
+        out.flush();
+    }
+
+    private void handleHealth(HttpExchange exchange) throws IOException {
+        try {
+            ObjectNode response = MAPPER.createObjectNode();
+            response.put("status", stopping.get() ? "STOPPING" : "UP");
+            response.put("inFlight", getInFlight());
+            response.put("admissionLimit", admissionLimit);
+            send(exchange, stopping.get() ? 503 : 200, response);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try {
+            send(exchange, 200, MetricsReport.toJson(ragService, MAPPER));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        ObjectNode response = MAPPER.createObjectNode();
+        response.put("error", message);
+        send(exchange, status, response);
+    }
+
+    private static void send(HttpExchange exchange, int status, JsonNode body) throws IOException {
+        byte[] bytes = MAPPER.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -1,29 +1,121 @@
 package com.zeeker.service;
 
+import com.alibaba.druid.DbType;
+import com.alibaba.druid.filter.Filter;
+import com.alibaba.druid.filter.stat.StatFilter;
 import com.alibaba.druid.pool.DruidDataSource;
+import com.alibaba.druid.stat.JdbcDataSourceStat;
+import com.alibaba.druid.stat.JdbcSqlStat;
+import com.alibaba.druid.util.JdbcUtils;
+import com.zeeker.cache.ResultCache;
 import com.zeeker.config.DatabaseConfig;
+import com.zeeker.export.ExportFormat;
+import com.zeeker.export.ExportedResult;
+import com.zeeker.export.ResultExporter;
+import com.zeeker.query.QueryLimits;
+import com.zeeker.query.QueryStats;
+import com.zeeker.query.ResultTable;
+import com.zeeker.query.RowHandler;
+import com.zeeker.concurrent.VirtualThreads;
+import com.zeeker.routing.DataSourceNode;
+import com.zeeker.routing.DataSourceRouter;
+import com.zeeker.routing.RoutingPolicy;
+import com.zeeker.schema.SchemaLoader;
+import com.zeeker.schema.SchemaRefresher;
+import com.zeeker.schema.SchemaSnapshot;
+import com.zeeker.schema.SchemaSnapshotStore;
+import com.zeeker.schema.TableInfo;
+import com.zeeker.sql.SqlGuard;
+import lombok.Value;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 public class DatabaseService {
     private static final Logger logger = LoggerFactory.getLogger(DatabaseService.class);
+    // 主库: 结构读取, SQL 检查和变化检测都在这里进行
     private final DruidDataSource dataSource;
-    private final Map<String, List<String>> tableColumns = new HashMap<>();
-    private final Map<String, String> columnTypes = new HashMap<>();
+    // 只读查询在主库与副本之间的路由
+    private final DataSourceRouter router;
+    private final ScheduledExecutorService replicaMonitor;
+    private final QueryLimits defaultLimits;
+    private final QueryLimits generatedQueryLimits;
+    private final SqlGuard sqlGuard;
+    private final int streamingFetchSize;
+    // 导出模式: 目录为 null 时未启用
+    private final Path exportDirectory;
+    private final ExportFormat exportFormat;
+    private final boolean exportGzip;
+    private final QueryLimits exportLimits;
+    private final int exportChunkRows;
+    private final int exportBufferBytes;
+    private final SchemaLoader schemaLoader;
+    private final SchemaSnapshotStore snapshotStore;
+    private final SchemaRefresher schemaRefresher;
+    private final ScheduledExecutorService refreshScheduler;
+    private final ResultCache resultCache;
+    private final ScheduledExecutorService resultCacheMonitor;
+    // 上一次读取的各表 UPDATE_TIME, 只由 resultCacheMonitor 线程访问
+    private Map<String, String> tableUpdateTimes;
+    private final List<Consumer<SchemaSnapshot>> schemaListeners = new CopyOnWriteArrayList<>();
+    private volatile SchemaSnapshot schema;
 
     public DatabaseService(DatabaseConfig config) {
-        this.dataSource = new DruidDataSource();
-        
+        this.dataSource = createDataSource(config);
+        this.router = createRouter(dataSource, config);
+
+        this.defaultLimits = new QueryLimits(config.getQueryMaxRows(), config.getQueryMaxBytes(), config.getQueryTimeoutSeconds());
+        this.streamingFetchSize = streamingFetchSize(config);
+        this.generatedQueryLimits = generatedQueryLimits(defaultLimits, config);
+        String exportPath = config.getExportPath();
+        this.exportDirectory = exportPath == null || exportPath.trim().isEmpty() ? null : Paths.get(exportPath);
+        this.exportFormat = ExportFormat.of(config.getExportFormat());
+        this.exportGzip = exportGzip(config.getExportCompression());
+        this.exportLimits = new QueryLimits(config.getExportMaxRows(), 0, config.getExportTimeoutSeconds());
+        this.exportChunkRows = config.getExportChunkRows();
+        this.exportBufferBytes = config.getExportBufferBytes();
+        DbType dbType = JdbcUtils.getDbTypeRaw(config.getUrl(), config.getDriverClassName());
+        this.sqlGuard = config.isSqlGuardEnabled()
+                ? new SqlGuard(dataSource, dbType,
+                        config.getSqlGuardMaxLimit(), config.getSqlGuardMaxEstimatedRows(), config.getSqlGuardTimeoutSeconds())
+                : null;
+        this.resultCache = new ResultCache(config, dbType);
+
+        this.schemaLoader = new SchemaLoader(dataSource, config.getSchemaLoadParallelism());
+        String snapshotPath = config.getSchemaSnapshotPath();
+        this.snapshotStore = snapshotPath == null || snapshotPath.trim().isEmpty() ? null
+                : new SchemaSnapshotStore(Paths.get(snapshotPath), config.getUrl() + "|" + config.getUsername());
+
+        this.schemaRefresher = new SchemaRefresher(schemaLoader);
+
+        initializeSchema();
+        this.refreshScheduler = startRefreshScheduler(config.getSchemaRefreshIntervalSeconds());
+        this.resultCacheMonitor = startResultCacheMonitor(dbType, config.getResultCacheCheckIntervalSeconds());
+        this.replicaMonitor = startReplicaMonitor(config.getReplicaCheckIntervalSeconds());
+    }
+
+    private static DruidDataSource createDataSource(DatabaseConfig config) {
+        DruidDataSource dataSource = new DruidDataSource();
+        dataSource.setName(config.getName());
+
         // 基本配置
         dataSource.setUrl(config.getUrl());
         dataSource.setUsername(config.getUsername());
         dataSource.setPassword(config.getPassword());
         dataSource.setDriverClassName(config.getDriverClassName());
-        
+
         // 连接池配置
         dataSource.setInitialSize(config.getInitialSize());
         dataSource.setMinIdle(config.getMinIdle());
@@ -37,7 +129,7 @@ public class DatabaseService {
         dataSource.setTestOnReturn(config.isTestOnReturn());
         dataSource.setPoolPreparedStatements(config.isPoolPreparedStatements());
         dataSource.setMaxPoolPreparedStatementPerConnectionSize(config.getMaxPoolPreparedStatementPerConnectionSize());
-        
+
         try {
             dataSource.setFilters(config.getFilters());
             dataSource.setConnectionProperties(config.getConnectionProperties());
@@ -45,84 +137,528 @@ public class DatabaseService {
             logger.error("Error setting Druid filters", e);
             throw new RuntimeException("Failed to configure Druid filters", e);
         }
+        return dataSource;
+    }
 
-        loadDatabaseSchema();
+    /**
+     * 每个副本一个连接池. readRouting 为 primary 或没有副本时只读查询也使用主库.
+     */
+    private static DataSourceRouter createRouter(DruidDataSource primary, DatabaseConfig config) {
+        List<DataSourceNode> replicas = new ArrayList<>();
+        for (DatabaseConfig replica : config.getReplicas()) {
+            replicas.add(new DataSourceNode(replica.getName(), false, createDataSource(replica)));
+        }
+        RoutingPolicy policy = replicas.isEmpty() || "primary".equalsIgnoreCase(config.getReadRouting()) ? null
+                : RoutingPolicy.of(config.getReadRouting(), config.getReplicaMaxLagSeconds());
+        String lagQuery = config.getReplicaLagQuery();
+        if (lagQuery == null || lagQuery.trim().isEmpty()) {
+            DbType dbType = JdbcUtils.getDbTypeRaw(config.getUrl(), config.getDriverClassName());
+            lagQuery = dbType == DbType.mysql || dbType == DbType.mariadb ? "SHOW REPLICA STATUS" : null;
+        }
+        if (policy != null) {
+            logger.info("Routing read-only queries across {} replicas with {} policy", replicas.size(), config.getReadRouting());
+        }
+        return new DataSourceRouter(new DataSourceNode(config.getName(), true, primary), replicas, policy,
+                config.isReadFromPrimary(), lagQuery);
     }
 
-    private void loadDatabaseSchema() {
-        try (Connection conn = dataSource.getConnection()) {
-            DatabaseMetaData metaData = conn.getMetaData();
-            String catalog = conn.getCatalog();
-            ResultSet tables = metaData.getTables(catalog, null, "%", new String[]{"TABLE"});
+    /**
+     * 按固定间隔检查副本的连通性和复制延迟. 没有副本或间隔 <= 0 时不启动.
+     */
+    private ScheduledExecutorService startReplicaMonitor(int intervalSeconds) {
+        if (router.getReplicas().isEmpty() || intervalSeconds <= 0) {
+            return null;
+        }
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+                VirtualThreads.daemonThreads("replica-monitor"));
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                router.checkReplicas();
+            } catch (RuntimeException e) {
+                logger.warn("Replica check failed, keeping the previous replica states", e);
+            }
+        }, 0, intervalSeconds, TimeUnit.SECONDS);
+        return scheduler;
+    }
 
-            while (tables.next()) {
-                String tableName = tables.getString("TABLE_NAME");
-                List<String> columns = new ArrayList<>();
-                ResultSet columnsRs = metaData.getColumns(catalog, null, tableName, "%");
+    /**
+     * 按固定间隔检查结构变化信号, 只重新读取变化的表. 间隔 <= 0 时不启动.
+     */
+    private ScheduledExecutorService startRefreshScheduler(int intervalSeconds) {
+        if (intervalSeconds <= 0) {
+            return null;
+        }
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+                VirtualThreads.daemonThreads("schema-refresh"));
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                refreshChangedTables();
+            } catch (RuntimeException e) {
+                // 抛出异常会终止后续调度, 记录后等下一轮
+                logger.warn("Schema change check failed, keeping current schema", e);
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        logger.info("Checking for schema changes every {} seconds", intervalSeconds);
+        return scheduler;
+    }
 
-                while (columnsRs.next()) {
-                    String columnName = columnsRs.getString("COLUMN_NAME");
-                    String columnType = columnsRs.getString("TYPE_NAME");
-                    columns.add(columnName);
-                    columnTypes.put(tableName + "." + columnName, columnType);
-                }
+    /**
+     * MySQL/MariaDB 上按固定间隔读取各表的 UPDATE_TIME, 失效有写入的表的缓存结果.
+     * 其他数据库没有可用的信号, 缓存结果只靠 TTL 和结构变化失效.
+     */
+    private ScheduledExecutorService startResultCacheMonitor(DbType dbType, int intervalSeconds) {
+        if (!resultCache.isEnabled() || intervalSeconds <= 0 || (dbType != DbType.mysql && dbType != DbType.mariadb)) {
+            return null;
+        }
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+                VirtualThreads.daemonThreads("result-cache-monitor"));
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                invalidateUpdatedTables();
+            } catch (RuntimeException e) {
+                logger.warn("Table update check failed, cached results expire by TTL only until the next check", e);
+            }
+        }, 0, intervalSeconds, TimeUnit.SECONDS);
+        logger.info("Checking for table updates every {} seconds", intervalSeconds);
+        return scheduler;
+    }
 
-                tableColumns.put(tableName, columns);
-                logger.info("Loaded schema for table: {} with columns: {}", tableName, columns);
+    private void invalidateUpdatedTables() {
+        Map<String, String> live = schemaLoader.tableUpdateTimes();
+        Map<String, String> previous = tableUpdateTimes;
+        tableUpdateTimes = live;
+        if (live == null || previous == null) {
+            return;
+        }
+        Set<String> changed = new TreeSet<>();
+        for (Map.Entry<String, String> entry : live.entrySet()) {
+            if (!Objects.equals(entry.getValue(), previous.get(entry.getKey()))) {
+                changed.add(entry.getKey());
             }
-        } catch (SQLException e) {
-            logger.error("Error loading database schema", e);
-            throw new RuntimeException("Failed to load database schema", e);
         }
+        for (String table : previous.keySet()) {
+            if (!live.containsKey(table)) {
+                changed.add(table);
+            }
+        }
+        if (!changed.isEmpty()) {
+            resultCache.invalidateTables(changed);
+        }
+    }
+
+    /**
+     * MySQL 驱动默认把结果全部读入内存: 未开启 useCursorFetch 时用 Integer.MIN_VALUE 切换到逐行流式读取.
+     */
+    private static int streamingFetchSize(DatabaseConfig config) {
+        String url = config.getUrl();
+        if (url != null && url.startsWith("jdbc:mysql:") && !url.contains("useCursorFetch=true")) {
+            return Integer.MIN_VALUE;
+        }
+        return Math.max(config.getQueryFetchSize(), 0);
+    }
+
+    /**
+     * 生成的SQL使用 sqlGuardTimeoutSeconds 与 queryTimeoutSeconds 中较严格的超时, 行数不超过 sqlGuardMaxLimit:
+     * SqlGuard 注入的是 sqlGuardMaxLimit + 1, 多出的一行在这里截掉并标记结果被截断.
+     */
+    private static QueryLimits generatedQueryLimits(QueryLimits defaults, DatabaseConfig config) {
+        QueryLimits limits = defaults;
+        int guardTimeout = config.isSqlGuardEnabled() ? config.getSqlGuardTimeoutSeconds() : 0;
+        if (guardTimeout > 0 && (defaults.getTimeoutSeconds() <= 0 || defaults.getTimeoutSeconds() > guardTimeout)) {
+            limits = limits.withTimeoutSeconds(guardTimeout);
+        }
+        int guardLimit = config.isSqlGuardEnabled() ? config.getSqlGuardMaxLimit() : 0;
+        if (guardLimit > 0 && (defaults.getMaxRows() <= 0 || defaults.getMaxRows() > guardLimit)) {
+            limits = limits.withMaxRows(guardLimit);
+        }
+        return limits;
+    }
+
+    private static boolean exportGzip(String compression) {
+        if (compression == null || "none".equalsIgnoreCase(compression.trim())) {
+            return false;
+        }
+        if ("gzip".equalsIgnoreCase(compression.trim())) {
+            return true;
+        }
+        throw new IllegalArgumentException("Unknown export compression: " + compression + " (expected none or gzip)");
+    }
+
+    /**
+     * 有可用的磁盘快照时直接使用并在后台与实时结构核对, 否则同步读取实时结构.
+     */
+    private void initializeSchema() {
+        SchemaSnapshot cached = snapshotStore == null ? null : snapshotStore.load();
+        if (cached == null) {
+            refreshSchema();
+            return;
+        }
+
+        this.schema = cached;
+        logger.info("Loaded schema snapshot {} ({} tables), validating against the database in background",
+                snapshotStore.getPath(), cached.size());
+        VirtualThreads.daemonThreads("schema-validate").newThread(() -> {
+            try {
+                refreshSchema();
+            } catch (RuntimeException e) {
+                logger.warn("Background schema validation failed, keeping snapshot", e);
+            }
+        }).start();
+    }
+
+    /**
+     * 重新读取完整的实时结构; 有变化时发布新快照并通知监听者.
+     */
+    public synchronized SchemaSnapshot refreshSchema() {
+        schemaRefresher.captureBaseline();
+        SchemaSnapshot live = schemaLoader.loadAll();
+        publishSchema(live);
+        return live;
+    }
+
+    /**
+     * 检查结构变化信号, 只重新读取变化的表并发布新快照. 发布是一次引用替换,
+     * 进行中的请求继续使用它们已经拿到的快照. 返回是否发布了新快照.
+     */
+    public synchronized boolean refreshChangedTables() {
+        SchemaSnapshot next = schemaRefresher.refresh(schema);
+        if (next == null) {
+            return false;
+        }
+        publishSchema(next);
+        return true;
+    }
+
+    private synchronized void publishSchema(SchemaSnapshot snapshot) {
+        SchemaSnapshot previous = schema;
+        if (previous != null && previous.getFingerprint().equals(snapshot.getFingerprint())) {
+            logger.info("Schema is up to date (fingerprint {})", snapshot.getFingerprint());
+            return;
+        }
+
+        schema = snapshot;
+        if (previous != null) {
+            resultCache.invalidateTables(changedTables(previous, snapshot));
+        }
+        if (snapshotStore != null) {
+            snapshotStore.save(snapshot);
+        }
+        if (previous != null) {
+            logger.info("Schema changed ({} -> {}), notifying {} listeners",
+                    previous.getFingerprint(), snapshot.getFingerprint(), schemaListeners.size());
+            for (Consumer<SchemaSnapshot> listener : schemaListeners) {
+                listener.accept(snapshot);
+            }
+        }
+    }
+
+    /**
+     * 新增, 删除或定义变化的表.
+     */
+    private static Set<String> changedTables(SchemaSnapshot previous, SchemaSnapshot next) {
+        Set<String> changed = new TreeSet<>();
+        for (TableInfo table : next.getTables()) {
+            if (!table.equals(previous.getTable(table.getName()))) {
+                changed.add(table.getName());
+            }
+        }
+        for (TableInfo table : previous.getTables()) {
+            if (next.getTable(table.getName()) == null) {
+                changed.add(table.getName());
+            }
+        }
+        return changed;
+    }
+
+    public void addSchemaListener(Consumer<SchemaSnapshot> listener) {
+        schemaListeners.add(listener);
+    }
+
+    public SchemaSnapshot getSchema() {
+        return schema;
     }
 
     public String getDatabaseSchemaDescription() {
-        StringBuilder schema = new StringBuilder();
-        schema.append("Database Schema:\\n");
-        
-        for (Map.Entry<String, List<String>> table : tableColumns.entrySet()) {
-            schema.append("Table: ").append(table.getKey()).append("\\n");
-            schema.append("Columns:\\n");
-            
-            for (String column : table.getValue()) {
-                String type = columnTypes.get(table.getKey() + "." + column);
-                schema.append("  - ").append(column).append(" (").append(type).append(")\\n");
-            }
-            schema.append("\\n");
-        }
-        
-        return schema.toString();
-    }
-
-    public List<Map<String, Object>> executeQuery(String sql) {
-        List<Map<String, Object>> results = new ArrayList<>();
-        
-        try (Connection conn = dataSource.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            
-            ResultSetMetaData metaData = rs.getMetaData();
-            int columnCount = metaData.getColumnCount();
-            
-            while (rs.next()) {
-                Map<String, Object> row = new HashMap<>();
-                for (int i = 1; i <= columnCount; i++) {
-                    row.put(metaData.getColumnName(i), rs.getObject(i));
+        return schema.describe();
+    }
+
+    public QueryLimits getDefaultLimits() {
+        return defaultLimits;
+    }
+
+    public QueryLimits getGeneratedQueryLimits() {
+        return generatedQueryLimits;
+    }
+
+    /**
+     * 执行前检查模型生成的SQL, 见 {@link SqlGuard}. 未启用时原样放行.
+     */
+    public SqlGuard.Verdict checkGeneratedQuery(String sql) {
+        return sqlGuard == null ? new SqlGuard.Verdict(true, sql, null, -1, false) : sqlGuard.check(sql);
+    }
+
+    /**
+     * 导出模式下检查生成的SQL: 只在 exportMaxRows > 0 时以它为 LIMIT 上限, 不估算扫描行数.
+     * 注入的 LIMIT 多取一行, 导出按 exportMaxRows 截断时结果标记为 truncated.
+     */
+    public SqlGuard.Verdict checkExportQuery(String sql) {
+        return sqlGuard == null ? new SqlGuard.Verdict(true, sql, null, -1, false)
+                : sqlGuard.check(sql, exportLimits.getMaxRows(), 0);
+    }
+
+    public boolean isExportEnabled() {
+        return exportDirectory != null;
+    }
+
+    /**
+     * 把查询结果导出为 exportPath 下的新文件, 格式, 压缩和上限按配置, 见 {@link #exportQuery(String, QueryLimits, Path, ExportFormat, boolean, int)}.
+     */
+    public ExportedResult exportQuery(String sql, int sampleRows) {
+        if (exportDirectory == null) {
+            throw new IllegalStateException("Result export is not enabled; set database.exportPath");
+        }
+        Path file;
+        try {
+            Files.createDirectories(exportDirectory);
+            file = Files.createTempFile(exportDirectory, "result-", exportFormat.extension(exportGzip));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to create export file in " + exportDirectory, e);
+        }
+        return exportQuery(sql, exportLimits, file, exportFormat, exportGzip, sampleRows);
+    }
+
+    /**
+     * 以游标方式执行查询, 结果逐段写入 file, 不经过结果缓存, 内存中只保留一段和开头的 sampleRows 行.
+     * 失败时删除写了一半的文件.
+     */
+    public ExportedResult exportQuery(String sql, QueryLimits limits, Path file, ExportFormat format, boolean gzip,
+                                      int sampleRows) {
+        ResultExporter exporter = null;
+        try {
+            exporter = new ResultExporter(file, format, gzip, exportChunkRows, exportBufferBytes, sampleRows);
+            QueryStats stats = streamQuery(sql, limits, exporter);
+            long bytes = exporter.finish();
+            logger.info("Exported {} rows ({} bytes) to {} in {} ms", exporter.getRows(), bytes, file, stats.getElapsedMillis());
+            return new ExportedResult(file, format, gzip, exporter.getRows(), bytes, exporter.getSample(), stats);
+        } catch (IOException | RuntimeException e) {
+            discardExport(exporter, file);
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            throw new RuntimeException("Failed to export query results to " + file, e);
+        }
+    }
+
+    private static void discardExport(ResultExporter exporter, Path file) {
+        try {
+            if (exporter != null) {
+                exporter.close();
+            }
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Failed to delete incomplete export {}", file, e);
+        }
+    }
+
+    public ResultTable executeQuery(String sql) {
+        return executeQuery(sql, defaultLimits);
+    }
+
+    /**
+     * 执行查询并返回完整结果, 经过结果缓存, 见 {@link ResultCache}.
+     */
+    public ResultTable executeQuery(String sql, QueryLimits limits) {
+        return resultCache.get(sql, limits, () -> {
+            ResultTable.Builder builder = new ResultTable.Builder();
+            QueryStats stats = streamQuery(sql, limits, builder);
+            return builder.build(stats);
+        });
+    }
+
+    /**
+     * 通知这些表的数据已经变化, 失效读取它们的缓存结果. 供在本服务之外写库的调用方使用.
+     */
+    public void invalidateTables(Collection<String> tables) {
+        resultCache.invalidateTables(tables);
+    }
+
+    public ResultCache.Stats getResultCacheStats() {
+        return resultCache.getStats();
+    }
+
+    public QueryStats streamQuery(String sql, RowHandler handler) {
+        return streamQuery(sql, defaultLimits, handler);
+    }
+
+    /**
+     * 以游标方式执行查询并逐行交给 handler. 查询按 readRouting 路由到主库或副本, 见 {@link DataSourceRouter}. 达到行数或字节上限时立即取消语句并返回截断标记,
+     * 超时则抛出异常. 内存占用只取决于 handler 保留的数据.
+     */
+    public QueryStats streamQuery(String sql, QueryLimits limits, RowHandler handler) {
+        long start = System.nanoTime();
+        long rows = 0;
+        long bytes = 0;
+        QueryStats.Truncation truncation = QueryStats.Truncation.NONE;
+
+        try (DataSourceRouter.Lease lease = router.openRead();
+             Statement stmt = lease.getConnection().createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            stmt.setFetchSize(streamingFetchSize);
+            if (limits.getMaxRows() > 0) {
+                // 多取一行用于判断是否被截断
+                stmt.setMaxRows(limits.getMaxRows() + 1);
+            }
+            if (limits.getTimeoutSeconds() > 0) {
+                stmt.setQueryTimeout(limits.getTimeoutSeconds());
+            }
+
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                handler.start(rs.getMetaData());
+
+                while (rs.next()) {
+                    if (limits.getMaxRows() > 0 && rows >= limits.getMaxRows()) {
+                        truncation = QueryStats.Truncation.ROW_LIMIT;
+                        break;
+                    }
+                    bytes += handler.row(rs);
+                    rows++;
+                    if (limits.getMaxBytes() > 0 && bytes >= limits.getMaxBytes()) {
+                        truncation = QueryStats.Truncation.BYTE_LIMIT;
+                        break;
+                    }
+                }
+
+                if (truncation != QueryStats.Truncation.NONE) {
+                    // 流式结果集关闭前会读完剩余行, 先取消语句让服务端停止执行
+                    cancelQuietly(stmt);
+                    logger.warn("Query truncated by {} after {} rows / {} bytes: {}", truncation, rows, bytes, sql);
                 }
-                results.add(row);
             }
-            
+        } catch (SQLTimeoutException e) {
+            logger.error("Query timed out after {} seconds: {}", limits.getTimeoutSeconds(), sql, e);
+            throw new RuntimeException("Query timed out after " + limits.getTimeoutSeconds() + " seconds", e);
+        } catch (SQLException e) {
+            if (truncation != QueryStats.Truncation.NONE) {
+                // 取消后关闭结果集时驱动可能报告 "query was cancelled", 已读取的数据仍然有效
+                logger.debug("Ignoring error after cancelling truncated query", e);
+            } else {
+                logger.error("Error executing query: {}", sql, e);
+                throw new RuntimeException("Failed to execute query", e);
+            }
+        }
+
+        return new QueryStats(rows, bytes, truncation, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static void cancelQuietly(Statement stmt) {
+        try {
+            stmt.cancel();
         } catch (SQLException e) {
-            logger.error("Error executing query: {}", sql, e);
-            throw new RuntimeException("Failed to execute query", e);
+            logger.debug("Failed to cancel statement", e);
         }
-        
-        return results;
+    }
+
+    /**
+     * 连接池和 Druid stat 过滤器的统计. 慢 SQL 为最大执行时间达到 stat 过滤器 slowSqlMillis 的语句,
+     * 按最大执行时间降序最多返回 limit 条; 未启用 stat 过滤器时为空.
+     */
+    public PoolStats getPoolStats(int slowSqlLimit) {
+        return poolStats(dataSource, slowSqlLimit);
+    }
+
+    /**
+     * 每个数据源 (主库在前) 的路由统计和连接池统计.
+     */
+    public List<DataSourceStats> getDataSourceStats(int slowSqlLimit) {
+        List<DataSourceStats> stats = new ArrayList<>();
+        for (DataSourceNode node : router.getNodes()) {
+            stats.add(new DataSourceStats(node.getName(), node.isPrimary(), node.isAvailable(), node.getRouted(),
+                    node.getOutstanding(), node.getLagSeconds(), poolStats(node.getDataSource(), slowSqlLimit)));
+        }
+        return stats;
+    }
+
+    /**
+     * 立即检查副本的连通性和复制延迟, 不等待定时检查.
+     */
+    public void checkReplicas() {
+        router.checkReplicas();
+    }
+
+    private static PoolStats poolStats(DruidDataSource dataSource, int slowSqlLimit) {
+        long slowSqlMillis = -1;
+        for (Filter filter : dataSource.getProxyFilters()) {
+            if (filter instanceof StatFilter) {
+                slowSqlMillis = ((StatFilter) filter).getSlowSqlMillis();
+            }
+        }
+
+        List<SlowSql> slowSql = new ArrayList<>();
+        JdbcDataSourceStat dataSourceStat = dataSource.getDataSourceStat();
+        if (slowSqlMillis >= 0 && dataSourceStat != null) {
+            for (JdbcSqlStat stat : dataSourceStat.getSqlStatMap().values()) {
+                if (stat.getExecuteMillisMax() >= slowSqlMillis) {
+                    slowSql.add(new SlowSql(stat.getSql(), stat.getExecuteCount(), stat.getErrorCount(),
+                            stat.getExecuteMillisMax(), stat.getExecuteMillisTotal()));
+                }
+            }
+            slowSql.sort(Comparator.comparingLong(SlowSql::getMaxMillis).reversed());
+        }
+
+        return new PoolStats(dataSource.getActiveCount(), dataSource.getPoolingCount(), dataSource.getMaxActive(),
+                dataSource.getActivePeak(), dataSource.getWaitThreadCount(), dataSource.getNotEmptyWaitCount(),
+                dataSource.getNotEmptyWaitMillis(), dataSource.getConnectCount(), dataSource.getErrorCount(),
+                slowSqlMillis, slowSql.subList(0, Math.min(slowSqlLimit, slowSql.size())));
     }
 
     public void close() {
-        if (dataSource != null) {
-            dataSource.close();
+        if (refreshScheduler != null) {
+            refreshScheduler.shutdownNow();
         }
+        if (resultCacheMonitor != null) {
+            resultCacheMonitor.shutdownNow();
+        }
+        if (replicaMonitor != null) {
+            replicaMonitor.shutdownNow();
+        }
+        router.close();
+    }
+
+    @Value
+    public static class PoolStats {
+        int activeCount;
+        int idleCount;
+        int maxActive;
+        int activePeak;
+        // 正在等待连接的线程数, 以及累计等待次数和时长
+        int waitingThreads;
+        long waitCount;
+        long waitMillis;
+        long connectCount;
+        long errorCount;
+        long slowSqlMillis;
+        List<SlowSql> slowSql;
+    }
+
+    @Value
+    public static class DataSourceStats {
+        String name;
+        boolean primary;
+        // 副本连接失败后暂停路由, 直到下一次检查成功
+        boolean available;
+        long routedQueries;
+        int outstandingQueries;
+        // 复制延迟秒数, -1 表示未测量, Long.MAX_VALUE 表示复制已停止
+        long lagSeconds;
+        PoolStats pool;
+    }
+
+    @Value
+    public static class SlowSql {
+        String sql;
+        long executeCount;
+        long errorCount;
+        long maxMillis;
+        long totalMillis;
     }
 }
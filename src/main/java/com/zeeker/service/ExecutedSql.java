@@ -0,0 +1,17 @@
+package com.zeeker.service;
+
+import com.zeeker.export.ExportedResult;
+import com.zeeker.query.ResultTable;
+import lombok.Value;
+
+/**
+ * 执行成功的SQL及其结果. 执行出错后经模型修复的, generated 是修复后实际执行的SQL, repairs 为修复次数.
+ * 导出模式下 export 为导出的文件, results 只是其中开头的样本行; 否则 export 为 null.
+ */
+@Value
+public class ExecutedSql {
+    GeneratedSql generated;
+    ResultTable results;
+    int repairs;
+    ExportedResult export;
+}
@@ -0,0 +1,15 @@
+package com.zeeker.service;
+
+import lombok.Value;
+
+/**
+ * 为一个问题准备好的SQL. cacheable 表示SQL是新生成的, 执行成功后应写入缓存;
+ * 来自缓存或断点记录的SQL为 false.
+ */
+@Value
+public class GeneratedSql {
+    String question;
+    String sql;
+    String schemaFingerprint;
+    boolean cacheable;
+}
@@ -1,31 +1,813 @@
 package com.zeeker.service;
 
+import com.zeeker.concurrent.VirtualThreads;
 import com.zeeker.config.OpenAiConfig;
+import com.zeeker.metrics.LatencyHistogram;
+import com.zeeker.prompt.PromptBuilder;
+import com.zeeker.resilience.AdaptiveConcurrencyLimit;
+import com.zeeker.resilience.CircuitBreaker;
+import com.zeeker.resilience.RetryBudget;
+import com.zeeker.resilience.TokenBucket;
+import dev.ai4j.openai4j.OpenAiHttpException;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.StreamingResponseHandler;
+import dev.langchain4j.model.Tokenizer;
 import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
 import dev.langchain4j.model.openai.OpenAiChatModel;
+import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.model.output.TokenUsage;
+import lombok.Value;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
 public class OpenAiService {
     private static final Logger logger = LoggerFactory.getLogger(OpenAiService.class);
+    // 样本太少时分位数不可靠, 不发送对冲请求
+    private static final int HEDGE_MIN_SAMPLES = 20;
+    // 所有实例共用: 每次调用一个 (虚拟) 线程, 对冲请求由一个定时线程按延迟发出
+    private static final ExecutorService CALL_EXECUTOR = VirtualThreads.newPerTaskExecutor("openai-call");
+    private static final ScheduledExecutorService HEDGE_TIMER =
+            Executors.newSingleThreadScheduledExecutor(VirtualThreads.daemonThreads("openai-hedge"));
+
     private final ChatLanguageModel chatModel;
+    private final StreamingChatLanguageModel streamingModel;
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
+    private final TokenBucket rateLimit;
+    private final CircuitBreaker circuitBreaker;
+    private final RetryBudget retryBudget;
+    private final int maxRetries;
+    private final long retryBaseDelayMillis;
+    private final long retryMaxDelayMillis;
+    // 限速时按 提示词 + 最大输出 预扣一次调用的令牌数
+    private final int maxTokens;
+    // 为 null 时模型未知 (直接传入模型实例)
+    private final String modelName;
+    // 限速和未返回用量时的 token 计数, 与提示词预算使用同一个分词器
+    private final Tokenizer tokenizer;
+    private final Duration timeout;
+    private final double hedgePercentile;
+    private final long hedgeMinDelayMillis;
+    // 成功调用的耗时, 用于计算对冲延迟
+    private final LatencyHistogram latency = new LatencyHistogram();
+    // 流式请求从发出到第一个 token 的耗时, 用于计算流式调用的对冲延迟
+    private final LatencyHistogram firstTokenLatency = new LatencyHistogram();
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder retriesDenied = new LongAdder();
+    private final LongAdder circuitRejections = new LongAdder();
+    private final LongAdder rateLimitWaitMillis = new LongAdder();
+    private final LongAdder promptTokens = new LongAdder();
+    private final LongAdder completionTokens = new LongAdder();
 
     public OpenAiService(OpenAiConfig config) {
-        this.chatModel = OpenAiChatModel.builder()
+        this(chatModel(config), streamingModel(config), config);
+        logger.info("OpenAI service initialized with model: {}", config.getModel());
+    }
+
+    public OpenAiService(ChatLanguageModel chatModel) {
+        this(chatModel, 0);
+    }
+
+    public OpenAiService(ChatLanguageModel chatModel, int maxConcurrentRequests) {
+        this(chatModel, null, maxConcurrentRequests);
+    }
+
+    /**
+     * 固定并发上限, 不重试, 不熔断.
+     *
+     * @param streamingModel 为 null 时流式调用退化为一次性返回完整结果
+     */
+    public OpenAiService(ChatLanguageModel chatModel, StreamingChatLanguageModel streamingModel, int maxConcurrentRequests) {
+        this(chatModel, streamingModel, basicConfig(maxConcurrentRequests));
+    }
+
+    /**
+     * 使用给定的模型, 超时, 对冲和弹性设置取自 config.
+     *
+     * @param streamingModel 为 null 时流式调用退化为一次性返回完整结果
+     */
+    public OpenAiService(ChatLanguageModel chatModel, StreamingChatLanguageModel streamingModel, OpenAiConfig config) {
+        this.chatModel = chatModel;
+        this.streamingModel = streamingModel;
+        this.modelName = config.getModel();
+        this.tokenizer = PromptBuilder.tokenizerFor(modelName);
+        this.timeout = Duration.ofSeconds(config.getTimeoutSeconds());
+        this.hedgePercentile = config.getHedgePercentile();
+        this.hedgeMinDelayMillis = config.getHedgeMinDelayMillis();
+
+        int max = config.getMaxConcurrentRequests();
+        this.concurrencyLimit = max <= 0 ? null
+                : config.isAdaptiveConcurrency()
+                ? new AdaptiveConcurrencyLimit(config.getMinConcurrentRequests(), max, config.getConcurrencyBackoffRatio())
+                : AdaptiveConcurrencyLimit.fixed(max);
+        this.rateLimit = config.getTokensPerMinute() <= 0 ? null
+                : new TokenBucket(config.getTokensPerMinute(), config.getTokensPerMinute() / 60.0);
+        this.circuitBreaker = config.getCircuitBreakerWindow() <= 0 ? null
+                : new CircuitBreaker(config.getCircuitBreakerWindow(), config.getCircuitBreakerFailureRatio(),
+                        TimeUnit.SECONDS.toNanos(config.getCircuitBreakerOpenSeconds()));
+        this.retryBudget = new RetryBudget(config.getRetryBudgetRatio(), config.getRetryBudgetMinRetries());
+        this.maxRetries = Math.max(config.getMaxRetries(), 0);
+        this.retryBaseDelayMillis = config.getRetryBaseDelayMillis();
+        this.retryMaxDelayMillis = config.getRetryMaxDelayMillis();
+        this.maxTokens = config.getMaxTokens();
+    }
+
+    private static ChatLanguageModel chatModel(OpenAiConfig config) {
+        OpenAiChatModel.OpenAiChatModelBuilder builder = OpenAiChatModel.builder()
                 .apiKey(config.getApiKey())
                 .modelName(config.getModel())
                 .temperature(config.getTemperature())
                 .maxTokens(config.getMaxTokens())
-                .build();
-        logger.info("OpenAI service initialized with model: {}", config.getModel());
+                .timeout(Duration.ofSeconds(config.getTimeoutSeconds()))
+                // 重试由本类按重试预算控制, 客户端只尝试一次
+                .maxRetries(1);
+        if (config.getBaseUrl() != null) {
+            builder.baseUrl(config.getBaseUrl());
+        }
+        return builder.build();
+    }
+
+    private static StreamingChatLanguageModel streamingModel(OpenAiConfig config) {
+        OpenAiStreamingChatModel.OpenAiStreamingChatModelBuilder builder = OpenAiStreamingChatModel.builder()
+                .apiKey(config.getApiKey())
+                .modelName(config.getModel())
+                .temperature(config.getTemperature())
+                .maxTokens(config.getMaxTokens())
+                .timeout(Duration.ofSeconds(config.getTimeoutSeconds()));
+        if (config.getBaseUrl() != null) {
+            builder.baseUrl(config.getBaseUrl());
+        }
+        return builder.build();
+    }
+
+    private static OpenAiConfig basicConfig(int maxConcurrentRequests) {
+        OpenAiConfig config = new OpenAiConfig();
+        config.setMaxConcurrentRequests(maxConcurrentRequests);
+        config.setAdaptiveConcurrency(false);
+        config.setMaxRetries(0);
+        config.setCircuitBreakerWindow(0);
+        return config;
     }
 
+    /**
+     * 阻塞等待 {@link #generateAsync(String, Duration)} 的结果, 截止时间为配置的 timeoutSeconds.
+     */
     public String generateResponse(String prompt) {
+        CompletableFuture<String> response = generateAsync(prompt, timeout);
+        try {
+            return response.get();
+        } catch (InterruptedException e) {
+            response.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for OpenAI", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                throw new RuntimeException("Timed out after " + timeout.toMillis() + " ms waiting for OpenAI", e.getCause());
+            }
+            throw new RuntimeException("Failed to generate response from OpenAI", e.getCause());
+        }
+    }
+
+    public CompletableFuture<String> generateAsync(String prompt) {
+        return generateAsync(prompt, timeout);
+    }
+
+    /**
+     * 异步生成回复. 启用对冲时, 调用超过近期耗时的 hedgePercentile 分位仍未返回就再发一个相同的请求,
+     * 先成功的结果胜出. 超过 deadline, 调用方取消返回的 future, 或已有结果时, 其余请求被取消:
+     * 等待并发槽位的请求立即放弃, 已发出的 HTTP 请求在支持中断的线程 (虚拟线程) 上中止, 否则其结果被丢弃.
+     * 先失败的请求不会提前结束调用, 只有全部请求失败时才以第一个错误失败.
+     */
+    public CompletableFuture<String> generateAsync(String prompt, Duration deadline) {
+        Call call = new Call();
+        CompletableFuture<String> result = call.result;
+        submitAttempt(prompt, call, false);
+
+        long hedgeDelay = hedgeDelayMillis();
+        Future<?> hedge = hedgeDelay < 0 ? null : HEDGE_TIMER.schedule(() -> {
+            if (!result.isDone()) {
+                hedges.increment();
+                call.pending.incrementAndGet();
+                submitAttempt(prompt, call, true);
+                if (result.isDone()) {
+                    cancelAll(call.attempts);
+                }
+            }
+        }, hedgeDelay, TimeUnit.MILLISECONDS);
+
+        Future<?> expiry = HEDGE_TIMER.schedule(() -> {
+            if (call.settle()) {
+                failures.increment();
+                logger.warn("OpenAI call exceeded its deadline of {} ms", deadline.toMillis());
+                cancelAll(call.attempts);
+                result.completeExceptionally(new TimeoutException("OpenAI call exceeded its deadline of " + deadline.toMillis() + " ms"));
+            }
+        }, deadline.toMillis(), TimeUnit.MILLISECONDS);
+        result.whenComplete((text, error) -> {
+            if (hedge != null) {
+                hedge.cancel(false);
+            }
+            expiry.cancel(false);
+            cancelAll(call.attempts);
+        });
+        return result;
+    }
+
+    private void submitAttempt(String prompt, Call call, boolean hedge) {
+        Attempt attempt = new Attempt();
+        call.attempts.add(attempt);
+        attempt.future = CALL_EXECUTOR.submit(() -> {
+            long start = System.nanoTime();
+            try {
+                String text = generateWithRetries(prompt, call.result);
+                latency.recordSince(start);
+                attempt.finished = true;
+                if (call.settle()) {
+                    if (hedge) {
+                        hedgeWins.increment();
+                    }
+                    // 本请求已标记完成, 不会取消自己
+                    cancelAll(call.attempts);
+                    call.result.complete(text);
+                }
+            } catch (InterruptedException e) {
+                // 等待并发槽位时被取消
+            } catch (Exception e) {
+                if (call.result.isDone()) {
+                    // 结果已确定后被中止的请求
+                    return;
+                }
+                if (e instanceof CircuitBreaker.OpenException) {
+                    logger.warn(e.getMessage());
+                } else {
+                    logger.error("Error generating response from OpenAI", e);
+                }
+                attempt.finished = true;
+                if (call.pending.decrementAndGet() == 0 && call.settle()) {
+                    failures.increment();
+                    call.result.completeExceptionally(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * 过载和服务端错误按指数退避 (full jitter) 重试, 次数受 maxRetries 和全局重试预算限制.
+     */
+    private String generateWithRetries(String prompt, CompletableFuture<String> result) throws InterruptedException {
+        retryBudget.recordCall();
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return generateOnce(prompt, result);
+            } catch (RuntimeException e) {
+                // 结果已确定 (其他请求胜出, 超过期限或被取消) 时不再重试
+                if (attempt >= maxRetries || result.isDone() || classify(e) == Failure.CLIENT) {
+                    throw e;
+                }
+                if (!retryBudget.tryRetry()) {
+                    retriesDenied.increment();
+                    throw e;
+                }
+                retries.increment();
+                long delay = backoffMillis(attempt);
+                logger.warn("OpenAI call failed ({}), retry {} of {} in {} ms", e.getMessage(), attempt + 1, maxRetries, delay);
+                Thread.sleep(delay);
+            }
+        }
+    }
+
+    private String generateOnce(String prompt, CompletableFuture<String> result) throws InterruptedException {
+        Permit permit = admit(prompt);
+        Throwable error = null;
+        try {
+            return generate(prompt, permit);
+        } catch (RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            release(permit, error, result.isDone());
+        }
+    }
+
+    /**
+     * 不限等待时间的 {@link #admit(String, long)}; 非流式调用超过期限时通过中断取消等待.
+     */
+    private Permit admit(String prompt) throws InterruptedException {
+        return admit(prompt, Long.MAX_VALUE);
+    }
+
+    /**
+     * 依次经过熔断器, 令牌桶和并发上限, 调用结束后必须交给 {@link #release}.
+     * 令牌桶按 提示词 + maxTokens 预扣, 知道实际用量后由 {@link #reconcile} 退还多出的部分.
+     * 令牌桶和并发上限的等待合计不超过 timeoutNanos, 超过时失败, 错误的 cause 为 TimeoutException.
+     */
+    private Permit admit(String prompt, long timeoutNanos) throws InterruptedException {
+        if (circuitBreaker != null && !circuitBreaker.tryAcquire()) {
+            circuitRejections.increment();
+            throw new CircuitBreaker.OpenException("OpenAI circuit breaker is open, failing fast");
+        }
+        long start = System.nanoTime();
+        long reserved = 0;
+        try {
+            if (rateLimit != null) {
+                long tokens = tokenizer.estimateTokenCountInText(prompt) + maxTokens;
+                rateLimitWaitMillis.add(rateLimit.acquire(tokens, timeoutNanos));
+                reserved = tokens;
+            }
+            long slot = concurrencyLimit == null ? 0 : concurrencyLimit.acquire(timeoutNanos - (System.nanoTime() - start));
+            return new Permit(slot, reserved);
+        } catch (InterruptedException | TimeoutException e) {
+            if (rateLimit != null) {
+                rateLimit.refund(reserved);
+            }
+            if (circuitBreaker != null) {
+                circuitBreaker.onIgnore();
+            }
+            if (e instanceof InterruptedException) {
+                throw (InterruptedException) e;
+            }
+            throw new RuntimeException("Timed out after " + timeout.getSeconds() + " seconds waiting for OpenAI capacity", e);
+        }
+    }
+
+    /**
+     * 按实际用量退还预扣的令牌. 失败的请求不退还: 过载时保守一些反而有利于恢复.
+     */
+    private void reconcile(Permit permit, long usedTokens) {
+        if (rateLimit != null && permit.reservedTokens > usedTokens) {
+            rateLimit.refund(permit.reservedTokens - usedTokens);
+        }
+    }
+
+    /**
+     * 按调用结果调整并发上限与熔断统计; error 为 null 表示成功.
+     *
+     * @param abandoned 调用已被放弃 (取消或超过期限), 这时的错误不反映服务端状态
+     */
+    private void release(Permit permit, Throwable error, boolean abandoned) {
+        Failure failure = error == null ? null
+                : abandoned || Thread.currentThread().isInterrupted() ? Failure.CLIENT : classify(error);
+        if (concurrencyLimit != null) {
+            if (failure == null) {
+                concurrencyLimit.onSuccess();
+            } else if (failure == Failure.OVERLOAD) {
+                concurrencyLimit.onOverload(permit.slotStartNanos);
+            } else {
+                concurrencyLimit.onIgnore();
+            }
+        }
+        if (circuitBreaker != null) {
+            if (failure == null) {
+                circuitBreaker.onSuccess();
+            } else if (failure == Failure.CLIENT) {
+                circuitBreaker.onIgnore();
+            } else {
+                circuitBreaker.onFailure();
+            }
+        }
+    }
+
+    private long backoffMillis(int attempt) {
+        long cap = Math.min(retryMaxDelayMillis, retryBaseDelayMillis << Math.min(attempt, 20));
+        return cap <= 0 ? 0 : ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    /**
+     * 429/503 和超时是过载信号, 其他 5xx 与连接错误是服务端错误, 两者都可以重试; 其余为请求本身的错误.
+     */
+    static Failure classify(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof CircuitBreaker.OpenException) {
+                return Failure.CLIENT;
+            }
+            if (cause instanceof OpenAiHttpException) {
+                int code = ((OpenAiHttpException) cause).code();
+                if (code == 429 || code == 503) {
+                    return Failure.OVERLOAD;
+                }
+                return code >= 500 ? Failure.SERVER : Failure.CLIENT;
+            }
+            if (cause instanceof InterruptedIOException || cause instanceof TimeoutException) {
+                return Failure.OVERLOAD;
+            }
+            if (cause instanceof IOException) {
+                return Failure.SERVER;
+            }
+        }
+        return Failure.CLIENT;
+    }
+
+    private void cancelAll(List<Attempt> attempts) {
+        for (Attempt attempt : attempts) {
+            Future<?> future = attempt.future;
+            if (!attempt.finished && future != null && future.cancel(true)) {
+                cancelled.increment();
+            }
+        }
+    }
+
+    /**
+     * 对冲延迟; 未启用或样本不足时返回 -1.
+     */
+    long hedgeDelayMillis() {
+        return hedgeDelayMillis(latency);
+    }
+
+    /**
+     * 流式调用的对冲延迟, 按首 token 耗时计算; 未启用或样本不足时返回 -1.
+     */
+    long streamHedgeDelayMillis() {
+        return hedgeDelayMillis(firstTokenLatency);
+    }
+
+    private long hedgeDelayMillis(LatencyHistogram samples) {
+        if (hedgePercentile <= 0 || samples.getCount() < HEDGE_MIN_SAMPLES) {
+            return -1;
+        }
+        return Math.max((long) samples.getPercentileMillis(hedgePercentile), hedgeMinDelayMillis);
+    }
+
+    private String generate(String prompt, Permit permit) {
+        calls.increment();
+        Response<AiMessage> response = chatModel.generate(UserMessage.from(prompt));
+        String text = response.content().text();
+        reconcile(permit, recordUsage(prompt, text, response.tokenUsage()));
+        return text;
+    }
+
+    /**
+     * 模型未返回用量 (如流式响应或测试替身) 时用本地分词器计数. 返回本次调用的总 token 数.
+     */
+    private long recordUsage(String prompt, CharSequence completion, TokenUsage usage) {
+        long input;
+        long output;
+        if (hasCounts(usage)) {
+            input = usage.inputTokenCount();
+            output = usage.outputTokenCount();
+        } else {
+            input = tokenizer.estimateTokenCountInText(prompt);
+            output = completion == null ? 0 : tokenizer.estimateTokenCountInText(completion.toString());
+        }
+        promptTokens.add(input);
+        completionTokens.add(output);
+        return input + output;
+    }
+
+    private static boolean hasCounts(TokenUsage usage) {
+        return usage != null && usage.inputTokenCount() != null && usage.outputTokenCount() != null;
+    }
+
+    public String getModelName() {
+        return modelName;
+    }
+
+    public Tokenizer getTokenizer() {
+        return tokenizer;
+    }
+
+    public Stats getStats() {
+        return new Stats(calls.sum(), failures.sum(), hedges.sum(), hedgeWins.sum(), cancelled.sum(),
+                retries.sum(), retriesDenied.sum(), circuitRejections.sum(), rateLimitWaitMillis.sum(),
+                concurrencyLimit == null ? 0 : concurrencyLimit.getLimit(),
+                circuitBreaker == null ? CircuitBreaker.State.CLOSED.name() : circuitBreaker.getState().name(),
+                promptTokens.sum(), completionTokens.sum());
+    }
+
+    public StreamedResponse streamResponse(String prompt, Consumer<String> onToken) {
+        return streamResponse(prompt, onToken, text -> false);
+    }
+
+    /**
+     * 流式生成回复, 每个 token 到达时交给 onToken. stopWhen 对已收到的文本返回 true 时立即返回,
+     * 不再等待流结束; 之后到达的 token 被丢弃, 但并发槽位一直占用到流真正结束.
+     * 已经输出的 token 无法撤回, 只有收到第一个 token 之前的失败按 {@link #generateWithRetries} 的规则重试,
+     * 所有尝试共用配置的 timeoutSeconds, 包括等待限速和并发槽位的时间.
+     */
+    public StreamedResponse streamResponse(String prompt, Consumer<String> onToken, Predicate<CharSequence> stopWhen) {
+        long start = System.nanoTime();
+        if (streamingModel == null) {
+            String text = generateResponse(prompt);
+            long elapsed = millisSince(start);
+            onToken.accept(text);
+            return new StreamedResponse(text, elapsed, elapsed, false);
+        }
+
+        long deadline = start + timeout.toNanos();
+        retryBudget.recordCall();
+        try {
+            for (int attempt = 0; ; attempt++) {
+                AtomicBoolean emitted = new AtomicBoolean();
+                try {
+                    return stream(prompt, onToken, stopWhen, start, deadline, emitted);
+                } catch (RuntimeException e) {
+                    if (emitted.get() || attempt >= maxRetries || System.nanoTime() >= deadline
+                            || classify(e) == Failure.CLIENT) {
+                        failures.increment();
+                        if (e instanceof CircuitBreaker.OpenException) {
+                            logger.warn(e.getMessage());
+                        } else {
+                            logger.error("Error streaming response from OpenAI", e);
+                        }
+                        throw e;
+                    }
+                    if (!retryBudget.tryRetry()) {
+                        retriesDenied.increment();
+                        failures.increment();
+                        throw e;
+                    }
+                    retries.increment();
+                    long delay = Math.min(backoffMillis(attempt), TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+                    logger.warn("OpenAI stream failed before the first token ({}), retry {} of {} in {} ms",
+                            e.getMessage(), attempt + 1, maxRetries, delay);
+                    Thread.sleep(Math.max(delay, 0));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for an OpenAI response stream", e);
+        }
+    }
+
+    /**
+     * 发出一次流式请求并等到结果或 deadline. 启用对冲时, 超过近期首 token 耗时的 hedgePercentile 分位仍没有 token,
+     * 就再发一个相同的请求, 先输出 token 的请求胜出, 另一个的输出被丢弃. 先失败的请求不会提前结束调用.
+     * 并发槽位在各自流的 onComplete / onError 中释放: 提前返回, 对冲落败或等待超时后 HTTP 流仍在读取,
+     * 仍然占用服务端容量. emitted 记录是否已向 onToken 输出过 token.
+     */
+    private StreamedResponse stream(String prompt, Consumer<String> onToken, Predicate<CharSequence> stopWhen,
+                                    long start, long deadline, AtomicBoolean emitted) throws InterruptedException {
+        StreamCall call = new StreamCall(prompt, onToken, stopWhen, start, deadline, emitted);
+        startStream(call, admit(prompt, deadline - System.nanoTime()), false);
+
+        long hedgeDelay = streamHedgeDelayMillis();
+        if (hedgeDelay >= 0) {
+            call.hedge = HEDGE_TIMER.schedule(() -> {
+                if (call.owner.get() == null && !call.result.isDone()) {
+                    hedges.increment();
+                    call.pending.incrementAndGet();
+                    CALL_EXECUTOR.execute(() -> hedgeStream(call));
+                }
+            }, hedgeDelay, TimeUnit.MILLISECONDS);
+        }
+
+        try {
+            return call.result.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to stream response from OpenAI", e.getCause());
+        } catch (TimeoutException e) {
+            throw new RuntimeException("Timed out after " + timeout.getSeconds() + " seconds waiting for OpenAI", e);
+        } finally {
+            if (call.hedge != null) {
+                call.hedge.cancel(false);
+            }
+            // 超时或被中断后放弃调用: 仍在读取的流 (包括落败的对冲请求) 不再向 onToken 输出
+            call.abandon();
+        }
+    }
+
+    private void hedgeStream(StreamCall call) {
+        Permit permit;
+        try {
+            permit = admit(call.prompt, call.deadline - System.nanoTime());
+        } catch (InterruptedException | RuntimeException e) {
+            call.attemptFailed(e);
+            return;
+        }
+        if (call.owner.get() != null || call.result.isDone()) {
+            // 等待槽位期间已有请求胜出
+            release(permit, null, true);
+            call.attemptFailed(null);
+            return;
+        }
+        startStream(call, permit, true);
+    }
+
+    private void startStream(StreamCall call, Permit permit, boolean hedge) {
+        Object self = new Object();
+        AtomicBoolean released = new AtomicBoolean();
+        Consumer<Throwable> finish = error -> {
+            if (released.compareAndSet(false, true)) {
+                release(permit, error, false);
+            }
+        };
+        calls.increment();
+        long attemptStart = System.nanoTime();
+
         try {
-            return chatModel.generate(prompt);
-        } catch (Exception e) {
-            logger.error("Error generating response from OpenAI", e);
-            throw new RuntimeException("Failed to generate response from OpenAI", e);
+            streamingModel.generate(call.prompt, new StreamingResponseHandler<AiMessage>() {
+                @Override
+                public void onNext(String token) {
+                    synchronized (call) {
+                        deliver(token);
+                    }
+                }
+
+                private void deliver(String token) {
+                    if (call.result.isDone() || !call.own(self)) {
+                        return;
+                    }
+                    if (call.firstToken < 0) {
+                        call.firstToken = millisSince(call.start);
+                        firstTokenLatency.recordSince(attemptStart);
+                        if (hedge) {
+                            hedgeWins.increment();
+                        }
+                    }
+                    call.text.append(token);
+                    call.emitted.set(true);
+                    call.onToken.accept(token);
+                    if (call.stopWhen.test(call.text)) {
+                        recordUsage(call.prompt, call.text, null);
+                        call.result.complete(new StreamedResponse(call.text.toString(), call.firstToken,
+                                millisSince(call.start), true));
+                    }
+                }
+
+                @Override
+                public void onComplete(Response<AiMessage> response) {
+                    finish.accept(null);
+                    synchronized (call) {
+                        if (!call.result.isDone() && call.own(self)) {
+                            reconcile(permit, recordUsage(call.prompt, call.text, response.tokenUsage()));
+                            long total = millisSince(call.start);
+                            call.result.complete(new StreamedResponse(call.text.toString(),
+                                    call.firstToken < 0 ? total : call.firstToken, total, false));
+                            return;
+                        }
+                    }
+                    // 提前返回或落败的流没有收集完整输出, 只有模型报告了用量时才退还
+                    TokenUsage usage = response.tokenUsage();
+                    if (hasCounts(usage)) {
+                        reconcile(permit, usage.inputTokenCount() + usage.outputTokenCount());
+                    }
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    finish.accept(error);
+                    if (call.owner.get() == self) {
+                        call.result.completeExceptionally(error);
+                    } else if (call.owner.get() == null) {
+                        call.attemptFailed(error);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            finish.accept(e);
+            call.attemptFailed(e);
+        }
+    }
+
+    private static long millisSince(long start) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    enum Failure {
+        OVERLOAD, SERVER, CLIENT
+    }
+
+    /**
+     * 一次调用及其全部请求. 结果只由 settle 成功的一方写入, 写入前先更新统计并取消其余请求,
+     * 调用方拿到结果时统计已经就绪.
+     */
+    private static final class Call {
+        final CompletableFuture<String> result = new CompletableFuture<>();
+        final List<Attempt> attempts = new CopyOnWriteArrayList<>();
+        final AtomicInteger pending = new AtomicInteger(1);
+        private final AtomicBoolean settled = new AtomicBoolean();
+
+        boolean settle() {
+            return settled.compareAndSet(false, true);
+        }
+    }
+
+    /**
+     * 一次流式调用及其请求. 第一个输出 token 的请求成为 owner, 之后只有它的回调写入文本和结果;
+     * 没有 owner 时全部请求都失败才以最后一个错误失败. 输出 token 和放弃调用都在 this 锁内进行,
+     * 调用方放弃之后不会再收到 token, emitted 也不再变化.
+     */
+    private static final class StreamCall {
+        final String prompt;
+        final Consumer<String> onToken;
+        final Predicate<CharSequence> stopWhen;
+        final long start;
+        final long deadline;
+        final AtomicBoolean emitted;
+        final CompletableFuture<StreamedResponse> result = new CompletableFuture<>();
+        final AtomicReference<Object> owner = new AtomicReference<>();
+        final AtomicInteger pending = new AtomicInteger(1);
+        final StringBuilder text = new StringBuilder();
+        volatile long firstToken = -1;
+        volatile Future<?> hedge;
+
+        StreamCall(String prompt, Consumer<String> onToken, Predicate<CharSequence> stopWhen, long start, long deadline,
+                   AtomicBoolean emitted) {
+            this.prompt = prompt;
+            this.onToken = onToken;
+            this.stopWhen = stopWhen;
+            this.start = start;
+            this.deadline = deadline;
+            this.emitted = emitted;
+        }
+
+        boolean own(Object attempt) {
+            if (owner.get() == attempt) {
+                return true;
+            }
+            if (!owner.compareAndSet(null, attempt)) {
+                return false;
+            }
+            Future<?> pendingHedge = hedge;
+            if (pendingHedge != null) {
+                pendingHedge.cancel(false);
+            }
+            return true;
+        }
+
+        /**
+         * 调用方不再等待结果; 已有结果时不变.
+         */
+        synchronized void abandon() {
+            result.completeExceptionally(new CancellationException("OpenAI stream was abandoned"));
+        }
+
+        /**
+         * error 为 null 表示请求被放弃而不是失败.
+         */
+        void attemptFailed(Throwable error) {
+            if (pending.decrementAndGet() == 0) {
+                result.completeExceptionally(error != null ? error
+                        : new IllegalStateException("All OpenAI stream requests were abandoned"));
+            }
         }
     }
+
+    /**
+     * 一次请求占用的并发槽位 (开始时间) 和令牌桶预扣的令牌数.
+     */
+    private static final class Permit {
+        final long slotStartNanos;
+        final long reservedTokens;
+
+        Permit(long slotStartNanos, long reservedTokens) {
+            this.slotStartNanos = slotStartNanos;
+            this.reservedTokens = reservedTokens;
+        }
+    }
+
+    private static final class Attempt {
+        private volatile Future<?> future;
+        private volatile boolean finished;
+    }
+
+    @Value
+    public static class Stats {
+        long calls;
+        long failures;
+        // 发出的对冲请求, 其中先于原请求返回的次数
+        long hedges;
+        long hedgeWins;
+        // 因超时, 取消或落败而中止的请求
+        long cancelled;
+        long retries;
+        // 因重试预算用完而放弃的重试
+        long retriesDenied;
+        // 熔断器打开期间直接拒绝的调用
+        long circuitRejections;
+        long rateLimitWaitMillis;
+        // 当前并发上限, 0 表示不限制
+        int concurrencyLimit;
+        String circuitState;
+        long promptTokens;
+        long completionTokens;
+    }
 }
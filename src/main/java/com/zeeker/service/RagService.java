@@ -1,98 +1,558 @@
 package com.zeeker.service;
 
-import dev.langchain4j.model.chat.ChatLanguageModel;
-import dev.langchain4j.model.openai.OpenAiChatModel;
+import com.zeeker.cache.SqlCache;
+import com.zeeker.config.RagConfig;
+import com.zeeker.examples.Example;
+import com.zeeker.examples.ExampleStore;
+import com.zeeker.export.ExportedResult;
+import com.zeeker.metrics.RagMetrics;
+import com.zeeker.prompt.PromptBuilder;
+import com.zeeker.query.AnswerRenderer;
+import com.zeeker.query.ResultTable;
+import com.zeeker.schema.SchemaIndex;
+import com.zeeker.schema.SchemaSnapshot;
+import com.zeeker.sql.SqlGuard;
+import com.zeeker.sql.SqlStatements;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.SQLSyntaxErrorException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
 
 public class RagService {
     private static final Logger logger = LoggerFactory.getLogger(RagService.class);
+    // 清理模型输出时复用, 避免每次调用重新编译正则
+    private static final Pattern MARKDOWN_FENCE = Pattern.compile("```(?:sql\\s*)?");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    // 反馈给模型的数据库错误信息的最大长度
+    private static final int MAX_ERROR_CHARS = 500;
     
     private final DatabaseService databaseService;
     private final OpenAiService openAiService;
-    private final String databaseSchema;
+    private final RagConfig ragConfig;
+    private volatile SchemaIndex schemaIndex;
+    private final SqlCache sqlCache;
+    private final AnswerRenderer answerRenderer;
+    private final PromptBuilder promptBuilder;
+    private final ExampleStore exampleStore;
+    private final RagMetrics metrics = new RagMetrics();
 
     public RagService(DatabaseService databaseService, OpenAiService openAiService) {
+        this(databaseService, openAiService, new RagConfig());
+    }
+
+    public RagService(DatabaseService databaseService, OpenAiService openAiService, RagConfig ragConfig) {
         this.databaseService = databaseService;
         this.openAiService = openAiService;
-        this.databaseSchema = databaseService.getDatabaseSchemaDescription();
+        this.ragConfig = ragConfig;
+        this.sqlCache = new SqlCache(ragConfig);
+        this.answerRenderer = new AnswerRenderer(ragConfig);
+        this.promptBuilder = new PromptBuilder(ragConfig, openAiService.getTokenizer());
+        this.exampleStore = openExampleStore(ragConfig.getExamplesPath());
+        // 先注册再建索引: 后台校验线程可能随时发布线上结构, 建好后再比对一次指纹, 不会漏掉注册前后的变化
+        databaseService.addSchemaListener(this::onSchemaChanged);
+        SchemaIndex index = new SchemaIndex(databaseService.getSchema(), ragConfig);
+        synchronized (this) {
+            this.schemaIndex = index;
+        }
+        onSchemaChanged(databaseService.getSchema());
+    }
+
+    /**
+     * 结构变化时增量重建索引, 只重新处理变化的表. 索引尚未建好时忽略, 由构造函数随后补上.
+     */
+    private synchronized void onSchemaChanged(SchemaSnapshot schema) {
+        SchemaIndex index = schemaIndex;
+        if (index != null && !index.getSchema().getFingerprint().equals(schema.getFingerprint())) {
+            schemaIndex = index.rebuild(schema);
+        }
+    }
+
+    /**
+     * 示例库是可选的, 打不开时记录警告并在没有示例的情况下继续.
+     */
+    private static ExampleStore openExampleStore(String path) {
+        if (path == null || path.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return ExampleStore.open(Paths.get(path));
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to open example store {}, generating SQL without examples", path, e);
+            return null;
+        }
+    }
+
+    public SqlCache getSqlCache() {
+        return sqlCache;
+    }
+
+    /**
+     * 示例库, 未配置或打开失败时为 null.
+     */
+    public ExampleStore getExampleStore() {
+        return exampleStore;
+    }
+
+    public RagMetrics getMetrics() {
+        return metrics;
+    }
+
+    public OpenAiService getOpenAiService() {
+        return openAiService;
+    }
+
+    public DatabaseService getDatabaseService() {
+        return databaseService;
     }
 
     public String processNaturalLanguageQuery(String question) {
+        return answer(question, null, false).getAnswer();
+    }
+
+    /**
+     * 与 {@link #processNaturalLanguageQuery(String)} 相同, 但回答在生成过程中逐个 token 交给 onToken.
+     * 出错时道歉信息同样经 onToken 输出.
+     */
+    public StreamedAnswer streamNaturalLanguageQuery(String question, Consumer<String> onToken) {
+        return answer(question, onToken, false);
+    }
+
+    /**
+     * 导出模式: 完整结果写入 exportPath 下的文件, 见 {@link DatabaseService#exportQuery(String, int)}.
+     * 只有开头的 resultSampleRows 行交给模型, 回答末尾注明文件位置和行数. onToken 为 null 时不流式输出.
+     */
+    public StreamedAnswer exportNaturalLanguageQuery(String question, Consumer<String> onToken) {
+        return answer(question, onToken, true);
+    }
+
+    private StreamedAnswer answer(String question, Consumer<String> onToken, boolean export) {
+        long start = System.nanoTime();
+        String sqlQuery = null;
         try {
-            // 构建提示词
-            String prompt = String.format(
-                "Based on the following database schema:\\n\\n%s\\n\\n" +
-                "Generate a SQL query to answer this question: %s\\n\\n" +
-                "Return ONLY the SQL query, without any markdown formatting, explanations or additional text.",
-                databaseSchema, question
-            );
-
-            // 生成并清理SQL查询
-            String sqlQuery = cleanSqlQuery(openAiService.generateResponse(prompt));
-            logger.info("Generated SQL query: {}", sqlQuery);
-
-            // 执行查询
-            List<Map<String, Object>> results = databaseService.executeQuery(sqlQuery);
-
-            // 构建结果解释提示词
-            String resultPrompt = String.format(
-                "Based on the question: %s\\n\\n" +
-                "And the query results:\\n%s\\n\\n" +
-                "Please provide a natural language answer to the question.",
-                question, formatResults(results)
-            );
+            if (export && !databaseService.isExportEnabled()) {
+                throw new IllegalStateException("Result export is not enabled; set database.exportPath");
+            }
+            GeneratedSql generated = generateSql(question, export);
+            sqlQuery = generated.getSql();
+            ExecutedSql executed = export ? exportSql(generated) : executeSql(generated);
+            sqlQuery = executed.getGenerated().getSql();
+            ResultTable results = executed.getResults();
+            ExportedResult exported = executed.getExport();
+            String reference = exported == null ? "" : exportReference(exported);
+
+            // 导出的结果不完整时样本不能代表全部结果, 不直接渲染
+            String direct = exported == null || exported.isComplete() ? renderDirectAnswer(question, results) : null;
+            if (direct != null) {
+                direct += reference;
+                if (onToken != null) {
+                    onToken.accept(direct);
+                }
+                metrics.recordStage(RagMetrics.Stage.TOTAL, start);
+                metrics.recordQuestion(false);
+                long total = millisSince(start);
+                logger.info("Rendered answer without the model in {} ms: {}", total, direct);
+                return new StreamedAnswer(question, sqlQuery, direct, total, total, exported);
+            }
 
             // 生成自然语言回答
-            String answer = openAiService.generateResponse(resultPrompt);
-            logger.info("Generated answer: {}", answer);
+            String resultPrompt = exported == null ? answerPrompt(question, results) : exportAnswerPrompt(question, exported);
+            long answerStart = System.nanoTime();
+            String answer;
+            long firstToken;
+            if (onToken == null) {
+                answer = openAiService.generateResponse(resultPrompt);
+                firstToken = millisSince(start);
+            } else {
+                StreamedResponse response = openAiService.streamResponse(resultPrompt, onToken);
+                answer = response.getText();
+                firstToken = (answerStart - start) / 1_000_000 + response.getFirstTokenMillis();
+            }
+            if (!reference.isEmpty()) {
+                answer += reference;
+                if (onToken != null) {
+                    onToken.accept(reference);
+                }
+            }
+            metrics.recordStage(RagMetrics.Stage.ANSWER_GENERATION, answerStart);
+            metrics.recordStage(RagMetrics.Stage.TOTAL, start);
+            metrics.recordQuestion(false);
+            long total = millisSince(start);
+            logger.info("Generated answer in {} ms (first token after {} ms): {}", total, firstToken, answer);
 
-            return answer;
+            return new StreamedAnswer(question, sqlQuery, answer, firstToken, total, exported);
 
         } catch (Exception e) {
+            metrics.recordQuestion(true);
             logger.error("Error processing natural language query", e);
-            return "Sorry, I encountered an error while processing your question: " + e.getMessage();
+            String apology = "Sorry, I encountered an error while processing your question: " + e.getMessage();
+            if (onToken != null) {
+                try {
+                    onToken.accept(apology);
+                } catch (RuntimeException ignored) {
+                    // 调用方已经无法接收输出 (如客户端断开)
+                }
+            }
+            long total = millisSince(start);
+            return new StreamedAnswer(question, sqlQuery, apology, total, total, null);
+        }
+    }
+
+    /**
+     * 附在回答末尾的导出文件说明, 不经过模型, 保证路径准确.
+     */
+    static String exportReference(ExportedResult exported) {
+        StringBuilder sb = new StringBuilder("\n\nFull result (").append(exported.getRows()).append(" rows");
+        if (exported.getStats().isTruncated()) {
+            sb.append(", stopped at the export row limit");
+        }
+        return sb.append("): ").append(exported.getFile()).toString();
+    }
+
+    /**
+     * 第一步: 取缓存的SQL, 未命中时检索相关表结构和相似问题的示例并让模型生成.
+     */
+    public GeneratedSql generateSql(String question) {
+        return generateSql(question, false);
+    }
+
+    /**
+     * export 为 true 时按导出的上限检查SQL (不注入 sqlGuardMaxLimit), 不读写SQL缓存:
+     * 缓存中的SQL可能已被注入了 LIMIT.
+     */
+    public GeneratedSql generateSql(String question, boolean export) {
+        // 整个请求使用同一份索引, 结构刷新不会影响进行中的请求
+        SchemaIndex schemaIndex = this.schemaIndex;
+        String schemaFingerprint = schemaIndex.getSchema().getFingerprint();
+        String sqlQuery = export ? null : sqlCache.get(question, schemaFingerprint);
+        boolean cached = sqlQuery != null;
+
+        if (!cached) {
+            // 检索相关表结构并构建提示词
+            long promptStart = System.nanoTime();
+            String prompt = promptBuilder.sqlPrompt(schemaIndex, question, findExamples(question));
+            metrics.recordStage(RagMetrics.Stage.PROMPT_BUILD, promptStart);
+
+            if (ragConfig.getSqlCandidates() > 1) {
+                sqlQuery = repair(prompt, firstValidCandidate(prompt, ragConfig.getSqlCandidates(), export), export);
+            } else {
+                // 生成并清理SQL查询
+                long generationStart = System.nanoTime();
+                sqlQuery = cleanSqlQuery(streamSql(prompt));
+                metrics.recordStage(RagMetrics.Stage.SQL_GENERATION, generationStart);
+                sqlQuery = repair(prompt, check(sqlQuery, export), export);
+            }
+        }
+        logger.info("{} SQL query: {}", cached ? "Cached" : "Generated", sqlQuery);
+        return new GeneratedSql(question, sqlQuery, schemaFingerprint, !cached && !export);
+    }
+
+    private List<Example> findExamples(String question) {
+        if (exampleStore == null || ragConfig.getExamplesTopK() <= 0) {
+            return List.of();
+        }
+        try {
+            List<Example> examples = exampleStore.findSimilar(question, ragConfig.getExamplesTopK(), ragConfig.getExamplesMinSimilarity());
+            logger.debug("Found {} similar examples for: {}", examples.size(), question);
+            return examples;
+        } catch (RuntimeException e) {
+            logger.warn("Failed to look up examples, generating SQL without them", e);
+            return List.of();
+        }
+    }
+
+    /**
+     * 并行生成 count 个候选SQL, 逐个在返回时检查, 第一个通过检查的胜出, 其余请求被取消.
+     * 全部被拒绝时返回第一个拒绝结果交给修复流程; 全部生成失败时抛出第一个错误.
+     */
+    private SqlGuard.Verdict firstValidCandidate(String prompt, int count, boolean export) {
+        long generationStart = System.nanoTime();
+        CompletableFuture<SqlGuard.Verdict> winner = new CompletableFuture<>();
+        AtomicInteger remaining = new AtomicInteger(count);
+        AtomicReference<SqlGuard.Verdict> firstRejection = new AtomicReference<>();
+        AtomicReference<Throwable> firstError = new AtomicReference<>();
+        List<CompletableFuture<String>> candidates = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            CompletableFuture<String> candidate = openAiService.generateAsync(prompt);
+            candidates.add(candidate);
+            candidate.whenComplete((text, error) -> {
+                // 检查本身出错也要计入 remaining, 否则最后一个候选返回时 winner 永远不会完成
+                try {
+                    if (winner.isDone()) {
+                        return;
+                    }
+                    if (error != null) {
+                        firstError.compareAndSet(null, error);
+                        return;
+                    }
+                    SqlGuard.Verdict verdict = check(cleanSqlQuery(text), export);
+                    if (verdict.isAllowed()) {
+                        winner.complete(verdict);
+                        return;
+                    }
+                    firstRejection.compareAndSet(null, verdict);
+                } catch (RuntimeException e) {
+                    logger.warn("Failed to check a SQL candidate", e);
+                    firstError.compareAndSet(null, e);
+                } finally {
+                    if (remaining.decrementAndGet() == 0) {
+                        winner.complete(firstRejection.get());
+                    }
+                }
+            });
+        }
+
+        SqlGuard.Verdict verdict;
+        try {
+            verdict = winner.join();
+        } finally {
+            for (CompletableFuture<String> candidate : candidates) {
+                candidate.cancel(true);
+            }
+        }
+        metrics.recordStage(RagMetrics.Stage.SQL_GENERATION, generationStart);
+        if (verdict == null) {
+            throw new RuntimeException("Failed to generate SQL candidates", firstError.get());
         }
+        return verdict;
     }
 
-    private String cleanSqlQuery(String rawQuery) {
+    /**
+     * 执行前检查生成的SQL (缓存中的SQL已检查过), 记录检查耗时与结果.
+     */
+    private SqlGuard.Verdict check(String sqlQuery, boolean export) {
+        long start = System.nanoTime();
+        SqlGuard.Verdict verdict = export ? databaseService.checkExportQuery(sqlQuery) : databaseService.checkGeneratedQuery(sqlQuery);
+        metrics.recordStage(RagMetrics.Stage.SQL_GUARD, start);
+        if (!verdict.isAllowed()) {
+            metrics.recordSqlRejection();
+            logger.warn("Generated SQL rejected: {} ({})", sqlQuery, verdict.getReason());
+        } else if (verdict.isRewritten()) {
+            metrics.recordSqlRewrite();
+        }
+        return verdict;
+    }
+
+    /**
+     * 被拒绝时把原因反馈给模型重新生成, 超过 sqlRepairAttempts 次仍被拒绝则失败. 返回可以执行的SQL.
+     */
+    private String repair(String prompt, SqlGuard.Verdict verdict, boolean export) {
+        for (int attempt = 0; !verdict.isAllowed(); attempt++) {
+            if (attempt >= ragConfig.getSqlRepairAttempts()) {
+                throw new RuntimeException("Generated SQL was rejected: " + verdict.getReason());
+            }
+
+            String repairPrompt = prompt + "\n\nThe previous query was rejected before execution:\n" + verdict.getSql()
+                    + "\n\nReason: " + verdict.getReason() + "\n\n"
+                    + "Return ONLY a corrected, cheaper SQL query, without any markdown formatting, explanations or additional text.";
+            long generationStart = System.nanoTime();
+            String sqlQuery = cleanSqlQuery(streamSql(repairPrompt));
+            metrics.recordStage(RagMetrics.Stage.SQL_GENERATION, generationStart);
+            verdict = check(sqlQuery, export);
+        }
+        return verdict.getSql();
+    }
+
+    /**
+     * 第二步: 流式执行查询, 结果按列存储. 执行出错且错误在于SQL本身 (语法, 不存在的列, 数据错误, 超时) 时,
+     * 把数据库错误反馈给模型重新生成, 最多 sqlRepairAttempts 次. 新生成的SQL执行成功后写入缓存,
+     * 有结果行的同时作为示例写入示例库.
+     */
+    public ExecutedSql executeSql(GeneratedSql generated) {
+        return execute(generated, false);
+    }
+
+    /**
+     * 与 {@link #executeSql(GeneratedSql)} 相同, 但结果导出到文件, 返回的 results 只是开头的样本行.
+     */
+    public ExecutedSql exportSql(GeneratedSql generated) {
+        return execute(generated, true);
+    }
+
+    private ExecutedSql execute(GeneratedSql generated, boolean export) {
+        for (int attempt = 0; ; attempt++) {
+            long start = System.nanoTime();
+            ResultTable results;
+            ExportedResult exported = null;
+            try {
+                if (export) {
+                    exported = databaseService.exportQuery(generated.getSql(), ragConfig.getResultSampleRows());
+                    results = exported.getSample();
+                } else {
+                    results = databaseService.executeQuery(generated.getSql(), databaseService.getGeneratedQueryLimits());
+                }
+            } catch (RuntimeException e) {
+                metrics.recordStage(RagMetrics.Stage.QUERY_EXECUTION, start);
+                String error = repairableError(e);
+                if (error == null || attempt >= ragConfig.getSqlRepairAttempts()) {
+                    throw e;
+                }
+                metrics.recordExecutionRepair();
+                logger.warn("Generated SQL failed, asking the model to fix it: {} ({})", generated.getSql(), error);
+                generated = repairExecution(generated, error, export);
+                continue;
+            }
+            metrics.recordStage(RagMetrics.Stage.QUERY_EXECUTION, start);
+            if (exported != null) {
+                metrics.recordResult(exported.getStats());
+                metrics.recordExport(exported.getRows(), exported.getFileBytes());
+            } else {
+                metrics.recordResult(results.getStats());
+            }
+            if (generated.isCacheable()) {
+                // 只缓存执行成功的SQL
+                sqlCache.put(generated.getQuestion(), generated.getSchemaFingerprint(), generated.getSql());
+                recordExample(generated, results);
+            }
+            return new ExecutedSql(generated, results, attempt, exported);
+        }
+    }
+
+    private GeneratedSql repairExecution(GeneratedSql failed, String error, boolean export) {
+        String question = failed.getQuestion();
+        String prompt = promptBuilder.sqlPrompt(schemaIndex, question, findExamples(question));
+        String repairPrompt = prompt + "\n\nThe previous query failed when executed:\n" + failed.getSql()
+                + "\n\nDatabase error: " + error + "\n\n"
+                + "Return ONLY a corrected SQL query, without any markdown formatting, explanations or additional text.";
+        long generationStart = System.nanoTime();
+        String sqlQuery = cleanSqlQuery(streamSql(repairPrompt));
+        metrics.recordStage(RagMetrics.Stage.SQL_GENERATION, generationStart);
+        // 修复后的SQL同样要通过检查, 被拒绝时走拒绝修复流程
+        sqlQuery = repair(prompt, check(sqlQuery, export), export);
+        return new GeneratedSql(question, sqlQuery, failed.getSchemaFingerprint(), !export);
+    }
+
+    /**
+     * 可以让模型修复的执行错误, 返回给模型看的错误信息; 连接断开等与SQL无关的错误返回 null.
+     */
+    static String repairableError(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLTimeoutException) {
+                return "the query timed out; use more selective filters, fewer joins or pre-aggregation";
+            }
+            if (cause instanceof SQLException) {
+                String state = ((SQLException) cause).getSQLState();
+                boolean queryError = cause instanceof SQLSyntaxErrorException || cause instanceof SQLDataException
+                        || state != null && (state.startsWith("42") || state.startsWith("22"));
+                if (!queryError) {
+                    return null;
+                }
+                String message = String.valueOf(cause.getMessage());
+                return message.length() > MAX_ERROR_CHARS ? message.substring(0, MAX_ERROR_CHARS) + "..." : message;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 没有结果行的查询可能只是条件写错了, 不作为示例.
+     */
+    private void recordExample(GeneratedSql generated, ResultTable results) {
+        if (exampleStore == null || results.isEmpty()) {
+            return;
+        }
+        try {
+            exampleStore.add(generated.getQuestion(), generated.getSql());
+        } catch (RuntimeException e) {
+            logger.warn("Failed to record example for: {}", generated.getQuestion(), e);
+        }
+    }
+
+    /**
+     * 关闭示例库; 数据库连接由 {@link DatabaseService} 自己关闭.
+     */
+    public void close() {
+        if (exampleStore != null) {
+            try {
+                exampleStore.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close example store", e);
+            }
+        }
+    }
+
+    /**
+     * 第三步: 根据查询结果生成自然语言回答.
+     */
+    public String synthesizeAnswer(String question, ResultTable results) {
+        String direct = renderDirectAnswer(question, results);
+        if (direct != null) {
+            return direct;
+        }
+        String prompt = answerPrompt(question, results);
+        long start = System.nanoTime();
+        String answer = openAiService.generateResponse(prompt);
+        metrics.recordStage(RagMetrics.Stage.ANSWER_GENERATION, start);
+        logger.info("Generated answer: {}", answer);
+        return answer;
+    }
+
+    /**
+     * 简单结果直接渲染, 省去一次模型调用; 不满足条件时返回 null.
+     */
+    private String renderDirectAnswer(String question, ResultTable results) {
+        long start = System.nanoTime();
+        String answer = answerRenderer.render(question, results);
+        if (answer != null) {
+            metrics.recordStage(RagMetrics.Stage.RESULT_FORMAT, start);
+            metrics.recordDirectAnswer();
+        }
+        return answer;
+    }
+
+    private String answerPrompt(String question, ResultTable results) {
+        long start = System.nanoTime();
+        String prompt = promptBuilder.answerPrompt(question, results);
+        metrics.recordStage(RagMetrics.Stage.RESULT_FORMAT, start);
+        return prompt;
+    }
+
+    private String exportAnswerPrompt(String question, ExportedResult exported) {
+        long start = System.nanoTime();
+        String prompt = promptBuilder.exportAnswerPrompt(question, exported);
+        metrics.recordStage(RagMetrics.Stage.RESULT_FORMAT, start);
+        return prompt;
+    }
+
+    /**
+     * 流式生成SQL, 收到一条完整语句后立即返回, 不等待模型输出结尾的说明文字.
+     */
+    private String streamSql(String prompt) {
+        StreamedResponse response = openAiService.streamResponse(prompt, token -> { }, SqlStatements::isComplete);
+        logger.debug("SQL generated in {} ms (first token after {} ms, stopped early: {})",
+                response.getTotalMillis(), response.getFirstTokenMillis(), response.isStoppedEarly());
+        String text = response.getText();
+        int end = SqlStatements.endOfFirstStatement(text);
+        return end > 0 ? text.substring(0, end) : text;
+    }
+
+    private static long millisSince(long start) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    static String cleanSqlQuery(String rawQuery) {
         // 移除markdown代码块标记
-        String cleaned = rawQuery.replaceAll("```sql\\s*", "")
-                               .replaceAll("```", "")
-                               .trim();
-        
+        String cleaned = MARKDOWN_FENCE.matcher(rawQuery).replaceAll("").trim();
+
         // 移除多余的空白字符
-        cleaned = cleaned.replaceAll("\\s+", " ");
-        
+        cleaned = WHITESPACE.matcher(cleaned).replaceAll(" ");
+
         // 确保以分号结尾
         if (!cleaned.endsWith(";")) {
             cleaned += ";";
         }
-        
-        return cleaned;
-    }
-
-    private String formatResults(List<Map<String, Object>> results) {
-        if (results.isEmpty()) {
-            return "No results found.";
-        }
 
-        StringBuilder sb = new StringBuilder();
-        // 添加表头
-        sb.append(String.join(", ", results.get(0).keySet())).append("\\n");
-        
-        // 添加数据行
-        for (Map<String, Object> row : results) {
-            sb.append(String.join(", ", 
-                row.values().stream()
-                    .map(value -> value == null ? "null" : value.toString())
-                    .toList()
-            )).append("\\n");
-        }
-        
-        return sb.toString();
+        return cleaned;
     }
 }
@@ -0,0 +1,18 @@
+package com.zeeker.service;
+
+import com.zeeker.export.ExportedResult;
+import lombok.Value;
+
+/**
+ * 流式问答的结果. 首 token 时间与总耗时都从收到问题起算; 出错时 sql 可能为 null.
+ * 导出模式下 export 为完整结果的文件, 其他情况为 null.
+ */
+@Value
+public class StreamedAnswer {
+    String question;
+    String sql;
+    String answer;
+    long timeToFirstTokenMillis;
+    long totalMillis;
+    ExportedResult export;
+}
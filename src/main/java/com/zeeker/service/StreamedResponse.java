@@ -0,0 +1,15 @@
+package com.zeeker.service;
+
+import lombok.Value;
+
+/**
+ * 一次流式模型调用的结果. 时间从发出请求起算;
+ * stoppedEarly 表示调用方在流结束前已拿到所需内容, 其余 token 被丢弃.
+ */
+@Value
+public class StreamedResponse {
+    String text;
+    long firstTokenMillis;
+    long totalMillis;
+    boolean stoppedEarly;
+}
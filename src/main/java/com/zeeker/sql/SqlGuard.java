@@ -0,0 +1,254 @@
+package com.zeeker.sql;
+
+import com.alibaba.druid.DbType;
+import com.alibaba.druid.sql.SQLUtils;
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.SQLLimit;
+import com.alibaba.druid.sql.ast.SQLStatement;
+import com.alibaba.druid.sql.ast.expr.SQLAggregateExpr;
+import com.alibaba.druid.sql.ast.expr.SQLNumericLiteralExpr;
+import com.alibaba.druid.sql.ast.statement.SQLSelectItem;
+import com.alibaba.druid.sql.ast.statement.SQLSelectQuery;
+import com.alibaba.druid.sql.ast.statement.SQLSelectQueryBlock;
+import com.alibaba.druid.sql.ast.statement.SQLSelectStatement;
+import com.alibaba.druid.sql.ast.statement.SQLUnionQuery;
+import com.alibaba.druid.sql.parser.ParserException;
+import com.alibaba.druid.sql.visitor.SQLASTVisitorAdapter;
+import lombok.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 执行模型生成的 SQL 之前的检查: 本地解析后只放行单条只读 SELECT, 没有 LIMIT 或 LIMIT 过大时改写为 maxLimit + 1
+ * (执行时按 maxLimit 行截断, 多取的一行用来判断结果被截断), 再用 EXPLAIN 估算扫描行数, 超过 maxEstimatedRows 时拒绝.
+ * 拒绝原因写成可以直接交给模型修改 SQL 的说明.
+ * 数据库的 EXPLAIN 不提供 rows 列 (如 H2) 时跳过行数估算.
+ */
+public class SqlGuard {
+    private static final Logger logger = LoggerFactory.getLogger(SqlGuard.class);
+    private static final SQLUtils.FormatOption SINGLE_LINE = new SQLUtils.FormatOption(true, false);
+
+    private final DataSource dataSource;
+    private final DbType dbType;
+    private final int maxLimit;
+    private final long maxEstimatedRows;
+    private final int timeoutSeconds;
+
+    /**
+     * @param maxLimit         <= 0 时不注入 LIMIT
+     * @param maxEstimatedRows <= 0 时不执行 EXPLAIN
+     * @param timeoutSeconds   EXPLAIN 的超时, <= 0 不限制
+     */
+    public SqlGuard(DataSource dataSource, DbType dbType, int maxLimit, long maxEstimatedRows, int timeoutSeconds) {
+        this.dataSource = dataSource;
+        this.dbType = dbType;
+        this.maxLimit = maxLimit;
+        this.maxEstimatedRows = maxEstimatedRows;
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    public Verdict check(String sql) {
+        return check(sql, maxLimit, maxEstimatedRows);
+    }
+
+    /**
+     * 使用给定的 LIMIT 上限和行数估算上限检查, 用于导出等需要不同上限的场景; 两者 <= 0 时分别不检查.
+     */
+    public Verdict check(String sql, int maxLimit, long maxEstimatedRows) {
+        List<SQLStatement> statements;
+        try {
+            statements = SQLUtils.parseStatements(sql, dbType);
+        } catch (ParserException e) {
+            return Verdict.reject(sql, "The query could not be parsed: " + e.getMessage());
+        }
+        if (statements.size() != 1) {
+            return Verdict.reject(sql, "Exactly one statement is allowed, but the query contains " + statements.size() + ".");
+        }
+        if (!(statements.get(0) instanceof SQLSelectStatement)) {
+            return Verdict.reject(sql, "Only read-only SELECT statements are allowed, but the query is a "
+                    + statementKind(statements.get(0)) + " statement.");
+        }
+
+        SQLSelectStatement select = (SQLSelectStatement) statements.get(0);
+        SQLSelectQuery query = select.getSelect().getQuery();
+        LockingVisitor locking = new LockingVisitor();
+        select.accept(locking);
+        if (locking.found) {
+            return Verdict.reject(sql, "Only read-only SELECT statements are allowed; remove FOR UPDATE / INTO.");
+        }
+
+        boolean rewritten = maxLimit > 0 && applyLimit(query, maxLimit);
+        String guarded = rewritten ? SQLUtils.toSQLString(select, dbType, SINGLE_LINE) : sql;
+        if (rewritten) {
+            logger.info("Limited generated query to {} rows: {}", maxLimit, guarded);
+        }
+        if (maxEstimatedRows <= 0) {
+            return new Verdict(true, guarded, null, -1, rewritten);
+        }
+
+        long estimatedRows;
+        try {
+            estimatedRows = explain(guarded);
+        } catch (SQLException e) {
+            return Verdict.reject(sql, "The database could not plan the query: " + e.getMessage());
+        }
+        if (estimatedRows > maxEstimatedRows) {
+            return new Verdict(false, sql, String.format(
+                    "The query plan is estimated to examine %,d rows, above the limit of %,d. "
+                            + "Use selective WHERE conditions on indexed columns, join on keys instead of "
+                            + "producing cross joins, or aggregate in fewer steps.",
+                    estimatedRows, maxEstimatedRows), estimatedRows, rewritten);
+        }
+        return new Verdict(true, guarded, null, estimatedRows, rewritten);
+    }
+
+    /**
+     * 没有 LIMIT 或 LIMIT 大于 maxLimit 时改为 maxLimit + 1, 返回是否修改了语句. 调用方按 maxLimit 行截断结果,
+     * 读到多出的一行即说明结果被 LIMIT 截断, 否则恰好 maxLimit 行的结果无法和完整结果区分.
+     * 不带 GROUP BY 的纯聚合查询只返回一行, 不需要 LIMIT.
+     */
+    private static boolean applyLimit(SQLSelectQuery query, int maxLimit) {
+        int cap = maxLimit < Integer.MAX_VALUE ? maxLimit + 1 : maxLimit;
+        SQLLimit limit;
+        if (query instanceof SQLSelectQueryBlock) {
+            if (isSingleRowAggregate((SQLSelectQueryBlock) query)) {
+                return false;
+            }
+            limit = ((SQLSelectQueryBlock) query).getLimit();
+        } else if (query instanceof SQLUnionQuery) {
+            limit = ((SQLUnionQuery) query).getLimit();
+        } else {
+            return false;
+        }
+
+        if (limit == null) {
+            if (query instanceof SQLSelectQueryBlock) {
+                ((SQLSelectQueryBlock) query).setLimit(new SQLLimit(cap));
+            } else {
+                ((SQLUnionQuery) query).setLimit(new SQLLimit(cap));
+            }
+            return true;
+        }
+        SQLExpr rowCount = limit.getRowCount();
+        if (rowCount instanceof SQLNumericLiteralExpr
+                && ((SQLNumericLiteralExpr) rowCount).getNumber().longValue() <= maxLimit) {
+            return false;
+        }
+        limit.setRowCount(cap);
+        return true;
+    }
+
+    private static boolean isSingleRowAggregate(SQLSelectQueryBlock block) {
+        if (block.getGroupBy() != null || block.getSelectList().isEmpty()) {
+            return false;
+        }
+        for (SQLSelectItem item : block.getSelectList()) {
+            if (!(item.getExpr() instanceof SQLAggregateExpr)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long explain(String sql) throws SQLException {
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+            if (timeoutSeconds > 0) {
+                stmt.setQueryTimeout(timeoutSeconds);
+            }
+            try (ResultSet plan = stmt.executeQuery("EXPLAIN " + sql)) {
+                return estimateRowsExamined(plan);
+            }
+        }
+    }
+
+    /**
+     * 按 MySQL EXPLAIN 的嵌套循环模型估算扫描行数: 同一 id 的表依次连接, 每张表扫描 rows 行乘以前面各表
+     * 经 filtered 过滤后的行数; 不同 id (子查询, UNION) 相加. 结果集没有 rows 列时返回 -1.
+     */
+    static long estimateRowsExamined(ResultSet plan) throws SQLException {
+        ResultSetMetaData metaData = plan.getMetaData();
+        int idColumn = -1;
+        int rowsColumn = -1;
+        int filteredColumn = -1;
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            String label = metaData.getColumnLabel(i);
+            if ("id".equalsIgnoreCase(label)) {
+                idColumn = i;
+            } else if ("rows".equalsIgnoreCase(label)) {
+                rowsColumn = i;
+            } else if ("filtered".equalsIgnoreCase(label)) {
+                filteredColumn = i;
+            }
+        }
+        if (rowsColumn < 0) {
+            return -1;
+        }
+
+        // id -> {扫描行数, 当前连接结果的行数}
+        Map<String, double[]> selects = new LinkedHashMap<>();
+        while (plan.next()) {
+            double rows = plan.getDouble(rowsColumn);
+            double filtered = filteredColumn < 0 ? 100 : plan.getDouble(filteredColumn);
+            if (filteredColumn > 0 && plan.wasNull()) {
+                filtered = 100;
+            }
+            String id = idColumn < 0 ? "" : String.valueOf(plan.getObject(idColumn));
+            double[] select = selects.computeIfAbsent(id, k -> new double[]{0, 1});
+            select[0] += select[1] * rows;
+            select[1] *= Math.max(rows * filtered / 100, 1);
+        }
+
+        double examined = 0;
+        for (double[] select : selects.values()) {
+            examined += select[0];
+        }
+        return examined >= Long.MAX_VALUE ? Long.MAX_VALUE : (long) examined;
+    }
+
+    private static String statementKind(SQLStatement statement) {
+        String name = statement.getClass().getSimpleName();
+        // 如 MySqlUpdateStatement -> UPDATE
+        name = name.replaceFirst("^(SQL|MySql|H2|PG|Oracle)", "").replaceFirst("Statement$", "");
+        return name.isEmpty() ? "non-SELECT" : name.toUpperCase();
+    }
+
+    /**
+     * 查找任意查询块 (UNION 的各分支, 子查询) 上的 FOR UPDATE 或 SELECT ... INTO.
+     */
+    private static final class LockingVisitor extends SQLASTVisitorAdapter {
+        private boolean found;
+
+        @Override
+        public boolean visit(SQLSelectQueryBlock block) {
+            if (block.isForUpdate() || block.getInto() != null) {
+                found = true;
+            }
+            return !found;
+        }
+    }
+
+    @Value
+    public static class Verdict {
+        boolean allowed;
+        // 放行时为实际执行的 SQL (可能已改写 LIMIT), 拒绝时为原 SQL
+        String sql;
+        String reason;
+        // EXPLAIN 估算的扫描行数, 未估算时为 -1
+        long estimatedRows;
+        boolean rewritten;
+
+        static Verdict reject(String sql, String reason) {
+            return new Verdict(false, sql, reason, -1, false);
+        }
+    }
+}
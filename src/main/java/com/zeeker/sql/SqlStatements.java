@@ -0,0 +1,80 @@
+package com.zeeker.sql;
+
+/**
+ * 判断 (可能仍在流式生成中的) 模型输出是否已经包含一条完整的 SQL 语句.
+ * 引号, 反引号标识符和注释中的分号不算语句结束; markdown 代码块的结束标记也视为语句结束.
+ */
+public final class SqlStatements {
+
+    private SqlStatements() {
+    }
+
+    public static boolean isComplete(CharSequence text) {
+        return endOfFirstStatement(text) >= 0;
+    }
+
+    /**
+     * 返回第一条语句的结束位置 (分号之后或代码块结束标记处), 语句尚不完整时返回 -1.
+     */
+    public static int endOfFirstStatement(CharSequence text) {
+        boolean content = false;
+        boolean lineComment = false;
+        boolean blockComment = false;
+        char quote = 0;
+        int length = text.length();
+
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            char next = i + 1 < length ? text.charAt(i + 1) : 0;
+
+            if (lineComment) {
+                lineComment = c != '\n';
+            } else if (blockComment) {
+                if (c == '*' && next == '/') {
+                    blockComment = false;
+                    i++;
+                }
+            } else if (quote != 0) {
+                if (c == quote) {
+                    if (next == quote) {
+                        // 两个连续引号是转义
+                        i++;
+                    } else {
+                        quote = 0;
+                    }
+                } else if (c == '\\' && quote != '`') {
+                    i++;
+                }
+            } else if (isFence(text, i)) {
+                if (content) {
+                    return i;
+                }
+                // 跳过开头的 ``` 和语言标记
+                i += 2;
+                while (i + 1 < length && Character.isLetter(text.charAt(i + 1))) {
+                    i++;
+                }
+            } else if (c == '\'' || c == '"' || c == '`') {
+                quote = c;
+                content = true;
+            } else if (c == '-' && next == '-' || c == '#') {
+                lineComment = true;
+            } else if (c == '/' && next == '*') {
+                blockComment = true;
+                i++;
+            } else if (c == ';') {
+                if (content) {
+                    return i + 1;
+                }
+            } else if (!Character.isWhitespace(c)) {
+                content = true;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isFence(CharSequence text, int index) {
+        return index + 2 < text.length()
+                && text.charAt(index) == '`' && text.charAt(index + 1) == '`' && text.charAt(index + 2) == '`';
+    }
+}
@@ -0,0 +1,251 @@
+package com.zeeker.summary;
+
+import com.zeeker.query.ResultTable;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * 查询结果的单遍汇总, 代替逐行输出放进回答提示词. 逐行扫描一次, 每列统计非空数, 空值数, 最小值, 最大值,
+ * 数值列的均值, HyperLogLog 估计的不同值个数和 Space-Saving 统计的高频值; 同时保留开头的若干行,
+ * 并从其余行中蓄水池抽样. 各列状态的大小只取决于 topK 和样本行数, 与行数无关.
+ * 最小值, 最大值, 高频值和样本都只记录行号, 输出时按结果表原有的格式渲染.
+ */
+public final class ResultSummary {
+    private static final int HLL_PRECISION = 11;
+    // 高频值计数器个数与输出个数之比, 计数器越多结果越准
+    private static final int TOPK_OVERSAMPLING = 4;
+    // 抽样使用固定种子, 同一结果总是得到同样的提示词
+    private static final long SAMPLE_SEED = 0x5EED;
+
+    private final ResultTable table;
+    private final ColumnSummary[] columns;
+    private final int headRows;
+    private final int[] sampleRows;
+    private final int topK;
+
+    private ResultSummary(ResultTable table, ColumnSummary[] columns, int headRows, int[] sampleRows, int topK) {
+        this.table = table;
+        this.columns = columns;
+        this.headRows = headRows;
+        this.sampleRows = sampleRows;
+        this.topK = topK;
+    }
+
+    /**
+     * @param topK       每列输出的高频值个数
+     * @param sampleRows 样本行数, 其中一半是开头的行 (保留 ORDER BY 的前几名), 另一半从其余行中均匀抽取
+     */
+    public static ResultSummary of(ResultTable table, int topK, int sampleRows) {
+        ColumnSummary[] columns = new ColumnSummary[table.getColumnCount()];
+        for (int c = 0; c < columns.length; c++) {
+            columns[c] = new ColumnSummary(table, c, Math.max(1, topK) * TOPK_OVERSAMPLING);
+        }
+        int rowCount = table.getRowCount();
+        int headRows = Math.min(rowCount, Math.max(0, sampleRows) / 2);
+        int[] reservoir = new int[Math.min(rowCount - headRows, Math.max(0, sampleRows) - headRows)];
+        SplittableRandom random = new SplittableRandom(SAMPLE_SEED);
+
+        for (int row = 0; row < rowCount; row++) {
+            for (ColumnSummary column : columns) {
+                column.add(row);
+            }
+            int seen = row - headRows;
+            if (seen >= 0 && reservoir.length > 0) {
+                if (seen < reservoir.length) {
+                    reservoir[seen] = row;
+                } else {
+                    int slot = random.nextInt(seen + 1);
+                    if (slot < reservoir.length) {
+                        reservoir[slot] = row;
+                    }
+                }
+            }
+        }
+
+        int[] sample = new int[headRows + reservoir.length];
+        for (int i = 0; i < headRows; i++) {
+            sample[i] = i;
+        }
+        Arrays.sort(reservoir);
+        System.arraycopy(reservoir, 0, sample, headRows, reservoir.length);
+        return new ResultSummary(table, columns, headRows, sample, Math.max(1, topK));
+    }
+
+    public ColumnSummary getColumn(int column) {
+        return columns[column];
+    }
+
+    /**
+     * 样本行号, 按结果中的顺序排列.
+     */
+    public int[] getSampleRows() {
+        return sampleRows.clone();
+    }
+
+    /**
+     * 样本中开头连续的行数, 其余样本行是抽样得到的.
+     */
+    public int getHeadRows() {
+        return headRows;
+    }
+
+    /**
+     * 每列一行: "- name (kind): N values, N null, ~N distinct, min .., max .., mean .., top: v (n), ..".
+     */
+    public void appendColumns(StringBuilder sb) {
+        for (ColumnSummary column : columns) {
+            column.append(sb, topK);
+        }
+    }
+
+    public static final class ColumnSummary {
+        private final ResultTable table;
+        private final int column;
+        private final ResultTable.Kind kind;
+        private final HyperLogLog distinct = new HyperLogLog(HLL_PRECISION);
+        private final TopK frequent;
+        private long count;
+        private long nulls;
+        private int minRow = -1;
+        private int maxRow = -1;
+        private double mean;
+
+        ColumnSummary(ResultTable table, int column, int counters) {
+            this.table = table;
+            this.column = column;
+            this.kind = table.getKind(column);
+            this.frequent = new TopK(counters);
+        }
+
+        void add(int row) {
+            if (table.isNull(row, column)) {
+                nulls++;
+                return;
+            }
+            count++;
+            long key = key(row);
+            distinct.add(HyperLogLog.hash(key));
+            frequent.add(key, row);
+            if (kind != ResultTable.Kind.STRING && kind != ResultTable.Kind.BOOLEAN) {
+                if (minRow < 0 || compare(row, minRow) < 0) {
+                    minRow = row;
+                }
+                if (maxRow < 0 || compare(row, maxRow) > 0) {
+                    maxRow = row;
+                }
+            }
+            if (isNumeric()) {
+                mean += (table.getDouble(row, column) - mean) / count;
+            }
+        }
+
+        /**
+         * 值的 64 位键: 整数类直接取原始值, 浮点与定点数取 double 的位模式 (1.5 与 1.50 相同), 字符串取 FNV-1a 哈希.
+         */
+        private long key(int row) {
+            switch (kind) {
+                case DOUBLE:
+                case DECIMAL:
+                    double value = table.getDouble(row, column);
+                    return Double.doubleToLongBits(value == 0 ? 0.0 : value);
+                case STRING:
+                    String text = table.getString(row, column);
+                    long hash = 0xcbf29ce484222325L;
+                    for (int i = 0; i < text.length(); i++) {
+                        hash = (hash ^ text.charAt(i)) * 0x100000001b3L;
+                    }
+                    return hash;
+                default:
+                    return table.getLong(row, column);
+            }
+        }
+
+        private int compare(int a, int b) {
+            if (kind == ResultTable.Kind.DOUBLE || kind == ResultTable.Kind.DECIMAL) {
+                return Double.compare(table.getDouble(a, column), table.getDouble(b, column));
+            }
+            return Long.compare(table.getLong(a, column), table.getLong(b, column));
+        }
+
+        private boolean isNumeric() {
+            return kind == ResultTable.Kind.LONG || kind == ResultTable.Kind.DOUBLE || kind == ResultTable.Kind.DECIMAL;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getNulls() {
+            return nulls;
+        }
+
+        /**
+         * 估计的不同值个数, 不超过非空值个数.
+         */
+        public long getDistinct() {
+            return Math.min(count, distinct.estimate());
+        }
+
+        public String getMin() {
+            return minRow < 0 ? null : table.getString(minRow, column);
+        }
+
+        public String getMax() {
+            return maxRow < 0 ? null : table.getString(maxRow, column);
+        }
+
+        /**
+         * 数值列的均值, 其他列或没有非空值时为 NaN.
+         */
+        public double getMean() {
+            return isNumeric() && count > 0 ? mean : Double.NaN;
+        }
+
+        public List<TopK.Entry> getTop(int k) {
+            return frequent.top(k);
+        }
+
+        void append(StringBuilder sb, int topK) {
+            sb.append("- ").append(table.getColumnName(column))
+                    .append(" (").append(kind.name().toLowerCase(Locale.ROOT)).append("): ")
+                    .append(count).append(" values, ").append(nulls).append(" null");
+            if (count == 0) {
+                sb.append('\n');
+                return;
+            }
+            sb.append(", ~").append(getDistinct()).append(" distinct");
+            if (minRow >= 0) {
+                sb.append(", min ");
+                table.appendValue(sb, minRow, column);
+                sb.append(", max ");
+                table.appendValue(sb, maxRow, column);
+            }
+            if (isNumeric()) {
+                sb.append(", mean ");
+                if (Double.isFinite(mean)) {
+                    sb.append(new BigDecimal(mean).round(MathContext.DECIMAL32).stripTrailingZeros().toPlainString());
+                } else {
+                    sb.append(mean);
+                }
+            }
+            // 只输出确定出现过不止一次的值; 值都各不相同时被替换的计数器只剩误差, 没有意义
+            List<TopK.Entry> top = frequent.top(topK);
+            boolean first = true;
+            for (TopK.Entry entry : top) {
+                if (entry.getCount() - entry.getError() <= 1) {
+                    continue;
+                }
+                sb.append(first ? ", top: " : ", ");
+                first = false;
+                table.appendValue(sb, entry.getRow(), column);
+                sb.append(" (").append(entry.getError() > 0 ? "~" : "").append(entry.getCount()).append(')');
+            }
+            sb.append('\n');
+        }
+    }
+}
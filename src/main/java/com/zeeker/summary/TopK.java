@@ -0,0 +1,84 @@
+package com.zeeker.summary;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Space-Saving 频繁项统计: 最多 capacity 个计数器. 新值到来且计数器已满时替换计数最小的计数器,
+ * 新计数为被替换的计数加一, 被替换的计数记为误差上界. 出现次数超过 总数 / capacity 的值一定会被保留.
+ * 值以 64 位键表示, 同时记下第一次出现的行号, 供输出时渲染原值.
+ */
+public class TopK {
+    private final int capacity;
+    private final Map<Long, Entry> counters;
+
+    public TopK(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.counters = new HashMap<>(this.capacity * 2);
+    }
+
+    public void add(long key, int row) {
+        Entry entry = counters.get(key);
+        if (entry != null) {
+            entry.count++;
+            return;
+        }
+        if (counters.size() < capacity) {
+            counters.put(key, new Entry(key, row));
+            return;
+        }
+        Entry min = null;
+        for (Entry candidate : counters.values()) {
+            if (min == null || candidate.count < min.count) {
+                min = candidate;
+            }
+        }
+        counters.remove(min.key);
+        min.error = min.count;
+        min.count++;
+        min.key = key;
+        min.row = row;
+        counters.put(key, min);
+    }
+
+    /**
+     * 计数最高的 k 个值, 按计数降序, 计数相同时先出现的在前.
+     */
+    public List<Entry> top(int k) {
+        List<Entry> entries = new ArrayList<>(counters.values());
+        entries.sort((a, b) -> a.count != b.count ? Long.compare(b.count, a.count) : Integer.compare(a.row, b.row));
+        return entries.size() > k ? new ArrayList<>(entries.subList(0, k)) : entries;
+    }
+
+    public static final class Entry {
+        private long key;
+        private int row;
+        private long count = 1;
+        private long error;
+
+        Entry(long key, int row) {
+            this.key = key;
+            this.row = row;
+        }
+
+        /**
+         * 第一次出现该值的行.
+         */
+        public int getRow() {
+            return row;
+        }
+
+        /**
+         * 出现次数的上界; error 为 0 时是精确值.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        public long getError() {
+            return error;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.zeeker.batch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zeeker.config.BatchConfig;
+import com.zeeker.config.RagConfig;
+import com.zeeker.service.DatabaseService;
+import com.zeeker.service.OpenAiService;
+import com.zeeker.service.RagService;
+import com.zeeker.support.EmbeddedDatabase;
+import com.zeeker.support.MockOpenAiServer;
+import junit.framework.TestCase;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class BatchProcessorTest extends TestCase {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private DatabaseService databaseService;
+    private MockOpenAiServer llm;
+    private RagService ragService;
+
+    @Override
+    protected void setUp() throws Exception {
+        String database = "batch_" + getName();
+        EmbeddedDatabase.createSyntheticSchema(database, 16, 100);
+        databaseService = new DatabaseService(EmbeddedDatabase.config(database));
+        llm = new MockOpenAiServer(MockOpenAiServer.sqlThenAnswer("SELECT COUNT(*) FROM customer", "There are 100 customers."),
+                () -> 20);
+        RagConfig ragConfig = new RagConfig();
+        // 关闭 SQL 缓存和直接回答, 模型调用次数只由断点决定
+        ragConfig.setSqlCacheMaxEntries(0);
+        ragConfig.setDirectAnswerEnabled(false);
+        ragService = new RagService(databaseService, new OpenAiService(llm.config()), ragConfig);
+    }
+
+    @Override
+    protected void tearDown() {
+        llm.close();
+        databaseService.close();
+    }
+
+    public void testPipelineAnswersEveryQuestion() throws Exception {
+        int count = 60;
+        Path output = Files.createTempDirectory("batch").resolve("answers.jsonl");
+
+        BatchSummary summary = new BatchProcessor(ragService, new BatchConfig()).run(questions(1, count), output);
+
+        List<String> lines = Files.readAllLines(output, StandardCharsets.UTF_8);
+        assertEquals(count, lines.size());
+        Set<String> ids = new HashSet<>();
+        for (String line : lines) {
+            JsonNode json = MAPPER.readTree(line);
+            ids.add(json.path("id").asText());
+            assertEquals("There are 100 customers.", json.path("answer").asText());
+            assertEquals(1, json.path("rows").asInt());
+        }
+        assertEquals(count, ids.size());
+        assertEquals(count, summary.getAnswered());
+        assertEquals(2 * count, llm.getRequestCount());
+        // 逐个处理至少需要 count * 2 * 20ms
+        System.out.printf("Batch of %d questions: %d ms (%.1f questions/s, sequential lower bound %d ms)%n",
+                count, summary.getElapsedMillis(), summary.getQuestionsPerSecond(), count * 2 * 20);
+        assertTrue(summary.getElapsedMillis() < count * 2 * 20);
+    }
+
+    public void testResumeSkipsAnsweredQuestionsAndReusesCheckpointedSql() throws Exception {
+        Path output = Files.createTempDirectory("batch").resolve("answers.jsonl");
+        // 模拟中途退出: q1, q2 已完成, 结果文件末尾有半行; q3, q4 已生成 SQL
+        Files.writeString(output, "{\"id\":\"q1\",\"answer\":\"a\"}\n{\"id\":\"q2\",\"answer\":\"b\"}\n{\"id\":\"q3\",\"ans");
+        Files.writeString(BatchCheckpoint.journalPath(output),
+                "{\"id\":\"q3\",\"sql\":\"SELECT COUNT(*) FROM customer;\"}\n"
+                        + "{\"id\":\"q4\",\"sql\":\"SELECT COUNT(*) FROM customer;\"}\n{\"id\":\"q5\",\"s");
+
+        BatchSummary summary = new BatchProcessor(ragService, new BatchConfig()).run(questions(1, 6), output);
+
+        assertEquals(2, summary.getSkipped());
+        assertEquals(2, summary.getResumedSql());
+        assertEquals(4, summary.getAnswered());
+        // q5, q6 生成 SQL, q3-q6 生成回答
+        assertEquals(6, llm.getRequestCount());
+
+        List<String> lines = Files.readAllLines(output, StandardCharsets.UTF_8);
+        assertEquals(6, lines.size());
+        Set<String> ids = new HashSet<>();
+        for (String line : lines) {
+            ids.add(MAPPER.readTree(line).path("id").asText());
+        }
+        assertEquals(Set.of("q1", "q2", "q3", "q4", "q5", "q6"), ids);
+    }
+
+    public void testResumeRetriesFailedQuestions() throws Exception {
+        Path output = Files.createTempDirectory("batch").resolve("answers.jsonl");
+        // q2 上次因为模型或数据库临时故障失败
+        Files.writeString(output, "{\"id\":\"q1\",\"answer\":\"a\"}\n{\"id\":\"q2\",\"error\":\"HTTP 429\"}\n");
+
+        BatchSummary summary = new BatchProcessor(ragService, new BatchConfig()).run(questions(1, 2), output);
+
+        assertEquals(1, summary.getSkipped());
+        assertEquals(1, summary.getAnswered());
+        List<String> lines = Files.readAllLines(output, StandardCharsets.UTF_8);
+        assertEquals(3, lines.size());
+        JsonNode retried = MAPPER.readTree(lines.get(2));
+        assertEquals("q2", retried.path("id").asText());
+        assertFalse(retried.has("error"));
+
+        // 成功的行覆盖之前失败的行, 再次重跑时跳过
+        try (BatchCheckpoint checkpoint = BatchCheckpoint.open(output)) {
+            assertTrue(checkpoint.isCompleted("q2"));
+        }
+    }
+
+    public void testInvalidLinesAreReportedWithoutStoppingTheBatch() throws Exception {
+        Path output = Files.createTempDirectory("batch").resolve("answers.jsonl");
+        BufferedReader input = new BufferedReader(new StringReader(
+                "{\"question\": \"How many customers?\"}\nnot json\n{\"id\": \"x\"}\n"));
+
+        BatchSummary summary = new BatchProcessor(ragService, new BatchConfig()).run(input, output);
+
+        assertEquals(1, summary.getAnswered());
+        assertEquals(2, summary.getFailed());
+        assertTrue(Files.readString(output).contains("\"id\":\"2\",\"question\":null"));
+    }
+
+    private static BufferedReader questions(int from, int to) {
+        StringBuilder input = new StringBuilder();
+        for (int i = from; i <= to; i++) {
+            input.append("{\"id\": \"q").append(i).append("\", \"question\": \"How many customers are there? #")
+                    .append(i).append("\"}\n");
+        }
+        return new BufferedReader(new StringReader(input.toString()));
+    }
+}
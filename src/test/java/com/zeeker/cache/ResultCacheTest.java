@@ -0,0 +1,237 @@
+package com.zeeker.cache;
+
+import com.alibaba.druid.DbType;
+import com.zeeker.query.QueryLimits;
+import com.zeeker.query.QueryStats;
+import com.zeeker.query.ResultTable;
+import com.zeeker.service.DatabaseService;
+import com.zeeker.support.EmbeddedDatabase;
+import junit.framework.TestCase;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ResultCacheTest extends TestCase {
+    private static final QueryLimits LIMITS = new QueryLimits(100, 0, 0);
+    private final AtomicLong clock = new AtomicLong();
+    private DatabaseService databaseService;
+
+    @Override
+    protected void setUp() throws Exception {
+        try (Connection conn = EmbeddedDatabase.connect("result_cache"); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS orders (id BIGINT, status VARCHAR(16))");
+            stmt.execute("CREATE TABLE IF NOT EXISTS customer (id BIGINT, name VARCHAR(16))");
+            stmt.execute("DELETE FROM orders");
+            stmt.execute("INSERT INTO orders VALUES (1, 'paid'), (2, 'open')");
+        }
+        databaseService = new DatabaseService(EmbeddedDatabase.config("result_cache"));
+    }
+
+    @Override
+    protected void tearDown() {
+        databaseService.close();
+    }
+
+    public void testNormalizedSqlSharesEntry() {
+        ResultCache cache = cache(1 << 20, 60, Map.of());
+        AtomicInteger loads = new AtomicInteger();
+
+        ResultTable first = cache.get("SELECT id, status FROM orders WHERE id = 1", LIMITS, () -> load(loads, "SELECT 1"));
+        ResultTable second = cache.get("select id,status\n  from orders where id=1;", LIMITS, () -> load(loads, "SELECT 1"));
+
+        assertEquals(1, loads.get());
+        assertEquals(first.toText(), second.toText());
+        assertEquals(1, cache.getStats().getHits());
+        assertEquals(1, cache.getStats().getMisses());
+
+        // 查询上限不同的结果不能共用
+        cache.get("SELECT id, status FROM orders WHERE id = 1", new QueryLimits(1, 0, 0), () -> load(loads, "SELECT 1"));
+        assertEquals(2, loads.get());
+    }
+
+    public void testParsesReferencedTables() {
+        ResultCache cache = cache(1 << 20, 60, Map.of());
+
+        ResultCache.Query query = cache.parse("SELECT c.name, COUNT(*) FROM shop.`Orders` o JOIN customer c ON c.id = o.id "
+                + "WHERE o.status IN (SELECT status FROM order_status) GROUP BY c.name");
+
+        assertEquals(Set.of("orders", "customer", "order_status"), query.tables);
+        assertNull(cache.parse("SELECT FROM WHERE"));
+        assertNull(cache.parse("DELETE FROM orders"));
+    }
+
+    public void testInvalidationOnlyDropsEntriesReadingTheTable() {
+        ResultCache cache = cache(1 << 20, 60, Map.of());
+        AtomicInteger loads = new AtomicInteger();
+        cache.get("SELECT * FROM orders", LIMITS, () -> load(loads, "SELECT 1"));
+        cache.get("SELECT * FROM customer", LIMITS, () -> load(loads, "SELECT 2"));
+        cache.get("SELECT * FROM orders o JOIN customer c ON c.id = o.id", LIMITS, () -> load(loads, "SELECT 3"));
+
+        cache.invalidateTables(List.of("ORDERS"));
+
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.getStats().getInvalidations());
+        cache.get("SELECT * FROM customer", LIMITS, () -> load(loads, "SELECT 2"));
+        assertEquals(3, loads.get());
+    }
+
+    public void testPerTableTtl() {
+        ResultCache cache = cache(1 << 20, 60, Map.of("orders", 5L, "audit_log", 0L));
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get("SELECT * FROM orders", LIMITS, () -> load(loads, "SELECT 1"));
+        cache.get("SELECT * FROM customer", LIMITS, () -> load(loads, "SELECT 2"));
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(6));
+        cache.get("SELECT * FROM orders", LIMITS, () -> load(loads, "SELECT 1"));
+        cache.get("SELECT * FROM customer", LIMITS, () -> load(loads, "SELECT 2"));
+        assertEquals(3, loads.get());
+        assertEquals(1, cache.getStats().getExpirations());
+
+        // TTL 为 0 的表不缓存
+        cache.get("SELECT * FROM audit_log", LIMITS, () -> load(loads, "SELECT 1"));
+        cache.get("SELECT * FROM audit_log", LIMITS, () -> load(loads, "SELECT 1"));
+        assertEquals(5, loads.get());
+        assertEquals(2, cache.getStats().getUncacheable());
+    }
+
+    public void testMemoryBudgetEvictsLeastRecentlyUsed() {
+        ResultTable sample = databaseResult("SELECT id, status FROM orders");
+        ResultCache probe = cache(1 << 20, 60, Map.of());
+        probe.get("SELECT * FROM orders WHERE id > 9", LIMITS, () -> sample);
+        // 预算只够放下五个同样大小的条目
+        long budget = probe.getStats().getBytes() * 11 / 2;
+        ResultCache cache = cache(budget, 60, Map.of());
+
+        for (int i = 0; i < 5; i++) {
+            cache.get("SELECT * FROM orders WHERE id > " + i, LIMITS, () -> sample);
+        }
+        assertEquals(5, cache.size());
+        cache.get("SELECT * FROM orders WHERE id > 0", LIMITS, () -> sample);
+        cache.get("SELECT * FROM orders WHERE id > 5", LIMITS, () -> sample);
+
+        ResultCache.Stats stats = cache.getStats();
+        assertEquals(1, stats.getEvictions());
+        assertTrue(stats.getBytes() <= budget);
+        AtomicInteger loads = new AtomicInteger();
+        cache.get("SELECT * FROM orders WHERE id > 0", LIMITS, () -> load(loads, "SELECT 1"));
+        assertEquals(0, loads.get());
+        cache.get("SELECT * FROM orders WHERE id > 1", LIMITS, () -> load(loads, "SELECT 1"));
+        assertEquals(1, loads.get());
+    }
+
+    public void testConcurrentMissesRunOneQuery() throws Exception {
+        ResultCache cache = cache(1 << 20, 60, Map.of());
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        int callers = 8;
+
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<ResultTable>> results = new ArrayList<>();
+            results.add(executor.submit(() -> cache.get("SELECT * FROM orders", LIMITS, () -> {
+                loading.countDown();
+                await(release);
+                return load(loads, "SELECT id, status FROM orders");
+            })));
+            loading.await(5, TimeUnit.SECONDS);
+            for (int i = 1; i < callers; i++) {
+                results.add(executor.submit(() -> cache.get("SELECT * FROM orders", LIMITS,
+                        () -> load(loads, "SELECT id, status FROM orders"))));
+            }
+            // 等其余调用进入等待后再放行第一个查询
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (cache.getStats().getCoalesced() < callers - 1 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            for (Future<ResultTable> result : results) {
+                assertEquals(2, result.get(5, TimeUnit.SECONDS).getRowCount());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+        assertEquals(callers - 1, cache.getStats().getCoalesced());
+    }
+
+    public void testFailedLoadIsSharedAndNotCached() {
+        ResultCache cache = cache(1 << 20, 60, Map.of());
+        try {
+            cache.get("SELECT * FROM orders", LIMITS, () -> {
+                throw new RuntimeException("Failed to execute query");
+            });
+            fail("Expected the load failure to propagate");
+        } catch (RuntimeException e) {
+            assertEquals("Failed to execute query", e.getMessage());
+        }
+        assertEquals(0, cache.size());
+    }
+
+    public void testDatabaseServiceServesCachedResultsUntilInvalidated() throws Exception {
+        assertEquals(2, databaseService.executeQuery("SELECT * FROM orders").getRowCount());
+        try (Connection conn = EmbeddedDatabase.connect("result_cache"); Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO orders VALUES (3, 'open')");
+        }
+
+        assertEquals(2, databaseService.executeQuery("SELECT * FROM orders").getRowCount());
+        databaseService.invalidateTables(List.of("orders"));
+        assertEquals(3, databaseService.executeQuery("SELECT * FROM orders").getRowCount());
+        assertEquals(1, databaseService.getResultCacheStats().getHits());
+    }
+
+    public void testSchemaChangeInvalidatesAffectedTables() throws Exception {
+        databaseService.executeQuery("SELECT * FROM orders");
+        databaseService.executeQuery("SELECT * FROM customer");
+        try (Connection conn = EmbeddedDatabase.connect("result_cache"); Statement stmt = conn.createStatement()) {
+            stmt.execute("ALTER TABLE customer ADD COLUMN email VARCHAR(64)");
+        }
+        try {
+            assertTrue(databaseService.refreshChangedTables());
+            assertEquals(1, databaseService.getResultCacheStats().getEntries());
+            assertEquals(3, databaseService.executeQuery("SELECT * FROM customer").getColumnCount());
+        } finally {
+            try (Connection conn = EmbeddedDatabase.connect("result_cache"); Statement stmt = conn.createStatement()) {
+                stmt.execute("ALTER TABLE customer DROP COLUMN email");
+            }
+        }
+    }
+
+    private ResultCache cache(long maxBytes, long ttlSeconds, Map<String, Long> tableTtlSeconds) {
+        Map<String, Long> tableTtlNanos = new HashMap<>();
+        tableTtlSeconds.forEach((table, seconds) -> tableTtlNanos.put(table, TimeUnit.SECONDS.toNanos(seconds)));
+        return new ResultCache(maxBytes, TimeUnit.SECONDS.toNanos(ttlSeconds), tableTtlNanos, DbType.mysql, clock::get);
+    }
+
+    private ResultTable load(AtomicInteger loads, String sql) {
+        loads.incrementAndGet();
+        return databaseResult(sql);
+    }
+
+    private ResultTable databaseResult(String sql) {
+        ResultTable.Builder builder = new ResultTable.Builder();
+        QueryStats stats = databaseService.streamQuery(sql, LIMITS, builder);
+        return builder.build(stats);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
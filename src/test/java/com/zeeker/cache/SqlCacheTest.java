@@ -0,0 +1,124 @@
+package com.zeeker.cache;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SqlCacheTest extends TestCase {
+    private final AtomicLong clock = new AtomicLong();
+
+    public void testExactMatchUsesNormalizedQuestion() {
+        SqlCache cache = new SqlCache(10, 0, SqlCache.EvictionPolicy.LRU, 0, clock::get);
+        cache.put("How many orders?", "s1", "SELECT COUNT(*) FROM orders;");
+
+        assertEquals("SELECT COUNT(*) FROM orders;", cache.get("  how   many ORDERS ", "s1"));
+        assertNull(cache.get("how many customers", "s1"));
+        assertEquals(1, cache.getStats().getHits());
+        assertEquals(1, cache.getStats().getMisses());
+    }
+
+    public void testSchemaChangeInvalidatesEntries() {
+        SqlCache cache = new SqlCache(10, 0, SqlCache.EvictionPolicy.LRU, 0, clock::get);
+        cache.put("how many orders", "s1", "SELECT 1;");
+
+        assertNull(cache.get("how many orders", "s2"));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getStats().getInvalidations());
+    }
+
+    public void testTtlExpiry() {
+        SqlCache cache = new SqlCache(10, TimeUnit.SECONDS.toNanos(60), SqlCache.EvictionPolicy.LRU, 0, clock::get);
+        cache.put("how many orders", "s1", "SELECT 1;");
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(61));
+
+        assertNull(cache.get("how many orders", "s1"));
+        assertEquals(1, cache.getStats().getExpirations());
+    }
+
+    public void testLruAndLfuEviction() {
+        SqlCache lru = new SqlCache(2, 0, SqlCache.EvictionPolicy.LRU, 0, clock::get);
+        lru.put("a", "s", "A");
+        lru.put("b", "s", "B");
+        lru.get("a", "s");
+        lru.put("c", "s", "C");
+        assertEquals("A", lru.get("a", "s"));
+        assertNull(lru.get("b", "s"));
+
+        SqlCache lfu = new SqlCache(2, 0, SqlCache.EvictionPolicy.LFU, 0, clock::get);
+        lfu.put("a", "s", "A");
+        lfu.put("b", "s", "B");
+        lfu.get("a", "s");
+        lfu.get("a", "s");
+        lfu.get("b", "s");
+        lfu.put("c", "s", "C");
+        assertEquals("C", lfu.get("c", "s"));
+        assertNull(lfu.get("b", "s"));
+        assertEquals(1, lfu.getStats().getEvictions());
+    }
+
+    public void testLfuDoesNotEvictTheEntryJustInserted() {
+        SqlCache lfu = new SqlCache(2, 0, SqlCache.EvictionPolicy.LFU, 0, clock::get);
+        lfu.put("a", "s", "A");
+        lfu.put("b", "s", "B");
+        lfu.get("a", "s");
+        lfu.get("b", "s");
+        for (String question : new String[]{"c", "d", "e"}) {
+            lfu.put(question, "s", question.toUpperCase());
+            assertEquals(question.toUpperCase(), lfu.get(question, "s"));
+        }
+        assertEquals(2, lfu.size());
+    }
+
+    public void testStaleFingerprintDoesNotResetTheCache() {
+        SqlCache cache = new SqlCache(10, 0, SqlCache.EvictionPolicy.LRU, 0, clock::get);
+        cache.put("how many orders", "s1", "SELECT 1;");
+        // 表结构刷新后的新请求
+        assertNull(cache.get("how many orders", "s2"));
+        cache.put("how many orders", "s2", "SELECT 2;");
+
+        // 刷新前开始的请求带着旧指纹写回和查找
+        cache.put("how many customers", "s1", "SELECT 3;");
+        assertNull(cache.get("how many customers", "s1"));
+
+        assertEquals("SELECT 2;", cache.get("how many orders", "s2"));
+        assertNull(cache.get("how many customers", "s2"));
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getStats().getInvalidations());
+    }
+
+    public void testSimilarityLookupRequiresSameLiterals() {
+        SqlCache cache = new SqlCache(10, 0, SqlCache.EvictionPolicy.LRU, 0.8, clock::get);
+        cache.put("total sales amount per region in 2023", "s", "SELECT 2023;");
+
+        assertEquals("SELECT 2023;", cache.get("total sales amounts by region in 2023", "s"));
+        assertNull(cache.get("total sales amount per region in 2024", "s"));
+        assertEquals(1, cache.getStats().getSimilarHits());
+    }
+
+    public void testConcurrentAccessStaysBounded() throws Exception {
+        SqlCache cache = new SqlCache(64, 0, SqlCache.EvictionPolicy.LFU, 0.9, clock::get);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int seed = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    String question = "question " + ((i * 31 + seed) % 200);
+                    if (cache.get(question, "s") == null) {
+                        cache.put(question, "s", "SELECT " + i);
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(cache.size() <= 64);
+        SqlCache.Stats stats = cache.getStats();
+        assertEquals(16000, stats.getHits() + stats.getSimilarHits() + stats.getMisses());
+    }
+}
@@ -0,0 +1,119 @@
+package com.zeeker.examples;
+
+import junit.framework.TestCase;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+public class ExampleStoreTest extends TestCase {
+    private static final String[] AGGREGATES = {"total", "average", "maximum", "minimum", "count", "median", "sum", "top"};
+    private static final String[] METRICS = {"amount", "price", "quantity", "discount", "score", "revenue", "cost",
+            "margin", "weight", "duration", "rating", "balance"};
+    private static final String[] ENTITIES = {"customer", "order", "product", "invoice", "payment", "shipment",
+            "supplier", "employee", "department", "inventory", "warehouse", "campaign", "region", "store", "contract", "ticket"};
+    private static final String[] CITIES = {"paris", "london", "berlin", "madrid", "rome", "vienna", "prague", "warsaw",
+            "lisbon", "dublin", "oslo", "helsinki", "athens", "zurich", "munich", "milan", "lyon", "porto", "krakow", "riga"};
+
+    public void testFindsSimilarExamplesAcrossReopen() throws Exception {
+        Path directory = Files.createTempDirectory("examples");
+        try (ExampleStore store = ExampleStore.open(directory)) {
+            assertTrue(store.add("Total payment amount per customer", "SELECT customer_id, SUM(amount) FROM payment GROUP BY customer_id;"));
+            assertTrue(store.add("How many shipments are in each status?", "SELECT status, COUNT(*) FROM shipment GROUP BY status;"));
+            assertTrue(store.add("List the top 10 products by price", "SELECT name FROM product ORDER BY price DESC LIMIT 10;"));
+            // 只差大小写和标点的问题视为重复
+            assertFalse(store.add("total payment amount per customer?", "SELECT 1;"));
+            assertFalse(store.add("?!", "SELECT 1;"));
+        }
+
+        try (ExampleStore store = ExampleStore.open(directory)) {
+            assertEquals(3, store.size());
+            List<Example> examples = store.findSimilar("What is the total payment amount for each customer?", 2, 0.3);
+            assertEquals(1, examples.size());
+            assertEquals("Total payment amount per customer", examples.get(0).getQuestion());
+            assertEquals("SELECT customer_id, SUM(amount) FROM payment GROUP BY customer_id;", examples.get(0).getSql());
+            assertEquals(1.0, examples.get(0).getSimilarity(), 1e-9);
+
+            examples = store.findSimilar("Top products by amount", 3, 0.1);
+            assertEquals("List the top 10 products by price", examples.get(0).getQuestion());
+            assertTrue(store.findSimilar("Employees of the sales department", 3, 0.3).isEmpty());
+
+            ExampleStore.Stats stats = store.getStats();
+            assertEquals(3, stats.getExamples());
+            assertEquals(3, stats.getLookups());
+            assertEquals(2, stats.getHits());
+        }
+    }
+
+    public void testRecoversFromIncompleteWrites() throws Exception {
+        Path directory = Files.createTempDirectory("examples");
+        try (ExampleStore store = ExampleStore.open(directory)) {
+            store.add("Total payment amount per customer", "SELECT SUM(amount) FROM payment;");
+            store.add("Shipments per status", "SELECT status, COUNT(*) FROM shipment GROUP BY status;");
+        }
+        Path data = directory.resolve("examples.dat");
+        long size = Files.size(data);
+        // 写了一半的记录, 且索引丢失
+        try (FileChannel channel = FileChannel.open(data, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.allocate(12).putInt(100).putInt(0).putInt(7).flip());
+        }
+        Files.delete(directory.resolve("examples.idx"));
+
+        try (ExampleStore store = ExampleStore.open(directory)) {
+            assertEquals(2, store.size());
+            assertEquals(size, Files.size(data));
+            assertTrue(store.add("Average product price", "SELECT AVG(price) FROM product;"));
+            assertEquals("Shipments per status", store.findSimilar("shipment status", 1, 0.3).get(0).getQuestion());
+        }
+        try (ExampleStore store = ExampleStore.open(directory)) {
+            assertEquals(3, store.size());
+            assertEquals("SELECT AVG(price) FROM product;", store.findSimilar("average price of products", 1, 0.3).get(0).getSql());
+        }
+    }
+
+    public void testLookupStaysUnderAMillisecondWith100kExamples() throws Exception {
+        Path directory = Files.createTempDirectory("examples");
+        int count = 100_000;
+        long start = System.nanoTime();
+        try (ExampleStore store = ExampleStore.open(directory)) {
+            for (int i = 0; i < count; i++) {
+                store.add(question(i), "SELECT " + i + ";");
+            }
+        }
+        System.out.printf("Appended %d examples in %d ms%n", count, (System.nanoTime() - start) / 1_000_000);
+
+        start = System.nanoTime();
+        try (ExampleStore store = ExampleStore.open(directory)) {
+            System.out.printf("Opened %d examples in %d ms%n", store.size(), (System.nanoTime() - start) / 1_000_000);
+            assertEquals(count, store.size());
+
+            for (int i = 0; i < 2_000; i++) {
+                store.findSimilar(question(i * 37 % count), 3, 0.3);
+            }
+            int lookups = 5_000;
+            start = System.nanoTime();
+            for (int i = 0; i < lookups; i++) {
+                List<Example> examples = store.findSimilar(question(i * 7919 % count), 3, 0.3);
+                assertEquals("SELECT " + (i * 7919 % count) + ";", examples.get(0).getSql());
+            }
+            double micros = (System.nanoTime() - start) / 1e3 / lookups;
+            System.out.printf("Average lookup over %d examples: %.1f us%n", count, micros);
+            assertTrue("average lookup took " + micros + " us", micros < 1000);
+        }
+    }
+
+    private static String question(int i) {
+        String aggregate = AGGREGATES[i % AGGREGATES.length];
+        i /= AGGREGATES.length;
+        String metric = METRICS[i % METRICS.length];
+        i /= METRICS.length;
+        String entity = ENTITIES[i % ENTITIES.length];
+        i /= ENTITIES.length;
+        String city = CITIES[i % CITIES.length];
+        i /= CITIES.length;
+        return "What is the " + aggregate + " " + metric + " of " + entity + " records in " + city + " during " + (2000 + i);
+    }
+}
@@ -0,0 +1,170 @@
+package com.zeeker.export;
+
+import com.zeeker.config.DatabaseConfig;
+import com.zeeker.query.QueryLimits;
+import com.zeeker.query.ResultTable;
+import com.zeeker.service.DatabaseService;
+import com.zeeker.support.EmbeddedDatabase;
+import junit.framework.TestCase;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+public class ResultExporterTest extends TestCase {
+
+    private static DatabaseConfig config(String database, Path exportPath) throws Exception {
+        try (Connection conn = EmbeddedDatabase.connect(database); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS note (id BIGINT, body VARCHAR(64), amount DECIMAL(10,2), "
+                    + "created DATE)");
+            stmt.execute("DELETE FROM note");
+            // 每 10 行一个空值, 每 7 行一个需要转义的值
+            stmt.execute("INSERT INTO note SELECT \"X\", CASE WHEN MOD(\"X\", 10) = 0 THEN NULL "
+                    + "WHEN MOD(\"X\", 7) = 0 THEN CONCAT('say \"hi\", ', \"X\") ELSE CONCAT('note-', \"X\") END, "
+                    + "\"X\" * 1.25, DATEADD('DAY', \"X\", DATE '2024-01-01') FROM SYSTEM_RANGE(1, 1000)");
+        }
+        DatabaseConfig config = EmbeddedDatabase.config(database);
+        config.setExportPath(exportPath.toString());
+        // 小段长和小缓冲区, 让导出跨越多个段和多次写出
+        config.setExportChunkRows(64);
+        config.setExportBufferBytes(4096);
+        return config;
+    }
+
+    public void testCsvExportStreamsAllRowsWithSample() throws Exception {
+        Path directory = Files.createTempDirectory("export_csv");
+        DatabaseService databaseService = new DatabaseService(config("export_csv", directory));
+        try {
+            for (boolean gzip : new boolean[]{false, true}) {
+                Path file = directory.resolve("notes" + ExportFormat.CSV.extension(gzip));
+                ExportedResult export = databaseService.exportQuery("SELECT * FROM note ORDER BY id",
+                        new QueryLimits(0, 0, 0), file, ExportFormat.CSV, gzip, 5);
+
+                assertEquals(1000, export.getRows());
+                assertEquals(Files.size(file), export.getFileBytes());
+                assertFalse(export.isComplete());
+                assertEquals(5, export.getSample().getRowCount());
+                assertEquals("note-5", export.getSample().getString(4, 1));
+
+                List<String> lines = readLines(file, gzip);
+                assertEquals(1001, lines.size());
+                assertEquals("id,body,amount,created", lines.get(0));
+                assertEquals("1,note-1,1.25,2024-01-02", lines.get(1));
+                assertEquals("7,\"say \"\"hi\"\", 7\",8.75,2024-01-08", lines.get(7));
+                assertEquals("10,,12.50,2024-01-11", lines.get(10));
+                assertEquals("1000,,1250.00,2026-09-27", lines.get(1000));
+            }
+            assertTrue(Files.size(directory.resolve("notes.csv.gz")) < Files.size(directory.resolve("notes.csv")) / 2);
+        } finally {
+            databaseService.close();
+        }
+    }
+
+    public void testColumnarExportRoundTripsByRowGroup() throws Exception {
+        Path directory = Files.createTempDirectory("export_columnar");
+        DatabaseService databaseService = new DatabaseService(config("export_columnar", directory));
+        try {
+            Path file = directory.resolve("notes" + ExportFormat.COLUMNAR.extension(true));
+            ExportedResult export = databaseService.exportQuery("SELECT * FROM note ORDER BY id",
+                    new QueryLimits(0, 0, 0), file, ExportFormat.COLUMNAR, true, 20);
+            assertEquals(1000, export.getRows());
+
+            ResultTable expected = databaseService.executeQuery("SELECT * FROM note ORDER BY id", new QueryLimits(0, 0, 0));
+            int groups = 0;
+            int row = 0;
+            try (ColumnarReader reader = ColumnarReader.open(file)) {
+                for (ResultTable group = reader.next(); group != null; group = reader.next()) {
+                    groups++;
+                    assertEquals("body", group.getColumnName(1));
+                    assertEquals(ResultTable.Kind.DECIMAL, group.getKind(2));
+                    for (int r = 0; r < group.getRowCount(); r++, row++) {
+                        for (int c = 0; c < group.getColumnCount(); c++) {
+                            assertEquals(expected.getString(row, c), group.getString(r, c));
+                        }
+                    }
+                }
+                assertEquals(1000, reader.getRows());
+            }
+            assertEquals(16, groups);
+            assertEquals(1000, row);
+
+            // 结尾标记缺失的文件 (导出中途失败) 读取时报错
+            Path plain = directory.resolve("notes.wtc");
+            databaseService.exportQuery("SELECT * FROM note ORDER BY id", new QueryLimits(0, 0, 0), plain,
+                    ExportFormat.COLUMNAR, false, 0);
+            try (FileChannel channel = FileChannel.open(plain, StandardOpenOption.WRITE)) {
+                channel.truncate(channel.size() - 12);
+            }
+            try (ColumnarReader reader = ColumnarReader.open(plain)) {
+                while (reader.next() != null) {
+                    // 读到结尾
+                }
+                fail("Incomplete file was read without error");
+            } catch (IOException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("incomplete after 1000 rows"));
+            }
+        } finally {
+            databaseService.close();
+        }
+    }
+
+    public void testEmptyAndLimitedExports() throws Exception {
+        Path directory = Files.createTempDirectory("export_limits");
+        DatabaseConfig config = config("export_limits", directory);
+        config.setExportFormat("columnar");
+        config.setExportMaxRows(300);
+        DatabaseService databaseService = new DatabaseService(config);
+        try {
+            ExportedResult limited = databaseService.exportQuery("SELECT * FROM note ORDER BY id", 10);
+            assertEquals(300, limited.getRows());
+            assertTrue(limited.getStats().isTruncated());
+            assertTrue(limited.getFile().getFileName().toString().endsWith(".wtc"));
+            assertEquals(directory, limited.getFile().getParent());
+
+            ExportedResult empty = databaseService.exportQuery("SELECT id, body FROM note WHERE id < 0", 10);
+            assertEquals(0, empty.getRows());
+            assertTrue(empty.isComplete());
+            try (ColumnarReader reader = ColumnarReader.open(empty.getFile())) {
+                ResultTable group = reader.next();
+                assertEquals(0, group.getRowCount());
+                assertEquals("body", group.getColumnName(1));
+                assertNull(reader.next());
+            }
+
+            // 失败的导出不留下文件
+            try {
+                databaseService.exportQuery("SELECT 1 / (id - id) FROM note", 10);
+                fail("Division by zero was not reported");
+            } catch (RuntimeException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("Failed to execute query"));
+            }
+            try (Stream<Path> files = Files.list(directory)) {
+                assertEquals(2, files.count());
+            }
+        } finally {
+            databaseService.close();
+        }
+    }
+
+    private static List<String> readLines(Path file, boolean gzip) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(gzip
+                ? new GZIPInputStream(Files.newInputStream(file)) : Files.newInputStream(file), StandardCharsets.UTF_8))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+}
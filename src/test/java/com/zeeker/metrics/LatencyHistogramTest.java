@@ -0,0 +1,46 @@
+package com.zeeker.metrics;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class LatencyHistogramTest extends TestCase {
+
+    public void testBucketsCoverEveryValueWithBoundedError() {
+        for (long micros = 0; micros < 1 << 20; micros++) {
+            long upper = LatencyHistogram.highestEquivalentValue(LatencyHistogram.indexOf(micros));
+            assertTrue(upper >= micros);
+            assertTrue("value " + micros, upper - micros <= Math.max(1, micros / 64));
+        }
+    }
+
+    public void testPercentilesMatchExactValues() {
+        Random random = new Random(42);
+        LatencyHistogram histogram = new LatencyHistogram();
+        long[] micros = new long[100_000];
+        for (int i = 0; i < micros.length; i++) {
+            // 对数正态分布, 中位数约 20ms, 带长尾
+            micros[i] = (long) (Math.exp(Math.log(20_000) + random.nextGaussian()));
+            histogram.recordNanos(micros[i] * 1_000);
+        }
+        Arrays.sort(micros);
+
+        assertEquals(micros.length, histogram.getCount());
+        for (double percentile : new double[]{50, 90, 99, 99.9}) {
+            double exact = micros[(int) Math.ceil(percentile / 100 * micros.length) - 1] / 1_000.0;
+            double reported = histogram.getPercentileMillis(percentile);
+            assertTrue(percentile + ": " + reported + " vs " + exact,
+                    reported >= exact && reported <= exact * 1.02);
+        }
+        assertEquals(micros[micros.length - 1] / 1_000.0, histogram.getMaxMillis(), 0);
+        assertEquals(histogram.getMaxMillis(), histogram.getPercentileMillis(100), 0);
+    }
+
+    public void testEmptyHistogramReportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0.0, histogram.getMeanMillis(), 0);
+        assertEquals(0.0, histogram.getPercentileMillis(99), 0);
+    }
+}
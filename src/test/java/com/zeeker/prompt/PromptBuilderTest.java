@@ -0,0 +1,132 @@
+package com.zeeker.prompt;
+
+import com.zeeker.config.RagConfig;
+import com.zeeker.query.ResultTable;
+import com.zeeker.schema.SchemaIndex;
+import com.zeeker.service.DatabaseService;
+import com.zeeker.support.EmbeddedDatabase;
+import junit.framework.TestCase;
+
+import java.sql.Connection;
+import java.sql.Statement;
+
+public class PromptBuilderTest extends TestCase {
+
+    public void testStablePrefixIsIdenticalAcrossQuestions() throws Exception {
+        EmbeddedDatabase.createSyntheticSchema("prompt_stable", 20, 0);
+        DatabaseService databaseService = new DatabaseService(EmbeddedDatabase.config("prompt_stable"));
+        try {
+            SchemaIndex index = new SchemaIndex(databaseService.getSchema(), new RagConfig());
+            PromptBuilder builder = new PromptBuilder(new RagConfig(), PromptBuilder.tokenizerFor("gpt-4o-mini"));
+
+            String first = builder.sqlPrompt(index, "How many customers are there?");
+            String second = builder.sqlPrompt(index, "Total payment amount by currency");
+            String prefix = first.substring(0, first.indexOf("\nQuestion: "));
+            assertTrue(second.startsWith(prefix + "\nQuestion: "));
+            assertTrue(first.endsWith("\nQuestion: How many customers are there?\n"));
+            // 紧凑格式: 类型缩写, 外键写成 >表.列
+            assertTrue(prefix.contains("\ncustomer(id bigint, name varchar, status int, amount dec,"));
+            assertTrue(prefix.contains("customer_item(") && prefix.contains(", customer_id bigint>customer.id)"));
+            assertFalse(prefix.contains("Table: "));
+        } finally {
+            databaseService.close();
+        }
+    }
+
+    public void testSchemaIsTrimmedToTokenBudget() throws Exception {
+        EmbeddedDatabase.createSyntheticSchema("prompt_budget", 96, 0);
+        DatabaseService databaseService = new DatabaseService(EmbeddedDatabase.config("prompt_budget"));
+        try {
+            RagConfig config = new RagConfig();
+            config.setSchemaTopK(0);
+            config.setPromptTokenBudget(300);
+            SchemaIndex index = new SchemaIndex(databaseService.getSchema(), config);
+            PromptBuilder builder = new PromptBuilder(config, PromptBuilder.tokenizerFor("gpt-4o-mini"));
+
+            String prompt = builder.sqlPrompt(index, "Total payment amount per customer");
+            assertTrue(builder.countTokens(prompt) <= 300);
+            // 按相关度放入, 与问题无关的表被丢弃
+            assertTrue(prompt.contains("\npayment("));
+            assertFalse(prompt.contains("ticket_snapshot("));
+            assertTrue(prompt.endsWith("\nQuestion: Total payment amount per customer\n"));
+
+            config.setPromptTokenBudget(20);
+            try {
+                new PromptBuilder(config, PromptBuilder.tokenizerFor("gpt-4o-mini")).sqlPrompt(index, "Total payment amount");
+                fail("instructions alone exceed the budget");
+            } catch (RuntimeException e) {
+                assertTrue(e.getMessage().contains("token budget"));
+            }
+        } finally {
+            databaseService.close();
+        }
+    }
+
+    public void testResultRowsAreTrimmedWithNote() throws Exception {
+        DatabaseService databaseService = new DatabaseService(EmbeddedDatabase.config(createReadings("prompt_rows")));
+        try {
+            ResultTable results = databaseService.executeQuery("SELECT * FROM reading ORDER BY id");
+            RagConfig config = new RagConfig();
+            config.setPromptTokenBudget(400);
+            config.setResultSummaryMinRows(0);
+            PromptBuilder builder = new PromptBuilder(config, PromptBuilder.tokenizerFor("gpt-4o-mini"));
+
+            String prompt = builder.answerPrompt("Average reading?", results);
+            assertTrue(builder.countTokens(prompt) <= 400);
+            assertTrue(prompt.contains("id, sensor, reading_value\n1, sensor-1, 1.5\n"));
+            assertTrue(prompt.contains(" of 500 rows; the rest were omitted to fit the prompt.)"));
+            assertFalse(prompt.contains("sensor-500"));
+
+            config.setPromptTokenBudget(0);
+            String full = new PromptBuilder(config, PromptBuilder.tokenizerFor("gpt-4o-mini")).answerPrompt("Average reading?", results);
+            assertTrue(full.contains("500, sensor-500, 750.0\n"));
+            assertFalse(full.contains("omitted"));
+        } finally {
+            databaseService.close();
+        }
+    }
+
+    public void testLargeResultsAreSummarizedWithSampleRows() throws Exception {
+        DatabaseService databaseService = new DatabaseService(EmbeddedDatabase.config(createReadings("prompt_summary")));
+        try {
+            ResultTable results = databaseService.executeQuery("SELECT * FROM reading ORDER BY id");
+            RagConfig config = new RagConfig();
+            config.setPromptTokenBudget(0);
+            PromptBuilder builder = new PromptBuilder(config, PromptBuilder.tokenizerFor("gpt-4o-mini"));
+
+            String prompt = builder.answerPrompt("Average reading?", results);
+            assertTrue(prompt, prompt.contains("Query results:\n500 rows, summarized per column (~ marks estimates):\n"
+                    + "- id (long): 500 values, 0 null, ~"));
+            assertTrue(prompt, prompt.contains(", min 1, max 500, mean 250.5\n"));
+            assertTrue(prompt, prompt.contains("- sensor (string): 500 values, 0 null, ~"));
+            assertTrue(prompt, prompt.contains("\nSample rows (the first 10 and 10 picked at random from the rest, in result order):\n"
+                    + "id, sensor, reading_value\n1, sensor-1, 1.5\n"));
+            assertFalse(prompt.contains("sensor-11,"));
+
+            // 预算很小时汇总仍然完整, 样本行按预算减少
+            config.setPromptTokenBudget(250);
+            builder = new PromptBuilder(config, PromptBuilder.tokenizerFor("gpt-4o-mini"));
+            prompt = builder.answerPrompt("Average reading?", results);
+            assertTrue(builder.countTokens(prompt) <= 250);
+            assertTrue(prompt, prompt.contains("- reading_value (double): 500 values"));
+            assertTrue(prompt, prompt.contains("\nSample rows (the first "));
+
+            // 行数低于阈值但逐行输出超出预算时同样改为汇总
+            config.setResultSummaryMinRows(1000);
+            builder = new PromptBuilder(config, PromptBuilder.tokenizerFor("gpt-4o-mini"));
+            prompt = builder.answerPrompt("Average reading?", results);
+            assertTrue(prompt, prompt.contains("500 rows, summarized per column"));
+        } finally {
+            databaseService.close();
+        }
+    }
+
+    private static String createReadings(String database) throws Exception {
+        try (Connection conn = EmbeddedDatabase.connect(database); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS reading (id BIGINT, sensor VARCHAR(32), reading_value DOUBLE)");
+            stmt.execute("DELETE FROM reading");
+            stmt.execute("INSERT INTO reading SELECT \"X\", CONCAT('sensor-', \"X\"), \"X\" * 1.5 FROM SYSTEM_RANGE(1, 500)");
+        }
+        return database;
+    }
+}
@@ -0,0 +1,92 @@
+package com.zeeker.query;
+
+import com.zeeker.config.RagConfig;
+import com.zeeker.support.EmbeddedDatabase;
+import junit.framework.TestCase;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+public class AnswerRendererTest extends TestCase {
+    private Connection connection;
+    private AnswerRenderer renderer;
+
+    @Override
+    protected void setUp() throws Exception {
+        EmbeddedDatabase.createSyntheticSchema("renderer_" + getName(), 16, 12);
+        connection = EmbeddedDatabase.connect("renderer_" + getName());
+        renderer = new AnswerRenderer(new RagConfig());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        connection.close();
+    }
+
+    public void testRendersScalarAndSingleRowResults() throws SQLException {
+        assertEquals("The count is 12.",
+                renderer.render("How many customers are there?", query("SELECT COUNT(*) FROM customer")));
+        assertEquals("The total amount is 78.",
+                renderer.render("What is the total amount?", query("SELECT SUM(o.id) AS total_amount FROM orders o")));
+        assertEquals("The id is 3, the name is n3 and the maximum id is 3.",
+                renderer.render("Show customer 3", query("SELECT id, CONCAT('n', id) AS name, MAX(id) FROM customer "
+                        + "WHERE id = 3 GROUP BY id")));
+        assertEquals("No matching records were found.",
+                renderer.render("Which customers are archived?", query("SELECT id FROM customer WHERE id < 0")));
+    }
+
+    public void testRendersSmallTablesAsList() throws SQLException {
+        assertEquals("Found 3 results:\n- 1 (name: n1)\n- 2 (name: n2)\n- 3 (name: n3)",
+                renderer.render("List the first customers", query("SELECT id, CONCAT('n', id) AS name FROM customer "
+                        + "WHERE id <= 3 ORDER BY id")));
+        assertEquals("Found 2 results:\n- 1\n- 2",
+                renderer.render("List ids", query("SELECT id FROM customer WHERE id <= 2 ORDER BY id")));
+    }
+
+    public void testFallsBackToModelWhenNotConfident() throws SQLException {
+        // 行数超过上限
+        assertNull(renderer.render("List customers", query("SELECT id FROM customer")));
+        // 解释和分析类问题
+        assertNull(renderer.render("Why are there so few customers?", query("SELECT COUNT(*) FROM customer")));
+        assertNull(renderer.render("为什么客户这么少", query("SELECT COUNT(*) FROM customer")));
+        // 未命名的表达式看不出含义
+        assertNull(renderer.render("What is the value?", query("SELECT id * 2 FROM customer WHERE id = 1")));
+        // 被截断的结果不完整
+        ResultTable.Builder builder = new ResultTable.Builder();
+        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery("SELECT id FROM customer")) {
+            builder.start(rs.getMetaData());
+            rs.next();
+            builder.row(rs);
+        }
+        assertNull(renderer.render("How many?", builder.build(new QueryStats(1, 8, QueryStats.Truncation.ROW_LIMIT, 0))));
+
+        RagConfig disabled = new RagConfig();
+        disabled.setDirectAnswerEnabled(false);
+        assertNull(new AnswerRenderer(disabled).render("How many customers?", query("SELECT COUNT(*) FROM customer")));
+    }
+
+    public void testHumanizesColumnLabels() {
+        assertEquals("count", AnswerRenderer.humanize("COUNT(*)"));
+        assertEquals("count of customer id", AnswerRenderer.humanize("COUNT(DISTINCT o.customer_id)"));
+        assertEquals("average price", AnswerRenderer.humanize("AVG(price)"));
+        assertEquals("order count", AnswerRenderer.humanize("order_count"));
+        assertNull(AnswerRenderer.humanize("EXPR$0"));
+        assertNull(AnswerRenderer.humanize("price * quantity"));
+    }
+
+    private ResultTable query(String sql) throws SQLException {
+        ResultTable.Builder builder = new ResultTable.Builder();
+        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            builder.start(rs.getMetaData());
+            long bytes = 0;
+            int rows = 0;
+            while (rs.next()) {
+                bytes += builder.row(rs);
+                rows++;
+            }
+            return builder.build(new QueryStats(rows, bytes, QueryStats.Truncation.NONE, 0));
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.zeeker.query;
+
+import com.zeeker.service.DatabaseService;
+import com.zeeker.support.EmbeddedDatabase;
+import junit.framework.TestCase;
+
+import java.sql.Connection;
+import java.sql.Statement;
+
+public class ResultTableTest extends TestCase {
+
+    public void testTypedColumnsRenderLikeJdbcValues() throws Exception {
+        try (Connection conn = EmbeddedDatabase.connect("result_table"); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS sample (id BIGINT, price DECIMAL(10,3), ratio DOUBLE, active BOOLEAN, "
+                    + "sale_day DATE, sale_at TIME, created TIMESTAMP(6), city VARCHAR(16))");
+            stmt.execute("DELETE FROM sample");
+            stmt.execute("INSERT INTO sample VALUES "
+                    + "(1, -12.050, 0.5, TRUE, DATE '1969-12-31', TIME '08:05:09', TIMESTAMP '2024-02-29 23:59:58.000120', 'Paris'), "
+                    + "(2, 0.007, 1.25, FALSE, DATE '2024-02-29', TIME '23:00:00', TIMESTAMP '1970-01-01 00:00:00', 'Paris'), "
+                    + "(NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL)");
+        }
+
+        DatabaseService databaseService = new DatabaseService(EmbeddedDatabase.config("result_table"));
+        try {
+            ResultTable table = databaseService.executeQuery("SELECT * FROM sample ORDER BY id NULLS LAST");
+
+            assertEquals(ResultTable.Kind.LONG, table.getKind(0));
+            assertEquals(ResultTable.Kind.DECIMAL, table.getKind(1));
+            assertEquals(ResultTable.Kind.TIMESTAMP, table.getKind(6));
+            assertEquals(ResultTable.Kind.STRING, table.getKind(7));
+            assertEquals("id, price, ratio, active, sale_day, sale_at, created, city\n"
+                    + "1, -12.050, 0.5, true, 1969-12-31, 08:05:09, 2024-02-29 23:59:58.00012, Paris\n"
+                    + "2, 0.007, 1.25, false, 2024-02-29, 23:00:00, 1970-01-01 00:00:00, Paris\n"
+                    + "null, null, null, null, null, null, null, null\n", table.toText());
+            assertNull(table.getString(2, 7));
+            assertEquals("Paris", table.getString(1, 7));
+
+            ResultTable copy = ResultTable.fromBytes(table.toBytes());
+            assertEquals(table.toText(), copy.toText());
+            assertEquals(ResultTable.Kind.DECIMAL, copy.getKind(1));
+            assertTrue(copy.isNull(2, 0));
+            assertEquals(table.getStats(), copy.getStats());
+        } finally {
+            databaseService.close();
+        }
+    }
+
+    public void testDecimalFormatting() {
+        StringBuilder sb = new StringBuilder();
+        ResultTable.appendDecimal(sb, 123456, 2);
+        sb.append(' ');
+        ResultTable.appendDecimal(sb, -5, 3);
+        sb.append(' ');
+        ResultTable.appendDecimal(sb, 42, 0);
+        assertEquals("1234.56 -0.005 42", sb.toString());
+    }
+}
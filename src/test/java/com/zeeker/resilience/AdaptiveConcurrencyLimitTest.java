@@ -0,0 +1,69 @@
+package com.zeeker.resilience;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class AdaptiveConcurrencyLimitTest extends TestCase {
+
+    public void testOverloadHalvesOncePerRoundAndSuccessGrowsBack() throws Exception {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 8, 0.5);
+        long[] starts = new long[8];
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = limit.acquire();
+        }
+        // 同一轮中的多个过载信号只降一次
+        for (long start : starts) {
+            limit.onOverload(start);
+        }
+        assertEquals(4, limit.getLimit());
+        assertEquals(0, limit.getInFlight());
+
+        limit.onOverload(limit.acquire());
+        limit.onOverload(limit.acquire());
+        assertEquals(2, limit.getLimit());
+        limit.onOverload(limit.acquire());
+        assertEquals("never below min", 2, limit.getLimit());
+
+        for (int i = 0; i < 100; i++) {
+            limit.acquire();
+            limit.onSuccess();
+        }
+        assertEquals(8, limit.getLimit());
+    }
+
+    public void testAcquireWaitsForRelease() throws Exception {
+        AdaptiveConcurrencyLimit limit = AdaptiveConcurrencyLimit.fixed(1);
+        limit.acquire();
+        Thread waiter = new Thread(() -> {
+            try {
+                limit.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiter.start();
+        waiter.join(100);
+        assertTrue(waiter.isAlive());
+
+        limit.onIgnore();
+        waiter.join(1_000);
+        assertFalse(waiter.isAlive());
+        assertEquals(1, limit.getInFlight());
+    }
+
+    public void testTimedAcquireGivesUp() throws Exception {
+        AdaptiveConcurrencyLimit limit = AdaptiveConcurrencyLimit.fixed(1);
+        limit.acquire();
+
+        long start = System.nanoTime();
+        try {
+            limit.acquire(TimeUnit.MILLISECONDS.toNanos(100));
+            fail("Expected the acquire to time out");
+        } catch (TimeoutException expected) {
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 90);
+        assertEquals(1, limit.getInFlight());
+    }
+}
@@ -0,0 +1,56 @@
+package com.zeeker.resilience;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class CircuitBreakerTest extends TestCase {
+
+    public void testOpensAtFailureRatioAndProbesAfterCoolDown() {
+        AtomicLong now = new AtomicLong();
+        CircuitBreaker breaker = new CircuitBreaker(4, 0.5, 1_000, now::get);
+
+        for (boolean failure : new boolean[]{false, true, false}) {
+            assertTrue(breaker.tryAcquire());
+            if (failure) {
+                breaker.onFailure();
+            } else {
+                breaker.onSuccess();
+            }
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+
+        now.set(1_000);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+        // 半开状态只放行一个探测调用
+        assertFalse(breaker.tryAcquire());
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        now.set(2_000);
+        assertTrue(breaker.tryAcquire());
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        // 关闭后重新统计, 一次失败不会再打开
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    public void testIgnoredProbeReleasesTheSlot() {
+        AtomicLong now = new AtomicLong();
+        CircuitBreaker breaker = new CircuitBreaker(1, 1, 1_000, now::get);
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        now.set(1_000);
+
+        assertTrue(breaker.tryAcquire());
+        breaker.onIgnore();
+        assertTrue(breaker.tryAcquire());
+    }
+}
@@ -0,0 +1,24 @@
+package com.zeeker.resilience;
+
+import junit.framework.TestCase;
+
+public class RetryBudgetTest extends TestCase {
+
+    public void testRetriesAreBoundedByCallVolume() {
+        RetryBudget budget = new RetryBudget(0.25, 2);
+        assertTrue(budget.tryRetry());
+        assertTrue(budget.tryRetry());
+        assertFalse(budget.tryRetry());
+
+        for (int i = 0; i < 4; i++) {
+            budget.recordCall();
+        }
+        assertTrue(budget.tryRetry());
+        assertFalse(budget.tryRetry());
+
+        for (int i = 0; i < 1_000; i++) {
+            budget.recordCall();
+        }
+        assertEquals(2.0, budget.getBalance(), 1e-9);
+    }
+}
@@ -0,0 +1,48 @@
+package com.zeeker.resilience;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class TokenBucketTest extends TestCase {
+
+    public void testWaitsForRefill() throws Exception {
+        TokenBucket bucket = new TokenBucket(100, 1_000);
+        assertEquals(0, bucket.acquire(100));
+
+        // 桶已空, 按每秒 1000 个补充, 100 个约需 100ms
+        long waited = bucket.acquire(100);
+        assertTrue(waited + " ms", waited >= 80 && waited < 1_000);
+    }
+
+    public void testRequestLargerThanCapacityIsCapped() throws Exception {
+        TokenBucket bucket = new TokenBucket(10, 1);
+        assertEquals(0, bucket.acquire(1_000));
+        assertEquals(0, bucket.getAvailable());
+    }
+
+    public void testTimedAcquireFailsWithoutTakingTokens() throws Exception {
+        TokenBucket bucket = new TokenBucket(100, 10);
+        bucket.acquire(50);
+
+        // 补充 100 个需要约 5 秒, 超出等待上限, 立即失败
+        long start = System.nanoTime();
+        try {
+            bucket.acquire(100, TimeUnit.MILLISECONDS.toNanos(200));
+            fail("Expected the acquire to time out");
+        } catch (TimeoutException expected) {
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 200);
+        assertTrue(bucket.getAvailable() >= 50);
+    }
+
+    public void testRefundIsCappedAtCapacity() throws Exception {
+        TokenBucket bucket = new TokenBucket(100, 1);
+        bucket.acquire(80);
+        bucket.refund(50);
+        assertEquals(70, bucket.getAvailable());
+        bucket.refund(1_000);
+        assertEquals(100, bucket.getAvailable());
+    }
+}
@@ -0,0 +1,79 @@
+package com.zeeker.schema;
+
+import com.zeeker.config.DatabaseConfig;
+import com.zeeker.config.RagConfig;
+import com.zeeker.prompt.PromptBuilder;
+import com.zeeker.service.DatabaseService;
+import com.zeeker.support.EmbeddedDatabase;
+import junit.framework.TestCase;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SchemaRefresherTest extends TestCase {
+
+    public void testReloadsOnlyChangedTables() throws Exception {
+        EmbeddedDatabase.createSyntheticSchema("refresh_changed", 32, 0);
+        DatabaseConfig config = EmbeddedDatabase.config("refresh_changed");
+        config.setSchemaRefreshIntervalSeconds(0);
+
+        DatabaseService service = new DatabaseService(config);
+        try {
+            AtomicInteger published = new AtomicInteger();
+            service.addSchemaListener(schema -> published.incrementAndGet());
+            SchemaSnapshot before = service.getSchema();
+            String altered = EmbeddedDatabase.tableName(3);
+            String dropped = EmbeddedDatabase.tableName(31);
+
+            assertFalse(service.refreshChangedTables());
+            assertSame(before, service.getSchema());
+
+            try (Connection conn = EmbeddedDatabase.connect("refresh_changed"); Statement stmt = conn.createStatement()) {
+                stmt.execute("ALTER TABLE " + altered + " ADD COLUMN discount_rate DECIMAL(5,2)");
+                stmt.execute("DROP TABLE " + dropped);
+                stmt.execute("CREATE TABLE coupon (id BIGINT PRIMARY KEY, code VARCHAR(32))");
+            }
+
+            assertTrue(service.refreshChangedTables());
+            SchemaSnapshot after = service.getSchema();
+            assertEquals(1, published.get());
+            assertNotNull(after.getTable("coupon"));
+            assertNull(after.getTable(dropped));
+            assertTrue(after.getTable(altered).getColumns().stream()
+                    .anyMatch(column -> column.getName().equalsIgnoreCase("discount_rate")));
+            // 未变化的表原样复用
+            assertSame(before.getTable(EmbeddedDatabase.tableName(0)), after.getTable(EmbeddedDatabase.tableName(0)));
+            // 增量结果与完整读取一致
+            assertEquals(service.refreshSchema().getFingerprint(), after.getFingerprint());
+            assertEquals(1, published.get());
+            // 旧快照保持不变
+            assertNull(before.getTable("coupon"));
+        } finally {
+            service.close();
+        }
+    }
+
+    public void testIndexRebuildKeepsRankingConsistent() {
+        SchemaSnapshot schema = new SchemaSnapshot(List.of(
+                table("customer", "customer_name"), table("invoice", "invoice_total")));
+        RagConfig config = new RagConfig();
+        config.setSchemaEmbedding("hashing");
+        SchemaIndex index = new SchemaIndex(schema, config);
+
+        SchemaSnapshot changed = schema.withChanges(List.of(table("refund", "refund_amount")), List.of("invoice"));
+        SchemaIndex rebuilt = index.rebuild(changed);
+        SchemaIndex fresh = new SchemaIndex(changed, config);
+
+        assertEquals("refund", rebuilt.rank("refund amount").get(0).getTable().getName());
+        PromptBuilder promptBuilder = new PromptBuilder(config, PromptBuilder.tokenizerFor("gpt-4o-mini"));
+        assertEquals(promptBuilder.sqlPrompt(fresh, "customer refunds"), promptBuilder.sqlPrompt(rebuilt, "customer refunds"));
+        assertEquals("invoice", index.rank("invoice total").get(0).getTable().getName());
+    }
+
+    private static TableInfo table(String name, String column) {
+        return new TableInfo(name, null, List.of(new ColumnInfo("id", "BIGINT", null),
+                new ColumnInfo(column, "VARCHAR", null)), List.of());
+    }
+}
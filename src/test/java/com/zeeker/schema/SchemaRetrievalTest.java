@@ -0,0 +1,108 @@
+package com.zeeker.schema;
+
+import com.zeeker.config.RagConfig;
+import com.zeeker.prompt.PromptBuilder;
+import com.zeeker.service.DatabaseService;
+import com.zeeker.service.OpenAiService;
+import com.zeeker.service.RagService;
+import com.zeeker.support.EmbeddedDatabase;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.Tokenizer;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+import junit.framework.TestCase;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 对比完整表结构与检索后表结构在不同规模下的SQL提示词大小.
+ * 耗时见 JMH 的 SchemaDescriptionBenchmark (-Pbenchmark).
+ */
+public class SchemaRetrievalTest extends TestCase {
+    private static final String[] QUESTIONS = {
+            "What is the total amount of payments per customer?",
+            "How many shipments are in each status?",
+            "List the top 10 products by price",
+            "Average discount of invoice items by currency",
+            "Which employees belong to the sales department?"};
+
+    public void testRetrievedPromptStaysSmallAsSchemaGrows() throws Exception {
+        long previousFull = 0;
+        for (int tableCount : new int[]{16, 128, 512}) {
+            String name = "schema_bench_" + tableCount;
+            EmbeddedDatabase.createSyntheticSchema(name, tableCount, 0);
+            DatabaseService databaseService = new DatabaseService(EmbeddedDatabase.config(name));
+            try {
+                // 完整结构: 不检索, 也不按 token 预算裁剪
+                RagConfig full = new RagConfig();
+                full.setSchemaTopK(0);
+                full.setSchemaTokenBudget(0);
+                full.setPromptTokenBudget(0);
+                long fullTokens = averageSqlPromptTokens(databaseService, full);
+                long retrievedTokens = averageSqlPromptTokens(databaseService, new RagConfig());
+
+                assertTrue(fullTokens > previousFull);
+                assertTrue(retrievedTokens <= fullTokens);
+                if (tableCount >= 128) {
+                    assertTrue(retrievedTokens * 4 < fullTokens);
+                }
+                previousFull = fullTokens;
+            } finally {
+                databaseService.close();
+            }
+        }
+    }
+
+    public void testForeignKeyNeighboursAreIncluded() throws Exception {
+        EmbeddedDatabase.createSyntheticSchema("schema_fk", 48, 0);
+        DatabaseService databaseService = new DatabaseService(EmbeddedDatabase.config("schema_fk"));
+        try {
+            RagConfig config = new RagConfig();
+            config.setSchemaTopK(1);
+            SchemaIndex index = new SchemaIndex(databaseService.getSchema(), config);
+
+            String prompt = new PromptBuilder(config, PromptBuilder.tokenizerFor("gpt-4o-mini"))
+                    .sqlPrompt(index, "total quantity in warehouse history");
+            assertTrue(prompt.contains("\nwarehouse_history("));
+            // warehouse_history 引用 warehouse
+            assertTrue(prompt.contains("\nwarehouse("));
+        } finally {
+            databaseService.close();
+        }
+    }
+
+    private long averageSqlPromptTokens(DatabaseService databaseService, RagConfig config) {
+        AtomicLong promptTokens = new AtomicLong();
+        ChatLanguageModel model = new CountingModel(promptTokens);
+        RagService ragService = new RagService(databaseService, new OpenAiService(model), config);
+        for (String question : QUESTIONS) {
+            ragService.processNaturalLanguageQuery(question);
+        }
+        return promptTokens.get() / QUESTIONS.length;
+    }
+
+    /**
+     * 统计SQL生成提示词的 token 数, 返回固定回答.
+     */
+    private static final class CountingModel implements ChatLanguageModel {
+        private static final Tokenizer TOKENIZER = PromptBuilder.tokenizerFor("gpt-4o-mini");
+        private final AtomicLong sqlPromptTokens;
+
+        CountingModel(AtomicLong sqlPromptTokens) {
+            this.sqlPromptTokens = sqlPromptTokens;
+        }
+
+        @Override
+        public Response<AiMessage> generate(List<ChatMessage> messages) {
+            String prompt = ((UserMessage) messages.get(messages.size() - 1)).singleText();
+            boolean sqlGeneration = prompt.startsWith("Generate a SQL query");
+            if (sqlGeneration) {
+                sqlPromptTokens.addAndGet(TOKENIZER.estimateTokenCountInText(prompt));
+            }
+            return Response.from(AiMessage.from(sqlGeneration ? "SELECT COUNT(*) FROM customer" : "There are no customers."));
+        }
+    }
+}
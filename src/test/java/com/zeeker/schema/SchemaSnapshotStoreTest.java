@@ -0,0 +1,63 @@
+package com.zeeker.schema;
+
+import com.zeeker.config.DatabaseConfig;
+import com.zeeker.service.DatabaseService;
+import com.zeeker.support.EmbeddedDatabase;
+import junit.framework.TestCase;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class SchemaSnapshotStoreTest extends TestCase {
+
+    public void testRestartUsesSnapshotAndRefreshesInBackground() throws Exception {
+        EmbeddedDatabase.createSyntheticSchema("snapshot_restart", 24, 0);
+        Path snapshot = Files.createTempDirectory("schema").resolve("snapshot.bin");
+        DatabaseConfig config = EmbeddedDatabase.config("snapshot_restart");
+        config.setSchemaSnapshotPath(snapshot.toString());
+
+        DatabaseService first = new DatabaseService(config);
+        String originalFingerprint = first.getSchema().getFingerprint();
+        first.close();
+        assertTrue(Files.isRegularFile(snapshot));
+
+        try (Connection conn = EmbeddedDatabase.connect("snapshot_restart"); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE refund (id BIGINT PRIMARY KEY, amount DECIMAL(10,2))");
+        }
+
+        DatabaseService second = new DatabaseService(config);
+        try {
+            CountDownLatch refreshed = new CountDownLatch(1);
+            second.addSchemaListener(schema -> refreshed.countDown());
+            // 启动时先用快照, 后台核对后切换到实时结构
+            if (second.getSchema().getFingerprint().equals(originalFingerprint)) {
+                assertTrue(refreshed.await(10, TimeUnit.SECONDS));
+            }
+            assertNotNull(second.getSchema().getTable("refund"));
+            assertEquals(second.getSchema().getFingerprint(),
+                    new SchemaSnapshotStore(snapshot, config.getUrl() + "|" + config.getUsername()).load().getFingerprint());
+        } finally {
+            second.close();
+        }
+    }
+
+    public void testRejectsSnapshotFromOtherSourceOrCorruptFile() throws Exception {
+        Path file = Files.createTempDirectory("schema").resolve("snapshot.bin");
+        SchemaSnapshot snapshot = new SchemaSnapshot(List.of(new TableInfo("t", "测试表",
+                List.of(new ColumnInfo("id", "BIGINT", null)), List.of())));
+        new SchemaSnapshotStore(file, "a").save(snapshot);
+
+        assertEquals(snapshot.getFingerprint(), new SchemaSnapshotStore(file, "a").load().getFingerprint());
+        assertNull(new SchemaSnapshotStore(file, "b").load());
+
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+        assertNull(new SchemaSnapshotStore(file, "a").load());
+    }
+}
@@ -0,0 +1,103 @@
+package com.zeeker.server;
+
+import com.zeeker.config.DatabaseConfig;
+import com.zeeker.config.OpenAiConfig;
+import com.zeeker.config.RagConfig;
+import com.zeeker.config.ServerConfig;
+import com.zeeker.service.DatabaseService;
+import com.zeeker.service.OpenAiService;
+import com.zeeker.service.RagService;
+import com.zeeker.support.EmbeddedDatabase;
+import com.zeeker.support.MockOpenAiServer;
+import junit.framework.TestCase;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 对 HTTP 服务做并发压测: 本地模拟 LLM (20-60ms 延迟) + 内存 H2 数据库, 输出吞吐量与延迟分位数.
+ * 规模可通过 -Dload.requests 与 -Dload.concurrency 调整.
+ */
+public class QueryServerLoadTest extends TestCase {
+    private static final int REQUESTS = Integer.getInteger("load.requests", 400);
+    private static final int CONCURRENCY = Integer.getInteger("load.concurrency", 32);
+
+    public void testThroughputAndTailLatency() throws Exception {
+        EmbeddedDatabase.createSyntheticSchema("server_load", 32, 200);
+        DatabaseConfig dbConfig = EmbeddedDatabase.config("server_load");
+        dbConfig.setMaxActive(8);
+
+        try (MockOpenAiServer llm = new MockOpenAiServer(
+                MockOpenAiServer.sqlThenAnswer("SELECT COUNT(*) FROM customer", "There are 200 customers."),
+                () -> ThreadLocalRandom.current().nextLong(20, 60))) {
+
+            OpenAiConfig openAiConfig = llm.config();
+            openAiConfig.setMaxConcurrentRequests(16);
+            RagConfig ragConfig = new RagConfig();
+            // 关闭 SQL 缓存和直接回答, 让每个请求都走完整流程
+            ragConfig.setSqlCacheMaxEntries(0);
+            ragConfig.setDirectAnswerEnabled(false);
+
+            DatabaseService databaseService = new DatabaseService(dbConfig);
+            RagService ragService = new RagService(databaseService, new OpenAiService(openAiConfig), ragConfig);
+            ServerConfig serverConfig = new ServerConfig();
+            serverConfig.setHost("127.0.0.1");
+            serverConfig.setPort(0);
+            serverConfig.setAdmissionTimeoutMillis(10_000);
+            QueryServer server = new QueryServer(serverConfig, dbConfig.getMaxActive(), ragService, databaseService);
+            server.start();
+
+            try {
+                HttpClient client = HttpClient.newHttpClient();
+                URI uri = URI.create("http://127.0.0.1:" + server.getPort() + "/query");
+                Semaphore inFlight = new Semaphore(CONCURRENCY);
+                long[] latencies = new long[REQUESTS];
+                List<CompletableFuture<Integer>> responses = new ArrayList<>();
+
+                long start = System.nanoTime();
+                for (int i = 0; i < REQUESTS; i++) {
+                    int index = i;
+                    inFlight.acquire();
+                    long sent = System.nanoTime();
+                    HttpRequest request = HttpRequest.newBuilder(uri)
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofString("{\"question\": \"How many customers are there? #" + i + "\"}"))
+                            .build();
+                    responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                            .thenApply(response -> {
+                                latencies[index] = System.nanoTime() - sent;
+                                inFlight.release();
+                                return response.statusCode();
+                            }));
+                }
+                CompletableFuture.allOf(responses.toArray(new CompletableFuture[0])).join();
+                double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+                for (CompletableFuture<Integer> response : responses) {
+                    assertEquals(Integer.valueOf(200), response.join());
+                }
+                Arrays.sort(latencies);
+                System.out.printf("requests=%d concurrency=%d throughput=%.1f req/s p50=%.1fms p99=%.1fms max=%.1fms llmCalls=%d%n",
+                        REQUESTS, CONCURRENCY, REQUESTS / elapsedSeconds,
+                        percentile(latencies, 0.50), percentile(latencies, 0.99), latencies[REQUESTS - 1] / 1e6,
+                        llm.getRequestCount());
+                assertEquals(2 * REQUESTS, llm.getRequestCount());
+            } finally {
+                server.stop();
+            }
+        }
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
@@ -0,0 +1,81 @@
+package com.zeeker.server;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zeeker.config.DatabaseConfig;
+import com.zeeker.config.RagConfig;
+import com.zeeker.config.ServerConfig;
+import com.zeeker.metrics.MetricsJmx;
+import com.zeeker.service.DatabaseService;
+import com.zeeker.service.OpenAiService;
+import com.zeeker.service.RagService;
+import com.zeeker.support.EmbeddedDatabase;
+import com.zeeker.support.MockOpenAiServer;
+import junit.framework.TestCase;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+public class QueryServerMetricsTest extends TestCase {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public void testMetricsEndpointAndMBeansReflectAnsweredQuestion() throws Exception {
+        EmbeddedDatabase.createSyntheticSchema("server_metrics", 16, 50);
+        DatabaseConfig dbConfig = EmbeddedDatabase.config("server_metrics");
+
+        try (MockOpenAiServer llm = new MockOpenAiServer(
+                MockOpenAiServer.sqlThenAnswer("SELECT COUNT(*) FROM customer", "There are 50 customers."), () -> 5)) {
+            DatabaseService databaseService = new DatabaseService(dbConfig);
+            RagService ragService = new RagService(databaseService, new OpenAiService(llm.config()), new RagConfig());
+            MetricsJmx.register(ragService);
+            ServerConfig serverConfig = new ServerConfig();
+            serverConfig.setHost("127.0.0.1");
+            serverConfig.setPort(0);
+            QueryServer server = new QueryServer(serverConfig, dbConfig.getMaxActive(), ragService, databaseService);
+            server.start();
+
+            try {
+                String base = "http://127.0.0.1:" + server.getPort();
+                HttpClient client = HttpClient.newHttpClient();
+                HttpResponse<String> answer = client.send(HttpRequest.newBuilder(URI.create(base + "/query"))
+                                .header("Content-Type", "application/json")
+                                .POST(HttpRequest.BodyPublishers.ofString("{\"question\": \"How many customers are there?\"}"))
+                                .build(),
+                        HttpResponse.BodyHandlers.ofString());
+                assertEquals(200, answer.statusCode());
+                // 单值结果直接渲染, 不调用模型生成回答
+                assertEquals("The count is 50.", MAPPER.readTree(answer.body()).path("answer").asText());
+
+                HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(base + "/metrics")).GET().build(),
+                        HttpResponse.BodyHandlers.ofString());
+                assertEquals(200, response.statusCode());
+                JsonNode metrics = MAPPER.readTree(response.body());
+
+                JsonNode total = metrics.path("stages").path("total");
+                assertEquals(1, total.path("count").asLong());
+                assertTrue(total.path("p99Millis").asDouble() >= 10);
+                assertEquals(1, metrics.path("stages").path("query_execution").path("count").asLong());
+                assertEquals(1, metrics.path("questions").path("total").asLong());
+                assertEquals(1, metrics.path("results").path("rows").asLong());
+                assertEquals(1, metrics.path("llm").path("calls").asLong());
+                assertEquals(1, metrics.path("llm").path("avoidedCalls").asLong());
+                assertTrue(metrics.path("llm").path("promptTokens").asLong() > 0);
+                assertEquals(1, metrics.path("sqlCache").path("misses").asLong());
+                assertEquals(0, metrics.path("database").path("activeCount").asInt());
+                assertTrue(metrics.path("database").path("connectCount").asLong() > 0);
+
+                MBeanServer mbeans = ManagementFactory.getPlatformMBeanServer();
+                assertEquals(1L, mbeans.getAttribute(new ObjectName("com.zeeker.wintouch:type=Rag"), "Questions"));
+                assertEquals(1L, mbeans.getAttribute(
+                        new ObjectName("com.zeeker.wintouch:type=StageLatency,stage=total"), "Count"));
+            } finally {
+                server.stop();
+            }
+        }
+    }
+}
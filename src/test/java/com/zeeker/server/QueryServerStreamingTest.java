@@ -0,0 +1,74 @@
+package com.zeeker.server;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zeeker.config.DatabaseConfig;
+import com.zeeker.config.RagConfig;
+import com.zeeker.config.ServerConfig;
+import com.zeeker.service.DatabaseService;
+import com.zeeker.service.OpenAiService;
+import com.zeeker.service.RagService;
+import com.zeeker.support.EmbeddedDatabase;
+import com.zeeker.support.MockOpenAiServer;
+import junit.framework.TestCase;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class QueryServerStreamingTest extends TestCase {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public void testStreamsAnswerAsServerSentEvents() throws Exception {
+        EmbeddedDatabase.createSyntheticSchema("server_streaming", 16, 50);
+        DatabaseConfig dbConfig = EmbeddedDatabase.config("server_streaming");
+
+        try (MockOpenAiServer llm = new MockOpenAiServer(
+                MockOpenAiServer.sqlThenAnswer("SELECT COUNT(*) FROM customer", "There are 50 customers."), () -> 0)) {
+            DatabaseService databaseService = new DatabaseService(dbConfig);
+            RagConfig ragConfig = new RagConfig();
+            // 单值结果默认直接渲染, 这里要验证模型回答的流式输出
+            ragConfig.setDirectAnswerEnabled(false);
+            RagService ragService = new RagService(databaseService, new OpenAiService(llm.config()), ragConfig);
+            ServerConfig serverConfig = new ServerConfig();
+            serverConfig.setHost("127.0.0.1");
+            serverConfig.setPort(0);
+            QueryServer server = new QueryServer(serverConfig, dbConfig.getMaxActive(), ragService, databaseService);
+            server.start();
+
+            try {
+                HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getPort() + "/query"))
+                        .header("Content-Type", "application/json")
+                        .header("Accept", "text/event-stream")
+                        .POST(HttpRequest.BodyPublishers.ofString("{\"question\": \"How many customers are there?\"}"))
+                        .build();
+                HttpResponse<Stream<String>> response = HttpClient.newHttpClient()
+                        .send(request, HttpResponse.BodyHandlers.ofLines());
+
+                assertEquals(200, response.statusCode());
+                assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("text/event-stream"));
+                List<String> lines = response.body().collect(Collectors.toList());
+
+                StringBuilder streamed = new StringBuilder();
+                JsonNode done = null;
+                for (int i = 0; i < lines.size(); i++) {
+                    if (lines.get(i).equals("event: token")) {
+                        streamed.append(MAPPER.readTree(lines.get(i + 1).substring("data: ".length())).path("text").asText());
+                    } else if (lines.get(i).equals("event: done")) {
+                        done = MAPPER.readTree(lines.get(i + 1).substring("data: ".length()));
+                    }
+                }
+                assertEquals("There are 50 customers.", streamed.toString());
+                assertNotNull(done);
+                assertEquals("There are 50 customers.", done.path("answer").asText());
+                assertTrue(done.path("timeToFirstTokenMillis").asLong() <= done.path("elapsedMillis").asLong());
+            } finally {
+                server.stop();
+            }
+        }
+    }
+}
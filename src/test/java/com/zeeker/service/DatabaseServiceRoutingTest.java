@@ -0,0 +1,164 @@
+package com.zeeker.service;
+
+import com.zeeker.config.DatabaseConfig;
+import com.zeeker.support.EmbeddedDatabase;
+import junit.framework.TestCase;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class DatabaseServiceRoutingTest extends TestCase {
+
+    public void testRoundRobinSpreadsReadsOverReplicasAndSharesTheSchema() throws Exception {
+        DatabaseConfig config = cluster("rr", 2);
+        config.setReadRouting("round-robin");
+        DatabaseService databaseService = new DatabaseService(config);
+        try {
+            Map<String, Integer> served = servedBy(databaseService, 20);
+
+            assertEquals(2, served.size());
+            assertEquals(10, (int) served.get("rr_replica_1"));
+            assertEquals(10, (int) served.get("rr_replica_2"));
+            // 结构只从主库读取一次, 副本的连接只用于查询
+            assertNotNull(databaseService.getSchema().getTable("node"));
+            List<DatabaseService.DataSourceStats> stats = databaseService.getDataSourceStats(0);
+            assertEquals("rr_primary", stats.get(0).getName());
+            assertTrue(stats.get(0).isPrimary());
+            assertEquals(0, stats.get(0).getRoutedQueries());
+            assertEquals(10, stats.get(1).getRoutedQueries());
+            assertEquals(10, stats.get(2).getRoutedQueries());
+            assertEquals(0, stats.get(1).getOutstandingQueries());
+        } finally {
+            databaseService.close();
+        }
+    }
+
+    public void testLeastOutstandingPrefersTheIdleReplica() throws Exception {
+        DatabaseConfig config = cluster("lor", 2);
+        config.setReadRouting("least-outstanding");
+        config.setReadFromPrimary(true);
+        DatabaseService databaseService = new DatabaseService(config);
+        try {
+            Map<String, Integer> served = servedBy(databaseService, 60);
+
+            // 顺序执行时每个数据源都空闲, 并列的候选随机选择
+            assertEquals(3, served.size());
+        } finally {
+            databaseService.close();
+        }
+    }
+
+    public void testLagAwareSkipsLaggingReplicas() throws Exception {
+        DatabaseConfig config = cluster("lag", 2);
+        config.setReadRouting("lag-aware");
+        config.setReplicaMaxLagSeconds(30);
+        config.setReplicaLagQuery("SELECT seconds FROM replication_lag");
+        config.setReplicaCheckIntervalSeconds(0);
+        DatabaseService databaseService = new DatabaseService(config);
+        try {
+            setLag("lag_replica_1", 120);
+            databaseService.checkReplicas();
+            assertEquals(Map.of("lag_replica_2", 10), servedBy(databaseService, 10));
+            assertEquals(120, databaseService.getDataSourceStats(0).get(1).getLagSeconds());
+
+            setLag("lag_replica_2", 300);
+            databaseService.checkReplicas();
+            assertEquals(Map.of("lag_primary", 10), servedBy(databaseService, 10));
+
+            setLag("lag_replica_1", 0);
+            databaseService.checkReplicas();
+            assertEquals(Map.of("lag_replica_1", 10), servedBy(databaseService, 10));
+        } finally {
+            databaseService.close();
+        }
+    }
+
+    public void testFailingLagQueryKeepsTheReplicaAvailable() throws Exception {
+        DatabaseConfig config = cluster("lagfail", 1);
+        config.setReadRouting("lag-aware");
+        config.setReplicaMaxLagSeconds(30);
+        // 如旧版本 MySQL 不支持 SHOW REPLICA STATUS, 或缺少权限
+        config.setReplicaLagQuery("SELECT seconds FROM missing_lag_table");
+        config.setReplicaCheckIntervalSeconds(0);
+        DatabaseService databaseService = new DatabaseService(config);
+        try {
+            databaseService.checkReplicas();
+
+            DatabaseService.DataSourceStats replica = databaseService.getDataSourceStats(0).get(1);
+            assertTrue(replica.isAvailable());
+            assertEquals(-1, replica.getLagSeconds());
+            assertEquals(Map.of("lagfail_replica_1", 5), servedBy(databaseService, 5));
+        } finally {
+            databaseService.close();
+        }
+    }
+
+    public void testUnreachableReplicaFallsBackToPrimary() throws Exception {
+        DatabaseConfig config = cluster("down", 1);
+        DatabaseConfig missing = EmbeddedDatabase.config("down_missing");
+        missing.setName("missing");
+        missing.setUrl("jdbc:h2:mem:down_missing;IFEXISTS=TRUE");
+        missing.setInitialSize(0);
+        missing.setMinIdle(0);
+        missing.setMaxWait(500);
+        config.getReplicas().add(missing);
+        config.setReadRouting("round-robin");
+        config.setReplicaCheckIntervalSeconds(0);
+        DatabaseService databaseService = new DatabaseService(config);
+        try {
+            Map<String, Integer> served = servedBy(databaseService, 10);
+
+            assertFalse(served.toString(), served.containsKey("missing"));
+            assertTrue(served.toString(), served.get("down_primary") >= 1);
+            assertFalse(databaseService.getDataSourceStats(0).get(2).isAvailable());
+            // 之后只路由到可用的副本
+            assertEquals(Map.of("down_replica_1", 5), servedBy(databaseService, 5));
+        } finally {
+            databaseService.close();
+        }
+    }
+
+    /**
+     * 主库和 replicas 个副本, 每个库的 node 表记录自己的名字, 用来判断查询由谁执行.
+     */
+    private static DatabaseConfig cluster(String prefix, int replicas) throws SQLException {
+        DatabaseConfig config = node(prefix + "_primary");
+        config.setResultCacheMaxBytes(0);
+        config.setSchemaRefreshIntervalSeconds(0);
+        for (int i = 1; i <= replicas; i++) {
+            config.getReplicas().add(node(prefix + "_replica_" + i));
+        }
+        return config;
+    }
+
+    private static DatabaseConfig node(String name) throws SQLException {
+        try (Connection conn = EmbeddedDatabase.connect(name); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE node (name VARCHAR(32))");
+            stmt.execute("INSERT INTO node VALUES ('" + name + "')");
+            stmt.execute("CREATE TABLE replication_lag (seconds INT)");
+            stmt.execute("INSERT INTO replication_lag VALUES (0)");
+        }
+        DatabaseConfig config = EmbeddedDatabase.config(name);
+        config.setName(name);
+        return config;
+    }
+
+    private static void setLag(String name, int seconds) throws SQLException {
+        try (Connection conn = EmbeddedDatabase.connect(name); Statement stmt = conn.createStatement()) {
+            stmt.execute("UPDATE replication_lag SET seconds = " + seconds);
+        }
+    }
+
+    private static Map<String, Integer> servedBy(DatabaseService databaseService, int queries) {
+        Map<String, Integer> served = new HashMap<>();
+        for (int i = 0; i < queries; i++) {
+            String name = databaseService.executeQuery("SELECT name FROM node").getString(0, 0);
+            served.merge(name, 1, Integer::sum);
+        }
+        return served;
+    }
+}
@@ -0,0 +1,62 @@
+package com.zeeker.service;
+
+import com.zeeker.query.QueryLimits;
+import com.zeeker.query.QueryStats;
+import com.zeeker.query.ResultTable;
+import com.zeeker.support.EmbeddedDatabase;
+import junit.framework.TestCase;
+
+import java.sql.Connection;
+import java.sql.Statement;
+
+public class DatabaseServiceTest extends TestCase {
+    private DatabaseService databaseService;
+
+    @Override
+    protected void setUp() throws Exception {
+        try (Connection conn = EmbeddedDatabase.connect("db_service"); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS numbers (id BIGINT PRIMARY KEY, label VARCHAR(32))");
+            stmt.execute("MERGE INTO numbers SELECT \"X\", 'row-' || \"X\" FROM SYSTEM_RANGE(1, 5000)");
+        }
+        databaseService = new DatabaseService(EmbeddedDatabase.config("db_service"));
+    }
+
+    @Override
+    protected void tearDown() {
+        databaseService.close();
+    }
+
+    public void testStreamsAllRowsWithinLimits() {
+        ResultTable table = databaseService.executeQuery("SELECT id, label FROM numbers WHERE id <= 3 ORDER BY id");
+
+        assertEquals(3, table.getStats().getRows());
+        assertFalse(table.isTruncated());
+        assertEquals("id, label\n1, row-1\n2, row-2\n3, row-3\n", table.toText());
+    }
+
+    public void testRowLimitTruncates() {
+        QueryLimits limits = new QueryLimits(100, 0, 0);
+        QueryStats stats = databaseService.streamQuery("SELECT id FROM numbers", limits, new ResultTable.Builder());
+
+        assertEquals(100, stats.getRows());
+        assertEquals(QueryStats.Truncation.ROW_LIMIT, stats.getTruncation());
+    }
+
+    public void testByteLimitTruncates() {
+        QueryLimits limits = new QueryLimits(0, 1024, 0);
+        QueryStats stats = databaseService.streamQuery("SELECT id, label FROM numbers", limits, new ResultTable.Builder());
+
+        assertEquals(QueryStats.Truncation.BYTE_LIMIT, stats.getTruncation());
+        assertTrue(stats.getRows() < 100);
+        assertTrue(stats.getBytes() >= 1024);
+    }
+
+    public void testExecuteQueryKeepsColumnOrder() {
+        ResultTable table = databaseService.executeQuery("SELECT label, id FROM numbers WHERE id = 7");
+
+        assertEquals(1, table.getRowCount());
+        assertEquals("label", table.getColumnName(0));
+        assertEquals("id", table.getColumnName(1));
+        assertEquals("row-7, 7\n", table.toText().substring("label, id\n".length()));
+    }
+}
@@ -0,0 +1,341 @@
+package com.zeeker.service;
+
+import com.zeeker.config.OpenAiConfig;
+import com.zeeker.resilience.CircuitBreaker;
+import com.zeeker.support.MockOpenAiServer;
+import junit.framework.TestCase;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class OpenAiServiceTest extends TestCase {
+
+    public void testHedgedRequestCutsTailLatency() throws Exception {
+        AtomicInteger request = new AtomicInteger();
+        // 前 30 个请求 10-30ms, 之后第一个请求卡住 3 秒, 对冲请求正常返回
+        try (MockOpenAiServer llm = new MockOpenAiServer(prompt -> "ok", () -> {
+            int index = request.getAndIncrement();
+            return index == 30 ? 3000 : ThreadLocalRandom.current().nextLong(10, 30);
+        })) {
+            OpenAiConfig config = llm.config();
+            config.setHedgePercentile(90);
+            config.setHedgeMinDelayMillis(50);
+            OpenAiService service = new OpenAiService(config);
+            assertEquals(-1, service.hedgeDelayMillis());
+            for (int i = 0; i < 30; i++) {
+                service.generateResponse("warm up");
+            }
+            long hedgeDelay = service.hedgeDelayMillis();
+            assertTrue(String.valueOf(hedgeDelay), hedgeDelay >= 50 && hedgeDelay < 500);
+
+            long start = System.nanoTime();
+            assertEquals("ok", service.generateResponse("slow"));
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertTrue(elapsed + " ms", elapsed < 1500);
+            OpenAiService.Stats stats = service.getStats();
+            assertEquals(1, stats.getHedges());
+            assertEquals(1, stats.getHedgeWins());
+            assertEquals(1, stats.getCancelled());
+            assertEquals(0, stats.getFailures());
+        }
+    }
+
+    public void testHedgedStreamCutsTimeToFirstToken() throws Exception {
+        AtomicInteger request = new AtomicInteger();
+        // 前 30 个流 10-30ms 出首 token, 之后第一个流卡住 3 秒, 对冲流正常输出
+        try (MockOpenAiServer llm = new MockOpenAiServer(prompt -> "SELECT 1;", () -> {
+            int index = request.getAndIncrement();
+            return index == 30 ? 3000 : ThreadLocalRandom.current().nextLong(10, 30);
+        })) {
+            OpenAiConfig config = llm.config();
+            config.setHedgePercentile(90);
+            config.setHedgeMinDelayMillis(50);
+            OpenAiService service = new OpenAiService(config);
+            for (int i = 0; i < 30; i++) {
+                service.streamResponse("warm up", token -> { });
+            }
+            long hedgeDelay = service.streamHedgeDelayMillis();
+            assertTrue(String.valueOf(hedgeDelay), hedgeDelay >= 50 && hedgeDelay < 500);
+
+            StreamedResponse response = service.streamResponse("slow", token -> { });
+
+            assertEquals("SELECT 1;", response.getText());
+            assertTrue(response.getTotalMillis() + " ms", response.getTotalMillis() < 1500);
+            OpenAiService.Stats stats = service.getStats();
+            assertEquals(1, stats.getHedges());
+            assertEquals(1, stats.getHedgeWins());
+            assertEquals(0, stats.getFailures());
+        }
+    }
+
+    public void testNoHedgeWhenDisabledOrFast() throws Exception {
+        try (MockOpenAiServer llm = new MockOpenAiServer(prompt -> "ok", () -> 5)) {
+            OpenAiConfig config = llm.config();
+            config.setHedgePercentile(99);
+            config.setHedgeMinDelayMillis(200);
+            OpenAiService service = new OpenAiService(config);
+            for (int i = 0; i < 40; i++) {
+                service.generateResponse("fast");
+            }
+
+            assertEquals(0, service.getStats().getHedges());
+            assertEquals(40, llm.getRequestCount());
+        }
+    }
+
+    public void testDeadlineFailsTheCall() throws Exception {
+        try (MockOpenAiServer llm = new MockOpenAiServer(prompt -> "late", () -> 2000)) {
+            OpenAiService service = new OpenAiService(llm.config());
+
+            long start = System.nanoTime();
+            CompletableFuture<String> response = service.generateAsync("slow", Duration.ofMillis(200));
+            try {
+                response.get(5, TimeUnit.SECONDS);
+                fail("Expected the deadline to expire");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof TimeoutException);
+            }
+
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1500);
+            assertEquals(1, service.getStats().getFailures());
+            assertEquals(1, service.getStats().getCancelled());
+        }
+    }
+
+    public void testCancelledCallNeverReachesTheServer() throws Exception {
+        try (MockOpenAiServer llm = new MockOpenAiServer(prompt -> "ok", () -> 500)) {
+            OpenAiConfig config = llm.config();
+            config.setMaxConcurrentRequests(1);
+            OpenAiService service = new OpenAiService(config);
+
+            CompletableFuture<String> first = service.generateAsync("first");
+            Thread.sleep(50);
+            // 第二个调用在等待并发槽位, 取消后不再发出请求
+            CompletableFuture<String> second = service.generateAsync("second");
+            second.cancel(true);
+
+            assertEquals("ok", first.get(5, TimeUnit.SECONDS));
+            Thread.sleep(200);
+            assertEquals(1, llm.getRequestCount());
+            assertEquals(1, service.getStats().getCancelled());
+        }
+    }
+
+    public void testRateLimitedCallsAreRetriedWithBackoff() throws Exception {
+        AtomicInteger request = new AtomicInteger();
+        try (MockOpenAiServer llm = new MockOpenAiServer(prompt -> "ok", () -> 0)) {
+            llm.setStatus(() -> request.getAndIncrement() < 2 ? 429 : 200);
+            OpenAiConfig config = llm.config();
+            config.setMaxRetries(2);
+            config.setRetryBaseDelayMillis(10);
+            OpenAiService service = new OpenAiService(config);
+
+            assertEquals("ok", service.generateResponse("busy"));
+
+            assertEquals(3, llm.getRequestCount());
+            assertEquals(2, service.getStats().getRetries());
+            assertEquals(0, service.getStats().getFailures());
+        }
+    }
+
+    public void testNoTokensAreDeliveredAfterTheStreamTimesOut() throws Exception {
+        try (MockOpenAiServer llm = new MockOpenAiServer(prompt -> "one two three four five six seven", () -> 0)) {
+            llm.setTokenDelayMillis(400);
+            OpenAiConfig config = llm.config();
+            config.setTimeoutSeconds(1);
+            OpenAiService service = new OpenAiService(config);
+
+            List<String> tokens = new CopyOnWriteArrayList<>();
+            try {
+                service.streamResponse("slow", tokens::add);
+                fail("Expected the stream to time out");
+            } catch (RuntimeException expected) {
+                assertTrue(expected.getMessage(), expected.getMessage().startsWith("Timed out"));
+            }
+            int delivered = tokens.size();
+            assertTrue(String.valueOf(delivered), delivered > 0 && delivered < 7);
+
+            // 流还会继续输出约 1.5 秒, 这些 token 不能再交给调用方
+            Thread.sleep(2000);
+            assertEquals(delivered, tokens.size());
+        }
+    }
+
+    public void testRateLimitedStreamIsRetriedBeforeFirstToken() throws Exception {
+        AtomicInteger request = new AtomicInteger();
+        try (MockOpenAiServer llm = new MockOpenAiServer(prompt -> "SELECT 1;", () -> 0)) {
+            llm.setStatus(() -> request.getAndIncrement() < 2 ? 429 : 200);
+            OpenAiConfig config = llm.config();
+            config.setMaxRetries(2);
+            config.setRetryBaseDelayMillis(10);
+            OpenAiService service = new OpenAiService(config);
+
+            StreamedResponse response = service.streamResponse("busy", token -> { });
+
+            assertEquals("SELECT 1;", response.getText());
+            assertEquals(3, llm.getRequestCount());
+            assertEquals(2, service.getStats().getRetries());
+            assertEquals(0, service.getStats().getFailures());
+        }
+    }
+
+    public void testStoppedStreamHoldsItsSlotUntilTheStreamEnds() throws Exception {
+        try (MockOpenAiServer llm = new MockOpenAiServer(prompt -> "one two three four five six", () -> 0)) {
+            llm.setTokenDelayMillis(100);
+            OpenAiConfig config = llm.config();
+            config.setMaxConcurrentRequests(1);
+            config.setAdaptiveConcurrency(false);
+            OpenAiService service = new OpenAiService(config);
+
+            StreamedResponse first = service.streamResponse("first", token -> { }, text -> true);
+            assertTrue(first.isStoppedEarly());
+            // 第一个流还要约 500ms 才读完, 第二个调用要等它释放唯一的并发槽位
+            StreamedResponse second = service.streamResponse("second", token -> { });
+            assertTrue("first token after " + second.getFirstTokenMillis() + " ms", second.getFirstTokenMillis() >= 300);
+        }
+    }
+
+    public void testStreamWaitingForASlotRespectsTheTimeout() throws Exception {
+        try (MockOpenAiServer llm = new MockOpenAiServer(prompt -> "one two three four five six seven eight", () -> 0)) {
+            llm.setTokenDelayMillis(400);
+            OpenAiConfig config = llm.config();
+            config.setTimeoutSeconds(1);
+            config.setMaxConcurrentRequests(1);
+            config.setAdaptiveConcurrency(false);
+            OpenAiService service = new OpenAiService(config);
+            // 提前返回, 但流还要约 3 秒才结束, 期间占着唯一的槽位
+            service.streamResponse("first", token -> { }, text -> true);
+
+            long start = System.nanoTime();
+            try {
+                service.streamResponse("second", token -> { });
+                fail("Expected the stream to time out waiting for a slot");
+            } catch (RuntimeException expected) {
+                assertTrue(expected.getMessage(), expected.getMessage().contains("waiting for OpenAI capacity"));
+            }
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue(elapsed + " ms", elapsed < 1800);
+        }
+    }
+
+    public void testRateLimitRefundsUnusedCompletionTokens() throws Exception {
+        try (MockOpenAiServer llm = new MockOpenAiServer(prompt -> "ok", () -> 0)) {
+            OpenAiConfig config = llm.config();
+            config.setMaxTokens(2000);
+            // 容量 6000, 每秒补充 100: 不退还时第四次调用起每次要等约 20 秒
+            config.setTokensPerMinute(6000);
+            OpenAiService service = new OpenAiService(config);
+
+            long start = System.nanoTime();
+            for (int i = 0; i < 10; i++) {
+                assertEquals("ok", service.generateResponse("short question"));
+            }
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+            assertTrue(String.valueOf(service.getStats().getRateLimitWaitMillis()),
+                    service.getStats().getRateLimitWaitMillis() < 1000);
+        }
+    }
+
+    public void testRetryBudgetStopsRetryStorms() throws Exception {
+        try (MockOpenAiServer llm = new MockOpenAiServer(prompt -> "ok", () -> 0)) {
+            llm.setStatus(() -> 500);
+            OpenAiConfig config = llm.config();
+            config.setMaxRetries(3);
+            config.setRetryBaseDelayMillis(1);
+            config.setRetryBudgetRatio(0);
+            config.setRetryBudgetMinRetries(1);
+            config.setCircuitBreakerWindow(0);
+            OpenAiService service = new OpenAiService(config);
+
+            for (int i = 0; i < 3; i++) {
+                try {
+                    service.generateResponse("down");
+                    fail("Expected the call to fail");
+                } catch (RuntimeException expected) {
+                }
+            }
+
+            // 只有第一次调用用到了唯一的重试额度
+            assertEquals(4, llm.getRequestCount());
+            assertEquals(1, service.getStats().getRetries());
+            assertEquals(3, service.getStats().getRetriesDenied());
+            assertEquals(3, service.getStats().getFailures());
+        }
+    }
+
+    public void testCircuitBreakerFailsFast() throws Exception {
+        try (MockOpenAiServer llm = new MockOpenAiServer(prompt -> "ok", () -> 0)) {
+            llm.setStatus(() -> 503);
+            OpenAiConfig config = llm.config();
+            config.setMaxRetries(0);
+            config.setCircuitBreakerWindow(4);
+            config.setCircuitBreakerFailureRatio(0.5);
+            config.setCircuitBreakerOpenSeconds(30);
+            OpenAiService service = new OpenAiService(config);
+
+            for (int i = 0; i < 4; i++) {
+                try {
+                    service.generateResponse("down");
+                    fail("Expected the call to fail");
+                } catch (RuntimeException expected) {
+                }
+            }
+            assertEquals("OPEN", service.getStats().getCircuitState());
+
+            long start = System.nanoTime();
+            try {
+                service.generateResponse("down");
+                fail("Expected the circuit breaker to reject the call");
+            } catch (RuntimeException e) {
+                assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof CircuitBreaker.OpenException);
+            }
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+            assertEquals(4, llm.getRequestCount());
+            assertEquals(1, service.getStats().getCircuitRejections());
+        }
+    }
+
+    public void testTimeoutsShrinkTheConcurrencyLimit() throws Exception {
+        try (MockOpenAiServer llm = new MockOpenAiServer(prompt -> "ok", () -> 1500)) {
+            OpenAiConfig config = llm.config();
+            config.setTimeoutSeconds(1);
+            config.setMaxConcurrentRequests(8);
+            config.setMinConcurrentRequests(1);
+            config.setMaxRetries(0);
+            config.setCircuitBreakerWindow(0);
+            OpenAiService service = new OpenAiService(config);
+            assertEquals(8, service.getStats().getConcurrencyLimit());
+
+            List<CompletableFuture<String>> calls = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                calls.add(service.generateAsync("slow", Duration.ofSeconds(10)));
+            }
+            for (CompletableFuture<String> call : calls) {
+                try {
+                    call.get(10, TimeUnit.SECONDS);
+                    fail("Expected the request to time out");
+                } catch (ExecutionException expected) {
+                }
+            }
+
+            // 同一轮的多个超时只让上限减半一次
+            assertEquals(4, service.getStats().getConcurrencyLimit());
+
+            llm.setLatencyMillis(() -> 0);
+            // 加性增长: 上限为 n 时约 n 次成功加一
+            for (int i = 0; i < 30; i++) {
+                service.generateResponse("fast");
+            }
+            assertEquals(8, service.getStats().getConcurrencyLimit());
+        }
+    }
+}
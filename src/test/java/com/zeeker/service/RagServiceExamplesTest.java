@@ -0,0 +1,91 @@
+package com.zeeker.service;
+
+import com.zeeker.config.RagConfig;
+import com.zeeker.support.EmbeddedDatabase;
+import com.zeeker.support.MockOpenAiServer;
+import junit.framework.TestCase;
+
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.sql.SQLSyntaxErrorException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class RagServiceExamplesTest extends TestCase {
+
+    public void testFailedSqlIsRepairedAndRecordedAsExample() throws Exception {
+        EmbeddedDatabase.createSyntheticSchema("examples_repair", 16, 30);
+        DatabaseService databaseService = new DatabaseService(EmbeddedDatabase.config("examples_repair"));
+        List<String> prompts = new ArrayList<>();
+        RagConfig ragConfig = new RagConfig();
+        ragConfig.setExamplesPath(Files.createTempDirectory("examples").toString());
+        try (MockOpenAiServer llm = new MockOpenAiServer(prompt -> {
+            synchronized (prompts) {
+                prompts.add(prompt);
+            }
+            // 看到执行错误或示例时给出正确的SQL, 否则给出能通过检查 (EXPLAIN) 但执行时除零的SQL
+            if (prompt.contains("failed when executed") || prompt.contains("Verified SQL for similar questions")) {
+                return "SELECT COUNT(*) FROM customer";
+            }
+            return "SELECT COUNT(*) / (COUNT(*) - 30) FROM customer";
+        }, () -> 0)) {
+            RagService ragService = new RagService(databaseService, new OpenAiService(llm.config()), ragConfig);
+            StreamedAnswer answer = ragService.streamNaturalLanguageQuery("How many customers are there?", token -> { });
+
+            assertEquals("The count is 30.", answer.getAnswer());
+            assertTrue(answer.getSql(), answer.getSql().startsWith("SELECT COUNT(*) FROM customer"));
+            assertEquals(2, prompts.size());
+            assertTrue(prompts.get(1).contains("SELECT COUNT(*) / (COUNT(*) - 30) FROM customer"));
+            assertTrue(prompts.get(1).contains("Database error: Division by zero"));
+            assertEquals(1, ragService.getMetrics().getExecutionRepairs());
+            assertEquals(1, ragService.getExampleStore().size());
+            ragService.close();
+
+            // 重启后 SQL 缓存为空, 示例库中的示例让第一次生成就正确
+            prompts.clear();
+            ragService = new RagService(databaseService, new OpenAiService(llm.config()), ragConfig);
+            answer = ragService.streamNaturalLanguageQuery("how many customers are there", token -> { });
+
+            assertEquals("The count is 30.", answer.getAnswer());
+            assertEquals(1, prompts.size());
+            assertTrue(prompts.get(0).contains("Q: How many customers are there?\nSQL: SELECT COUNT(*) FROM customer"));
+            assertTrue(prompts.get(0).endsWith("\nQuestion: how many customers are there\n"));
+            assertEquals(0, ragService.getMetrics().getExecutionRepairs());
+            assertEquals(1, ragService.getExampleStore().getStats().getDuplicates());
+            ragService.close();
+        } finally {
+            databaseService.close();
+        }
+    }
+
+    public void testGivesUpAfterExecutionRepairAttempts() throws Exception {
+        EmbeddedDatabase.createSyntheticSchema("examples_give_up", 16, 5);
+        DatabaseService databaseService = new DatabaseService(EmbeddedDatabase.config("examples_give_up"));
+        try (MockOpenAiServer llm = new MockOpenAiServer(prompt -> "SELECT 1 / (id - id) FROM customer", () -> 0)) {
+            RagConfig ragConfig = new RagConfig();
+            ragConfig.setSqlRepairAttempts(1);
+            RagService ragService = new RagService(databaseService, new OpenAiService(llm.config()), ragConfig);
+
+            String answer = ragService.processNaturalLanguageQuery("List the customers");
+
+            assertTrue(answer, answer.contains("Failed to execute query"));
+            assertEquals(2, llm.getRequestCount());
+            assertNull(ragService.getExampleStore());
+        } finally {
+            databaseService.close();
+        }
+    }
+
+    public void testOnlyQueryErrorsAreRepaired() {
+        assertNotNull(RagService.repairableError(new RuntimeException("Failed to execute query",
+                new SQLSyntaxErrorException("Column \"x\" not found", "42122"))));
+        assertNotNull(RagService.repairableError(new RuntimeException("Failed to execute query",
+                new SQLException("Division by zero", "22012"))));
+        assertTrue(RagService.repairableError(new RuntimeException("Query timed out after 10 seconds",
+                new SQLTimeoutException("timeout"))).contains("timed out"));
+        assertNull(RagService.repairableError(new RuntimeException("Failed to execute query",
+                new SQLException("Connection reset", "08S01"))));
+        assertNull(RagService.repairableError(new IllegalStateException("closed")));
+    }
+}
@@ -0,0 +1,101 @@
+package com.zeeker.service;
+
+import com.zeeker.config.DatabaseConfig;
+import com.zeeker.support.EmbeddedDatabase;
+import com.zeeker.support.MockOpenAiServer;
+import junit.framework.TestCase;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+public class RagServiceExportTest extends TestCase {
+
+    public void testExportModeWritesFullResultAndSendsSample() throws Exception {
+        EmbeddedDatabase.createSyntheticSchema("export_rag", 16, 1500);
+        DatabaseConfig config = EmbeddedDatabase.config("export_rag");
+        config.setExportPath(Files.createTempDirectory("exports").toString());
+        DatabaseService databaseService = new DatabaseService(config);
+        List<String> answerPrompts = new ArrayList<>();
+        try (MockOpenAiServer llm = new MockOpenAiServer(prompt -> {
+            if (prompt.startsWith("Answer the question")) {
+                synchronized (answerPrompts) {
+                    answerPrompts.add(prompt);
+                }
+                return "Here are the customers.";
+            }
+            return "SELECT id, name FROM customer ORDER BY id";
+        }, () -> 0)) {
+            RagService ragService = new RagService(databaseService, new OpenAiService(llm.config()));
+            List<String> tokens = new ArrayList<>();
+            StreamedAnswer answer = ragService.exportNaturalLanguageQuery("List all customers", tokens::add);
+
+            // 导出不受 sqlGuardMaxLimit (1000) 限制
+            assertEquals(1500, answer.getExport().getRows());
+            assertEquals("SELECT id, name FROM customer ORDER BY id;", answer.getSql());
+            List<String> lines = Files.readAllLines(answer.getExport().getFile(), StandardCharsets.UTF_8);
+            assertEquals(1501, lines.size());
+            assertEquals("id,name", lines.get(0));
+            assertEquals("1500,", lines.get(1500));
+            assertEquals("Here are the customers.\n\nFull result (1500 rows): " + answer.getExport().getFile(),
+                    answer.getAnswer());
+            assertEquals(answer.getAnswer(), String.join("", tokens));
+
+            assertEquals(1, answerPrompts.size());
+            String prompt = answerPrompts.get(0);
+            assertTrue(prompt, prompt.contains("Query results:\n1500 rows were exported to a file for the user; "
+                    + "only the first 20 are shown"));
+            assertTrue(prompt, prompt.endsWith("\n20, null\n"));
+            assertEquals(1, ragService.getMetrics().getExports());
+            assertEquals(1500, ragService.getMetrics().getExportedRows());
+
+            // 导出的SQL不进入缓存, 普通问答仍然受 LIMIT 限制
+            StreamedAnswer limited = ragService.streamNaturalLanguageQuery("List all customers", token -> { });
+            assertNull(limited.getExport());
+            assertEquals(0, ragService.getSqlCache().getStats().getHits());
+            assertEquals(1, ragService.getSqlCache().getStats().getMisses());
+            assertTrue(limited.getSql(), limited.getSql().contains("LIMIT 1001"));
+        } finally {
+            databaseService.close();
+        }
+    }
+
+    public void testExportRowLimitIsReportedAsTruncated() throws Exception {
+        EmbeddedDatabase.createSyntheticSchema("export_capped", 16, 1500);
+        DatabaseConfig config = EmbeddedDatabase.config("export_capped");
+        config.setExportPath(Files.createTempDirectory("exports").toString());
+        config.setExportMaxRows(300);
+        DatabaseService databaseService = new DatabaseService(config);
+        try (MockOpenAiServer llm = new MockOpenAiServer(
+                MockOpenAiServer.sqlThenAnswer("SELECT id, name FROM customer ORDER BY id", "Here are the customers."), () -> 0)) {
+            RagService ragService = new RagService(databaseService, new OpenAiService(llm.config()));
+            StreamedAnswer answer = ragService.exportNaturalLanguageQuery("List all customers", token -> { });
+
+            assertTrue(answer.getSql(), answer.getSql().contains("LIMIT 301"));
+            assertEquals(300, answer.getExport().getRows());
+            assertTrue(answer.getExport().getStats().isTruncated());
+            assertFalse(answer.getExport().isComplete());
+            assertEquals(301, Files.readAllLines(answer.getExport().getFile(), StandardCharsets.UTF_8).size());
+            assertTrue(answer.getAnswer(), answer.getAnswer().endsWith("\n\nFull result (300 rows, stopped at the export row limit): "
+                    + answer.getExport().getFile()));
+        } finally {
+            databaseService.close();
+        }
+    }
+
+    public void testExportModeRequiresExportPath() throws Exception {
+        EmbeddedDatabase.createSyntheticSchema("export_disabled", 16, 5);
+        DatabaseService databaseService = new DatabaseService(EmbeddedDatabase.config("export_disabled"));
+        try (MockOpenAiServer llm = new MockOpenAiServer(prompt -> "SELECT id FROM customer", () -> 0)) {
+            RagService ragService = new RagService(databaseService, new OpenAiService(llm.config()));
+            StreamedAnswer answer = ragService.exportNaturalLanguageQuery("List all customers", null);
+
+            assertTrue(answer.getAnswer(), answer.getAnswer().contains("Result export is not enabled"));
+            assertNull(answer.getExport());
+            assertEquals(0, llm.getRequestCount());
+        } finally {
+            databaseService.close();
+        }
+    }
+}
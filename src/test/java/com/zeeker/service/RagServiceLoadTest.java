@@ -0,0 +1,81 @@
+package com.zeeker.service;
+
+import com.zeeker.config.DatabaseConfig;
+import com.zeeker.config.OpenAiConfig;
+import com.zeeker.config.RagConfig;
+import com.zeeker.support.EmbeddedDatabase;
+import com.zeeker.support.LoadDriver;
+import com.zeeker.support.MockOpenAiServer;
+import com.zeeker.support.Workload;
+import junit.framework.TestCase;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 不依赖 OpenAI 和 MySQL 的可重放压测: 模拟 LLM 回放录制的回复, 内存 H2 生成合成表结构,
+ * 按固定到达率通过 RagService 发送录制的问题, 输出吞吐量, 延迟分位数, 连接池饱和度和分配速率.
+ * 用于确定 maxActive 和 LLM 并发上限, 例如:
+ * mvn test -Dtest=RagServiceLoadTest -Dload.rate=200 -Dload.requests=5000 -Dload.maxActive=4
+ * 其他参数: load.workload (JSONL 文件, 默认 /load/workload.jsonl), load.tables, load.rows,
+ * load.llmMinMillis / load.llmMaxMillis (模拟 LLM 延迟区间), load.llmConcurrency, load.sqlCache, load.resultCache.
+ * SQL 缓存和结果缓存默认关闭, 否则重复的问题不再访问连接池, 测不到数据库的饱和点.
+ */
+public class RagServiceLoadTest extends TestCase {
+    private static final double RATE = Double.parseDouble(System.getProperty("load.rate", "50"));
+    private static final int REQUESTS = Integer.getInteger("load.requests", 200);
+    private static final int TABLES = Integer.getInteger("load.tables", 32);
+    private static final int ROWS = Integer.getInteger("load.rows", 1000);
+    private static final int MAX_ACTIVE = Integer.getInteger("load.maxActive", 8);
+    private static final int LLM_MIN_MILLIS = Integer.getInteger("load.llmMinMillis", 20);
+    private static final int LLM_MAX_MILLIS = Integer.getInteger("load.llmMaxMillis", 60);
+    private static final int LLM_CONCURRENCY = Integer.getInteger("load.llmConcurrency", 32);
+    private static final boolean SQL_CACHE = Boolean.getBoolean("load.sqlCache");
+    private static final boolean RESULT_CACHE = Boolean.getBoolean("load.resultCache");
+
+    public void testFixedArrivalRateReplay() throws Exception {
+        Workload workload = Workload.load(System.getProperty("load.workload"), "/load/workload.jsonl");
+        EmbeddedDatabase.createSyntheticSchema("rag_load", TABLES, ROWS);
+        DatabaseConfig dbConfig = EmbeddedDatabase.config("rag_load");
+        dbConfig.setMaxActive(MAX_ACTIVE);
+        if (!RESULT_CACHE) {
+            dbConfig.setResultCacheMaxBytes(0);
+        }
+
+        try (MockOpenAiServer llm = new MockOpenAiServer(workload.responder(),
+                () -> ThreadLocalRandom.current().nextLong(LLM_MIN_MILLIS, LLM_MAX_MILLIS + 1))) {
+            OpenAiConfig openAiConfig = llm.config();
+            openAiConfig.setMaxConcurrentRequests(LLM_CONCURRENCY);
+            RagConfig ragConfig = new RagConfig();
+            if (!SQL_CACHE) {
+                ragConfig.setSqlCacheMaxEntries(0);
+            }
+            ragConfig.setDirectAnswerEnabled(false);
+
+            DatabaseService databaseService = new DatabaseService(dbConfig);
+            RagService ragService = new RagService(databaseService, new OpenAiService(openAiConfig), ragConfig);
+            try {
+                // 预热: 加载表结构, 建立连接, 让 JIT 编译热点代码, 避免把冷启动算进结果
+                for (String question : workload.getQuestions()) {
+                    ragService.processNaturalLanguageQuery(question);
+                }
+                LoadDriver.Report report = new LoadDriver(ragService, RATE, REQUESTS).run(workload.getQuestions());
+                System.out.println(report.format());
+
+                assertEquals(REQUESTS, report.getRequests());
+                assertEquals(0, report.getFailures());
+                assertEquals(REQUESTS + workload.getQuestions().size(), ragService.getMetrics().getQuestions());
+                assertTrue(report.format(), report.getPoolActivePeak() <= MAX_ACTIVE);
+                if (!RESULT_CACHE) {
+                    // 每个请求都要执行查询; 查询很快时定时采样可能看不到活跃连接, 按借出次数判断
+                    assertTrue(report.format(), report.getPoolBorrows() >= REQUESTS);
+                }
+                assertTrue(report.format(), report.getP50Millis() <= report.getP99Millis());
+                if (!SQL_CACHE) {
+                    assertEquals(2L * REQUESTS, report.getLlmCalls());
+                }
+            } finally {
+                ragService.close();
+            }
+        }
+    }
+}
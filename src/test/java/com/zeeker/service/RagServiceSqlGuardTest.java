@@ -0,0 +1,162 @@
+package com.zeeker.service;
+
+import com.zeeker.config.RagConfig;
+import com.zeeker.support.EmbeddedDatabase;
+import com.zeeker.support.MockOpenAiServer;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.model.output.TokenUsage;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RagServiceSqlGuardTest extends TestCase {
+
+    public void testRejectedSqlIsRegeneratedWithTheReason() throws Exception {
+        EmbeddedDatabase.createSyntheticSchema("guard_repair", 16, 30);
+        DatabaseService databaseService = new DatabaseService(EmbeddedDatabase.config("guard_repair"));
+        List<String> prompts = new ArrayList<>();
+        try (MockOpenAiServer llm = new MockOpenAiServer(prompt -> {
+            synchronized (prompts) {
+                prompts.add(prompt);
+            }
+            if (prompt.contains("rejected before execution")) {
+                return "SELECT name FROM customer";
+            }
+            return prompt.contains("Generate a SQL query") ? "DELETE FROM customer" : "Thirty customers.";
+        }, () -> 0)) {
+            RagService ragService = new RagService(databaseService, new OpenAiService(llm.config()), new RagConfig());
+
+            StreamedAnswer answer = ragService.streamNaturalLanguageQuery("List the customers", token -> { });
+
+            assertEquals("Thirty customers.", answer.getAnswer());
+            assertTrue(answer.getSql(), answer.getSql().matches(".*LIMIT 1001;?"));
+            assertEquals(3, prompts.size());
+            assertTrue(prompts.get(1).contains("Only read-only SELECT statements are allowed"));
+            assertEquals(1, ragService.getMetrics().getSqlRejections());
+            assertEquals(1, ragService.getMetrics().getSqlRewrites());
+            // 删除语句没有被执行
+            assertEquals(30, databaseService.executeQuery("SELECT COUNT(*) FROM customer").getLong(0, 0));
+        } finally {
+            databaseService.close();
+        }
+    }
+
+    public void testInjectedLimitMarksResultsTruncated() throws Exception {
+        EmbeddedDatabase.createSyntheticSchema("guard_truncated", 16, 1500);
+        DatabaseService databaseService = new DatabaseService(EmbeddedDatabase.config("guard_truncated"));
+        List<String> answerPrompts = new ArrayList<>();
+        try (MockOpenAiServer llm = new MockOpenAiServer(prompt -> {
+            if (prompt.startsWith("Answer the question")) {
+                synchronized (answerPrompts) {
+                    answerPrompts.add(prompt);
+                }
+                return "Many customers.";
+            }
+            return "SELECT id, name FROM customer";
+        }, () -> 0)) {
+            RagService ragService = new RagService(databaseService, new OpenAiService(llm.config()), new RagConfig());
+
+            ExecutedSql executed = ragService.executeSql(ragService.generateSql("List the customers"));
+            assertEquals(1000, executed.getResults().getRowCount());
+            assertTrue(executed.getResults().isTruncated());
+
+            // 恰好 LIMIT 行的结果不算截断
+            ExecutedSql exact = ragService.executeSql(new GeneratedSql("First customers",
+                    "SELECT id FROM customer ORDER BY id LIMIT 1000", null, false));
+            assertEquals(1000, exact.getResults().getRowCount());
+            assertFalse(exact.getResults().isTruncated());
+
+            ragService.processNaturalLanguageQuery("List every customer");
+            assertEquals(1, answerPrompts.size());
+            assertTrue(answerPrompts.get(0).contains("(Results truncated after 1000 rows.)"));
+        } finally {
+            databaseService.close();
+        }
+    }
+
+    public void testGivesUpAfterRepairAttempts() throws Exception {
+        EmbeddedDatabase.createSyntheticSchema("guard_give_up", 16, 0);
+        DatabaseService databaseService = new DatabaseService(EmbeddedDatabase.config("guard_give_up"));
+        try (MockOpenAiServer llm = new MockOpenAiServer(prompt -> "DROP TABLE customer", () -> 0)) {
+            RagConfig ragConfig = new RagConfig();
+            ragConfig.setSqlRepairAttempts(1);
+            RagService ragService = new RagService(databaseService, new OpenAiService(llm.config()), ragConfig);
+
+            String answer = ragService.processNaturalLanguageQuery("Drop the customers");
+
+            assertTrue(answer, answer.contains("Generated SQL was rejected"));
+            assertEquals(2, llm.getRequestCount());
+            assertNotNull(databaseService.getSchema().getTable("customer"));
+        } finally {
+            databaseService.close();
+        }
+    }
+
+    public void testFirstValidCandidateWins() throws Exception {
+        EmbeddedDatabase.createSyntheticSchema("guard_candidates", 16, 30);
+        DatabaseService databaseService = new DatabaseService(EmbeddedDatabase.config("guard_candidates"));
+        // 按到达顺序: 最快的候选被拒绝, 第二个合格但很慢, 第三个合格且较快
+        String[] candidates = {"DELETE FROM customer", "SELECT COUNT(*) FROM orders", "SELECT name FROM customer"};
+        long[] latencies = {10, 3000, 100};
+        AtomicInteger generated = new AtomicInteger();
+        try (MockOpenAiServer llm = new MockOpenAiServer(prompt -> {
+            if (!prompt.contains("Generate a SQL query")) {
+                return "Thirty customers.";
+            }
+            int index = generated.getAndIncrement();
+            try {
+                Thread.sleep(latencies[index]);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return candidates[index];
+        }, () -> 0)) {
+            RagConfig ragConfig = new RagConfig();
+            ragConfig.setSqlCandidates(3);
+            RagService ragService = new RagService(databaseService, new OpenAiService(llm.config()), ragConfig);
+
+            long start = System.nanoTime();
+            GeneratedSql sql = ragService.generateSql("List the customers");
+
+            assertTrue(sql.getSql(), sql.getSql().startsWith("SELECT name FROM customer"));
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+            assertEquals(1, ragService.getMetrics().getSqlRejections());
+            assertEquals(1, ragService.getOpenAiService().getStats().getCancelled());
+            assertEquals(3, llm.getRequestCount());
+        } finally {
+            databaseService.close();
+        }
+    }
+
+    public void testCandidateThatFailsTheCheckDoesNotHang() throws Exception {
+        EmbeddedDatabase.createSyntheticSchema("guard_candidate_error", 16, 10);
+        DatabaseService databaseService = new DatabaseService(EmbeddedDatabase.config("guard_candidate_error"));
+        // 只返回工具调用, 没有文本: 清理候选SQL时抛出异常
+        ChatLanguageModel toolCallsOnly = messages -> Response.from(AiMessage.from(
+                ToolExecutionRequest.builder().name("lookup").arguments("{}").build()), new TokenUsage(10, 5));
+        try {
+            RagConfig ragConfig = new RagConfig();
+            ragConfig.setSqlCandidates(2);
+            RagService ragService = new RagService(databaseService, new OpenAiService(toolCallsOnly), ragConfig);
+
+            CompletableFuture<GeneratedSql> sql = CompletableFuture.supplyAsync(() -> ragService.generateSql("List the customers"));
+            try {
+                sql.get(10, TimeUnit.SECONDS);
+                fail("Expected SQL generation to fail");
+            } catch (ExecutionException e) {
+                assertTrue(String.valueOf(e.getCause().getMessage()),
+                        e.getCause().getMessage().contains("Failed to generate SQL candidates"));
+            }
+        } finally {
+            databaseService.close();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.zeeker.service;
+
+import com.zeeker.config.RagConfig;
+import com.zeeker.sql.SqlStatements;
+import com.zeeker.support.EmbeddedDatabase;
+import com.zeeker.support.MockOpenAiServer;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class RagServiceStreamingTest extends TestCase {
+    private static final String ANSWER = "There are 200 customers in total across all of the regions.";
+
+    public void testStreamsAnswerTokensAndReportsFirstTokenLatency() throws Exception {
+        EmbeddedDatabase.createSyntheticSchema("streaming_answer", 16, 200);
+        DatabaseService databaseService = new DatabaseService(EmbeddedDatabase.config("streaming_answer"));
+        try (MockOpenAiServer llm = new MockOpenAiServer(
+                MockOpenAiServer.sqlThenAnswer("SELECT COUNT(*) FROM customer", ANSWER), () -> 0)) {
+            llm.setTokenDelayMillis(30);
+            RagConfig ragConfig = new RagConfig();
+            // 单值结果默认直接渲染, 这里要验证模型回答的流式输出
+            ragConfig.setDirectAnswerEnabled(false);
+            RagService ragService = new RagService(databaseService, new OpenAiService(llm.config()), ragConfig);
+
+            List<String> tokens = new ArrayList<>();
+            StreamedAnswer answer = ragService.streamNaturalLanguageQuery("How many customers are there?", tokens::add);
+
+            assertEquals(ANSWER, answer.getAnswer());
+            assertEquals(ANSWER, String.join("", tokens));
+            assertTrue(tokens.size() > 5);
+            assertEquals("SELECT COUNT(*) FROM customer;", answer.getSql());
+            // 剩余 token 每个间隔 30ms, 首 token 明显早于回答结束
+            assertTrue(answer.getTotalMillis() - answer.getTimeToFirstTokenMillis() >= 200);
+            System.out.printf("Streaming answer: first token %d ms, total %d ms%n",
+                    answer.getTimeToFirstTokenMillis(), answer.getTotalMillis());
+        } finally {
+            databaseService.close();
+        }
+    }
+
+    public void testSqlStreamStopsAtCompleteStatement() throws Exception {
+        StringBuilder sql = new StringBuilder("SELECT COUNT(*) FROM customer;\n\nThis query");
+        for (int i = 0; i < 60; i++) {
+            sql.append(" explains");
+        }
+        try (MockOpenAiServer llm = new MockOpenAiServer(prompt -> sql.toString(), () -> 0)) {
+            llm.setTokenDelayMillis(25);
+            OpenAiService openAiService = new OpenAiService(llm.config());
+
+            StreamedResponse response = openAiService.streamResponse("Generate a SQL query", token -> { },
+                    SqlStatements::isComplete);
+
+            assertTrue(response.isStoppedEarly());
+            assertTrue(response.getText().startsWith("SELECT COUNT(*) FROM customer;"));
+            // 完整输出约 1.5 秒
+            assertTrue("took " + response.getTotalMillis() + " ms", response.getTotalMillis() < 1000);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.zeeker.sql;
+
+import com.alibaba.druid.DbType;
+import com.zeeker.support.EmbeddedDatabase;
+import junit.framework.TestCase;
+import org.h2.jdbcx.JdbcDataSource;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+public class SqlGuardTest extends TestCase {
+    private JdbcDataSource dataSource;
+
+    @Override
+    protected void setUp() throws Exception {
+        String database = "guard_" + getName();
+        EmbeddedDatabase.createSyntheticSchema(database, 16, 20);
+        dataSource = new JdbcDataSource();
+        dataSource.setURL(EmbeddedDatabase.url(database));
+        dataSource.setUser("sa");
+    }
+
+    public void testRejectsAnythingButASingleReadOnlySelect() {
+        SqlGuard guard = new SqlGuard(dataSource, DbType.h2, 100, 1000, 5);
+
+        SqlGuard.Verdict update = guard.check("UPDATE customer SET name = 'x';");
+        assertFalse(update.isAllowed());
+        assertTrue(update.getReason(), update.getReason().contains("UPDATE"));
+        assertFalse(guard.check("DELETE FROM customer").isAllowed());
+        assertFalse(guard.check("DROP TABLE customer").isAllowed());
+        assertFalse(guard.check("SELECT * FROM customer FOR UPDATE").isAllowed());
+        // UNION 的任一分支和子查询中的 FOR UPDATE 同样拒绝
+        assertFalse(guard.check("SELECT 1 UNION SELECT 2 FOR UPDATE").isAllowed());
+        assertFalse(guard.check("SELECT id FROM customer UNION SELECT id FROM orders FOR UPDATE").isAllowed());
+        assertFalse(guard.check("SELECT * FROM (SELECT id FROM customer FOR UPDATE) c").isAllowed());
+        assertFalse(new SqlGuard(dataSource, DbType.mysql, 100, 0, 5)
+                .check("SELECT 1 UNION SELECT 2 FOR UPDATE").isAllowed());
+
+        SqlGuard.Verdict multiple = guard.check("SELECT 1 FROM customer; DELETE FROM customer;");
+        assertFalse(multiple.isAllowed());
+        assertTrue(multiple.getReason(), multiple.getReason().contains("one statement"));
+
+        SqlGuard.Verdict unknownColumn = guard.check("SELECT no_such_column FROM customer LIMIT 5");
+        assertFalse(unknownColumn.isAllowed());
+        assertTrue(unknownColumn.getReason(), unknownColumn.getReason().contains("could not plan"));
+    }
+
+    public void testInjectsOrTightensLimit() {
+        SqlGuard guard = new SqlGuard(dataSource, DbType.h2, 100, 1000, 5);
+
+        SqlGuard.Verdict missing = guard.check("SELECT id, name FROM customer ORDER BY id;");
+        assertTrue(missing.isAllowed());
+        assertTrue(missing.isRewritten());
+        assertTrue(missing.getSql(), missing.getSql().matches(".*LIMIT 101;?"));
+
+        SqlGuard.Verdict tooLarge = guard.check("SELECT id FROM customer LIMIT 5000");
+        assertTrue(tooLarge.getSql(), tooLarge.getSql().matches(".*LIMIT 101;?"));
+
+        SqlGuard.Verdict union = guard.check("SELECT id FROM customer UNION SELECT id FROM orders");
+        assertTrue(union.getSql(), union.getSql().matches(".*LIMIT 101;?"));
+
+        String small = "SELECT id FROM customer LIMIT 10;";
+        assertEquals(small, guard.check(small).getSql());
+        String aggregate = "SELECT COUNT(*), MAX(id) FROM customer;";
+        assertEquals(aggregate, guard.check(aggregate).getSql());
+        assertTrue(guard.check("SELECT status, COUNT(*) FROM customer GROUP BY status").isRewritten());
+    }
+
+    public void testEstimatesRowsExaminedFromMySqlStylePlan() throws Exception {
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+            // id 1: 扫描 1000 行过滤到 100 行, 每行再连接 500 行; id 2 为子查询 20 行
+            try (ResultSet plan = stmt.executeQuery("SELECT * FROM (VALUES (1, 1000, 10.0), (1, 500, 100.0), "
+                    + "(2, 20, NULL)) AS plan(id, \"rows\", filtered)")) {
+                assertEquals(1000 + 100 * 500 + 20, SqlGuard.estimateRowsExamined(plan));
+            }
+            // H2 的 EXPLAIN 没有行数估算
+            try (ResultSet plan = stmt.executeQuery("EXPLAIN SELECT * FROM customer")) {
+                assertEquals(-1, SqlGuard.estimateRowsExamined(plan));
+            }
+        }
+    }
+}
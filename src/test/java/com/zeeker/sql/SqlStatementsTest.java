@@ -0,0 +1,30 @@
+package com.zeeker.sql;
+
+import junit.framework.TestCase;
+
+public class SqlStatementsTest extends TestCase {
+
+    public void testCompleteAtFirstTopLevelSemicolon() {
+        String text = "SELECT COUNT(*) FROM customer;\n\nThis query counts customers.";
+        assertEquals("SELECT COUNT(*) FROM customer;", text.substring(0, SqlStatements.endOfFirstStatement(text)));
+        assertFalse(SqlStatements.isComplete("SELECT COUNT(*) FROM cust"));
+        assertFalse(SqlStatements.isComplete(" ; "));
+    }
+
+    public void testIgnoresSemicolonsInLiteralsAndComments() {
+        assertFalse(SqlStatements.isComplete("SELECT * FROM t WHERE note = 'a;b"));
+        assertFalse(SqlStatements.isComplete("SELECT * FROM t WHERE note = 'it''s;"));
+        assertFalse(SqlStatements.isComplete("SELECT `a;b` FROM t"));
+        assertFalse(SqlStatements.isComplete("-- pick rows;\nSELECT * FROM t"));
+        assertFalse(SqlStatements.isComplete("SELECT /* ; */ * FROM t"));
+
+        String text = "SELECT 'a;b' AS x /* ; */ FROM t; extra";
+        assertEquals("SELECT 'a;b' AS x /* ; */ FROM t;", text.substring(0, SqlStatements.endOfFirstStatement(text)));
+    }
+
+    public void testClosingMarkdownFenceEndsStatement() {
+        assertFalse(SqlStatements.isComplete("```sql\nSELECT 1"));
+        String text = "```sql\nSELECT 1\n```\nDone";
+        assertEquals("```sql\nSELECT 1\n", text.substring(0, SqlStatements.endOfFirstStatement(text)));
+    }
+}
@@ -0,0 +1,23 @@
+package com.zeeker.summary;
+
+import junit.framework.TestCase;
+
+public class HyperLogLogTest extends TestCase {
+
+    public void testEstimatesSmallAndLargeCardinalities() {
+        HyperLogLog small = new HyperLogLog(11);
+        for (int i = 0; i < 10_000; i++) {
+            small.add(HyperLogLog.hash(i % 7));
+        }
+        assertEquals(7, small.estimate());
+
+        for (int distinct : new int[]{1_000, 100_000, 1_000_000}) {
+            HyperLogLog hll = new HyperLogLog(11);
+            for (long i = 0; i < distinct; i++) {
+                hll.add(HyperLogLog.hash(i * 31 + 17));
+            }
+            double error = Math.abs(hll.estimate() - distinct) / (double) distinct;
+            assertTrue(distinct + " estimated as " + hll.estimate(), error < 0.07);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.zeeker.summary;
+
+import com.zeeker.query.ResultTable;
+import com.zeeker.service.DatabaseService;
+import com.zeeker.support.EmbeddedDatabase;
+import junit.framework.TestCase;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.List;
+
+public class ResultSummaryTest extends TestCase {
+
+    public void testSummarizesColumnsInOnePass() throws Exception {
+        try (Connection conn = EmbeddedDatabase.connect("result_summary"); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS sale (id BIGINT, status VARCHAR(16), amount DECIMAL(10,2), "
+                    + "sale_day DATE, note VARCHAR(32))");
+            stmt.execute("DELETE FROM sale");
+            // status: shipped 60%, pending 30%, lost 10%; note 每 4 行一个空值
+            stmt.execute("INSERT INTO sale SELECT \"X\", CASE WHEN MOD(\"X\", 10) < 6 THEN 'shipped' "
+                    + "WHEN MOD(\"X\", 10) < 9 THEN 'pending' ELSE 'lost' END, MOD(\"X\", 1000) / 4.0, "
+                    + "DATEADD('DAY', MOD(\"X\", 365), DATE '2024-01-01'), "
+                    + "CASE WHEN MOD(\"X\", 4) = 0 THEN NULL ELSE CONCAT('note-', \"X\") END FROM SYSTEM_RANGE(1, 10000)");
+        }
+        DatabaseService databaseService = new DatabaseService(EmbeddedDatabase.config("result_summary"));
+        try {
+            ResultTable table = databaseService.executeQuery("SELECT * FROM sale ORDER BY id");
+            ResultSummary summary = ResultSummary.of(table, 3, 20);
+
+            ResultSummary.ColumnSummary id = summary.getColumn(0);
+            assertEquals(10_000, id.getCount());
+            assertEquals("1", id.getMin());
+            assertEquals("10000", id.getMax());
+            assertEquals(5000.5, id.getMean(), 1e-9);
+            assertTrue(Math.abs(id.getDistinct() - 10_000) < 500);
+
+            List<TopK.Entry> statuses = summary.getColumn(1).getTop(3);
+            assertEquals("shipped", table.getString(statuses.get(0).getRow(), 1));
+            assertEquals(6000, statuses.get(0).getCount());
+            assertEquals(0, statuses.get(0).getError());
+            assertEquals("pending", table.getString(statuses.get(1).getRow(), 1));
+            assertEquals(3, summary.getColumn(1).getDistinct());
+            assertTrue(Double.isNaN(summary.getColumn(1).getMean()));
+
+            ResultSummary.ColumnSummary amount = summary.getColumn(2);
+            assertEquals("0.00", amount.getMin());
+            assertEquals("249.75", amount.getMax());
+            assertEquals(124.875, amount.getMean(), 1e-6);
+            assertEquals("2024-01-01", summary.getColumn(3).getMin());
+            assertEquals("2024-12-30", summary.getColumn(3).getMax());
+            assertEquals(2500, summary.getColumn(4).getNulls());
+            assertEquals(7500, summary.getColumn(4).getCount());
+
+            int[] sample = summary.getSampleRows();
+            assertEquals(20, sample.length);
+            assertEquals(10, summary.getHeadRows());
+            for (int i = 0; i < 10; i++) {
+                assertEquals(i, sample[i]);
+            }
+            for (int i = 10; i < sample.length; i++) {
+                assertTrue(sample[i] > sample[i - 1]);
+            }
+            // 固定种子, 同一结果的样本不变
+            assertTrue(java.util.Arrays.equals(sample, ResultSummary.of(table, 3, 20).getSampleRows()));
+
+            StringBuilder text = new StringBuilder();
+            summary.appendColumns(text);
+            assertTrue(text.toString(), text.toString().contains(
+                    "- status (string): 10000 values, 0 null, ~3 distinct, top: shipped (6000), pending (3000), lost (1000)\n"));
+            assertTrue(text.toString(), text.toString().contains("- note (string): 7500 values, 2500 null, ~"));
+            assertFalse(text.toString().contains("note-1 ("));
+        } finally {
+            databaseService.close();
+        }
+    }
+
+    public void testTopKKeepsHeavyHitters() {
+        TopK top = new TopK(8);
+        for (int row = 0; row < 10_000; row++) {
+            // 三个高频值共占一半, 其余值各出现一次
+            long key = row % 2 == 0 ? row % 3 : 1_000 + row;
+            top.add(key, row);
+        }
+        List<TopK.Entry> entries = top.top(3);
+        assertEquals(3, entries.size());
+        assertEquals(0, entries.get(0).getRow());
+        for (TopK.Entry entry : entries) {
+            assertTrue(entry.getCount() >= 1666);
+            assertTrue(entry.getCount() - entry.getError() <= 1667);
+        }
+    }
+
+    public void testSmallResultsAreSampledCompletely() throws Exception {
+        try (Connection conn = EmbeddedDatabase.connect("result_summary_small"); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS item (id BIGINT, price DOUBLE)");
+            stmt.execute("DELETE FROM item");
+            stmt.execute("INSERT INTO item VALUES (1, 2.5), (2, NULL), (3, 0.5)");
+        }
+        DatabaseService databaseService = new DatabaseService(EmbeddedDatabase.config("result_summary_small"));
+        try {
+            ResultTable table = databaseService.executeQuery("SELECT * FROM item ORDER BY id");
+            ResultSummary summary = ResultSummary.of(table, 5, 20);
+
+            assertEquals(3, summary.getSampleRows().length);
+            assertEquals("0.5", summary.getColumn(1).getMin());
+            assertEquals(1.5, summary.getColumn(1).getMean(), 1e-9);
+            assertEquals(1, summary.getColumn(1).getNulls());
+        } finally {
+            databaseService.close();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.zeeker.support;
+
+import com.zeeker.config.DatabaseConfig;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 测试用的内存 H2 数据库 (MySQL 兼容模式), 可生成指定规模的合成表结构.
+ */
+public final class EmbeddedDatabase {
+    private static final String[] ENTITIES = {
+            "customer", "orders", "product", "invoice", "payment", "shipment", "supplier", "employee",
+            "department", "inventory", "warehouse", "campaign", "region", "store", "contract", "ticket"};
+    private static final String[] SUFFIXES = {"", "_item", "_history", "_audit", "_detail", "_summary", "_log", "_snapshot"};
+    private static final String[] COLUMNS = {
+            "name", "status", "amount", "quantity", "price", "created_at", "updated_at", "category",
+            "description", "email", "city", "country", "score", "discount", "currency", "channel"};
+
+    private EmbeddedDatabase() {
+    }
+
+    public static String url(String name) {
+        return "jdbc:h2:mem:" + name + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+    }
+
+    public static DatabaseConfig config(String name) {
+        DatabaseConfig config = new DatabaseConfig();
+        config.setUrl(url(name));
+        config.setUsername("sa");
+        config.setPassword("");
+        config.setDriverClassName("org.h2.Driver");
+        config.setInitialSize(1);
+        config.setMinIdle(1);
+        config.setFilters("stat");
+        config.setConnectionProperties("druid.stat.mergeSql=true;druid.stat.slowSqlMillis=5000");
+        return config;
+    }
+
+    public static Connection connect(String name) throws SQLException {
+        return DriverManager.getConnection(url(name), "sa", "");
+    }
+
+    /**
+     * 生成 tableCount 张表, 名称形如 customer_history_3; 每张表带若干业务列, 并按需引用前一张同类实体表.
+     */
+    public static void createSyntheticSchema(String name, int tableCount, int rowsPerTable) throws SQLException {
+        try (Connection conn = connect(name); Statement stmt = conn.createStatement()) {
+            for (int i = 0; i < tableCount; i++) {
+                String table = tableName(i);
+                StringBuilder ddl = new StringBuilder("CREATE TABLE ").append(table).append(" (id BIGINT PRIMARY KEY");
+                int columnCount = 6 + i % 8;
+                for (int c = 0; c < columnCount; c++) {
+                    String column = COLUMNS[(i + c) % COLUMNS.length];
+                    ddl.append(", ").append(column).append(c == 2 ? " DECIMAL(12,2)" : c == 1 ? " INT" : " VARCHAR(64)");
+                }
+                String parent = i >= ENTITIES.length ? tableName(i % ENTITIES.length) : null;
+                if (parent != null) {
+                    ddl.append(", ").append(parent).append("_id BIGINT REFERENCES ").append(parent).append("(id)");
+                }
+                ddl.append(")");
+                stmt.execute(ddl.toString());
+
+                if (rowsPerTable > 0) {
+                    stmt.execute("INSERT INTO " + table + " (id) SELECT \"X\" FROM SYSTEM_RANGE(1, " + rowsPerTable + ")");
+                }
+            }
+        }
+    }
+
+    public static String tableName(int index) {
+        String entity = ENTITIES[index % ENTITIES.length];
+        String suffix = SUFFIXES[(index / ENTITIES.length) % SUFFIXES.length];
+        int generation = index / (ENTITIES.length * SUFFIXES.length);
+        return entity + suffix + (generation == 0 ? "" : "_" + generation);
+    }
+}
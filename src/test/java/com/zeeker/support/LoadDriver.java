@@ -0,0 +1,214 @@
+package com.zeeker.support;
+
+import com.zeeker.concurrent.VirtualThreads;
+import com.zeeker.metrics.LatencyHistogram;
+import com.zeeker.service.DatabaseService;
+import com.zeeker.service.RagService;
+import lombok.Value;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 以固定到达率向 RagService 发送问题的开环压测驱动: 按计划时间发出请求, 不等待前一个请求完成,
+ * 延迟从计划发出时间算起, 驱动自身落后时也不会低估排队时间.
+ * 运行期间定时采样连接池, 结束时汇总吞吐量, 延迟分位数, 连接池饱和度和堆分配速率.
+ */
+public class LoadDriver {
+    private static final long POOL_SAMPLE_MILLIS = 10;
+
+    private final RagService ragService;
+    private final double requestsPerSecond;
+    private final int requests;
+
+    public LoadDriver(RagService ragService, double requestsPerSecond, int requests) {
+        this.ragService = ragService;
+        this.requestsPerSecond = requestsPerSecond;
+        this.requests = requests;
+    }
+
+    public Report run(List<String> questions) throws InterruptedException {
+        DatabaseService databaseService = ragService.getDatabaseService();
+        DatabaseService.PoolStats poolBefore = databaseService.getPoolStats(0);
+        long failuresBefore = ragService.getMetrics().getFailures();
+        long llmCallsBefore = ragService.getOpenAiService().getStats().getCalls();
+        long allocatedBefore = allocatedBytes();
+        long[] gcBefore = gcCountAndMillis();
+
+        PoolSampler sampler = new PoolSampler(databaseService);
+        ScheduledExecutorService sampling = Executors.newSingleThreadScheduledExecutor(VirtualThreads.daemonThreads("load-pool"));
+        sampling.scheduleAtFixedRate(sampler, 0, POOL_SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+
+        LatencyHistogram latency = new LatencyHistogram();
+        AtomicLong maxLagNanos = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(requests);
+        ExecutorService executor = VirtualThreads.newPerTaskExecutor("load");
+        long intervalNanos = (long) (1e9 / requestsPerSecond);
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < requests; i++) {
+                long scheduled = start + i * intervalNanos;
+                for (long wait = scheduled - System.nanoTime(); wait > 0; wait = scheduled - System.nanoTime()) {
+                    LockSupport.parkNanos(wait);
+                }
+                maxLagNanos.accumulateAndGet(System.nanoTime() - scheduled, Math::max);
+                String question = questions.get(i % questions.size());
+                executor.execute(() -> {
+                    try {
+                        ragService.processNaturalLanguageQuery(question);
+                    } finally {
+                        latency.recordSince(scheduled);
+                        done.countDown();
+                    }
+                });
+            }
+            done.await();
+        } finally {
+            executor.shutdownNow();
+            sampling.shutdownNow();
+        }
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        DatabaseService.PoolStats poolAfter = databaseService.getPoolStats(0);
+        long allocated = allocatedBefore < 0 ? -1 : allocatedBytes() - allocatedBefore;
+        long[] gcAfter = gcCountAndMillis();
+        return new Report(requests, ragService.getMetrics().getFailures() - failuresBefore, requestsPerSecond,
+                elapsedSeconds, requests / elapsedSeconds, maxLagNanos.get() / 1e6,
+                latency.getPercentileMillis(50), latency.getPercentileMillis(90), latency.getPercentileMillis(99),
+                latency.getMaxMillis(), poolAfter.getMaxActive(), sampler.activePeak, sampler.meanUtilisation(),
+                sampler.saturatedRatio(), sampler.waitingPeak, poolAfter.getConnectCount() - poolBefore.getConnectCount(),
+                poolAfter.getWaitCount() - poolBefore.getWaitCount(), poolAfter.getWaitMillis() - poolBefore.getWaitMillis(),
+                ragService.getOpenAiService().getStats().getCalls() - llmCallsBefore,
+                ragService.getOpenAiService().getStats().getConcurrencyLimit(),
+                allocated, allocated < 0 ? -1 : allocated / elapsedSeconds / (1024 * 1024),
+                gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1]);
+    }
+
+    /**
+     * 所有线程累计分配的堆内存字节数; JVM 不支持时返回 -1.
+     * JDK 21+ 的 getTotalThreadAllocatedBytes 包含已结束的线程, 项目以 Java 17 编译, 通过反射调用;
+     * 更早的 JDK 只能累加存活线程, 期间结束的线程会被漏算.
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+        if (!sunThreads.isThreadAllocatedMemorySupported() || !sunThreads.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        try {
+            Method total = com.sun.management.ThreadMXBean.class.getMethod("getTotalThreadAllocatedBytes");
+            return (long) total.invoke(sunThreads);
+        } catch (ReflectiveOperationException e) {
+            long sum = 0;
+            for (long allocated : sunThreads.getThreadAllocatedBytes(sunThreads.getAllThreadIds())) {
+                sum += Math.max(0, allocated);
+            }
+            return sum;
+        }
+    }
+
+    private static long[] gcCountAndMillis() {
+        long[] totals = new long[2];
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            totals[0] += Math.max(0, gc.getCollectionCount());
+            totals[1] += Math.max(0, gc.getCollectionTime());
+        }
+        return totals;
+    }
+
+    /**
+     * 定时记录主库连接池的活跃连接数和等待线程数. 只在采样线程上写, 结束后读取.
+     */
+    private static final class PoolSampler implements Runnable {
+        private final DatabaseService databaseService;
+        private volatile int activePeak;
+        private volatile int waitingPeak;
+        private volatile long samples;
+        private volatile long saturatedSamples;
+        private volatile double utilisationSum;
+
+        private PoolSampler(DatabaseService databaseService) {
+            this.databaseService = databaseService;
+        }
+
+        @Override
+        public void run() {
+            DatabaseService.PoolStats pool = databaseService.getPoolStats(0);
+            activePeak = Math.max(activePeak, pool.getActiveCount());
+            waitingPeak = Math.max(waitingPeak, pool.getWaitingThreads());
+            utilisationSum += (double) pool.getActiveCount() / pool.getMaxActive();
+            if (pool.getWaitingThreads() > 0) {
+                saturatedSamples++;
+            }
+            samples++;
+        }
+
+        private double meanUtilisation() {
+            return samples == 0 ? 0 : utilisationSum / samples;
+        }
+
+        private double saturatedRatio() {
+            return samples == 0 ? 0 : (double) saturatedSamples / samples;
+        }
+    }
+
+    @Value
+    public static class Report {
+        int requests;
+        long failures;
+        double targetRate;
+        double elapsedSeconds;
+        double throughput;
+        // 驱动发出请求相对计划时间的最大落后, 过大说明压测机本身成了瓶颈
+        double maxDispatchLagMillis;
+        double p50Millis;
+        double p90Millis;
+        double p99Millis;
+        double maxMillis;
+        int poolMaxActive;
+        int poolActivePeak;
+        // 采样期间活跃连接占 maxActive 的平均比例, 以及有线程等待连接的采样比例
+        double poolUtilisation;
+        double poolSaturatedRatio;
+        int poolWaitingPeak;
+        // 压测期间从连接池借出连接的次数, 不受采样间隔影响
+        long poolBorrows;
+        long poolWaitCount;
+        long poolWaitMillis;
+        long llmCalls;
+        int llmConcurrencyLimit;
+        // 压测期间整个 JVM 的堆分配, 包括模拟 LLM 和内存数据库; -1 表示不支持
+        long allocatedBytes;
+        double allocationRateMbPerSecond;
+        long gcCount;
+        long gcMillis;
+
+        public String format() {
+            return String.format("requests=%d failures=%d rate=%.1f/s throughput=%.1f/s elapsed=%.1fs dispatchLag=%.1fms%n"
+                            + "latency p50=%.1fms p90=%.1fms p99=%.1fms max=%.1fms%n"
+                            + "pool maxActive=%d activePeak=%d utilisation=%.0f%% saturated=%.0f%% waitingPeak=%d "
+                            + "borrows=%d waits=%d waitMillis=%d%n"
+                            + "llm calls=%d concurrencyLimit=%d%n"
+                            + "alloc=%.1fMB rate=%.1fMB/s gc=%d (%dms)",
+                    requests, failures, targetRate, throughput, elapsedSeconds, maxDispatchLagMillis,
+                    p50Millis, p90Millis, p99Millis, maxMillis,
+                    poolMaxActive, poolActivePeak, poolUtilisation * 100, poolSaturatedRatio * 100, poolWaitingPeak,
+                    poolBorrows, poolWaitCount, poolWaitMillis,
+                    llmCalls, llmConcurrencyLimit,
+                    allocatedBytes / (1024.0 * 1024), allocationRateMbPerSecond, gcCount, gcMillis);
+        }
+    }
+}
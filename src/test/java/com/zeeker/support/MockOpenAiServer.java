@@ -0,0 +1,206 @@
+package com.zeeker.support;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.zeeker.config.OpenAiConfig;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * 本地的 OpenAI 兼容 /v1/chat/completions 服务, 按给定函数生成回复并注入延迟.
+ * 请求带 stream: true 时按单词拆分为 SSE 分块返回, 每块之间可再注入延迟.
+ * 状态码不是 200 时返回 OpenAI 格式的错误, 用来模拟 429 和 5xx.
+ */
+public class MockOpenAiServer implements AutoCloseable {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    static {
+        // JDK HttpServer 默认不开启 TCP_NODELAY, 响应头和正文分开写出时会碰上 Nagle 与延迟 ACK, 每个响应多等约 40ms.
+        // 该属性在第一次创建 HttpServer 时读取
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile Function<String, String> responder;
+    private volatile LongSupplier latencyMillis;
+    private volatile long tokenDelayMillis;
+    private volatile IntSupplier status = () -> 200;
+
+    public MockOpenAiServer(Function<String, String> responder, LongSupplier latencyMillis) throws IOException {
+        this.responder = responder;
+        this.latencyMillis = latencyMillis;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/v1/chat/completions", this::handle);
+        server.start();
+    }
+
+    /**
+     * 问题生成 SQL 时返回 sql, 其余调用返回 answer.
+     */
+    public static Function<String, String> sqlThenAnswer(String sql, String answer) {
+        return prompt -> prompt.contains("Generate a SQL query") ? sql : answer;
+    }
+
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1/";
+    }
+
+    public OpenAiConfig config() {
+        OpenAiConfig config = new OpenAiConfig();
+        config.setApiKey("test-key");
+        config.setModel("gpt-4o-mini");
+        config.setTemperature(0);
+        config.setMaxTokens(256);
+        config.setBaseUrl(getBaseUrl());
+        return config;
+    }
+
+    public int getRequestCount() {
+        return requests.get();
+    }
+
+    public void setResponder(Function<String, String> responder) {
+        this.responder = responder;
+    }
+
+    public void setLatencyMillis(LongSupplier latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    public void setTokenDelayMillis(long tokenDelayMillis) {
+        this.tokenDelayMillis = tokenDelayMillis;
+    }
+
+    /**
+     * 每个请求的响应状态码, 在注入延迟之后取值.
+     */
+    public void setStatus(IntSupplier status) {
+        this.status = status;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            requests.incrementAndGet();
+            JsonNode request = MAPPER.readTree(exchange.getRequestBody());
+            JsonNode messages = request.path("messages");
+            String prompt = messages.get(messages.size() - 1).path("content").asText();
+
+            long delay = latencyMillis.getAsLong();
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+
+            int code = status.getAsInt();
+            if (code != 200) {
+                error(exchange, code);
+                return;
+            }
+
+            String content = responder.apply(prompt);
+            if (request.path("stream").asBoolean(false)) {
+                stream(exchange, request, content);
+                return;
+            }
+            ObjectNode response = MAPPER.createObjectNode();
+            response.put("id", "chatcmpl-mock");
+            response.put("object", "chat.completion");
+            response.put("created", System.currentTimeMillis() / 1000);
+            response.put("model", request.path("model").asText());
+            ObjectNode choice = response.putArray("choices").addObject();
+            choice.put("index", 0);
+            choice.putObject("message").put("role", "assistant").put("content", content);
+            choice.put("finish_reason", "stop");
+            response.putObject("usage")
+                    .put("prompt_tokens", prompt.length() / 4)
+                    .put("completion_tokens", content.length() / 4)
+                    .put("total_tokens", (prompt.length() + content.length()) / 4);
+
+            byte[] body = MAPPER.writeValueAsBytes(response);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void stream(HttpExchange exchange, JsonNode request, String content) throws IOException, InterruptedException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            String[] tokens = content.split("(?<=\\s)");
+            for (int i = 0; i < tokens.length; i++) {
+                if (i > 0 && tokenDelayMillis > 0) {
+                    Thread.sleep(tokenDelayMillis);
+                }
+                ObjectNode chunk = chunk(request);
+                ObjectNode delta = chunk.putArray("choices").addObject().put("index", 0).putObject("delta");
+                if (i == 0) {
+                    delta.put("role", "assistant");
+                }
+                delta.put("content", tokens[i]);
+                writeEvent(out, MAPPER.writeValueAsString(chunk));
+            }
+            ObjectNode last = chunk(request);
+            ObjectNode choice = last.putArray("choices").addObject().put("index", 0);
+            choice.putObject("delta");
+            choice.put("finish_reason", "stop");
+            writeEvent(out, MAPPER.writeValueAsString(last));
+            writeEvent(out, "[DONE]");
+        }
+    }
+
+    private static void error(HttpExchange exchange, int code) throws IOException {
+        ObjectNode response = MAPPER.createObjectNode();
+        response.putObject("error")
+                .put("message", code == 429 ? "Rate limit reached" : "Server error")
+                .put("type", code == 429 ? "rate_limit_exceeded" : "server_error");
+        byte[] body = MAPPER.writeValueAsBytes(response);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(code, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static ObjectNode chunk(JsonNode request) {
+        ObjectNode chunk = MAPPER.createObjectNode();
+        chunk.put("id", "chatcmpl-mock");
+        chunk.put("object", "chat.completion.chunk");
+        chunk.put("created", System.currentTimeMillis() / 1000);
+        chunk.put("model", request.path("model").asText());
+        return chunk;
+    }
+
+    private static void writeEvent(OutputStream out, String data) throws IOException {
+        out.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,107 @@
+package com.zeeker.support;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 录制的问题负载: JSONL 每行 {"question": ..., "sql": ..., "answer": ...}.
+ * 驱动按顺序循环发送 question; {@link #responder()} 供 {@link MockOpenAiServer} 按提示词中的问题回放 sql 和 answer.
+ * answer 中的 {question} 会替换为实际问题, 用来生成模板化的回复.
+ */
+public class Workload {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String QUESTION_MARKER = "Question: ";
+
+    private final List<String> questions = new ArrayList<>();
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    private Workload(List<Entry> recorded) {
+        for (Entry entry : recorded) {
+            questions.add(entry.question);
+            entries.put(entry.question, entry);
+        }
+        if (questions.isEmpty()) {
+            throw new IllegalArgumentException("Workload has no questions");
+        }
+    }
+
+    /**
+     * 从文件读取; path 为 null 时读取类路径上的 resource.
+     */
+    public static Workload load(String path, String resource) throws IOException {
+        if (path != null) {
+            try (InputStream in = Files.newInputStream(Path.of(path))) {
+                return read(in);
+            }
+        }
+        try (InputStream in = Workload.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IOException("Workload resource not found: " + resource);
+            }
+            return read(in);
+        }
+    }
+
+    private static Workload read(InputStream in) throws IOException {
+        List<Entry> recorded = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            if (line.isBlank()) {
+                continue;
+            }
+            JsonNode node = MAPPER.readTree(line);
+            recorded.add(new Entry(node.path("question").asText(), node.path("sql").asText(), node.path("answer").asText()));
+        }
+        return new Workload(recorded);
+    }
+
+    public List<String> getQuestions() {
+        return Collections.unmodifiableList(questions);
+    }
+
+    /**
+     * 取提示词中最后一个 "Question: " 行对应的录制条目; 回答提示词返回 answer, 其余返回 sql.
+     */
+    public Function<String, String> responder() {
+        return prompt -> {
+            int start = prompt.lastIndexOf(QUESTION_MARKER);
+            if (start < 0) {
+                throw new IllegalArgumentException("Prompt has no question");
+            }
+            start += QUESTION_MARKER.length();
+            int end = prompt.indexOf('\n', start);
+            String question = end < 0 ? prompt.substring(start) : prompt.substring(start, end);
+            Entry entry = entries.get(question);
+            if (entry == null) {
+                throw new IllegalArgumentException("No recorded response for question: " + question);
+            }
+            return prompt.startsWith("Answer the question") ? entry.answer.replace("{question}", question) : entry.sql;
+        };
+    }
+
+    private static final class Entry {
+        private final String question;
+        private final String sql;
+        private final String answer;
+
+        private Entry(String question, String sql, String answer) {
+            this.question = question;
+            this.sql = sql;
+            this.answer = answer;
+        }
+    }
+}